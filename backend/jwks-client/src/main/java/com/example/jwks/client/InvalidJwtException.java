@@ -0,0 +1,18 @@
+package com.example.jwks.client;
+
+
+/**
+ * The jwt is malformed, its signature does not match a key of the jwks or it is expired.
+ *
+ * @since latest
+ */
+public class InvalidJwtException extends Exception {
+
+    public InvalidJwtException(String message) {
+        super(message);
+    }
+
+    public InvalidJwtException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
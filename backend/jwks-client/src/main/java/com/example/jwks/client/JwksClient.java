@@ -0,0 +1,343 @@
+package com.example.jwks.client;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.example.jwks.client.JwksFetcher.JwksResponse;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+
+/**
+ * Verifies jwts issued by the backend with keys of its jwks, cached by "kid". <p>
+ *
+ * There is one instance per jwks uri per jvm (see {@link #getInstance}). The keys are fetched on first use and then refreshed in the
+ * background once the response's "max-age" has passed (default {@link #DEFAULT_REFRESH_INTERVAL} if the server does not send one),
+ * revalidating with the response's "ETag", so an unchanged jwks costs a 304 and no key parsing. Jwks that did not change between two
+ * fetches keep their parsed key. <p>
+ *
+ * A token with an unknown "kid" triggers a refetch in case the keys were rotated, at most once per {@link #DEFAULT_MIN_REFETCH_INTERVAL},
+ * so tokens with made up kids cannot flood the jwks endpoint. Concurrent refetches are coalesced into one request. <p>
+ *
+ * Lookups read an immutable snapshot of the keys and never block, unless a refetch is due.
+ *
+ * @since latest
+ */
+public class JwksClient {
+
+    private static final Logger log = LoggerFactory.getLogger(JwksClient.class);
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    /** In ms. Min delay between two fetches triggered by unknown kids, also used when retrying a failed background refresh */
+    public static final long DEFAULT_MIN_REFETCH_INTERVAL = 30_000;
+
+    /** In ms. Refresh interval if the server sends no "max-age" */
+    public static final long DEFAULT_REFRESH_INTERVAL = 5 * 60_000;
+
+    /** In ms. Upper bound for "max-age", so rotated keys are picked up eventually even without a token using them */
+    private static final long MAX_REFRESH_INTERVAL = 60 * 60_000;
+
+    /** In seconds. Tolerance for "exp" and "nbf" */
+    private static final long CLOCK_SKEW = 30;
+
+    /** In seconds. Max time to wait for a fetch of another caller */
+    private static final long REFRESH_TIMEOUT = 30;
+
+    private static final ConcurrentMap<URI, JwksClient> INSTANCES = new ConcurrentHashMap<>();
+
+    private static final ScheduledExecutorService BACKGROUND_REFRESHER = Executors.newSingleThreadScheduledExecutor(
+        Thread.ofPlatform().name("jwks-refresh").daemon().factory());
+
+    private final JwksFetcher jwksFetcher;
+
+    private final long minRefetchIntervalMs;
+
+    private final long defaultRefreshIntervalMs;
+
+    /** {@code null} until the first successful fetch */
+    private final AtomicReference<KeySet> keySet = new AtomicReference<>();
+
+    private final AtomicReference<CompletableFuture<KeySet>> inFlightRefresh = new AtomicReference<>();
+
+    private final AtomicReference<ScheduledFuture<?>> backgroundRefresh = new AtomicReference<>();
+
+    /** In ms. 0 if never fetched */
+    private volatile long lastFetchStartedMs = 0;
+
+    private volatile boolean backgroundRefreshStopped = false;
+
+
+    JwksClient(JwksFetcher jwksFetcher, long minRefetchIntervalMs, long defaultRefreshIntervalMs) {
+        if (minRefetchIntervalMs <= 0 || defaultRefreshIntervalMs <= 0)
+            throw new IllegalArgumentException("'minRefetchIntervalMs' and 'defaultRefreshIntervalMs' need to be positive");
+
+        this.jwksFetcher = jwksFetcher;
+        this.minRefetchIntervalMs = minRefetchIntervalMs;
+        this.defaultRefreshIntervalMs = defaultRefreshIntervalMs;
+    }
+
+
+    /**
+     * @param jwksUri e.g. {@code http://localhost:4001/.well-known/jwks}, see "jwks_uri" of the backend's discovery document
+     * @return the shared instance for {@code jwksUri}
+     */
+    public static JwksClient getInstance(URI jwksUri) {
+        return INSTANCES.computeIfAbsent(
+            jwksUri,
+            key -> new JwksClient(new JwksFetcher(jwksUri), DEFAULT_MIN_REFETCH_INTERVAL, DEFAULT_REFRESH_INTERVAL));
+    }
+
+
+    /**
+     * Checks the signature and "exp" and "nbf" if present. Other claims like "iss" and "aud" are up to the caller.
+     *
+     * @param jwt compact serialized jws
+     * @return the claims
+     * @throws InvalidJwtException if {@code jwt} is malformed, expired, not yet valid or not signed by a key of the jwks
+     * @throws IOException if the jwks could not be fetched, e.g. on first use or while looking for an unknown kid
+     */
+    public JsonNode verify(String jwt) throws InvalidJwtException, IOException {
+        int headerEnd = jwt == null ? -1 : jwt.indexOf('.');
+        int payloadEnd = headerEnd == -1 ? -1 : jwt.indexOf('.', headerEnd + 1);
+        if (payloadEnd == -1 || jwt.indexOf('.', payloadEnd + 1) != -1)
+            throw new InvalidJwtException("Malformed jwt, expected 3 parts");
+
+        JsonNode header = decodeJson(jwt.substring(0, headerEnd), "header");
+        if (!header.hasNonNull("kid"))
+            throw new InvalidJwtException("Jwt is missing 'kid' header");
+
+        String kid = header.get("kid").asText();
+        VerificationKey key = getKey(kid);
+        if (key == null)
+            throw new InvalidJwtException("Unknown key id '%s'".formatted(kid));
+
+        try {
+            byte[] signature = Base64.getUrlDecoder().decode(jwt.substring(payloadEnd + 1));
+            byte[] signingInput = jwt.substring(0, payloadEnd).getBytes(StandardCharsets.US_ASCII);
+
+            if (!key.verify(header.path("alg").asText(), signingInput, signature))
+                throw new InvalidJwtException("Invalid signature");
+
+        } catch (IllegalArgumentException | GeneralSecurityException e) {
+            throw new InvalidJwtException("Malformed signature", e);
+        }
+
+        JsonNode claims = decodeJson(jwt.substring(headerEnd + 1, payloadEnd), "payload");
+        long now = System.currentTimeMillis() / 1000;
+
+        if (claims.hasNonNull("exp") && now - CLOCK_SKEW >= claims.get("exp").asLong())
+            throw new InvalidJwtException("Jwt is expired");
+
+        if (claims.hasNonNull("nbf") && now + CLOCK_SKEW < claims.get("nbf").asLong())
+            throw new InvalidJwtException("Jwt is not valid yet");
+
+        return claims;
+    }
+
+
+    /**
+     * @param kid "kid" header of a jws
+     * @return the cached key, or the refetched one if {@code kid} is unknown and the last fetch is long enough ago. {@code null} if
+     * the jwks has no such key
+     * @throws IOException if a fetch was necessary and failed, or if there are no keys yet and the last fetch failed recently
+     */
+    public VerificationKey getKey(String kid) throws IOException {
+        KeySet keySet = this.keySet.get();
+        VerificationKey key = keySet == null ? null : keySet.keys().get(kid);
+        if (key != null)
+            return key;
+
+        // case: first use or unknown kid, maybe the keys were rotated
+        return refresh(keySet, true).keys().get(kid);
+    }
+
+
+    /**
+     * Cancel the background refresh, the client keeps working with the cached keys and fetches on unknown kids only.
+     */
+    void stopBackgroundRefresh() {
+        this.backgroundRefreshStopped = true;
+
+        ScheduledFuture<?> backgroundRefresh = this.backgroundRefresh.getAndSet(null);
+        if (backgroundRefresh != null)
+            backgroundRefresh.cancel(false);
+    }
+
+
+    /**
+     * Fetch the jwks unless another caller already does, in which case wait for that one.
+     *
+     * @param seenKeySet the keys the caller looked at, if they were replaced meanwhile there's no need to fetch again
+     * @param rateLimited {@code true} to not fetch if the last fetch started less than {@code minRefetchIntervalMs} ago
+     * @return the current keys, never {@code null}
+     * @throws IOException if the fetch failed, or if rate limited and there are no keys yet
+     */
+    private KeySet refresh(KeySet seenKeySet, boolean rateLimited) throws IOException {
+        CompletableFuture<KeySet> ownRefresh = new CompletableFuture<>();
+        CompletableFuture<KeySet> otherRefresh = this.inFlightRefresh.compareAndExchange(null, ownRefresh);
+
+        // case: coalesce
+        if (otherRefresh != null)
+            return await(otherRefresh);
+
+        try {
+            KeySet keySet = this.keySet.get();
+            long nowMs = System.currentTimeMillis();
+
+            // case: another caller refreshed after our lookup, or refetched too recently
+            if (keySet != null && (keySet != seenKeySet || (rateLimited && nowMs - this.lastFetchStartedMs < this.minRefetchIntervalMs))) {
+                ownRefresh.complete(keySet);
+                return keySet;
+            }
+
+            // case: first fetch failed recently
+            if (keySet == null && rateLimited && this.lastFetchStartedMs != 0 && nowMs - this.lastFetchStartedMs < this.minRefetchIntervalMs)
+                throw new IOException("No jwks yet, last fetch failed less than %d ms ago".formatted(this.minRefetchIntervalMs));
+
+            this.lastFetchStartedMs = nowMs;
+            JwksResponse response = this.jwksFetcher.fetch(keySet == null ? null : keySet.etag());
+
+            if (!response.isNotModified())
+                keySet = new KeySet(parseKeys(response.jwksByKid(), keySet), response.etag());
+
+            else if (keySet == null)
+                throw new IOException("Jwks endpoint responded with 304 to an unconditional request");
+
+            this.keySet.set(keySet);
+            scheduleBackgroundRefresh(refreshIntervalMs(response.maxAgeMs()));
+
+            ownRefresh.complete(keySet);
+            return keySet;
+
+        } catch (IOException | RuntimeException e) {
+            ownRefresh.completeExceptionally(e);
+            throw e;
+
+        } finally {
+            this.inFlightRefresh.set(null);
+        }
+    }
+
+
+    private void scheduleBackgroundRefresh(long delayMs) {
+        if (this.backgroundRefreshStopped)
+            return;
+
+        ScheduledFuture<?> previous = this.backgroundRefresh.getAndSet(
+            BACKGROUND_REFRESHER.schedule(this::refreshInBackground, delayMs, TimeUnit.MILLISECONDS));
+
+        // case: refreshed early, e.g. for an unknown kid
+        if (previous != null)
+            previous.cancel(false);
+    }
+
+
+    private void refreshInBackground() {
+        try {
+            refresh(this.keySet.get(), false);
+
+        } catch (IOException | RuntimeException e) {
+            log.warn("Background jwks refresh failed, keeping cached keys: {}", e.getMessage());
+            scheduleBackgroundRefresh(this.minRefetchIntervalMs);
+        }
+    }
+
+
+    /**
+     * @param maxAgeMs of the last response, may be {@code null}
+     * @return {@code maxAgeMs} or the default, between {@code minRefetchIntervalMs} and {@link #MAX_REFRESH_INTERVAL}
+     */
+    private long refreshIntervalMs(Long maxAgeMs) {
+        long refreshIntervalMs = maxAgeMs == null ? this.defaultRefreshIntervalMs : maxAgeMs;
+
+        return Math.clamp(refreshIntervalMs, this.minRefetchIntervalMs, Math.max(this.minRefetchIntervalMs, MAX_REFRESH_INTERVAL));
+    }
+
+
+    /**
+     * @param jwksByKid as fetched
+     * @param previousKeySet may be {@code null}
+     * @return parsed keys by kid. Keys of {@code previousKeySet} are reused if their jwk did not change, unsupported jwks are left out
+     */
+    private static Map<String, VerificationKey> parseKeys(Map<String, JsonNode> jwksByKid, KeySet previousKeySet) {
+        Map<String, VerificationKey> keys = new LinkedHashMap<>();
+
+        for (Map.Entry<String, JsonNode> jwk : jwksByKid.entrySet()) {
+            VerificationKey previousKey = previousKeySet == null ? null : previousKeySet.keys().get(jwk.getKey());
+
+            // case: unchanged
+            if (previousKey != null && previousKey.jwk().equals(jwk.getValue())) {
+                keys.put(jwk.getKey(), previousKey);
+                continue;
+            }
+
+            try {
+                keys.put(jwk.getKey(), VerificationKey.parse(jwk.getValue()));
+
+            } catch (IllegalArgumentException | GeneralSecurityException e) {
+                log.warn("Ignoring jwk '{}': {}", jwk.getKey(), e.getMessage());
+            }
+        }
+
+        return Map.copyOf(keys);
+    }
+
+
+    private static JsonNode decodeJson(String base64Url, String part) throws InvalidJwtException {
+        try {
+            JsonNode json = OBJECT_MAPPER.readTree(Base64.getUrlDecoder().decode(base64Url));
+            if (json == null || !json.isObject())
+                throw new InvalidJwtException("Malformed jwt %s, expected a json object".formatted(part));
+
+            return json;
+
+        } catch (IllegalArgumentException | IOException e) {
+            throw new InvalidJwtException("Malformed jwt " + part, e);
+        }
+    }
+
+
+    private static KeySet await(CompletableFuture<KeySet> refresh) throws IOException {
+        try {
+            return refresh.get(REFRESH_TIMEOUT, TimeUnit.SECONDS);
+
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ioException ? ioException : new IOException(e.getCause());
+
+        } catch (TimeoutException e) {
+            throw new IOException("Timed out waiting for jwks refresh", e);
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for jwks refresh", e);
+        }
+    }
+
+
+    /**
+     * Immutable snapshot of the jwks.
+     *
+     * @param keys parsed keys by kid
+     * @param etag of the response the keys came from, may be {@code null}
+     */
+    private record KeySet(Map<String, VerificationKey> keys, String etag) {}
+}
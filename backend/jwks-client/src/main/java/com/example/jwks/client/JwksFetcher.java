@@ -0,0 +1,144 @@
+package com.example.jwks.client;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+
+/**
+ * Fetches the jwks from the backend's {@code /.well-known/jwks} endpoint, revalidating with "If-None-Match". Does not cache.
+ *
+ * @since latest
+ */
+public class JwksFetcher {
+
+    private static final Logger log = LoggerFactory.getLogger(JwksFetcher.class);
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10);
+
+    private static final Pattern MAX_AGE_PATTERN = Pattern.compile("(?:^|[,\\s])max-age=\"?(\\d+)\"?");
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+        .connectTimeout(REQUEST_TIMEOUT)
+        .build();
+
+    private final URI jwksUri;
+
+
+    /**
+     * @param jwksUri e.g. {@code http://localhost:4001/.well-known/jwks}
+     */
+    public JwksFetcher(URI jwksUri) {
+        if (jwksUri == null)
+            throw new IllegalArgumentException("'jwksUri' cannot be null");
+
+        this.jwksUri = jwksUri;
+    }
+
+
+    /**
+     * @param etag of the jwks the caller has, {@code null} to fetch unconditionally
+     * @return the keys or a "not modified" response, never {@code null}
+     * @throws IOException if the request fails, the response status is neither 2xx nor 304 or the jwks is malformed
+     */
+    public JwksResponse fetch(String etag) throws IOException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(this.jwksUri)
+            .timeout(REQUEST_TIMEOUT)
+            .header("Accept", "application/json")
+            .GET();
+
+        if (etag != null)
+            request.header("If-None-Match", etag);
+
+        HttpResponse<byte[]> response;
+        try {
+            response = this.httpClient.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while fetching jwks", e);
+        }
+
+        Long maxAgeMs = parseMaxAgeMs(response.headers().firstValue("Cache-Control").orElse(null));
+        String responseEtag = response.headers().firstValue("ETag").orElse(etag);
+
+        // case: keys did not change
+        if (response.statusCode() == 304)
+            return new JwksResponse(null, responseEtag, maxAgeMs);
+
+        if (response.statusCode() < 200 || response.statusCode() > 299)
+            throw new IOException("Jwks endpoint responded with status %d: %s".formatted(
+                response.statusCode(),
+                new String(response.body(), StandardCharsets.UTF_8)));
+
+        JsonNode keys = OBJECT_MAPPER.readTree(response.body()).get("keys");
+        if (keys == null || !keys.isArray())
+            throw new IOException("Jwks is missing 'keys'");
+
+        Map<String, JsonNode> jwksByKid = new LinkedHashMap<>();
+        for (JsonNode jwk : keys) {
+            // case: cannot be looked up by a jws header
+            if (!jwk.hasNonNull("kid")) {
+                log.debug("Ignoring jwk without 'kid'");
+                continue;
+            }
+
+            jwksByKid.putIfAbsent(jwk.get("kid").asText(), jwk);
+        }
+
+        return new JwksResponse(jwksByKid, response.headers().firstValue("ETag").orElse(null), maxAgeMs);
+    }
+
+
+    /**
+     * @param cacheControl "Cache-Control" header, may be {@code null}
+     * @return "max-age" in ms, 0 for "no-cache" and "no-store", {@code null} if the server did not say
+     */
+    static Long parseMaxAgeMs(String cacheControl) {
+        if (cacheControl == null)
+            return null;
+
+        if (cacheControl.contains("no-cache") || cacheControl.contains("no-store"))
+            return 0L;
+
+        Matcher maxAge = MAX_AGE_PATTERN.matcher(cacheControl);
+        if (!maxAge.find())
+            return null;
+
+        try {
+            return Long.parseLong(maxAge.group(1)) * 1000;
+
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+
+    /**
+     * @param jwksByKid jwks by "kid", in server order. {@code null} if the server responded with 304
+     * @param etag to revalidate with next time, may be {@code null}
+     * @param maxAgeMs "max-age" of the response in ms, {@code null} if the server did not say
+     */
+    public record JwksResponse(Map<String, JsonNode> jwksByKid, String etag, Long maxAgeMs) {
+
+        public boolean isNotModified() {
+            return this.jwksByKid == null;
+        }
+    }
+}
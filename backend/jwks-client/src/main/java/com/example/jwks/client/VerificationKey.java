@@ -0,0 +1,126 @@
+package com.example.jwks.client;
+
+import java.math.BigInteger;
+import java.security.AlgorithmParameters;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.ECPoint;
+import java.security.spec.ECPublicKeySpec;
+import java.security.spec.RSAPublicKeySpec;
+import java.util.Base64;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+
+/**
+ * Public key of one jwk, parsed once when the jwks is fetched so verifying a signature does not need to decode the key again.
+ *
+ * @param kid "kid" of the jwk
+ * @param alg "alg" of the jwk, {@code null} if the jwk does not restrict it
+ * @param publicKey rsa or ec key
+ * @param jwk the jwk as fetched, to tell whether a refetched jwk changed
+ * @since latest
+ */
+public record VerificationKey(String kid, String alg, PublicKey publicKey, JsonNode jwk) {
+
+    /** Jws "alg" -> jca signature algorithm. Ec signatures of jws are r and s concatenated (P1363), not der */
+    private static final Map<String, String> SIGNATURE_ALGORITHMS = Map.of(
+        "RS256", "SHA256withRSA",
+        "RS384", "SHA384withRSA",
+        "RS512", "SHA512withRSA",
+        "ES256", "SHA256withECDSAinP1363Format",
+        "ES384", "SHA384withECDSAinP1363Format",
+        "ES512", "SHA512withECDSAinP1363Format");
+
+    /** Jwk "crv" -> jca curve name */
+    private static final Map<String, String> CURVES = Map.of(
+        "P-256", "secp256r1",
+        "P-384", "secp384r1",
+        "P-521", "secp521r1");
+
+
+    /**
+     * @param jwk with "kty" "RSA" or "EC"
+     * @return the parsed key
+     * @throws IllegalArgumentException if {@code jwk} is not a signature key of a supported type or is missing members
+     * @throws GeneralSecurityException if the key material is invalid
+     */
+    public static VerificationKey parse(JsonNode jwk) throws IllegalArgumentException, GeneralSecurityException {
+        String kid = requiredMember(jwk, "kid");
+        String kty = requiredMember(jwk, "kty");
+
+        if (jwk.hasNonNull("use") && !"sig".equals(jwk.get("use").asText()))
+            throw new IllegalArgumentException("Key '%s' is not a signature key".formatted(kid));
+
+        PublicKey publicKey = switch (kty) {
+            case "RSA" -> KeyFactory.getInstance("RSA").generatePublic(new RSAPublicKeySpec(
+                decodeUnsigned(requiredMember(jwk, "n")),
+                decodeUnsigned(requiredMember(jwk, "e"))));
+
+            case "EC" -> {
+                String curve = CURVES.get(requiredMember(jwk, "crv"));
+                if (curve == null)
+                    throw new IllegalArgumentException("Key '%s' has unsupported curve '%s'".formatted(kid, jwk.get("crv").asText()));
+
+                AlgorithmParameters parameters = AlgorithmParameters.getInstance("EC");
+                parameters.init(new ECGenParameterSpec(curve));
+
+                yield KeyFactory.getInstance("EC").generatePublic(new ECPublicKeySpec(
+                    new ECPoint(decodeUnsigned(requiredMember(jwk, "x")), decodeUnsigned(requiredMember(jwk, "y"))),
+                    parameters.getParameterSpec(ECParameterSpec.class)));
+            }
+
+            default -> throw new IllegalArgumentException("Key '%s' has unsupported type '%s'".formatted(kid, kty));
+        };
+
+        return new VerificationKey(kid, jwk.hasNonNull("alg") ? jwk.get("alg").asText() : null, publicKey, jwk);
+    }
+
+
+    /**
+     * @param alg "alg" header of the jws
+     * @param signingInput encoded header and payload, joined by "."
+     * @param signature decoded signature
+     * @return {@code true} if {@code alg} fits this key and {@code signature} is valid
+     * @throws GeneralSecurityException if {@code signature} is malformed
+     */
+    public boolean verify(String alg, byte[] signingInput, byte[] signature) throws GeneralSecurityException {
+        // case: jwk is restricted to another alg
+        if (this.alg != null && !this.alg.equals(alg))
+            return false;
+
+        String signatureAlgorithm = SIGNATURE_ALGORITHMS.get(alg);
+        if (signatureAlgorithm == null)
+            return false;
+
+        // case: e.g. "ES256" header with an rsa key
+        if (alg.startsWith("RS") ? !(this.publicKey instanceof RSAPublicKey) : !(this.publicKey instanceof ECPublicKey))
+            return false;
+
+        Signature verifier = Signature.getInstance(signatureAlgorithm);
+        verifier.initVerify(this.publicKey);
+        verifier.update(signingInput);
+
+        return verifier.verify(signature);
+    }
+
+
+    private static String requiredMember(JsonNode jwk, String name) {
+        JsonNode member = jwk.get(name);
+        if (member == null || !member.isTextual() || member.asText().isBlank())
+            throw new IllegalArgumentException("Jwk is missing '%s'".formatted(name));
+
+        return member.asText();
+    }
+
+    private static BigInteger decodeUnsigned(String base64Url) {
+        return new BigInteger(1, Base64.getUrlDecoder().decode(base64Url));
+    }
+}
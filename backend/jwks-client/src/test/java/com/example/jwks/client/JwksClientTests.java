@@ -0,0 +1,345 @@
+package com.example.jwks.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+
+/**
+ * Runs the key cache against a stub jwks endpoint that supports "If-None-Match" and counts requests.
+ *
+ * @since latest
+ */
+class JwksClientTests {
+
+    private static final Logger log = LoggerFactory.getLogger(JwksClientTests.class);
+
+    private static final long STUB_LATENCY_MS = 50;
+
+    private static final long MIN_REFETCH_INTERVAL_MS = 500;
+
+    private HttpServer jwksEndpointStub;
+
+    private JwksClient jwksClient;
+
+    private KeyPair rsaKeyPair;
+
+    private KeyPair ecKeyPair;
+
+    private final AtomicInteger jwksRequestCount = new AtomicInteger();
+
+    private final AtomicInteger notModifiedCount = new AtomicInteger();
+
+    /** Served as "keys" */
+    private volatile String jwks;
+
+    private volatile String cacheControl = null;
+
+    private volatile int responseStatus = 200;
+
+
+    @BeforeEach
+    void setup() throws Exception {
+        KeyPairGenerator rsaGenerator = KeyPairGenerator.getInstance("RSA");
+        rsaGenerator.initialize(2048);
+        this.rsaKeyPair = rsaGenerator.generateKeyPair();
+
+        KeyPairGenerator ecGenerator = KeyPairGenerator.getInstance("EC");
+        ecGenerator.initialize(new ECGenParameterSpec("secp256r1"));
+        this.ecKeyPair = ecGenerator.generateKeyPair();
+
+        this.jwks = rsaJwk("rsa-1", this.rsaKeyPair) + "," + ecJwk("ec-1", this.ecKeyPair);
+
+        this.jwksEndpointStub = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        this.jwksEndpointStub.createContext("/.well-known/jwks", this::handleJwksRequest);
+        this.jwksEndpointStub.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        this.jwksEndpointStub.start();
+
+        this.jwksClient = newJwksClient(60_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.jwksClient.stopBackgroundRefresh();
+        this.jwksEndpointStub.stop(0);
+    }
+
+
+    @Test
+    void verify_concurrentFirstUse_shouldCoalesceIntoOneJwksRequest() throws Exception {
+        String jwt = rsaJwt("rsa-1", this.rsaKeyPair.getPrivate(), "{\"sub\":\"myService\",\"exp\":%d}".formatted(nowSeconds() + 60));
+        int callers = 64;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<String>> subjects = new ArrayList<>();
+
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < callers; i++)
+                subjects.add(executor.submit(() -> {
+                    start.await();
+                    return this.jwksClient.verify(jwt).get("sub").asText();
+                }));
+
+            start.countDown();
+
+            for (Future<String> subject : subjects)
+                assertEquals("myService", subject.get());
+        }
+
+        assertEquals(1, this.jwksRequestCount.get());
+    }
+
+    @Test
+    void verify_ecKey_shouldVerify() throws Exception {
+        String jwt = sign("{\"alg\":\"ES256\",\"kid\":\"ec-1\"}", "{\"sub\":\"myService\"}", "SHA256withECDSAinP1363Format", this.ecKeyPair.getPrivate());
+
+        assertEquals("myService", this.jwksClient.verify(jwt).get("sub").asText());
+    }
+
+    @Test
+    void verify_invalidJwt_shouldThrow() throws Exception {
+        String payload = "{\"sub\":\"myService\",\"exp\":%d}".formatted(nowSeconds() + 60);
+        String jwt = rsaJwt("rsa-1", this.rsaKeyPair.getPrivate(), payload);
+        String otherPayload = base64Url("{\"sub\":\"admin\",\"exp\":%d}".formatted(nowSeconds() + 60));
+
+        // tampered
+        String[] parts = jwt.split("\\.");
+        assertThrows(InvalidJwtException.class, () -> this.jwksClient.verify(parts[0] + "." + otherPayload + "." + parts[2]));
+        // signed by another key
+        PrivateKey otherPrivateKey = KeyPairGenerator.getInstance("RSA").generateKeyPair().getPrivate();
+        assertThrows(InvalidJwtException.class, () -> this.jwksClient.verify(rsaJwt("rsa-1", otherPrivateKey, payload)));
+        // alg of another key type
+        assertThrows(InvalidJwtException.class, () -> this.jwksClient.verify(sign("{\"alg\":\"ES256\",\"kid\":\"rsa-1\"}", payload, "SHA256withECDSAinP1363Format", this.ecKeyPair.getPrivate())));
+        // unsigned
+        assertThrows(InvalidJwtException.class, () -> this.jwksClient.verify(base64Url("{\"alg\":\"none\",\"kid\":\"rsa-1\"}") + "." + parts[1] + "."));
+        // expired
+        assertThrows(InvalidJwtException.class, () -> this.jwksClient.verify(rsaJwt("rsa-1", this.rsaKeyPair.getPrivate(), "{\"exp\":%d}".formatted(nowSeconds() - 60))));
+        // malformed
+        assertThrows(InvalidJwtException.class, () -> this.jwksClient.verify("not.a-jwt"));
+        assertThrows(InvalidJwtException.class, () -> this.jwksClient.verify(parts[0] + "." + parts[1] + ".%%%"));
+
+        assertEquals(1, this.jwksRequestCount.get());
+    }
+
+    @Test
+    void verify_unknownKid_shouldRefetchAtMostOncePerInterval() throws Exception {
+        this.jwksClient.getKey("rsa-1");
+        assertEquals(1, this.jwksRequestCount.get());
+
+        // made up kids
+        Thread.sleep(MIN_REFETCH_INTERVAL_MS);
+        for (int i = 0; i < 100; i++)
+            assertNull(this.jwksClient.getKey("unknown-" + i));
+        assertEquals(2, this.jwksRequestCount.get());
+
+        // rotated
+        Thread.sleep(MIN_REFETCH_INTERVAL_MS);
+        KeyPair rotatedKeyPair = KeyPairGenerator.getInstance("RSA").generateKeyPair();
+        VerificationKey ecKey = this.jwksClient.getKey("ec-1");
+        this.jwks = rsaJwk("rsa-2", rotatedKeyPair) + "," + ecJwk("ec-1", this.ecKeyPair);
+
+        String jwt = rsaJwt("rsa-2", rotatedKeyPair.getPrivate(), "{\"sub\":\"myService\"}");
+        assertEquals("myService", this.jwksClient.verify(jwt).get("sub").asText());
+        assertEquals(3, this.jwksRequestCount.get());
+
+        // unchanged jwks keep their parsed key, removed ones are gone
+        assertSame(ecKey, this.jwksClient.getKey("ec-1"));
+        assertNull(this.jwksClient.getKey("rsa-1"));
+    }
+
+    @Test
+    void backgroundRefresh_unchangedJwks_shouldRevalidateWithEtag() throws Exception {
+        this.cacheControl = "max-age=0, must-revalidate";
+        this.jwksClient = newJwksClient(60_000);
+        VerificationKey rsaKey = this.jwksClient.getKey("rsa-1");
+
+        // refreshes every MIN_REFETCH_INTERVAL_MS
+        Thread.sleep(MIN_REFETCH_INTERVAL_MS * 3);
+
+        assertTrue(this.notModifiedCount.get() >= 2, "Expected background revalidations, got " + this.notModifiedCount.get());
+        assertSame(rsaKey, this.jwksClient.getKey("rsa-1"));
+    }
+
+    @Test
+    void getKey_jwksEndpointDown_shouldKeepCachedKeys() throws Exception {
+        this.jwksClient = newJwksClient(MIN_REFETCH_INTERVAL_MS);
+        VerificationKey rsaKey = this.jwksClient.getKey("rsa-1");
+
+        this.responseStatus = 503;
+        Thread.sleep(MIN_REFETCH_INTERVAL_MS * 3);
+
+        assertTrue(this.jwksRequestCount.get() >= 3);
+        assertSame(rsaKey, this.jwksClient.getKey("rsa-1"));
+    }
+
+    @Test
+    void getKey_firstFetchFailed_shouldNotRetryBeforeInterval() throws Exception {
+        this.responseStatus = 503;
+
+        assertThrows(IOException.class, () -> this.jwksClient.getKey("rsa-1"));
+        assertThrows(IOException.class, () -> this.jwksClient.getKey("rsa-1"));
+        assertEquals(1, this.jwksRequestCount.get());
+
+        this.responseStatus = 200;
+        Thread.sleep(MIN_REFETCH_INTERVAL_MS);
+        assertEquals("rsa-1", this.jwksClient.getKey("rsa-1").kid());
+    }
+
+    @Test
+    void verify_throughput_benchmark() throws Exception {
+        String jwt = rsaJwt("rsa-1", this.rsaKeyPair.getPrivate(), "{\"sub\":\"myService\",\"exp\":%d}".formatted(nowSeconds() + 60));
+        int threads = 8;
+        int verificationsPerThread = 2_000;
+
+        this.jwksClient.verify(jwt);
+        long start = System.nanoTime();
+
+        try (var executor = Executors.newFixedThreadPool(threads)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++)
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < verificationsPerThread; j++)
+                        this.jwksClient.verify(jwt);
+                    return null;
+                }));
+
+            for (Future<?> future : futures)
+                future.get();
+        }
+
+        long durationNanos = System.nanoTime() - start;
+        log.info("Verified {} jwts in {} ms ({} per second), jwks requests: {}",
+            threads * verificationsPerThread,
+            durationNanos / 1_000_000,
+            Math.round(threads * verificationsPerThread / (durationNanos / 1e9)),
+            this.jwksRequestCount.get());
+
+        assertEquals(1, this.jwksRequestCount.get());
+    }
+
+
+    private JwksClient newJwksClient(long defaultRefreshIntervalMs) {
+        if (this.jwksClient != null)
+            this.jwksClient.stopBackgroundRefresh();
+
+        URI jwksUri = URI.create("http://localhost:%d/.well-known/jwks".formatted(this.jwksEndpointStub.getAddress().getPort()));
+
+        return new JwksClient(new JwksFetcher(jwksUri), MIN_REFETCH_INTERVAL_MS, defaultRefreshIntervalMs);
+    }
+
+    private void handleJwksRequest(HttpExchange exchange) throws IOException {
+        this.jwksRequestCount.incrementAndGet();
+
+        try {
+            Thread.sleep(STUB_LATENCY_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        try (exchange) {
+            if (this.responseStatus != 200) {
+                exchange.sendResponseHeaders(this.responseStatus, -1);
+                return;
+            }
+
+            byte[] responseBody = "{\"keys\":[%s]}".formatted(this.jwks).getBytes(StandardCharsets.UTF_8);
+            String etag = "\"%08x\"".formatted(Arrays.hashCode(responseBody));
+
+            exchange.getResponseHeaders().set("ETag", etag);
+            if (this.cacheControl != null)
+                exchange.getResponseHeaders().set("Cache-Control", this.cacheControl);
+
+            // case: client has the current keys
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                this.notModifiedCount.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, responseBody.length);
+            exchange.getResponseBody().write(responseBody);
+        }
+    }
+
+    private static String rsaJwk(String kid, KeyPair keyPair) {
+        RSAPublicKey publicKey = (RSAPublicKey) keyPair.getPublic();
+
+        return "{\"kty\":\"RSA\",\"alg\":\"RS256\",\"kid\":\"%s\",\"use\":\"sig\",\"n\":\"%s\",\"e\":\"%s\"}".formatted(
+            kid,
+            base64Url(unsigned(publicKey.getModulus())),
+            base64Url(unsigned(publicKey.getPublicExponent())));
+    }
+
+    private static String ecJwk(String kid, KeyPair keyPair) {
+        ECPublicKey publicKey = (ECPublicKey) keyPair.getPublic();
+
+        return "{\"kty\":\"EC\",\"crv\":\"P-256\",\"kid\":\"%s\",\"x\":\"%s\",\"y\":\"%s\"}".formatted(
+            kid,
+            base64Url(unsigned(publicKey.getW().getAffineX())),
+            base64Url(unsigned(publicKey.getW().getAffineY())));
+    }
+
+    private static String rsaJwt(String kid, PrivateKey privateKey, String payload) throws Exception {
+        return sign("{\"alg\":\"RS256\",\"kid\":\"%s\",\"typ\":\"JWT\"}".formatted(kid), payload, "SHA256withRSA", privateKey);
+    }
+
+    private static String sign(String header, String payload, String signatureAlgorithm, PrivateKey privateKey) throws Exception {
+        String signingInput = base64Url(header) + "." + base64Url(payload);
+
+        Signature signer = Signature.getInstance(signatureAlgorithm);
+        signer.initSign(privateKey);
+        signer.update(signingInput.getBytes(StandardCharsets.US_ASCII));
+
+        return signingInput + "." + base64Url(signer.sign());
+    }
+
+    private static byte[] unsigned(BigInteger value) {
+        byte[] bytes = value.toByteArray();
+
+        return bytes[0] == 0 && bytes.length > 1 ? Arrays.copyOfRange(bytes, 1, bytes.length) : bytes;
+    }
+
+    private static String base64Url(String str) {
+        return base64Url(str.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String base64Url(byte[] bytes) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private static long nowSeconds() {
+        return System.currentTimeMillis() / 1000;
+    }
+}
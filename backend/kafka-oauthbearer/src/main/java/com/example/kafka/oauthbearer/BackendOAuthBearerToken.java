@@ -0,0 +1,28 @@
+package com.example.kafka.oauthbearer;
+
+import java.util.Set;
+
+import org.apache.kafka.common.security.oauthbearer.OAuthBearerToken;
+
+
+/**
+ * Token issued by the backend's token endpoint. Claims are read from the jwt payload without verifying the signature, the broker
+ * does that.
+ *
+ * @param value the compact serialized jwt
+ * @param scope "scope" claim split by spaces
+ * @param lifetimeMs "exp" claim in ms
+ * @param principalName "sub" claim
+ * @param startTimeMs "iat" claim in ms
+ * @since latest
+ */
+public record BackendOAuthBearerToken(String value, Set<String> scope, long lifetimeMs, String principalName, Long startTimeMs) implements OAuthBearerToken {
+
+    /**
+     * @param nowMs current time in ms
+     * @return {@code true} if the token is expired at {@code nowMs}
+     */
+    public boolean isExpired(long nowMs) {
+        return nowMs >= this.lifetimeMs;
+    }
+}
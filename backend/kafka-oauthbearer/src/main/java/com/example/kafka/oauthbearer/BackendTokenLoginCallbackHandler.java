@@ -0,0 +1,92 @@
+package com.example.kafka.oauthbearer;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+
+import javax.security.auth.callback.Callback;
+import javax.security.auth.callback.UnsupportedCallbackException;
+import javax.security.auth.login.AppConfigurationEntry;
+
+import org.apache.kafka.common.config.SaslConfigs;
+import org.apache.kafka.common.security.auth.AuthenticateCallbackHandler;
+import org.apache.kafka.common.security.auth.SaslExtensions;
+import org.apache.kafka.common.security.auth.SaslExtensionsCallback;
+import org.apache.kafka.common.security.oauthbearer.OAuthBearerLoginModule;
+import org.apache.kafka.common.security.oauthbearer.OAuthBearerTokenCallback;
+
+
+/**
+ * Kafka SASL/OAUTHBEARER login callback handler getting tokens from the backend's {@code /oauth2/token} endpoint.
+ * Tokens are cached and refreshed by {@link CachingTokenSource}. Configure the kafka client like this:
+ *
+ * <pre>
+ * sasl.mechanism=OAUTHBEARER
+ * sasl.login.callback.handler.class=com.example.kafka.oauthbearer.BackendTokenLoginCallbackHandler
+ * sasl.oauthbearer.token.endpoint.url=http://localhost:4001/oauth2/token
+ * sasl.jaas.config=org.apache.kafka.common.security.oauthbearer.OAuthBearerLoginModule required \
+ *     clientId="myService" clientSecret="mySecret";
+ * </pre>
+ *
+ * Optional jaas options are {@code scope} and {@code refreshWindowFactor} (share of the token lifetime that is left when refreshing, default 0.25).
+ *
+ * @since latest
+ */
+public class BackendTokenLoginCallbackHandler implements AuthenticateCallbackHandler {
+
+    public static final String CLIENT_ID_OPTION = "clientId";
+    public static final String CLIENT_SECRET_OPTION = "clientSecret";
+    public static final String SCOPE_OPTION = "scope";
+    public static final String REFRESH_WINDOW_FACTOR_OPTION = "refreshWindowFactor";
+
+    private CachingTokenSource tokenSource;
+
+
+    @Override
+    public void configure(Map<String, ?> configs, String saslMechanism, List<AppConfigurationEntry> jaasConfigEntries) {
+        if (!OAuthBearerLoginModule.OAUTHBEARER_MECHANISM.equals(saslMechanism))
+            throw new IllegalArgumentException("Unexpected SASL mechanism: " + saslMechanism);
+
+        if (jaasConfigEntries == null || jaasConfigEntries.size() != 1)
+            throw new IllegalArgumentException("Expected exactly one jaas config entry");
+
+        Object tokenEndpoint = configs.get(SaslConfigs.SASL_OAUTHBEARER_TOKEN_ENDPOINT_URL);
+        if (tokenEndpoint == null || tokenEndpoint.toString().isBlank())
+            throw new IllegalArgumentException("Missing config '%s'".formatted(SaslConfigs.SASL_OAUTHBEARER_TOKEN_ENDPOINT_URL));
+
+        Map<String, ?> options = jaasConfigEntries.get(0).getOptions();
+        Object refreshWindowFactor = options.get(REFRESH_WINDOW_FACTOR_OPTION);
+
+        this.tokenSource = CachingTokenSource.getInstance(
+            URI.create(tokenEndpoint.toString()),
+            (String) options.get(CLIENT_ID_OPTION),
+            (String) options.get(CLIENT_SECRET_OPTION),
+            (String) options.get(SCOPE_OPTION),
+            refreshWindowFactor == null ? CachingTokenSource.DEFAULT_REFRESH_WINDOW_FACTOR : Double.parseDouble(refreshWindowFactor.toString()));
+    }
+
+
+    @Override
+    public void handle(Callback[] callbacks) throws IOException, UnsupportedCallbackException {
+        if (this.tokenSource == null)
+            throw new IllegalStateException("Callback handler not configured");
+
+        for (Callback callback : callbacks) {
+            if (callback instanceof OAuthBearerTokenCallback tokenCallback)
+                tokenCallback.token(this.tokenSource.getToken());
+
+            else if (callback instanceof SaslExtensionsCallback extensionsCallback)
+                extensionsCallback.extensions(SaslExtensions.empty());
+
+            else
+                throw new UnsupportedCallbackException(callback);
+        }
+    }
+
+
+    @Override
+    public void close() {
+        // token source is shared with other handlers
+    }
+}
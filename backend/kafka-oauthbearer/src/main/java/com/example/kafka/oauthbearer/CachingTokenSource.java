@@ -0,0 +1,193 @@
+package com.example.kafka.oauthbearer;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Caches the token of one client and refreshes it ahead of expiry. <p>
+ *
+ * There is one instance per token endpoint and client id per jvm (see {@link #getInstance}), so all kafka clients and connections
+ * of a service share one token. Concurrent refreshes are coalesced into one token request: the first caller fetches, everybody
+ * else waits for that result. <p>
+ *
+ * A background refresh is scheduled once {@code 1 - refreshWindowFactor} of the token's lifetime has passed, which is a bit
+ * earlier than kafka's own login refresh ({@code sasl.login.refresh.window.factor}, default 0.8), so kafka usually gets a fresh token
+ * from the cache without waiting.
+ *
+ * @since latest
+ */
+public class CachingTokenSource {
+
+    private static final Logger log = LoggerFactory.getLogger(CachingTokenSource.class);
+
+    /** Default share of the token lifetime that is left when refreshing */
+    public static final double DEFAULT_REFRESH_WINDOW_FACTOR = 0.25;
+
+    /** In ms. Min delay between two background refreshes, also used when retrying a failed one */
+    private static final long MIN_BACKGROUND_REFRESH_DELAY = 5_000;
+
+    /** In seconds. Max time to wait for a refresh of another caller */
+    private static final long REFRESH_TIMEOUT = 30;
+
+    private static final ConcurrentMap<String, CachingTokenSource> INSTANCES = new ConcurrentHashMap<>();
+
+    private static final ScheduledExecutorService BACKGROUND_REFRESHER = Executors.newSingleThreadScheduledExecutor(
+        Thread.ofPlatform().name("oauthbearer-token-refresh").daemon().factory());
+
+    private final TokenEndpointClient tokenEndpointClient;
+
+    private final double refreshWindowFactor;
+
+    private final AtomicReference<BackendOAuthBearerToken> cachedToken = new AtomicReference<>();
+
+    private final AtomicReference<CompletableFuture<BackendOAuthBearerToken>> inFlightRefresh = new AtomicReference<>();
+
+
+    CachingTokenSource(TokenEndpointClient tokenEndpointClient, double refreshWindowFactor) {
+        if (refreshWindowFactor <= 0 || refreshWindowFactor >= 1)
+            throw new IllegalArgumentException("'refreshWindowFactor' needs to be between 0 and 1, exclusive");
+
+        this.tokenEndpointClient = tokenEndpointClient;
+        this.refreshWindowFactor = refreshWindowFactor;
+    }
+
+
+    /**
+     * @param tokenEndpoint e.g. {@code http://localhost:4001/oauth2/token}
+     * @param clientId configured in the backend's {@code OAUTH2_SERVICE_CLIENTS}
+     * @param clientSecret plain secret
+     * @param scope may be {@code null}
+     * @param refreshWindowFactor share of the token lifetime that is left when refreshing, between 0 and 1
+     * @return the shared instance for {@code tokenEndpoint} and {@code clientId}. Args of later calls with the same endpoint and client id are ignored
+     */
+    public static CachingTokenSource getInstance(URI tokenEndpoint, String clientId, String clientSecret, String scope, double refreshWindowFactor) {
+        return INSTANCES.computeIfAbsent(
+            tokenEndpoint + "|" + clientId,
+            key -> new CachingTokenSource(new TokenEndpointClient(tokenEndpoint, clientId, clientSecret, scope), refreshWindowFactor));
+    }
+
+
+    /**
+     * @return the cached token if it's not due for refresh, else a refreshed one. Falls back to the cached token if the refresh failed
+     * and the cached token is not expired yet
+     * @throws IOException if no valid token could be obtained
+     */
+    public BackendOAuthBearerToken getToken() throws IOException {
+        BackendOAuthBearerToken token = this.cachedToken.get();
+        long nowMs = System.currentTimeMillis();
+
+        if (token != null && !isDueForRefresh(token, nowMs))
+            return token;
+
+        try {
+            return refresh();
+
+        } catch (IOException e) {
+            // case: still usable
+            if (token != null && !token.isExpired(System.currentTimeMillis())) {
+                log.warn("Failed to refresh token, using cached one until it expires: {}", e.getMessage());
+                return token;
+            }
+
+            throw e;
+        }
+    }
+
+
+    /**
+     * Fetch a new token unless another caller already does, in which case wait for that one.
+     *
+     * @return the new token
+     * @throws IOException
+     */
+    private BackendOAuthBearerToken refresh() throws IOException {
+        CompletableFuture<BackendOAuthBearerToken> ownRefresh = new CompletableFuture<>();
+        CompletableFuture<BackendOAuthBearerToken> otherRefresh = this.inFlightRefresh.compareAndExchange(null, ownRefresh);
+
+        // case: coalesce
+        if (otherRefresh != null)
+            return await(otherRefresh);
+
+        try {
+            // case: another caller refreshed between our cache lookup and the compareAndExchange
+            BackendOAuthBearerToken token = this.cachedToken.get();
+            if (token == null || isDueForRefresh(token, System.currentTimeMillis())) {
+                token = this.tokenEndpointClient.fetchToken();
+                this.cachedToken.set(token);
+                scheduleBackgroundRefresh(token);
+            }
+
+            ownRefresh.complete(token);
+            return token;
+
+        } catch (IOException | RuntimeException e) {
+            ownRefresh.completeExceptionally(e);
+            throw e;
+
+        } finally {
+            this.inFlightRefresh.set(null);
+        }
+    }
+
+
+    private void scheduleBackgroundRefresh(BackendOAuthBearerToken token) {
+        long delayMs = refreshAtMs(token) - System.currentTimeMillis();
+
+        BACKGROUND_REFRESHER.schedule(() -> {
+            // case: already replaced by another refresh
+            if (this.cachedToken.get() != token)
+                return;
+
+            try {
+                refresh();
+
+            } catch (IOException | RuntimeException e) {
+                log.warn("Background token refresh failed: {}", e.getMessage());
+
+                if (!token.isExpired(System.currentTimeMillis() + MIN_BACKGROUND_REFRESH_DELAY))
+                    scheduleBackgroundRefresh(token);
+            }
+        }, Math.max(delayMs, MIN_BACKGROUND_REFRESH_DELAY), TimeUnit.MILLISECONDS);
+    }
+
+
+    private boolean isDueForRefresh(BackendOAuthBearerToken token, long nowMs) {
+        return nowMs >= refreshAtMs(token);
+    }
+
+    private long refreshAtMs(BackendOAuthBearerToken token) {
+        long lifetime = token.lifetimeMs() - token.startTimeMs();
+
+        return token.lifetimeMs() - Math.round(lifetime * this.refreshWindowFactor);
+    }
+
+
+    private static BackendOAuthBearerToken await(CompletableFuture<BackendOAuthBearerToken> refresh) throws IOException {
+        try {
+            return refresh.get(REFRESH_TIMEOUT, TimeUnit.SECONDS);
+
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ioException ? ioException : new IOException(e.getCause());
+
+        } catch (TimeoutException e) {
+            throw new IOException("Timed out waiting for token refresh", e);
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for token refresh", e);
+        }
+    }
+}
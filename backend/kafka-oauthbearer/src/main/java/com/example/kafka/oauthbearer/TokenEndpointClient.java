@@ -0,0 +1,134 @@
+package com.example.kafka.oauthbearer;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+
+/**
+ * Fetches tokens from the backend's {@code /oauth2/token} endpoint using the client credentials grant. Does not cache.
+ *
+ * @since latest
+ */
+public class TokenEndpointClient {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10);
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+        .connectTimeout(REQUEST_TIMEOUT)
+        .build();
+
+    private final URI tokenEndpoint;
+
+    private final String authorizationHeader;
+
+    private final String requestBody;
+
+
+    /**
+     * @param tokenEndpoint e.g. {@code http://localhost:4001/oauth2/token}
+     * @param clientId configured in the backend's {@code OAUTH2_SERVICE_CLIENTS}
+     * @param clientSecret plain secret
+     * @param scope may be {@code null}
+     */
+    public TokenEndpointClient(URI tokenEndpoint, String clientId, String clientSecret, String scope) {
+        if (tokenEndpoint == null || isBlank(clientId) || isBlank(clientSecret))
+            throw new IllegalArgumentException("'tokenEndpoint', 'clientId' and 'clientSecret' cannot be blank");
+
+        this.tokenEndpoint = tokenEndpoint;
+        this.authorizationHeader = "Basic " + Base64.getEncoder().encodeToString(
+            (urlEncode(clientId) + ":" + urlEncode(clientSecret)).getBytes(StandardCharsets.UTF_8));
+        this.requestBody = "grant_type=client_credentials" + (isBlank(scope) ? "" : "&scope=" + urlEncode(scope));
+    }
+
+
+    /**
+     * @return a new token, never {@code null}
+     * @throws IOException if the request fails, the response status is not 2xx or the response is malformed
+     */
+    public BackendOAuthBearerToken fetchToken() throws IOException {
+        HttpRequest request = HttpRequest.newBuilder(this.tokenEndpoint)
+            .timeout(REQUEST_TIMEOUT)
+            .header("Authorization", this.authorizationHeader)
+            .header("Content-Type", "application/x-www-form-urlencoded")
+            .header("Accept", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(this.requestBody))
+            .build();
+
+        HttpResponse<byte[]> response;
+        try {
+            response = this.httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while fetching token", e);
+        }
+
+        if (response.statusCode() < 200 || response.statusCode() > 299)
+            throw new IOException("Token endpoint responded with status %d: %s".formatted(
+                response.statusCode(), 
+                new String(response.body(), StandardCharsets.UTF_8)));
+
+        JsonNode tokenResponse = OBJECT_MAPPER.readTree(response.body());
+        JsonNode accessToken = tokenResponse.get("access_token");
+        if (accessToken == null || !accessToken.isTextual())
+            throw new IOException("Token response is missing 'access_token'");
+
+        return parseToken(accessToken.asText(), tokenResponse.path("expires_in").asLong(0));
+    }
+
+
+    /**
+     * @param jwt compact serialized jwt
+     * @param expiresIn in seconds, fallback if the jwt has no "exp" claim
+     * @return parsed token
+     * @throws IOException if {@code jwt} is malformed
+     */
+    static BackendOAuthBearerToken parseToken(String jwt, long expiresIn) throws IOException {
+        String[] parts = jwt.split("\\.");
+        if (parts.length != 3)
+            throw new IOException("Malformed access token, expected 3 parts but got " + parts.length);
+
+        JsonNode claims;
+        try {
+            claims = OBJECT_MAPPER.readTree(Base64.getUrlDecoder().decode(parts[1]));
+
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Malformed access token payload", e);
+        }
+
+        long nowMs = System.currentTimeMillis();
+        long issuedAtMs = claims.has("iat") ? claims.get("iat").asLong() * 1000 : nowMs;
+        long expiresAtMs = claims.has("exp") ? claims.get("exp").asLong() * 1000 : nowMs + expiresIn * 1000;
+
+        Set<String> scope = new LinkedHashSet<>();
+        if (claims.hasNonNull("scope"))
+            scope.addAll(Arrays.asList(claims.get("scope").asText().split(" ")));
+        scope.remove("");
+
+        return new BackendOAuthBearerToken(jwt, Set.copyOf(scope), expiresAtMs, claims.path("sub").asText(), issuedAtMs);
+    }
+
+
+    private static String urlEncode(String str) {
+        return URLEncoder.encode(str, StandardCharsets.UTF_8);
+    }
+
+    private static boolean isBlank(String str) {
+        return str == null || str.isBlank();
+    }
+}
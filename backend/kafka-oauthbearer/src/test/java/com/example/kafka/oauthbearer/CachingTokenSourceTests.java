@@ -0,0 +1,172 @@
+package com.example.kafka.oauthbearer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.security.auth.callback.Callback;
+import javax.security.auth.login.AppConfigurationEntry;
+import javax.security.auth.login.AppConfigurationEntry.LoginModuleControlFlag;
+
+import org.apache.kafka.common.config.SaslConfigs;
+import org.apache.kafka.common.security.oauthbearer.OAuthBearerLoginModule;
+import org.apache.kafka.common.security.oauthbearer.OAuthBearerToken;
+import org.apache.kafka.common.security.oauthbearer.OAuthBearerTokenCallback;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+
+/**
+ * Runs the token cache against a stub token endpoint that issues unsigned tokens and counts requests.
+ *
+ * @since latest
+ */
+class CachingTokenSourceTests {
+
+    private static final long STUB_LATENCY_MS = 50;
+
+    private HttpServer tokenEndpointStub;
+
+    private URI tokenEndpoint;
+
+    private final AtomicInteger tokenRequestCount = new AtomicInteger();
+
+    /** In seconds */
+    private volatile long tokenLifetime = 3600;
+
+    private volatile int responseStatus = 200;
+
+
+    @BeforeEach
+    void setup() throws IOException {
+        this.tokenEndpointStub = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        this.tokenEndpointStub.createContext("/oauth2/token", this::handleTokenRequest);
+        this.tokenEndpointStub.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        this.tokenEndpointStub.start();
+
+        this.tokenEndpoint = URI.create("http://localhost:%d/oauth2/token".formatted(this.tokenEndpointStub.getAddress().getPort()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.tokenEndpointStub.stop(0);
+    }
+
+
+    @Test
+    void handle_concurrentConnections_shouldCoalesceIntoOneTokenRequest() throws Exception {
+        BackendTokenLoginCallbackHandler handler = newConfiguredHandler();
+        int connections = 64;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<OAuthBearerToken>> tokens = new ArrayList<>();
+
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < connections; i++)
+                tokens.add(executor.submit(() -> {
+                    start.await();
+                    OAuthBearerTokenCallback callback = new OAuthBearerTokenCallback();
+                    handler.handle(new Callback[] {callback});
+                    return callback.token();
+                }));
+
+            start.countDown();
+
+            for (Future<OAuthBearerToken> token : tokens)
+                assertEquals(tokens.get(0).get().value(), token.get().value());
+        }
+
+        assertEquals(1, this.tokenRequestCount.get());
+        assertEquals("myService", tokens.get(0).get().principalName());
+    }
+
+    @Test
+    void getToken_dueForRefresh_shouldFetchNewToken() throws Exception {
+        // "iat" is truncated to seconds, so the token is due somewhere between 1 and 2 seconds from now
+        this.tokenLifetime = 4;
+        CachingTokenSource tokenSource = new CachingTokenSource(new TokenEndpointClient(this.tokenEndpoint, "myService", "secret", null), 0.5);
+
+        BackendOAuthBearerToken first = tokenSource.getToken();
+        assertEquals(first, tokenSource.getToken());
+        assertEquals(1, this.tokenRequestCount.get());
+
+        Thread.sleep(2_100);
+
+        assertNotEquals(first.value(), tokenSource.getToken().value());
+        assertEquals(2, this.tokenRequestCount.get());
+    }
+
+    @Test
+    void getToken_refreshFails_shouldFallBackToCachedTokenUntilExpired() throws Exception {
+        this.tokenLifetime = 4;
+        CachingTokenSource tokenSource = new CachingTokenSource(new TokenEndpointClient(this.tokenEndpoint, "myService", "secret", null), 0.5);
+        BackendOAuthBearerToken first = tokenSource.getToken();
+
+        this.responseStatus = 503;
+        Thread.sleep(2_100);
+        assertEquals(first, tokenSource.getToken());
+
+        Thread.sleep(2_000);
+        assertThrows(IOException.class, tokenSource::getToken);
+    }
+
+
+    private BackendTokenLoginCallbackHandler newConfiguredHandler() {
+        BackendTokenLoginCallbackHandler handler = new BackendTokenLoginCallbackHandler();
+        handler.configure(
+            Map.of(SaslConfigs.SASL_OAUTHBEARER_TOKEN_ENDPOINT_URL, this.tokenEndpoint.toString()),
+            OAuthBearerLoginModule.OAUTHBEARER_MECHANISM,
+            List.of(new AppConfigurationEntry(
+                OAuthBearerLoginModule.class.getName(),
+                LoginModuleControlFlag.REQUIRED,
+                Map.of(
+                    BackendTokenLoginCallbackHandler.CLIENT_ID_OPTION, "myService",
+                    BackendTokenLoginCallbackHandler.CLIENT_SECRET_OPTION, "secret"))));
+
+        return handler;
+    }
+
+    private void handleTokenRequest(HttpExchange exchange) throws IOException {
+        int requestNumber = this.tokenRequestCount.incrementAndGet();
+
+        try {
+            Thread.sleep(STUB_LATENCY_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        byte[] responseBody;
+        if (this.responseStatus == 200) {
+            long now = System.currentTimeMillis() / 1000;
+            String payload = "{\"sub\":\"myService\",\"iat\":%d,\"exp\":%d,\"scope\":\"openid\",\"jti\":\"%d\"}".formatted(now, now + this.tokenLifetime, requestNumber);
+            String jwt = base64Url("{\"alg\":\"none\"}") + "." + base64Url(payload) + ".signature";
+            responseBody = "{\"access_token\":\"%s\",\"token_type\":\"Bearer\",\"expires_in\":%d}".formatted(jwt, this.tokenLifetime).getBytes(StandardCharsets.UTF_8);
+
+        } else
+            responseBody = "{}".getBytes(StandardCharsets.UTF_8);
+
+        exchange.sendResponseHeaders(this.responseStatus, responseBody.length);
+        exchange.getResponseBody().write(responseBody);
+        exchange.close();
+    }
+
+    private static String base64Url(String str) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(str.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,217 @@
+package com.example.backend.config;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.example.backend.helpers.ObjectPool;
+
+
+/**
+ * Bcrypt on a fixed number of dedicated platform threads with a bounded queue, so a burst of logins or registrations cannot take
+ * the cpu from other requests. Callers block until their hash is done and are rejected with 503 if the queue is full. Request 
+ * threads are platform threads, so every running or queued hash holds one of them. Keep {@code threads + maxQueued} well below the
+ * servlet container's thread pool, a full queue should fail fast instead of starving unrelated requests. <p>
+ *
+ * Successful verifications are cached per stored hash as a hmac of the raw password (with a random key that only lives in memory),
+ * so repeated logins of the same user skip bcrypt until {@code cacheTtlMillis} passed. Changing the password changes the stored
+ * hash, which invalidates the cached verification. <p>
+ *
+ * Hashes with a lower strength than the configured one are reported by {@link #upgradeEncoding(String)}, spring security rehashes
+ * them on the next successful login (see {@code UserDetailsPasswordService}).
+ *
+ * @since latest
+ */
+public class BoundedBCryptPasswordEncoder implements PasswordEncoder, AutoCloseable {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private final BCryptPasswordEncoder bCryptPasswordEncoder;
+
+    private final ThreadPoolExecutor executor;
+
+    private final long cacheTtlMillis;
+
+    private final int cacheMaxEntries;
+
+    /** Stored hash -> hmac of the raw password */
+    private final ConcurrentMap<String, CachedVerification> cachedVerifications = new ConcurrentHashMap<>();
+
+    private final SecretKeySpec hmacKey;
+
+    private final ObjectPool<Mac> macPool = new ObjectPool<>();
+
+
+    /**
+     * @param strength bcrypt log rounds of new hashes, 4 to 31
+     * @param threads max concurrent bcrypt calls, at least 1
+     * @param maxQueued max bcrypt calls waiting for a thread, at least 1
+     * @param cacheTtlMillis time a successful verification is cached, 0 to disable the cache
+     * @param cacheMaxEntries max cached verifications, further ones are not cached until expired ones are removed
+     * @throws IllegalArgumentException
+     */
+    public BoundedBCryptPasswordEncoder(int strength, int threads, int maxQueued, long cacheTtlMillis, int cacheMaxEntries) throws IllegalArgumentException {
+        if (threads < 1 || maxQueued < 1 || cacheTtlMillis < 0 || cacheMaxEntries < 0)
+            throw new IllegalArgumentException("'threads' and 'maxQueued' have to be positive, 'cacheTtlMillis' and 'cacheMaxEntries' cannot be negative");
+
+        this.bCryptPasswordEncoder = new BCryptPasswordEncoder(strength);
+        this.executor = new ThreadPoolExecutor(
+            threads,
+            threads,
+            0,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(maxQueued),
+            Thread.ofPlatform().name("bcrypt-", 0).daemon().factory(),
+            new ThreadPoolExecutor.AbortPolicy());
+        this.cacheTtlMillis = cacheTtlMillis;
+        this.cacheMaxEntries = cacheMaxEntries;
+
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        this.hmacKey = new SecretKeySpec(key, HMAC_ALGORITHM);
+    }
+
+
+    /**
+     * @throws ResponseStatusException 503 if too many hashes are queued
+     */
+    @Override
+    public String encode(CharSequence rawPassword) throws ResponseStatusException {
+        return execute(() -> this.bCryptPasswordEncoder.encode(rawPassword));
+    }
+
+
+    /**
+     * @throws AuthenticationServiceException if too many hashes are queued, caused by a {@link ResponseStatusException} 503. Login
+     * failure handlers only get {@code AuthenticationException}s
+     */
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) throws AuthenticationServiceException {
+        if (rawPassword == null || encodedPassword == null)
+            return false;
+
+        byte[] passwordHmac = null;
+        if (this.cacheTtlMillis > 0) {
+            passwordHmac = hmac(rawPassword);
+
+            CachedVerification cachedVerification = this.cachedVerifications.get(encodedPassword);
+            if (cachedVerification != null && cachedVerification.expiryTime() > System.currentTimeMillis() &&
+                MessageDigest.isEqual(cachedVerification.passwordHmac(), passwordHmac))
+                return true;
+        }
+
+        boolean isMatch;
+        try {
+            isMatch = execute(() -> this.bCryptPasswordEncoder.matches(rawPassword, encodedPassword));
+
+        } catch (ResponseStatusException e) {
+            throw new AuthenticationServiceException(e.getReason(), e);
+        }
+
+        if (isMatch && passwordHmac != null)
+            cache(encodedPassword, passwordHmac);
+
+        return isMatch;
+    }
+
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return this.bCryptPasswordEncoder.upgradeEncoding(encodedPassword);
+    }
+
+
+    /**
+     * Remove all cached verifications, e.g. after the passwords of many users were reset.
+     */
+    public void clearCache() {
+        this.cachedVerifications.clear();
+    }
+
+
+    /**
+     * @return bcrypt calls that are running or waiting for a thread
+     */
+    public int getPendingCount() {
+        return this.executor.getActiveCount() + this.executor.getQueue().size();
+    }
+
+
+    @Override
+    public void close() {
+        this.executor.shutdownNow();
+    }
+
+
+    private <T> T execute(Callable<T> callable) throws ResponseStatusException {
+        try {
+            return this.executor.submit(callable).get();
+
+        } catch (RejectedExecutionException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many concurrent password checks, try again later");
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for bcrypt", e);
+
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException)
+                throw runtimeException;
+
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+
+    private void cache(String encodedPassword, byte[] passwordHmac) {
+        long now = System.currentTimeMillis();
+
+        // case: full, make room
+        if (this.cachedVerifications.size() >= this.cacheMaxEntries)
+            this.cachedVerifications.values().removeIf(cachedVerification -> cachedVerification.expiryTime() <= now);
+
+        if (this.cachedVerifications.size() < this.cacheMaxEntries)
+            this.cachedVerifications.put(encodedPassword, new CachedVerification(passwordHmac, now + this.cacheTtlMillis));
+    }
+
+
+    private byte[] hmac(CharSequence rawPassword) {
+        Mac mac = this.macPool.poll();
+        try {
+            if (mac == null) {
+                mac = Mac.getInstance(HMAC_ALGORITHM);
+                mac.init(this.hmacKey);
+            }
+
+            return mac.doFinal(rawPassword.toString().getBytes(StandardCharsets.UTF_8));
+
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to init " + HMAC_ALGORITHM, e);
+
+        } finally {
+            if (mac != null)
+                this.macPool.offer(mac);
+        }
+    }
+
+
+    private record CachedVerification(byte[] passwordHmac, long expiryTime) {}
+}
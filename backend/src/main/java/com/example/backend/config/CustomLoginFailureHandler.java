@@ -6,6 +6,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.web.authentication.AuthenticationFailureHandler;
 import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
 
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -17,7 +18,8 @@ import com.example.backend.helpers.Utils;
 /**
  * Class handling login failure. Implements {@link AuthenticationFailureHandler} and is beeing used in {@link SecurityConfig}. <p>
  * 
- * Will return 401 status with a {@link CustomExceptionFormat} object as body.
+ * Will return 401 status with a {@link CustomExceptionFormat} object as body, or the status of a {@link ResponseStatusException} that
+ * caused the failure (e.g. 503 if too many passwords are being checked).
  * 
  * @since 0.0.1
  */
@@ -26,6 +28,15 @@ public class CustomLoginFailureHandler implements AuthenticationFailureHandler {
 
     @Override
     public void onAuthenticationFailure(HttpServletRequest request, HttpServletResponse response, AuthenticationException exception) throws IOException, ServletException {
+        // case: not a wrong password but e.g. overloaded
+        if (exception.getCause() instanceof ResponseStatusException responseStatusException) {
+            HttpStatus status = HttpStatus.valueOf(responseStatusException.getStatusCode().value());
+            response.setStatus(status.value());
+
+            Utils.writeToResponse(response, status, responseStatusException.getReason());
+            return;
+        }
+
         int status = 401;
         response.setStatus(status);
 
@@ -2,29 +2,51 @@ package com.example.backend.config;
 
 import java.io.IOException;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.web.authentication.logout.LogoutHandler;
 import org.springframework.security.web.authentication.logout.LogoutSuccessHandler;
 import org.springframework.stereotype.Component;
 
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
 import com.example.backend.helpers.CustomExceptionFormat;
 import com.example.backend.helpers.Utils;
+import com.example.backend.services.RefreshTokenService;
 
 
 /**
- * Set the logout resopnse to a {@link CustomExceptionFormat} object with status 200.
+ * Set the logout resopnse to a {@link CustomExceptionFormat} object with status 200. <p>
+ * 
+ * As {@link LogoutHandler} revokes the refresh tokens issued for the session and the "refresh_token" request parameter, if any. 
+ * Runs before the session is invalidated.
  * 
  * @since 0.0.1
  */
 @Component
-public class CustomLogoutSuccessHandler implements LogoutSuccessHandler {
+public class CustomLogoutSuccessHandler implements LogoutHandler, LogoutSuccessHandler {
+
+    @Autowired
+    private RefreshTokenService refreshTokenService;
+
+
+    @Override
+    public void logout(HttpServletRequest request, HttpServletResponse response, Authentication authentication) {
+
+        HttpSession session = request.getSession(false);
+        if (session != null)
+            this.refreshTokenService.revokeSession(session.getId());
+
+        this.refreshTokenService.revoke(request.getParameter("refresh_token"));
+    }
+
 
     @Override
     public void onLogoutSuccess(HttpServletRequest request, HttpServletResponse response, Authentication authentication) throws IOException, ServletException {
 
         Utils.writeToResponse(response, HttpStatus.OK, "Logged out");
     }
-}
\ No newline at end of file
+}
@@ -4,30 +4,99 @@ import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
 
+import org.jspecify.annotations.Nullable;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.authority.mapping.GrantedAuthoritiesMapper;
+import org.springframework.security.oauth2.core.user.OAuth2UserAuthority;
 import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 
+import com.example.backend.helpers.PrincipalNames;
+import com.example.backend.services.PrincipalAuthorityService;
+
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.log4j.Log4j2;
 
 
 /**
- * Maps {@link AppUserRole}s as spring authorities to oauth2 users instead of using the default ones.
+ * Maps {@link AppUserRole}s as spring authorities to oauth2 users instead of using the default ones. Every user gets "ROLE_USER" plus
+ * the roles from {@link PrincipalAuthorityService}, looked up by client registration id and user name (see {@link PrincipalNames}). <p>
+ * 
+ * Spring does not pass the registration to the mapper, so it's taken from the login callback path ({@value #LOGIN_CALLBACK_PATH}{id}),
+ * which is the request the mapper is called in.
  * 
  * @since 0.0.2
  */
 @Component
 @Log4j2
 public class CustomOauth2GrantedAuthoritiesMapper implements GrantedAuthoritiesMapper {
+
+    /** Spring's default redirect uri of oauth2 logins, followed by the client registration id */
+    private static final String LOGIN_CALLBACK_PATH = "/login/oauth2/code/";
     
     // @Autowired
     // private AppUserService appUserService;
 
+    @Autowired
+    private PrincipalAuthorityService principalAuthorityService;
+
 
     @Override
     public Collection<? extends GrantedAuthority> mapAuthorities(Collection<? extends GrantedAuthority> authorities) {
 
-        return new HashSet<>(Set.of(new SimpleGrantedAuthority("ROLE_USER")));
+        Set<GrantedAuthority> mappedAuthorities = new HashSet<>(Set.of(new SimpleGrantedAuthority("ROLE_USER")));
+
+        String principalName = getPrincipalName(authorities);
+        String registrationId = getRegistrationId();
+        // case: can't tell whose roles they are
+        if (principalName == null || registrationId == null) {
+            log.warn("Not mapping stored roles of oauth2 user, could not determine principal name or registration");
+            return mappedAuthorities;
+        }
+
+        this.principalAuthorityService.getAuthorities(PrincipalNames.qualify(registrationId, principalName)).getRoles()
+            .forEach(role -> mappedAuthorities.add(new SimpleGrantedAuthority("ROLE_" + role)));
+
+        return mappedAuthorities;
+    }
+
+
+    /**
+     * @return the client registration id of the current login callback request, {@code null} if not called in one
+     */
+    @Nullable
+    private static String getRegistrationId() {
+        if (!(RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes servletRequestAttributes))
+            return null;
+
+        HttpServletRequest request = servletRequestAttributes.getRequest();
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (!path.startsWith(LOGIN_CALLBACK_PATH))
+            return null;
+
+        String registrationId = path.substring(LOGIN_CALLBACK_PATH.length());
+
+        return registrationId.isEmpty() || registrationId.indexOf('/') != -1 ? null : registrationId;
+    }
+
+
+    /**
+     * @param authorities authorities of the oauth2 user, one of them is expected to contain the user attributes
+     * @return the value of the "user-name-attribute" (the later {@code authentication.getName()}), {@code null} if not present
+     */
+    @Nullable
+    private static String getPrincipalName(Collection<? extends GrantedAuthority> authorities) {
+        for (GrantedAuthority authority : authorities)
+            if (authority instanceof OAuth2UserAuthority oAuth2UserAuthority && oAuth2UserAuthority.getUserNameAttributeName() != null) {
+                Object principalName = oAuth2UserAuthority.getAttributes().get(oAuth2UserAuthority.getUserNameAttributeName());
+
+                if (principalName != null)
+                    return principalName.toString();
+            }
+
+        return null;
     }
 }
\ No newline at end of file
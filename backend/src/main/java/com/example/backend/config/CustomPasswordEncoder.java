@@ -1,8 +1,10 @@
 package com.example.backend.config;
 
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
 
@@ -11,10 +13,48 @@ import org.springframework.security.crypto.password.PasswordEncoder;
  */
 @Configuration
 public class CustomPasswordEncoder {
-        
+
+    /** Bcrypt log rounds of new hashes. Existing hashes with fewer rounds are rehashed on the next login */
+    @Value("${BCRYPT_STRENGTH}")
+    private int BCRYPT_STRENGTH;
+
+    /** 0 for the number of cpu cores */
+    @Value("${BCRYPT_THREADS}")
+    private int BCRYPT_THREADS;
+
+    /** Each queued hash blocks a request thread */
+    @Value("${BCRYPT_MAX_QUEUED}")
+    private int BCRYPT_MAX_QUEUED;
+
+    @Value("${server.tomcat.threads.max:200}")
+    private int TOMCAT_MAX_THREADS;
+
+    /** In seconds. 0 disables the cache */
+    @Value("${LOGIN_CACHE_TTL_SECONDS}")
+    private long LOGIN_CACHE_TTL_SECONDS;
+
+    @Value("${LOGIN_CACHE_MAX_ENTRIES}")
+    private int LOGIN_CACHE_MAX_ENTRIES;
+
+
+    /**
+     * Closed on shutdown (inferred destroy method).
+     * 
+     * @throws IllegalStateException if running and queued hashes could block more than half of the request threads
+     */
     @Bean
-    PasswordEncoder passwordEncoder() {
+    PasswordEncoder passwordEncoder() throws IllegalStateException {
+
+        int threads = this.BCRYPT_THREADS == 0 ? Runtime.getRuntime().availableProcessors() : this.BCRYPT_THREADS;
+        if (threads + this.BCRYPT_MAX_QUEUED > this.TOMCAT_MAX_THREADS / 2)
+            throw new IllegalStateException("BCRYPT_THREADS (%d) plus BCRYPT_MAX_QUEUED (%d) has to leave at least half of 'server.tomcat.threads.max' (%d) free"
+                .formatted(threads, this.BCRYPT_MAX_QUEUED, this.TOMCAT_MAX_THREADS));
 
-        return new BCryptPasswordEncoder(10);
+        return new BoundedBCryptPasswordEncoder(
+            this.BCRYPT_STRENGTH,
+            threads,
+            this.BCRYPT_MAX_QUEUED,
+            TimeUnit.SECONDS.toMillis(this.LOGIN_CACHE_TTL_SECONDS),
+            this.LOGIN_CACHE_MAX_ENTRIES);
     }
-}
\ No newline at end of file
+}
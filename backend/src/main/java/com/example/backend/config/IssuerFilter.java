@@ -0,0 +1,149 @@
+package com.example.backend.config;
+
+import java.io.IOException;
+import java.util.Enumeration;
+
+import org.jspecify.annotations.Nullable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.example.backend.services.IssuerRegistry;
+import com.example.backend.services.IssuerRegistry.Issuer;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+
+
+/**
+ * Selects the {@link Issuer} of a request and stores it as {@link IssuerRegistry#ISSUER_ATTRIBUTE}. <p>
+ *
+ * For {@code /issuers/{id}/...} the prefix is stripped, so every other filter (rate limits, load shedding, cors) and controller
+ * only sees the unprefixed path. Otherwise the issuer is looked up by the request's {@code Host} header in the {@code JWT_ISSUER_HOSTS}
+ * allow-list. Forwarded headers are ignored and any other host gets the default issuer. Unknown issuer ids are passed on unchanged
+ * and end up as 404. <p>
+ *
+ * Either way the client picks the issuer, so service clients and refresh tokens are bound to theirs, see "/oauth2/token". <p>
+ *
+ * Ordered before spring's request context filter (-105) so everything after it sees the stripped path.
+ *
+ * @since latest
+ */
+@Component
+@Order(-106)
+public class IssuerFilter extends OncePerRequestFilter {
+
+    @Autowired
+    private IssuerRegistry issuerRegistry;
+
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+
+        if (path.startsWith(IssuerRegistry.PATH_PREFIX)) {
+            int idEnd = path.indexOf('/', IssuerRegistry.PATH_PREFIX.length());
+            String id = path.substring(IssuerRegistry.PATH_PREFIX.length(), idEnd == -1 ? path.length() : idEnd);
+            Issuer issuer = this.issuerRegistry.getIssuer(id);
+
+            if (issuer != null) {
+                request.setAttribute(IssuerRegistry.ISSUER_ATTRIBUTE, issuer);
+                filterChain.doFilter(new IssuerPathRequest(request, IssuerRegistry.PATH_PREFIX + id), response);
+                return;
+            }
+
+        } else {
+            Issuer issuer = this.issuerRegistry.getIssuerByHost(getHost(request));
+
+            if (issuer != null)
+                request.setAttribute(IssuerRegistry.ISSUER_ATTRIBUTE, issuer);
+        }
+
+        filterChain.doFilter(request, response);
+    }
+
+    /**
+     * @return the host of the {@code Host} header without port, {@code null} if missing or sent more than once
+     */
+    @Nullable
+    private static String getHost(HttpServletRequest request) {
+        Enumeration<String> hostHeaders = request.getHeaders(HttpHeaders.HOST);
+        if (hostHeaders == null || !hostHeaders.hasMoreElements())
+            return null;
+
+        String host = hostHeaders.nextElement();
+        // case: ambiguous
+        if (hostHeaders.hasMoreElements())
+            return null;
+
+        // after an ipv6 address in brackets
+        int portIndex = host.lastIndexOf(':');
+        if (portIndex != -1 && portIndex > host.lastIndexOf(']'))
+            host = host.substring(0, portIndex);
+
+        return host.strip();
+    }
+
+    /**
+     * Async dispatches use the original request again, so the prefix needs to be stripped again.
+     */
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+
+    /**
+     * Request with {@code pathPrefix} removed from uri, url and servlet path.
+     */
+    private static class IssuerPathRequest extends HttpServletRequestWrapper {
+
+        private final String pathPrefix;
+
+
+        private IssuerPathRequest(HttpServletRequest request, String pathPrefix) {
+            super(request);
+            this.pathPrefix = pathPrefix;
+        }
+
+
+        @Override
+        public String getRequestURI() {
+            return getContextPath() + stripPrefix(super.getRequestURI().substring(getContextPath().length()));
+        }
+
+        @Override
+        public StringBuffer getRequestURL() {
+            StringBuffer requestUrl = super.getRequestURL();
+            String requestUri = super.getRequestURI();
+
+            // uri is always the end of the url
+            requestUrl.setLength(requestUrl.length() - requestUri.length());
+            return requestUrl.append(getRequestURI());
+        }
+
+        @Override
+        public String getServletPath() {
+            return stripPrefix(super.getServletPath());
+        }
+
+
+        /**
+         * @param path starting with "/"
+         * @return {@code path} without prefix, "/" if nothing is left
+         */
+        private String stripPrefix(String path) {
+            if (!path.startsWith(this.pathPrefix))
+                return path;
+
+            String strippedPath = path.substring(this.pathPrefix.length());
+
+            return strippedPath.isEmpty() ? "/" : strippedPath;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.backend.config;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.security.oauth2.client.autoconfigure.OAuth2ClientProperties;
+import org.springframework.boot.security.oauth2.client.autoconfigure.OAuth2ClientPropertiesMapper;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.log4j.Log4j2;
+
+
+/**
+ * Replaces spring's client registration repository, which resolves the metadata of all oauth2 providers on startup (e.g. fetching
+ * google's openid configuration). Each registration is resolved from the "spring.security.oauth2.client" properties on its first
+ * use (usually the first login with that provider) instead and cached afterwards. A failed resolution is retried on the next use. <p>
+ * 
+ * Active if {@code OAUTH2_PROVIDER_METADATA=lazy}. <p>
+ * 
+ * NOTE: does not implement {@code Iterable}, so spring's generated login page won't list the providers (this app does not use it).
+ * 
+ * @since latest
+ */
+@Component
+@ConditionalOnProperty(name = "OAUTH2_PROVIDER_METADATA", havingValue = "lazy")
+// spring's client auto configuration backs off once this repository exists and would not bind the properties either
+@EnableConfigurationProperties(OAuth2ClientProperties.class)
+@Log4j2
+public class LazyClientRegistrationRepository implements ClientRegistrationRepository {
+
+    @Autowired
+    private OAuth2ClientProperties oAuth2ClientProperties;
+
+    private final ConcurrentMap<String, ClientRegistration> clientRegistrations = new ConcurrentHashMap<>();
+
+
+    /**
+     * @param registrationId e.g. "google"
+     * @return the resolved registration or {@code null} if there's no registration with {@code registrationId}
+     * @throws IllegalArgumentException if the provider metadata cannot be resolved, e.g. because the issuer is not reachable
+     */
+    @Override
+    public ClientRegistration findByRegistrationId(String registrationId) throws IllegalArgumentException {
+        if (registrationId == null || !this.oAuth2ClientProperties.getRegistration().containsKey(registrationId))
+            return null;
+
+        // only blocks callers of registrations in the same bin, which are usually none
+        return this.clientRegistrations.computeIfAbsent(registrationId, this::resolve);
+    }
+
+
+    /**
+     * @param registrationId of an existing registration
+     * @return the registration with the provider's metadata
+     */
+    private ClientRegistration resolve(String registrationId) {
+        long startNanos = System.nanoTime();
+
+        OAuth2ClientProperties.Registration registration = this.oAuth2ClientProperties.getRegistration().get(registrationId);
+        String providerId = registration.getProvider() == null ? registrationId : registration.getProvider();
+
+        // map only this registration, so only this provider's metadata is resolved
+        OAuth2ClientProperties singleRegistrationProperties = new OAuth2ClientProperties();
+        singleRegistrationProperties.getRegistration().put(registrationId, registration);
+        if (this.oAuth2ClientProperties.getProvider().containsKey(providerId))
+            singleRegistrationProperties.getProvider().put(providerId, this.oAuth2ClientProperties.getProvider().get(providerId));
+
+        Map<String, ClientRegistration> clientRegistrations = new OAuth2ClientPropertiesMapper(singleRegistrationProperties).asClientRegistrations();
+        log.info("Resolved oauth2 provider metadata for '{}' in {}ms", registrationId, (System.nanoTime() - startNanos) / 1_000_000);
+
+        return clientRegistrations.get(registrationId);
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.backend.config;
+
+import java.io.IOException;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.example.backend.helpers.Utils;
+import com.example.backend.services.AdaptiveConcurrencyLimiter;
+import com.example.backend.services.AdaptiveConcurrencyLimiter.Priority;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+
+/**
+ * Sheds requests with 503 (and "Retry-After: 1") before they reach security or any controller if {@link AdaptiveConcurrencyLimiter}
+ * does not admit them. See {@link #getPriority(String)} for the priorities. <p>
+ * 
+ * Ordered right after spring's request context filter (-105), so the {@code CustomExceptionFormat} contains the request path, and
+ * before the security filter chain (-100). Async requests are released once completed.
+ * 
+ * @since latest
+ */
+@Component
+@Order(-104)
+public class LoadSheddingFilter extends OncePerRequestFilter {
+
+    @Autowired
+    private AdaptiveConcurrencyLimiter adaptiveConcurrencyLimiter;
+
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        Priority priority = getPriority(request.getRequestURI().substring(request.getContextPath().length()));
+
+        // case: overloaded
+        if (!this.adaptiveConcurrencyLimiter.tryAcquire(priority)) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            Utils.writeToResponse(response, HttpStatus.SERVICE_UNAVAILABLE, "Server overloaded. Retry later");
+            return;
+        }
+
+        long startNanos = System.nanoTime();
+        boolean isReleasedOnAsyncCompletion = false;
+        boolean isFailed = true;
+        try {
+            filterChain.doFilter(request, response);
+
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new ReleasingAsyncListener(startNanos));
+                isReleasedOnAsyncCompletion = true;
+            }
+
+            isFailed = false;
+
+        } finally {
+            if (!isReleasedOnAsyncCompletion)
+                this.adaptiveConcurrencyLimiter.release(isFailed ? -1 : System.nanoTime() - startNanos);
+        }
+    }
+
+
+    /**
+     * @param path request path without context path
+     * @return {@code CRITICAL} for discovery, jwks, login callbacks and health checks, {@code LOW} for "/jwt", {@code NORMAL} otherwise
+     */
+    static Priority getPriority(String path) {
+        if (path.startsWith("/.well-known/") || path.startsWith("/login/oauth2/code/") || path.equals("/actuator/health"))
+            return Priority.CRITICAL;
+
+        if (path.equals("/jwt"))
+            return Priority.LOW;
+
+        return Priority.NORMAL;
+    }
+
+
+    /**
+     * Releases the admitted request once the async request is done.
+     */
+    private class ReleasingAsyncListener implements AsyncListener {
+
+        private final long startNanos;
+
+
+        private ReleasingAsyncListener(long startNanos) {
+            this.startNanos = startNanos;
+        }
+
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            adaptiveConcurrencyLimiter.release(System.nanoTime() - this.startNanos);
+        }
+
+        /** Not released here, "onComplete" is always called after */
+        @Override
+        public void onTimeout(AsyncEvent event) {}
+
+        /** Not released here, "onComplete" is always called after */
+        @Override
+        public void onError(AsyncEvent event) {}
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {}
+    }
+}
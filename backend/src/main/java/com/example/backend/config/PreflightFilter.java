@@ -0,0 +1,124 @@
+package com.example.backend.config;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.cors.CorsUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.example.backend.helpers.Utils;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+
+/**
+ * Answers CORS preflight requests before the rest of the security filter chain. Allowed origins and methods are looked up in
+ * precomputed sets and the response header values are built once. Other requests pass through (their CORS headers are added by
+ * spring's {@code CorsFilter}, see {@link SecurityConfig}). <p>
+ * 
+ * Metrics: "cors.preflight" timer tagged with "outcome" allowed/rejected.
+ * 
+ * @since latest
+ */
+public class PreflightFilter extends OncePerRequestFilter {
+
+    private static final String VARY_VALUE = String.join(", ", HttpHeaders.ORIGIN, HttpHeaders.ACCESS_CONTROL_REQUEST_METHOD, HttpHeaders.ACCESS_CONTROL_REQUEST_HEADERS);
+
+    private final Set<String> allowedOrigins;
+
+    private final Set<String> allowedMethods;
+
+    private final String allowedMethodsValue;
+
+    private final String maxAgeValue;
+
+    private final Timer allowedTimer;
+    private final Timer rejectedTimer;
+
+
+    /**
+     * @param allowedOrigins e.g. "http://localhost:3000", trailing slashes are ignored
+     * @param allowedMethods upper case http methods
+     * @param maxAgeSeconds time browsers may cache a preflight response
+     * @param meterRegistry
+     */
+    public PreflightFilter(Collection<String> allowedOrigins, Collection<String> allowedMethods, long maxAgeSeconds, MeterRegistry meterRegistry) {
+        this.allowedOrigins = allowedOrigins.stream()
+            .map(PreflightFilter::normalizeOrigin)
+            .collect(Collectors.toUnmodifiableSet());
+        this.allowedMethods = Set.copyOf(allowedMethods);
+        this.allowedMethodsValue = String.join(", ", allowedMethods);
+        this.maxAgeValue = Long.toString(maxAgeSeconds);
+
+        this.allowedTimer = meterRegistry.timer("cors.preflight", "outcome", "allowed");
+        this.rejectedTimer = meterRegistry.timer("cors.preflight", "outcome", "rejected");
+    }
+
+
+    /**
+     * @param origin "Origin" header value, may be {@code null}
+     * @return {@code true} if {@code origin} is one of the allowed origins
+     */
+    public boolean isAllowedOrigin(String origin) {
+        return origin != null && this.allowedOrigins.contains(normalizeOrigin(origin));
+    }
+
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !CorsUtils.isPreFlightRequest(request);
+    }
+
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        long startNanos = System.nanoTime();
+
+        String origin = request.getHeader(HttpHeaders.ORIGIN);
+        String requestMethod = request.getHeader(HttpHeaders.ACCESS_CONTROL_REQUEST_METHOD);
+
+        response.setHeader(HttpHeaders.VARY, VARY_VALUE);
+
+        // case: origin or method not allowed
+        if (!isAllowedOrigin(origin) || !this.allowedMethods.contains(requestMethod.toUpperCase(Locale.ROOT))) {
+            Utils.writeToResponse(response, HttpStatus.FORBIDDEN, "Invalid CORS request");
+            this.rejectedTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            return;
+        }
+
+        response.setHeader(HttpHeaders.ACCESS_CONTROL_ALLOW_ORIGIN, origin);
+        response.setHeader(HttpHeaders.ACCESS_CONTROL_ALLOW_CREDENTIALS, "true");
+        response.setHeader(HttpHeaders.ACCESS_CONTROL_ALLOW_METHODS, this.allowedMethodsValue);
+        response.setHeader(HttpHeaders.ACCESS_CONTROL_MAX_AGE, this.maxAgeValue);
+
+        // all headers are allowed, "*" is not valid with credentials though
+        String requestHeaders = request.getHeader(HttpHeaders.ACCESS_CONTROL_REQUEST_HEADERS);
+        if (!Utils.isBlank(requestHeaders))
+            response.setHeader(HttpHeaders.ACCESS_CONTROL_ALLOW_HEADERS, requestHeaders);
+
+        response.setStatus(HttpStatus.OK.value());
+        this.allowedTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+
+    /**
+     * @param origin not {@code null}
+     * @return {@code origin} without trailing slash and lower case
+     */
+    private static String normalizeOrigin(String origin) {
+        String normalizedOrigin = origin.trim().toLowerCase(Locale.ROOT);
+
+        return normalizedOrigin.endsWith("/") ? normalizedOrigin.substring(0, normalizedOrigin.length() - 1) : normalizedOrigin;
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.backend.config;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.example.backend.helpers.PrincipalNames;
+import com.example.backend.helpers.Utils;
+import com.example.backend.services.RateLimiterService;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+
+/**
+ * Rate limits requests to {@code rateLimitedPaths} using {@link RateLimiterService}. Responds with 429, a "Retry-After" header
+ * (in seconds) and a {@code CustomExceptionFormat} body if either the principal or the client ip has no tokens left. <p>
+ * 
+ * Not a bean, since spring would register it for all requests. Needs to run after the security context is loaded, see {@link SecurityConfig}.
+ * 
+ * @since latest
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private final RateLimiterService rateLimiterService;
+
+    private final Set<String> rateLimitedPaths;
+
+
+    /**
+     * @param rateLimiterService
+     * @param rateLimitedPaths exact paths without context path, e.g. "/jwt"
+     */
+    public RateLimitFilter(RateLimiterService rateLimiterService, Set<String> rateLimitedPaths) {
+        this.rateLimiterService = rateLimiterService;
+        this.rateLimitedPaths = Set.copyOf(rateLimitedPaths);
+    }
+
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !this.rateLimitedPaths.contains(request.getRequestURI().substring(request.getContextPath().length()));
+    }
+
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        long waitNanos = this.rateLimiterService.tryAcquire(getPrincipalName(), request.getRemoteAddr());
+
+        // case: rate limited
+        if (waitNanos > 0) {
+            long retryAfterSeconds = Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+
+            response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+            Utils.writeToResponse(response, HttpStatus.TOO_MANY_REQUESTS, "Too many requests. Retry after %ds".formatted(retryAfterSeconds));
+            return;
+        }
+
+        filterChain.doFilter(request, response);
+    }
+
+
+    /**
+     * @return the qualified name of the logged in principal (see {@link PrincipalNames}) or {@code null} if not logged in. Plain
+     * names would share a bucket across providers
+     */
+    private String getPrincipalName() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+
+        if (authentication == null || !authentication.isAuthenticated() || authentication instanceof AnonymousAuthenticationToken)
+            return null;
+
+        return PrincipalNames.qualify(authentication);
+    }
+}
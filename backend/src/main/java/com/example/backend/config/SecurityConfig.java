@@ -3,7 +3,9 @@ package com.example.backend.config;
 import static com.example.backend.helpers.Utils.CONFIRM_ACCOUNT_PATH;
 import static com.example.backend.helpers.Utils.LOGIN_PATH;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -13,11 +15,18 @@ import org.springframework.security.config.annotation.method.configuration.Enabl
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.context.SecurityContextHolderFilter;
+import org.springframework.security.web.session.DisableEncodeUrlFilter;
 import org.springframework.security.web.csrf.CsrfTokenRequestAttributeHandler;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
+import com.example.backend.helpers.Utils;
+import com.example.backend.services.PrincipalAuthorityService;
+import com.example.backend.services.RateLimiterService;
+
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.annotation.PostConstruct;
 import lombok.extern.log4j.Log4j2;
 
@@ -38,6 +47,16 @@ public class SecurityConfig {
     @Value("${FRONTEND_BASE_URL}")
     private String FRONTEND_BASE_URL;
 
+    /** Comma separated, allowed in addition to {@code FRONTEND_BASE_URL}. May be blank */
+    @Value("${CORS_ALLOWED_ORIGINS}")
+    private String CORS_ALLOWED_ORIGINS;
+
+    /** In seconds. Time browsers may cache a preflight response */
+    @Value("${CORS_PREFLIGHT_MAX_AGE_SECONDS}")
+    private long CORS_PREFLIGHT_MAX_AGE_SECONDS;
+
+    private static final List<String> CORS_ALLOWED_METHODS = List.of("GET", "POST", "PUT", "UPDATE", "DELETE", "OPTIONS");
+
     /**
      * Possible values:<p>
      * 
@@ -58,11 +77,19 @@ public class SecurityConfig {
     private CustomUnAuthenticatedHandler customUnAuthenticatedHandler;
     @Autowired
     private CustomOauth2GrantedAuthoritiesMapper customOauth2GrantedAuthoritiesMapper;
+    @Autowired
+    private RateLimiterService rateLimiterService;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private PreflightFilter preflightFilter;
 
 
     @PostConstruct
     void init() {
         log.info("Configuring api security...");
+
+        this.preflightFilter = new PreflightFilter(getCorsAllowedOrigins(), CORS_ALLOWED_METHODS, this.CORS_PREFLIGHT_MAX_AGE_SECONDS, this.meterRegistry);
     }
 
     
@@ -77,7 +104,12 @@ public class SecurityConfig {
     SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
         http.csrf(csrf -> csrf.disable());
 
+        // the actuator exposes principal names and client ips (e.g. "/actuator/ratelimits")
         http.authorizeHttpRequests(request -> request
+            .requestMatchers("/actuator/health", "/actuator/health/**")
+            .permitAll()
+            .requestMatchers("/actuator/**")
+            .hasRole(PrincipalAuthorityService.ADMIN_ROLE)
             .anyRequest()
             .permitAll());
 
@@ -91,7 +123,9 @@ public class SecurityConfig {
             .successHandler(this.customLoginSuccessHandler)
             .failureHandler(this.customLoginFailureHandler));
 
+        // custom handlers run before the session is invalidated
         http.logout(logout -> logout
+            .addLogoutHandler(this.customLogoutSuccessHandler)
             .logoutSuccessHandler(this.customLogoutSuccessHandler));
 
         // 401 (see "CustomExceptionHandler.java" for 403 handling)
@@ -101,12 +135,28 @@ public class SecurityConfig {
         http.cors(cors -> cors
             .configurationSource(corsConfig()));
 
+        // first filter of the chain
+        http.addFilterBefore(this.preflightFilter, DisableEncodeUrlFilter.class);
+
+        // after the security context is loaded but before the login filters
+        http.addFilterAfter(new RateLimitFilter(this.rateLimiterService, Set.of(
+            "/jwt", 
+            "/jwt/refreshable", 
+            "/oauth2/token", 
+            LOGIN_PATH,
+            // hash passwords or send mails
+            "/app-user/register",
+            "/app-user/resend-confirmation-mail",
+            "/app-user/send-reset-password-mail"
+        )), SecurityContextHolderFilter.class);
+
         return http.build();
     }
 
 
     /**
-     * Allowing only certain urls to access this api. <p>
+     * Allowing only certain urls to access this api. Preflight requests are answered by {@link PreflightFilter} before, so this
+     * only applies to actual requests. <p>
      * 
      * Used in filter chain: <p>
      * {@code http.cors(cors -> cors.configurationSource(corsConfig()))}
@@ -114,11 +164,18 @@ public class SecurityConfig {
      * @return the configured {@link CorsConfigurationSource}
      */
     private CorsConfigurationSource corsConfig() {
-        CorsConfiguration configuration = new CorsConfiguration();
-        configuration.setAllowedOrigins(List.of(this.FRONTEND_BASE_URL));
-        configuration.setAllowedMethods(List.of("GET", "POST", "UPDATE", "DELETE", "OPTIONS"));
+        // use the origin lookup of the preflight filter instead of iterating the allowed origins
+        CorsConfiguration configuration = new CorsConfiguration() {
+            @Override
+            public String checkOrigin(String origin) {
+                return preflightFilter.isAllowedOrigin(origin) ? origin : null;
+            }
+        };
+        configuration.setAllowedOrigins(getCorsAllowedOrigins());
+        configuration.setAllowedMethods(CORS_ALLOWED_METHODS);
         configuration.setAllowedHeaders(List.of("*"));
         configuration.setAllowCredentials(true);
+        configuration.setMaxAge(this.CORS_PREFLIGHT_MAX_AGE_SECONDS);
         
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
         source.registerCorsConfiguration("/**", configuration);
@@ -127,6 +184,21 @@ public class SecurityConfig {
     }
     
 
+    /**
+     * @return {@code FRONTEND_BASE_URL} and {@code CORS_ALLOWED_ORIGINS}
+     */
+    private List<String> getCorsAllowedOrigins() {
+        List<String> allowedOrigins = new ArrayList<>();
+        allowedOrigins.add(this.FRONTEND_BASE_URL);
+
+        for (String allowedOrigin : this.CORS_ALLOWED_ORIGINS.split(","))
+            if (!Utils.isBlank(allowedOrigin))
+                allowedOrigins.add(allowedOrigin.trim());
+
+        return allowedOrigins;
+    }
+    
+
     /**
      * Will make the csrf token available on login (and every other request).<p>
      * 
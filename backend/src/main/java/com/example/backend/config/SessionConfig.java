@@ -0,0 +1,68 @@
+package com.example.backend.config;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.oauth2.client.web.HttpSessionOAuth2AuthorizedClientRepository;
+import org.springframework.security.oauth2.client.web.OAuth2AuthorizedClientRepository;
+import org.springframework.session.MapSessionRepository;
+import org.springframework.session.config.annotation.web.http.EnableSpringHttpSession;
+import org.springframework.session.web.http.CookieSerializer;
+import org.springframework.session.web.http.DefaultCookieSerializer;
+
+import com.example.backend.services.JdbcSessionRepository;
+
+
+/**
+ * Replaces the servlet container's sessions with a pluggable session repository, depending on {@code SESSION_STORE}: <p>
+ * 
+ * - {@code jdbc}: {@link JdbcSessionRepository}, shared by all replicas <p>
+ * - {@code memory}: in memory, like the container sessions. Only works with a single replica (or sticky sessions)
+ * 
+ * @since latest
+ */
+@Configuration
+@EnableSpringHttpSession
+public class SessionConfig {
+
+    /** In seconds */
+    @Value("${server.servlet.session.timeout}")
+    private long SESSION_TIMEOUT;
+
+
+    @Bean
+    @ConditionalOnProperty(name = "SESSION_STORE", havingValue = "memory")
+    MapSessionRepository mapSessionRepository() {
+        MapSessionRepository sessionRepository = new MapSessionRepository(new ConcurrentHashMap<>());
+        sessionRepository.setDefaultMaxInactiveInterval(Duration.ofSeconds(this.SESSION_TIMEOUT));
+
+        return sessionRepository;
+    }
+
+
+    /**
+     * Keep the container's cookie name so clients don't notice the switch.
+     */
+    @Bean
+    CookieSerializer cookieSerializer() {
+        DefaultCookieSerializer cookieSerializer = new DefaultCookieSerializer();
+        cookieSerializer.setCookieName("JSESSIONID");
+        cookieSerializer.setUseBase64Encoding(false);
+
+        return cookieSerializer;
+    }
+
+
+    /**
+     * Store oauth2 authorized clients (used by {@code Oauth2Service.getCurrentOAuth2AccessToken}) in the session instead of the
+     * in memory default, so they are available on every replica.
+     */
+    @Bean
+    OAuth2AuthorizedClientRepository oAuth2AuthorizedClientRepository() {
+        return new HttpSessionOAuth2AuthorizedClientRepository();
+    }
+}
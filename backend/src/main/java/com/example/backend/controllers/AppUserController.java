@@ -0,0 +1,97 @@
+package com.example.backend.controllers;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.backend.dtos.AppUserRegisterDto;
+import com.example.backend.dtos.ResetPasswordDto;
+import com.example.backend.helpers.Utils;
+import com.example.backend.services.AppUserService;
+
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.Valid;
+
+
+/**
+ * Registration and password reset of local accounts, see {@link AppUserService}. Login itself is spring's form login at
+ * {@link Utils#LOGIN_PATH}.
+ *
+ * @since latest
+ */
+@RestController
+@RequestMapping("/app-user")
+public class AppUserController {
+
+    @Autowired
+    private AppUserService appUserService;
+
+    @Value("${FRONTEND_BASE_URL}")
+    private String FRONTEND_BASE_URL;
+
+
+    /**
+     * Create an unconfirmed account and mail the confirmation link. Always 201, does not tell whether the account exists.
+     *
+     * @param appUser email and raw password
+     * @return completes once the mail is queued, a failed queue insert is mapped like any other exception
+     */
+    @PostMapping("/register")
+    @ResponseStatus(HttpStatus.CREATED)
+    public CompletableFuture<Void> register(@RequestBody @Valid AppUserRegisterDto appUser) {
+        return this.appUserService.register(appUser.getEmail(), appUser.getPassword());
+    }
+
+
+    /**
+     * Link from the confirmation mail. Redirects to the frontend login page.
+     *
+     * @param token from the confirmation mail
+     */
+    @GetMapping("/confirm-account")
+    public void confirmAccount(@RequestParam(Utils.CONFIRM_ACCOUNT_TOKEN_URL_QUERY_PARAM) String token, HttpServletResponse response) {
+        this.appUserService.confirmAccount(token);
+
+        Utils.redirect(response, this.FRONTEND_BASE_URL + Utils.LOGIN_PATH);
+    }
+
+
+    /**
+     * Always 200, does not tell whether the account exists.
+     * 
+     * @return completes once the mail is queued
+     */
+    @PostMapping("/resend-confirmation-mail")
+    public CompletableFuture<Void> resendConfirmationMail(@RequestParam("email") String email) {
+        return this.appUserService.resendConfirmationMail(email);
+    }
+
+
+    /**
+     * Always 200, does not tell whether the account exists.
+     * 
+     * @return completes once the mail is queued
+     */
+    @PostMapping("/send-reset-password-mail")
+    public CompletableFuture<Void> sendResetPasswordMail(@RequestParam("email") String email) {
+        return this.appUserService.sendResetPasswordMail(email);
+    }
+
+
+    /**
+     * @param resetPassword token from the reset password mail and the new raw password
+     */
+    @PostMapping("/reset-password-by-token")
+    public void resetPasswordByToken(@RequestBody @Valid ResetPasswordDto resetPassword) {
+        this.appUserService.resetPassword(resetPassword.getToken(), resetPassword.getPassword());
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.backend.controllers;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.backend.dtos.ConsumerOffsetDto.ConsumerOffsetsDto;
+import com.example.backend.helpers.PrincipalNames;
+import com.example.backend.helpers.Utils;
+import com.example.backend.services.OffsetCommitCoordinator;
+
+import jakarta.validation.Valid;
+
+
+/**
+ * @since latest
+ */
+@RestController
+@RequestMapping("/consumers")
+public class ConsumerController {
+
+    @Autowired
+    private OffsetCommitCoordinator offsetCommitCoordinator;
+
+
+    /**
+     * Commit offsets for {@code group}. Commits of all instances of the group are batched, see {@link OffsetCommitCoordinator}.
+     * 
+     * @param group consumer group name
+     * @param instance consumer instance name, has to be a member of {@code group}
+     * @param offsets may be empty
+     * @return 204 once the offsets are committed
+     */
+    @PostMapping("/{group}/instances/{instance}/offsets")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public CompletableFuture<Void> commitOffsets(@PathVariable("group") String group, @PathVariable("instance") String instance, @RequestBody @Valid ConsumerOffsetsDto offsets) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        Utils.assertPrincipalNotNullAndThrow401(authentication);
+
+        return this.offsetCommitCoordinator.commit(group, instance, PrincipalNames.qualify(authentication), offsets.getPartitions());
+    }
+}
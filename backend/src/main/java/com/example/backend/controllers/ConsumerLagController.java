@@ -0,0 +1,85 @@
+package com.example.backend.controllers;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.example.backend.dtos.ConsumerLagDto;
+import com.example.backend.dtos.ConsumerLagWatchDto;
+import com.example.backend.helpers.PrincipalNames;
+import com.example.backend.helpers.Utils;
+import com.example.backend.services.ConsumerLagService;
+
+import jakarta.validation.Valid;
+
+
+/**
+ * Lag of the consumer groups the current user watches, see {@link ConsumerLagService}. Totals of all watched groups are
+ * available at "/actuator/metrics/consumer.lag.total" and "/actuator/metrics/consumer.lag.max".
+ * 
+ * @since latest
+ */
+@RestController
+@RequestMapping("/consumer-lag")
+public class ConsumerLagController {
+
+    @Autowired
+    private ConsumerLagService consumerLagService;
+
+
+    /**
+     * @return lag of all partitions watched by the current user that have been sampled yet
+     */
+    @GetMapping
+    public List<ConsumerLagDto> getLag() {
+        return this.consumerLagService.getLag(getPrincipalName());
+    }
+
+
+    /**
+     * Start monitoring {@code group}, or replace its topics if already watching.
+     * 
+     * @param group consumer group name
+     * @param watch the topics to monitor
+     * @throws ResponseStatusException 403 if the current user may not read the group or a topic, 409 or 503 if too many groups are watched
+     */
+    @PutMapping("/groups/{group}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void watch(@PathVariable("group") String group, @RequestBody @Valid ConsumerLagWatchDto watch) throws ResponseStatusException {
+        this.consumerLagService.watch(getPrincipalName(), group, watch.getTopics());
+    }
+
+
+    /**
+     * Stop monitoring {@code group}.
+     * 
+     * @param group consumer group name
+     * @throws ResponseStatusException 404 if the current user is not watching {@code group}
+     */
+    @DeleteMapping("/groups/{group}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void unwatch(@PathVariable("group") String group) throws ResponseStatusException {
+        if (!this.consumerLagService.unwatch(getPrincipalName(), group))
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Not watching group '%s'".formatted(group));
+    }
+
+
+    private static String getPrincipalName() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        Utils.assertPrincipalNotNullAndThrow401(authentication);
+
+        return PrincipalNames.qualify(authentication);
+    }
+}
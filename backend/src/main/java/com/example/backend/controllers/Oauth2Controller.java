@@ -1,27 +1,44 @@
 package com.example.backend.controllers;
 
-import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Map;
 import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.security.oauth2.jwt.JwtDecoder;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
 
 import com.example.backend.config.RsaKeyService;
-import com.example.backend.dtos.JwkDto.JwkSetDto;
+import com.example.backend.dtos.TokenResponseDto;
+import com.example.backend.helpers.PrincipalNames;
 import com.example.backend.helpers.Utils;
+import com.example.backend.services.IssuerRegistry;
+import com.example.backend.services.IssuerRegistry.Issuer;
 import com.example.backend.services.JwtService;
-import com.example.backend.services.Oauth2Service.WellKnownDto;
+import com.example.backend.services.RefreshTokenService;
+import com.example.backend.services.RefreshTokenService.Rotation;
+import com.example.backend.services.ServiceClientService;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.nimbusds.jose.jwk.source.JWKSource;
 import com.nimbusds.jose.proc.SecurityContext;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
 import lombok.extern.slf4j.Slf4j;
 
 
@@ -30,6 +47,9 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class Oauth2Controller {
 
+    /** Of the discovery document and the jwk set. Clients revalidate with the etag afterwards, the keys only change on restart */
+    private static final CacheControl WELL_KNOWN_CACHE_CONTROL = CacheControl.maxAge(Duration.ofMinutes(5)).cachePublic();
+
     @Autowired
     private JwtService jwtService;
 
@@ -43,7 +63,13 @@ public class Oauth2Controller {
     private JwtDecoder jwtDecoder;
 
     @Autowired
-    private WellKnownDto wellKnownDto;
+    private IssuerRegistry issuerRegistry;
+
+    @Autowired
+    private ServiceClientService serviceClientService;
+
+    @Autowired
+    private RefreshTokenService refreshTokenService;
 
 
     // TODO: endpoint name
@@ -65,15 +91,106 @@ public class Oauth2Controller {
         return jwt.getTokenValue();
     }
 
-    @GetMapping("/.well-known/openid-configuration")
-    public WellKnownDto wellKnown() {
-        return this.wellKnownDto;
+    /**
+     * Access token of the current session plus a refresh token, so the client can renew the access token at "/oauth2/token"
+     * ahead of its expiry without the session. The refresh token is revoked when the session logs out.
+     * 
+     * @return token response with refresh token
+     */
+    @PostMapping("/jwt/refreshable")
+    public TokenResponseDto refreshableJwtToken(HttpServletRequest request) {
+        Jwt jwt = this.jwtService.generateJwtAccessToken();
+        // authenticated, otherwise the token would not have been issued
+        String principal = PrincipalNames.qualify(SecurityContextHolder.getContext().getAuthentication());
+        HttpSession session = request.getSession(false);
+        String refreshToken = this.refreshTokenService.issue(principal, session == null ? null : session.getId(), this.issuerRegistry.getCurrentIssuer().getId());
+
+        return toTokenResponse(jwt, refreshToken);
+    }
+
+    /**
+     * Token endpoint for clients without a session. Supports <p>
+     * - the client credentials grant with basic authentication (rfc 6749 4.4), e.g. for the kafka OAUTHBEARER login callback handler 
+     * of java services <p>
+     * - the refresh token grant (rfc 6749 6) for refresh tokens from "/jwt/refreshable". The refresh token is rotated <p>
+     * Clients and refresh tokens are only accepted by the issuer they belong to.
+     * 
+     * @param authorization {@code Basic base64(clientId:clientSecret)}, only for "client_credentials"
+     * @param grantType "client_credentials" or "refresh_token"
+     * @param refreshToken only for "refresh_token"
+     * @return token response, "sub" claim of the token is "client:<client id>" or the subject of the refresh token
+     */
+    @PostMapping(path = "/oauth2/token", consumes = MediaType.APPLICATION_FORM_URLENCODED_VALUE)
+    public TokenResponseDto token(
+        @RequestHeader(name = HttpHeaders.AUTHORIZATION, required = false) String authorization, 
+        @RequestParam("grant_type") String grantType,
+        @RequestParam(name = "refresh_token", required = false) String refreshToken
+    ) {
+        // clients and refresh tokens are bound to one issuer
+        Issuer issuer = this.issuerRegistry.getCurrentIssuer();
+
+        switch (grantType) {
+            case "client_credentials": {
+                String clientId = this.serviceClientService.authenticate(authorization, issuer.getId());
+
+                return toTokenResponse(this.jwtService.generateJwtAccessToken(issuer, PrincipalNames.qualify(PrincipalNames.CLIENT_PROVIDER, clientId)), null);
+            }
+
+            case "refresh_token": {
+                Rotation rotation = this.refreshTokenService.rotate(refreshToken, issuer.getId());
+
+                return toTokenResponse(this.jwtService.generateJwtAccessToken(issuer, rotation.subject()), rotation.refreshToken());
+            }
+
+            default:
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "unsupported_grant_type");
+        }
+    }
+
+    private static TokenResponseDto toTokenResponse(Jwt jwt, String refreshToken) {
+        return new TokenResponseDto(
+            jwt.getTokenValue(),
+            "Bearer",
+            Duration.between(Instant.now(), jwt.getExpiresAt()).toSeconds(),
+            (String) jwt.getClaims().get("scope"),
+            refreshToken);
+    }
+
+    /**
+     * Precomputed per issuer, also served at "/issuers/{id}/.well-known/openid-configuration" (see {@code IssuerFilter}).
+     * 
+     * @param webRequest for "If-None-Match"
+     * @return discovery document of the current request's issuer or 304 if the client's etag matches
+     */
+    @GetMapping(path = "/.well-known/openid-configuration", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> wellKnown(WebRequest webRequest) {
+        Issuer issuer = this.issuerRegistry.getCurrentIssuer();
+        issuer.getDiscoveryDocumentsServed().increment();
+
+        // case: client has the current document
+        if (webRequest.checkNotModified(issuer.getDiscoveryDocumentEtag()))
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(issuer.getDiscoveryDocumentEtag()).cacheControl(WELL_KNOWN_CACHE_CONTROL).build();
+
+        return ResponseEntity.ok().eTag(issuer.getDiscoveryDocumentEtag()).cacheControl(WELL_KNOWN_CACHE_CONTROL).body(issuer.getDiscoveryDocument());
     }
     
     
-    @GetMapping("/.well-known/jwks")
-    public JwkSetDto wellKnownJwks() throws ParseException {
-        return this.jwtService.getJwks();
+    /**
+     * Precomputed per issuer, also served at "/issuers/{id}/.well-known/jwks" (see {@code IssuerFilter}).
+     * 
+     * @param webRequest for "If-None-Match"
+     * @return jwk set with the public key of the current request's issuer or 304 if the client's etag matches
+     */
+    @GetMapping(path = "/.well-known/jwks", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> wellKnownJwks(WebRequest webRequest) {
+        Issuer issuer = this.issuerRegistry.getCurrentIssuer();
+        issuer.getJwksServed().increment();
+
+        // case: client has the current keys
+        if (webRequest.checkNotModified(issuer.getJwksEtag()))
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(issuer.getJwksEtag()).cacheControl(WELL_KNOWN_CACHE_CONTROL).build();
+
+        return ResponseEntity.ok().eTag(issuer.getJwksEtag()).cacheControl(WELL_KNOWN_CACHE_CONTROL).body(issuer.getJwks());
     }
     
     @GetMapping("/login")
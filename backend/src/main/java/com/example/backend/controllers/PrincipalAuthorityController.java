@@ -0,0 +1,74 @@
+package com.example.backend.controllers;
+
+import java.util.TreeSet;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.access.annotation.Secured;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.backend.dtos.PrincipalAuthoritiesDto;
+import com.example.backend.services.PrincipalAuthorityService;
+import com.example.backend.services.PrincipalAuthorityService.PrincipalAuthorities;
+
+import jakarta.validation.Valid;
+
+
+/**
+ * Manage roles and topic scopes that are embedded in the access tokens of a principal, see {@link PrincipalAuthorityService}.
+ * Admins only.
+ * 
+ * @since latest
+ */
+@RestController
+@RequestMapping("/principal-authorities")
+@Secured("ROLE_" + PrincipalAuthorityService.ADMIN_ROLE)
+public class PrincipalAuthorityController {
+
+    @Autowired
+    private PrincipalAuthorityService principalAuthorityService;
+
+
+    /**
+     * @param principal principal name qualified with its provider, e.g. "github:octocat", same as the "sub" claim of its tokens
+     * @return the authorities the principal's tokens currently contain (may be up to one cache ttl old)
+     */
+    @GetMapping("/{principal}")
+    public PrincipalAuthoritiesDto getAuthorities(@PathVariable("principal") String principal) {
+        PrincipalAuthorities principalAuthorities = this.principalAuthorityService.getAuthorities(principal);
+
+        return new PrincipalAuthoritiesDto(
+            new TreeSet<>(principalAuthorities.getRoles()),
+            new TreeSet<>(principalAuthorities.getTopicScopes()));
+    }
+
+
+    /**
+     * Replace all authorities of {@code principal}. Tokens issued afterwards contain the new ones.
+     * 
+     * @param principal qualified principal name
+     * @param principalAuthorities the new authorities
+     */
+    @PutMapping("/{principal}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void setAuthorities(@PathVariable("principal") String principal, @RequestBody @Valid PrincipalAuthoritiesDto principalAuthorities) {
+        this.principalAuthorityService.setAuthorities(principal, principalAuthorities.getRoles(), principalAuthorities.getTopicScopes());
+    }
+
+
+    /**
+     * Reload all principals on their next token, e.g. after modifying the table directly.
+     */
+    @DeleteMapping("/cache")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void invalidateCache() {
+        this.principalAuthorityService.invalidateAll();
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.backend.controllers;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.backend.dtos.ProducerRecordDto.ProducerRecordsDto;
+import com.example.backend.dtos.ProducerResponseDto;
+import com.example.backend.helpers.PrincipalNames;
+import com.example.backend.helpers.Utils;
+import com.example.backend.services.ProducerGatewayService;
+import com.example.backend.services.ProducerOutboxService;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Pattern;
+
+
+/**
+ * @since latest
+ */
+@RestController
+@RequestMapping("/producer")
+public class ProducerController {
+
+    @Autowired
+    private ProducerGatewayService producerGatewayService;
+
+    @Autowired
+    private ProducerOutboxService producerOutboxService;
+
+
+    /**
+     * Produce records for {@code topic}. Requests of all callers are batched, see {@link ProducerGatewayService}.
+     * 
+     * @param topic to produce the records for
+     * @param records may be empty
+     * @return one offset per record
+     */
+    @PostMapping("/topics/{topic}")
+    public CompletableFuture<ProducerResponseDto> produce(@PathVariable("topic") @Pattern(regexp = Utils.TOPIC_REGEX) String topic, @RequestBody @Valid ProducerRecordsDto records) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        Utils.assertPrincipalNotNullAndThrow401(authentication);
+
+        return this.producerGatewayService
+            .produce(topic, PrincipalNames.qualify(authentication), records.getRecords())
+            .thenApply(ProducerResponseDto::new);
+    }
+
+
+    /**
+     * Store records for {@code topic} in the outbox and produce them in the background, see {@link ProducerOutboxService}. Use this
+     * if records must not get lost while redpanda is unavailable.
+     * 
+     * @param topic to produce the records for
+     * @param records may be empty
+     * @return 202 once the records are stored
+     */
+    @PostMapping("/outbox/topics/{topic}")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public CompletableFuture<Void> produceDurably(@PathVariable("topic") @Pattern(regexp = Utils.TOPIC_REGEX) String topic, @RequestBody @Valid ProducerRecordsDto records) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        Utils.assertPrincipalNotNullAndThrow401(authentication);
+
+        return this.producerOutboxService.append(topic, PrincipalNames.qualify(authentication), records.getRecords());
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.backend.controllers;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import com.example.backend.services.RateLimiterService;
+import com.example.backend.services.RateLimiterService.KeyCounters;
+
+
+/**
+ * Per key counters of {@link RateLimiterService} at "/actuator/ratelimits". Aggregated counters are available at
+ * "/actuator/metrics/rate.limit.requests". Keys contain principal names and client ips, so the actuator is admins only (see
+ * {@code SecurityConfig}).
+ * 
+ * @since latest
+ */
+@Component
+@Endpoint(id = "ratelimits")
+public class RateLimitEndpoint {
+
+    private static final int MAX_KEYS = 100;
+
+    @Autowired
+    private RateLimiterService rateLimiterService;
+
+
+    /**
+     * @return counters of at most {@value #MAX_KEYS} keys, most rejected requests first
+     */
+    @ReadOperation
+    public List<KeyCounters> keyCounters() {
+        return this.rateLimiterService.getKeyCounters(MAX_KEYS);
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.backend.controllers;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.backend.dtos.SearchResultDto;
+import com.example.backend.helpers.PrincipalNames;
+import com.example.backend.helpers.Utils;
+import com.example.backend.services.RecordSearchService;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.Size;
+
+
+/**
+ * @since latest
+ */
+@RestController
+@RequestMapping("/search")
+public class SearchController {
+
+    public static final int MAX_PAGE_SIZE = 100;
+
+    @Autowired
+    private RecordSearchService recordSearchService;
+
+
+    /**
+     * Search topics and records visible to the current user, see {@link RecordSearchService}.
+     * 
+     * @param query words to search for
+     * @param page 0-based
+     * @param size max hits per page
+     * @return hits of {@code page}, best rated first
+     */
+    @GetMapping
+    public SearchResultDto search(
+        @RequestParam("query") @Size(max = 1000) String query, 
+        @RequestParam(name = "page", defaultValue = "0") @Min(0) int page, 
+        @RequestParam(name = "size", defaultValue = "20") @Min(1) @Max(MAX_PAGE_SIZE) int size
+    ) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        Utils.assertPrincipalNotNullAndThrow401(authentication);
+
+        return this.recordSearchService.search(PrincipalNames.qualify(authentication), query, page, size);
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.backend.dtos;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+
+/**
+ * @since latest
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class AppUserRegisterDto {
+
+    @NotBlank
+    private String email;
+
+    /** Raw, has to match {@code Utils.PASSWORD_REGEX} */
+    @NotBlank
+    private String password;
+}
@@ -0,0 +1,42 @@
+package com.example.backend.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+
+/**
+ * Lag of one consumer group on one partition, as of the latest sample. Rates are averaged over all samples kept in history.
+ * 
+ * @since latest
+ */
+@AllArgsConstructor
+@Getter
+public class ConsumerLagDto {
+
+    private String group;
+
+    private String topic;
+
+    private int partition;
+
+    /** -1 if the group has not committed for this partition yet */
+    private long committedOffset;
+
+    /** The high watermark */
+    private long endOffset;
+
+    /** Number of records the group still has to consume */
+    private long lag;
+
+    /** Committed records per second */
+    private double consumeRate;
+
+    /** Produced records per second */
+    private double produceRate;
+
+    /** In seconds. 0 if there's no lag, -1 if the group does not catch up at current rates */
+    private double timeToCatchUp;
+
+    /** In ms, when the latest sample was taken */
+    private long sampledAt;
+}
@@ -0,0 +1,31 @@
+package com.example.backend.dtos;
+
+import java.util.Set;
+
+import com.example.backend.helpers.Utils;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+
+/**
+ * Request body for watching the lag of a consumer group.
+ * 
+ * @since latest
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class ConsumerLagWatchDto {
+
+    /** Topics the group consumes that should be monitored */
+    @NotEmpty
+    @Size(max = 100)
+    private Set<@Pattern(regexp = Utils.TOPIC_REGEX) String> topics;
+}
@@ -0,0 +1,53 @@
+package com.example.backend.dtos;
+
+import java.util.List;
+
+import com.example.backend.helpers.Utils;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.PositiveOrZero;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+
+/**
+ * Offset of one partition to commit for a consumer group. Java equivalent of "RedpandaOffsetRequestBody.ts" plus the offset.
+ * 
+ * @since latest
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class ConsumerOffsetDto {
+
+    @NotNull
+    @Pattern(regexp = Utils.TOPIC_REGEX)
+    private String topic;
+
+    /** 0-based */
+    @PositiveOrZero
+    private int partition;
+
+    /** The offset of the next record to consume, i.e. last consumed offset + 1 */
+    @PositiveOrZero
+    private long offset;
+
+
+    /**
+     * Request body for committing offsets. Same format as the pandaproxy request body.
+     */
+    @Getter
+    @Setter
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class ConsumerOffsetsDto {
+
+        @NotNull
+        private List<@Valid @NotNull ConsumerOffsetDto> partitions;
+    }
+}
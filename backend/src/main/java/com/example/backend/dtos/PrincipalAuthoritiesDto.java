@@ -0,0 +1,39 @@
+package com.example.backend.dtos;
+
+import java.util.Set;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+
+/**
+ * Roles and topic and group scopes of a principal, embedded in the principal's access tokens.
+ * 
+ * @since latest
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class PrincipalAuthoritiesDto {
+
+    /** Without "ROLE_" prefix, e.g. "ADMIN" */
+    public static final String ROLE_REGEX = "^[A-Z][A-Z0-9_]{0,63}$";
+
+    /** E.g. "topic:orders:read". Operation is one of "read", "write" or "all" */
+    public static final String TOPIC_SCOPE_REGEX = "^topic:[a-zA-Z0-9_\\.\\-]{1,249}:(read|write|all)$";
+
+    /** E.g. "group:billing:read", needed to watch the lag of a group. Operation is one of "read" or "all" */
+    public static final String GROUP_SCOPE_REGEX = "^group:[-a-zA-Z0-9@:%._\\+~#=]{1,256}:(read|all)$";
+
+    @NotNull
+    private Set<@Pattern(regexp = ROLE_REGEX) String> roles;
+
+    /** Topic and group scopes */
+    @NotNull
+    private Set<@Pattern(regexp = TOPIC_SCOPE_REGEX + "|" + GROUP_SCOPE_REGEX) String> topicScopes;
+}
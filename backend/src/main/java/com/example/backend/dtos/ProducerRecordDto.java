@@ -0,0 +1,49 @@
+package com.example.backend.dtos;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+
+/**
+ * Single record passed to the producer request body. Java equivalent of "ProducerRecordFormat.ts".
+ * 
+ * @since latest
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(Include.NON_NULL)
+public class ProducerRecordDto {
+
+    /** Not unique. Either a json object, a string or {@code null} */
+    private Object key;
+
+    /** Either a json object, a string or {@code null} */
+    private Object value;
+
+    /** 0-based. The partition to save this record on. Omit this field to let redpanda decide */
+    private Integer partition;
+
+
+    /**
+     * Request body for producer request. Java equivalent of "ProducerRecordsFormat.ts".
+     */
+    @Getter
+    @Setter
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class ProducerRecordsDto {
+
+        @NotNull
+        private List<ProducerRecordDto> records;
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.backend.dtos;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+
+/**
+ * Returned by the producer endpoint. Java equivalent of "ProducerResponse.ts".
+ * 
+ * @since latest
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProducerResponseDto {
+
+    /** One offset per produced record, in the same order as the records of the request */
+    private List<ProducerOffsetDto> offsets;
+
+    /** {@code true} if at least one record could not be produced */
+    private boolean hasErrors;
+
+
+    public ProducerResponseDto(List<ProducerOffsetDto> offsets) {
+        this.offsets = offsets;
+        this.hasErrors = offsets.stream().anyMatch(offset -> offset.getError_code() != null);
+    }
+
+
+    /**
+     * Describes one single record. Java equivalent of "ProducerOffsetFormat.ts".
+     */
+    @Getter
+    @Setter
+    @AllArgsConstructor
+    @NoArgsConstructor
+    @JsonInclude(Include.NON_NULL)
+    public static class ProducerOffsetDto {
+
+        /** 0-based. The partition number the record was (supposed to be) produced on */
+        private int partition;
+
+        /** 0-based. Will be -1 if the record could not be produced */
+        private long offset;
+
+        /** Present only when the record could not be produced */
+        private Integer error_code;
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.backend.dtos;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+
+/**
+ * @since latest
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class ResetPasswordDto {
+
+    /** From the reset password mail */
+    @NotBlank
+    private String token;
+
+    /** Raw, has to match {@code Utils.PASSWORD_REGEX} */
+    @NotBlank
+    private String password;
+}
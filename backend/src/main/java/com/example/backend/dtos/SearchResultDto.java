@@ -0,0 +1,68 @@
+package com.example.backend.dtos;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+
+/**
+ * One page of search hits, returned by the search endpoint.
+ * 
+ * @since latest
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class SearchResultDto {
+
+    /** Number of hits of all pages */
+    private int total;
+
+    /** 0-based */
+    private int page;
+
+    /** Max hits per page */
+    private int size;
+
+    /** Best rated first */
+    private List<SearchHitDto> hits;
+
+
+    /**
+     * A matching topic or record.
+     */
+    @Getter
+    @Setter
+    @AllArgsConstructor
+    @NoArgsConstructor
+    @JsonInclude(Include.NON_NULL)
+    public static class SearchHitDto {
+
+        /** "topic" or "record" */
+        private String type;
+
+        private String topic;
+
+        /** Present only for records */
+        private Integer partition;
+
+        /** Present only for records */
+        private Long offset;
+
+        /** Truncated string or serialized json. Present only for records with a key */
+        private String key;
+
+        /** Truncated string or serialized json. Present only for records with a value */
+        private String value;
+
+        /** Sum of the rating points of all query words, higher is better */
+        private int rating;
+    }
+}
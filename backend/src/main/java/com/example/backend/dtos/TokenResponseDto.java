@@ -0,0 +1,36 @@
+package com.example.backend.dtos;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+
+/**
+ * Access token response as described in rfc 6749 5.1.
+ * 
+ * @since latest
+ */
+@AllArgsConstructor
+@Getter
+@JsonInclude(Include.NON_NULL)
+public class TokenResponseDto {
+
+    private String access_token;
+
+    private String token_type;
+
+    /** In seconds */
+    private long expires_in;
+
+    private String scope;
+
+    /** Only present for grants that support refreshing */
+    private String refresh_token;
+
+
+    public TokenResponseDto(String access_token, String token_type, long expires_in, String scope) {
+        this(access_token, token_type, expires_in, scope, null);
+    }
+}
@@ -0,0 +1,240 @@
+package com.example.backend.helpers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+
+/**
+ * File reading and writing through nio instead of readers and streams. <p>
+ *
+ * Text is read with one {@link Files#readAllBytes} call and decoded in one go with the file's charset (a byte order mark wins over the
+ * given charset), so line breaks are kept and no "odd chars" need to be repaired afterwards. Large files can be mapped and streamed to
+ * a response with {@link FileChannel#transferTo}, without being copied into the heap.
+ *
+ * @since latest
+ */
+public class FileIO {
+
+    /** Tomcat's sendfile request attributes, see {@code org.apache.tomcat.util.net.SendfileDataBase} */
+    static final String SENDFILE_SUPPORT_ATTRIBUTE = "org.apache.tomcat.sendfile.support";
+    static final String SENDFILE_FILENAME_ATTRIBUTE = "org.apache.tomcat.sendfile.filename";
+    static final String SENDFILE_START_ATTRIBUTE = "org.apache.tomcat.sendfile.start";
+    static final String SENDFILE_END_ATTRIBUTE = "org.apache.tomcat.sendfile.end";
+
+    private static final byte[] UTF_8_BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+    private static final byte[] UTF_16BE_BOM = {(byte) 0xFE, (byte) 0xFF};
+    private static final byte[] UTF_16LE_BOM = {(byte) 0xFF, (byte) 0xFE};
+
+
+    /**
+     * @param path to read
+     * @return the file's content decoded as utf-8 (or as the charset of its byte order mark), line breaks included
+     * @throws IOException if reading fails
+     */
+    public static String readString(Path path) throws IOException {
+        return readString(path, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param path to read
+     * @param charset used if the file has no byte order mark. Malformed input is replaced, not thrown
+     * @return the file's content, line breaks included
+     * @throws IOException if reading fails
+     */
+    public static String readString(Path path, Charset charset) throws IOException {
+        Utils.assertArgsNotNullAndNotBlankOrThrow(path, charset);
+
+        return decode(Files.readAllBytes(path), charset);
+    }
+
+    /**
+     * Read until end of stream. Does not close {@code inputStream}.
+     *
+     * @param inputStream to read
+     * @param charset used if the content has no byte order mark
+     * @return the content, line breaks included
+     * @throws IOException if reading fails
+     */
+    public static String readString(InputStream inputStream, Charset charset) throws IOException {
+        Utils.assertArgsNotNullAndNotBlankOrThrow(inputStream, charset);
+
+        return decode(inputStream.readAllBytes(), charset);
+    }
+
+    /**
+     * @param path to read
+     * @return the file's content
+     * @throws IOException if reading fails
+     */
+    public static byte[] readBytes(Path path) throws IOException {
+        Utils.assertArgsNotNullAndNotBlankOrThrow(path);
+
+        return Files.readAllBytes(path);
+    }
+
+    /**
+     * Map {@code path} read only. The content is paged in by the os when read and never copied into the heap, e.g. for hashing
+     * large files with {@link Hashing#sha256(ByteBuffer)}. <p>
+     *
+     * The mapping stays valid after this method returns and is released when the buffer is garbage collected, so don't map a file
+     * per request.
+     *
+     * @param path to map
+     * @return read only buffer over the whole file
+     * @throws IOException if mapping fails
+     * @throws IllegalArgumentException if the file is larger than {@link Integer#MAX_VALUE}
+     */
+    public static MappedByteBuffer map(Path path) throws IOException, IllegalArgumentException {
+        Utils.assertArgsNotNullAndNotBlankOrThrow(path);
+
+        try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = fileChannel.size();
+            if (size > Integer.MAX_VALUE)
+                throw new IllegalArgumentException("Cannot map '%s', file is larger than 2 GiB".formatted(path));
+
+            return fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+    }
+
+    /**
+     * Write {@code bytes} to {@code path}, replacing its content.
+     *
+     * @param bytes to write
+     * @param path to write to, created if necessary
+     * @return {@code path}
+     * @throws IOException if writing fails
+     */
+    public static Path writeBytes(byte[] bytes, Path path) throws IOException {
+        Utils.assertArgsNotNullAndNotBlankOrThrow(bytes, path);
+
+        return Files.write(path, bytes);
+    }
+
+    /**
+     * Write {@code str} utf-8 encoded to {@code path}, replacing its content.
+     *
+     * @param str to write, may be empty
+     * @param path to write to, created if necessary
+     * @return {@code path}
+     * @throws IOException if writing fails
+     */
+    public static Path writeString(String str, Path path) throws IOException {
+        if (str == null)
+            throw new IllegalArgumentException("'str' cannot be null");
+        Utils.assertArgsNotNullAndNotBlankOrThrow(path);
+
+        return Files.writeString(path, str, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Copy the whole file to {@code target} with {@link FileChannel#transferTo}. If {@code target} is a file or socket channel the os
+     * copies directly (e.g. sendfile), otherwise the jdk copies through a mapped buffer in small chunks, never the whole file in the
+     * heap.
+     *
+     * @param path to copy
+     * @param target to copy to. Not closed
+     * @return number of bytes copied
+     * @throws IOException if reading or writing fails
+     */
+    public static long transferTo(Path path, WritableByteChannel target) throws IOException {
+        Utils.assertArgsNotNullAndNotBlankOrThrow(path, target);
+
+        try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = fileChannel.size();
+            long position = 0;
+
+            // transferTo may copy less than requested (e.g. 2 GiB per call on linux)
+            while (position < size) {
+                long transferred = fileChannel.transferTo(position, size - position, target);
+
+                // case: file was truncated meanwhile
+                if (transferred <= 0)
+                    break;
+
+                position += transferred;
+            }
+
+            return position;
+        }
+    }
+
+    /**
+     * Stream a file as response body. Sets content length and, if not set yet, content type "application/octet-stream". <p>
+     *
+     * If the connector supports it, tomcat is asked to send the file itself (sendfile, kernel to socket without entering the jvm)
+     * after the request returns. Otherwise the file is copied into the response with {@link #transferTo(Path, WritableByteChannel)}.
+     *
+     * @param path to send
+     * @param request to check for sendfile support
+     * @param response to write to
+     * @return number of bytes of the file
+     * @throws IOException if reading or writing fails
+     */
+    public static long download(Path path, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Utils.assertArgsNotNullAndNotBlankOrThrow(path, request, response);
+
+        long size = Files.size(path);
+        response.setContentLengthLong(size);
+        if (response.getContentType() == null)
+            response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+
+        // case: let tomcat write the file after the request is done
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTRIBUTE)) && size > 0) {
+            request.setAttribute(SENDFILE_FILENAME_ATTRIBUTE, path.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START_ATTRIBUTE, 0L);
+            request.setAttribute(SENDFILE_END_ATTRIBUTE, size);
+            response.setHeader(HttpHeaders.ACCEPT_RANGES, "none");
+
+            return size;
+        }
+
+        // don't close the servlet's output stream, the container does that
+        return transferTo(path, Channels.newChannel(response.getOutputStream()));
+    }
+
+
+    /**
+     * @param bytes to decode
+     * @param charset used if {@code bytes} don't start with a byte order mark
+     * @return decoded {@code bytes} without the byte order mark
+     */
+    private static String decode(byte[] bytes, Charset charset) {
+        if (startsWith(bytes, UTF_8_BOM))
+            return new String(bytes, UTF_8_BOM.length, bytes.length - UTF_8_BOM.length, StandardCharsets.UTF_8);
+
+        if (startsWith(bytes, UTF_16BE_BOM))
+            return new String(bytes, UTF_16BE_BOM.length, bytes.length - UTF_16BE_BOM.length, StandardCharsets.UTF_16BE);
+
+        if (startsWith(bytes, UTF_16LE_BOM))
+            return new String(bytes, UTF_16LE_BOM.length, bytes.length - UTF_16LE_BOM.length, StandardCharsets.UTF_16LE);
+
+        return new String(bytes, charset);
+    }
+
+    private static boolean startsWith(byte[] bytes, byte[] prefix) {
+        if (bytes.length < prefix.length)
+            return false;
+
+        for (int i = 0; i < prefix.length; i++)
+            if (bytes[i] != prefix[i])
+                return false;
+
+        return true;
+    }
+}
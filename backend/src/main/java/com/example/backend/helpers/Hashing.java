@@ -0,0 +1,251 @@
+package com.example.backend.helpers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+
+/**
+ * Sha256 and hex encoding without per call setup. Digests, utf-8 encoders and read buffers are pooled, strings are encoded chunk
+ * wise into the pooled buffer instead of a new byte array, and hex is written with a lookup table or {@link HexFormat}. <p>
+ *
+ * Strings hash to the same value as {@code MessageDigest.getInstance("SHA-256").digest(string.getBytes(UTF_8))}, including the
+ * '?' replacement of invalid surrogates.
+ *
+ * @since latest
+ */
+public class Hashing {
+
+    public static final int SHA_256_LENGTH = 32;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final HexFormat HEX_FORMAT = HexFormat.of();
+
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private static final ObjectPool<Sha256Context> CONTEXT_POOL = new ObjectPool<>();
+
+
+    /**
+     * @param input utf-8 encoded before hashing
+     * @return lower case hex of the sha256 hash (never {@code null})
+     * @throws IllegalArgumentException if {@code input} is {@code null}
+     */
+    public static String sha256Hex(String input) throws IllegalArgumentException {
+        Sha256Context context = borrowContext();
+        try {
+            sha256(context, input, context.hash, 0);
+
+            return HEX_FORMAT.formatHex(context.hash);
+
+        } finally {
+            CONTEXT_POOL.offer(context);
+        }
+    }
+
+    /**
+     * @param input to hash
+     * @return lower case hex of the sha256 hash
+     * @throws IllegalArgumentException if {@code input} is {@code null}
+     */
+    public static String sha256Hex(byte[] input) throws IllegalArgumentException {
+        return HEX_FORMAT.formatHex(sha256(input));
+    }
+
+    /**
+     * Write the raw hash of {@code input} into a caller supplied buffer. Allocates no arrays, only a few small objects (char buffer
+     * view, pool node).
+     *
+     * @param input utf-8 encoded before hashing
+     * @param target needs {@link #SHA_256_LENGTH} bytes from {@code offset}
+     * @param offset first index of {@code target} to write to
+     * @return {@code offset + SHA_256_LENGTH}
+     * @throws IllegalArgumentException if {@code input} is {@code null} or {@code target} is too small
+     */
+    public static int sha256(String input, byte[] target, int offset) throws IllegalArgumentException {
+        Sha256Context context = borrowContext();
+        try {
+            return sha256(context, input, target, offset);
+
+        } finally {
+            CONTEXT_POOL.offer(context);
+        }
+    }
+
+    /**
+     * @param input to hash
+     * @return the raw hash
+     * @throws IllegalArgumentException if {@code input} is {@code null}
+     */
+    public static byte[] sha256(byte[] input) throws IllegalArgumentException {
+        if (input == null)
+            throw new IllegalArgumentException("'input' cannot be null");
+
+        Sha256Context context = borrowContext();
+        try {
+            return context.digest.digest(input);
+
+        } finally {
+            CONTEXT_POOL.offer(context);
+        }
+    }
+
+    /**
+     * @param input hashed from its position to its limit, consumed afterwards. Direct buffers are hashed without copying to the heap
+     * @return the raw hash
+     */
+    public static byte[] sha256(ByteBuffer input) {
+        Sha256Context context = borrowContext();
+        try {
+            context.digest.update(input);
+
+            return context.digest.digest();
+
+        } finally {
+            CONTEXT_POOL.offer(context);
+        }
+    }
+
+    /**
+     * Hash {@code input} incrementally with a pooled buffer, so only {@code 8 KiB} are in memory at a time. Does not close
+     * {@code input}.
+     *
+     * @param input read until end of stream
+     * @return the raw hash
+     * @throws IOException if reading fails
+     */
+    public static byte[] sha256(InputStream input) throws IOException {
+        Sha256Context context = borrowContext();
+        try {
+            byte[] buffer = context.buffer.array();
+            int read;
+            while ((read = input.read(buffer)) != -1)
+                context.digest.update(buffer, 0, read);
+
+            return context.digest.digest();
+
+        } finally {
+            // case: read failed, don't hand out a half updated digest
+            context.digest.reset();
+            CONTEXT_POOL.offer(context);
+        }
+    }
+
+    /**
+     * @param bytes to encode
+     * @return lower case hex, 2 chars per byte
+     */
+    public static String toHex(byte[] bytes) {
+        return HEX_FORMAT.formatHex(bytes);
+    }
+
+    /**
+     * Write lower case hex ascii into a caller supplied buffer, allocation free.
+     *
+     * @param source bytes to encode
+     * @param sourceOffset first byte to encode
+     * @param length number of bytes to encode
+     * @param target needs {@code 2 * length} bytes from {@code targetOffset}
+     * @param targetOffset first index of {@code target} to write to
+     * @return the index after the last char written
+     */
+    public static int toHex(byte[] source, int sourceOffset, int length, byte[] target, int targetOffset) {
+        int targetIndex = targetOffset;
+        for (int i = sourceOffset; i < sourceOffset + length; i++) {
+            target[targetIndex++] = HEX_DIGITS[(source[i] >> 4) & 0xf];
+            target[targetIndex++] = HEX_DIGITS[source[i] & 0xf];
+        }
+
+        return targetIndex;
+    }
+
+    /**
+     * @param hex 2 chars per byte, case insensitive
+     * @return the decoded bytes
+     * @throws IllegalArgumentException if {@code hex} is no valid hex
+     */
+    public static byte[] fromHex(String hex) throws IllegalArgumentException {
+        return HEX_FORMAT.parseHex(hex);
+    }
+
+
+    private static int sha256(Sha256Context context, String input, byte[] target, int offset) throws IllegalArgumentException {
+        if (input == null)
+            throw new IllegalArgumentException("'input' cannot be null");
+
+        if (target == null || offset < 0 || target.length - offset < SHA_256_LENGTH)
+            throw new IllegalArgumentException("'target' needs %d bytes from offset".formatted(SHA_256_LENGTH));
+
+        CharsetEncoder encoder = context.encoder.reset();
+        ByteBuffer buffer = context.buffer;
+        CharBuffer chars = CharBuffer.wrap(input);
+
+        // encode into the pooled buffer chunk by chunk, flushing whenever it's full
+        CoderResult result;
+        do {
+            result = encoder.encode(chars, buffer, true);
+            buffer.flip();
+            context.digest.update(buffer);
+            buffer.clear();
+        } while (result.isOverflow());
+
+        encoder.flush(buffer);
+        buffer.flip();
+        context.digest.update(buffer);
+        buffer.clear();
+
+        try {
+            return offset + context.digest.digest(target, offset, SHA_256_LENGTH);
+
+        // should not happen, length was checked
+        } catch (DigestException e) {
+            context.digest.reset();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Sha256Context borrowContext() {
+        Sha256Context context = CONTEXT_POOL.poll();
+
+        return context == null ? new Sha256Context() : context;
+    }
+
+
+    /**
+     * One instance is only used by one thread at a time.
+     */
+    private static class Sha256Context {
+
+        private final MessageDigest digest;
+
+        /** Same replacement as {@code String.getBytes(UTF_8)} */
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+        private final byte[] hash = new byte[SHA_256_LENGTH];
+
+
+        private Sha256Context() {
+            try {
+                this.digest = MessageDigest.getInstance("SHA-256");
+
+            // should not happen
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,498 @@
+package com.example.backend.helpers;
+
+import static com.example.backend.helpers.Utils.SEARCH_ADJACENT_MATCH_RATING_POINTS;
+import static com.example.backend.helpers.Utils.SEARCH_APPROXIMATE_RATING_POINTS;
+import static com.example.backend.helpers.Utils.SEARCH_EXACT_MATCH_RATING_POINTS;
+import static com.example.backend.helpers.Utils.SEARCH_WORD_MIN_LENGTH_FOR_CONTAINS;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.IntPredicate;
+
+
+/**
+ * Append only full text index of documents with one or more text fields, backed by primitive posting lists. <p>
+ *
+ * Text is split into lower case words at every char that is no letter or digit. Each query word rates a document with
+ * {@link Utils#SEARCH_EXACT_MATCH_RATING_POINTS} if the document has that word, else with {@link Utils#SEARCH_APPROXIMATE_RATING_POINTS}
+ * if one of the document's words starts with it (or contains it, for query words of at least
+ * {@link Utils#SEARCH_WORD_MIN_LENGTH_FOR_CONTAINS} chars). Two consecutive query words that are consecutive in the document add
+ * {@link Utils#SEARCH_ADJACENT_MATCH_RATING_POINTS}. <p>
+ *
+ * Words starting with a query word are found in a sorted dictionary, words containing it through a trigram index over the dictionary,
+ * so a query never scans all documents or all words. <p>
+ *
+ * Not thread safe for writes. Concurrent {@link #search} calls are fine as long as no document is added meanwhile (e.g. guarded by a
+ * read write lock).
+ *
+ * @since latest
+ */
+public class InvertedIndex {
+
+    /** Longer words are truncated */
+    public static final int MAX_WORD_LENGTH = 64;
+
+    /** Further words of a document are not indexed */
+    public static final int MAX_WORDS_PER_DOCUMENT = 4096;
+
+    /** Further query words are ignored */
+    public static final int MAX_QUERY_WORDS = 16;
+
+    /** Words approximately matching one query word, further ones are ignored (e.g. for a query word of one char) */
+    public static final int MAX_APPROXIMATE_WORDS = 1024;
+
+    /** Exact and approximate match points need to fit the 2 low bits of a search mark, see {@link SearchContext#marks} */
+    public static final int MAX_MATCH_RATING_POINTS = 3;
+
+    /** Position gap between the fields of a document, so adjacent matches never span two fields */
+    private static final int FIELD_POSITION_GAP = 2;
+
+    private static final int TRIGRAM_LENGTH = 3;
+
+    /** Word -> word id */
+    private final Map<String, Integer> wordIds = new HashMap<>();
+
+    /** Same as {@link #wordIds}, for prefix lookups */
+    private final TreeMap<String, Integer> sortedWords = new TreeMap<>();
+
+    private final List<String> words = new ArrayList<>();
+
+    /** Per word id: pairs of document id and position, ordered by document id */
+    private final List<IntList> postings = new ArrayList<>();
+
+    /** Trigram -> ids of the words containing it, ascending */
+    private final Map<Long, IntList> trigramWordIds = new HashMap<>();
+
+    private int documentCount = 0;
+
+    /** Rating arrays of previous searches, indexed by document id */
+    private final ObjectPool<SearchContext> searchContextPool = new ObjectPool<>();
+
+
+    /**
+     * @param fields text of the document, {@code null} fields are skipped
+     * @return the new document's id, ascending from 0
+     */
+    public int add(CharSequence... fields) {
+        int documentId = this.documentCount++;
+        int position = 0;
+
+        for (CharSequence field : fields) {
+            if (field == null)
+                continue;
+
+            for (String word : tokenize(field, MAX_WORDS_PER_DOCUMENT - position)) {
+                IntList wordPostings = this.postings.get(getOrAddWordId(word));
+                wordPostings.add(documentId);
+                wordPostings.add(position++);
+            }
+
+            position += FIELD_POSITION_GAP;
+        }
+
+        return documentId;
+    }
+
+    /**
+     * @param query words to search for
+     * @param filter documents that may be returned, applied before paging. {@code null} for all
+     * @param offset number of best rated documents to skip
+     * @param limit max number of documents to return
+     * @return matching documents ordered by rating, then by id descending (newer first)
+     * @throws IllegalArgumentException if {@code offset} or {@code limit} is negative
+     */
+    public Hits search(String query, IntPredicate filter, int offset, int limit) throws IllegalArgumentException {
+        if (offset < 0 || limit < 0)
+            throw new IllegalArgumentException("'offset' and 'limit' cannot be negative");
+
+        List<String> queryWords = query == null ? List.of() : tokenize(query, MAX_QUERY_WORDS);
+        if (queryWords.isEmpty() || this.documentCount == 0)
+            return new Hits(0, new int[0], new int[0]);
+
+        SearchContext context = borrowSearchContext();
+        try {
+            return search(context, queryWords, filter, offset, limit);
+
+        } finally {
+            context.reset();
+            this.searchContextPool.offer(context);
+        }
+    }
+
+    public int getDocumentCount() {
+        return this.documentCount;
+    }
+
+    public int getWordCount() {
+        return this.words.size();
+    }
+
+    /**
+     * @param text to split
+     * @param maxWords max number of words to return
+     * @return lower case words of {@code text}, in order, duplicates included
+     */
+    public static List<String> tokenize(CharSequence text, int maxWords) {
+        List<String> words = new ArrayList<>();
+        StringBuilder word = new StringBuilder(MAX_WORD_LENGTH);
+
+        for (int i = 0; i < text.length() && words.size() < maxWords; ) {
+            int codePoint = Character.codePointAt(text, i);
+            i += Character.charCount(codePoint);
+
+            if (Character.isLetterOrDigit(codePoint)) {
+                if (word.length() < MAX_WORD_LENGTH)
+                    word.appendCodePoint(codePoint);
+
+            } else if (!word.isEmpty()) {
+                words.add(word.toString().toLowerCase(Locale.ROOT));
+                word.setLength(0);
+            }
+        }
+
+        if (!word.isEmpty() && words.size() < maxWords)
+            words.add(word.toString().toLowerCase(Locale.ROOT));
+
+        return words;
+    }
+
+
+    private Hits search(SearchContext context, List<String> queryWords, IntPredicate filter, int offset, int limit) {
+        // rate words
+        int[][] matchingWordIds = new int[queryWords.size()][];
+        for (int i = 0; i < queryWords.size(); i++) {
+            String queryWord = queryWords.get(i);
+            Integer exactWordId = this.wordIds.get(queryWord);
+            int[] approximateWordIds = findApproximateWordIds(queryWord);
+
+            if (exactWordId != null)
+                rate(context, i, exactWordId, SEARCH_EXACT_MATCH_RATING_POINTS);
+            for (int approximateWordId : approximateWordIds)
+                rate(context, i, approximateWordId, SEARCH_APPROXIMATE_RATING_POINTS);
+
+            matchingWordIds[i] = exactWordId == null ? approximateWordIds : append(approximateWordIds, exactWordId);
+        }
+
+        // rate adjacent words
+        long[] nextPositions = queryWords.size() > 1 ? collectPositions(matchingWordIds[0]) : null;
+        for (int i = 0; i < queryWords.size() - 1; i++) {
+            long[] positions = nextPositions;
+            nextPositions = collectPositions(matchingWordIds[i + 1]);
+
+            // iterate the shorter list, binary search the longer one
+            boolean isForward = positions.length <= nextPositions.length;
+            long[] iterated = isForward ? positions : nextPositions;
+            long[] searched = isForward ? nextPositions : positions;
+            int distance = isForward ? 1 : -1;
+
+            int mark = (queryWords.size() + i + 1) << 2;
+            for (long position : iterated) {
+                int documentId = (int) (position >>> 32);
+                if (context.marks[documentId] != mark && Arrays.binarySearch(searched, position + distance) >= 0) {
+                    context.marks[documentId] = mark;
+                    context.ratings[documentId] += SEARCH_ADJACENT_MATCH_RATING_POINTS;
+                }
+            }
+        }
+
+        // best offset + limit, (rating, id) packed so the heap compares longs
+        int pageEnd = (int) Math.min((long) offset + limit, Integer.MAX_VALUE);
+        LongMinHeap best = new LongMinHeap(Math.min(pageEnd, context.touchedDocumentIds.size));
+        int total = 0;
+
+        // newest first, mostly ascending ids were touched, so most offers of equally rated documents are rejected without sifting
+        for (int i = context.touchedDocumentIds.size - 1; i >= 0; i--) {
+            int documentId = context.touchedDocumentIds.values[i];
+            if (filter != null && !filter.test(documentId))
+                continue;
+
+            total++;
+            if (pageEnd > 0)
+                best.offer(((long) context.ratings[documentId] << 32) | documentId);
+        }
+
+        long[] sorted = best.toSortedArray();
+        int hitCount = Math.max(0, sorted.length - offset);
+        int[] documentIds = new int[hitCount];
+        int[] ratings = new int[hitCount];
+        for (int i = 0; i < hitCount; i++) {
+            long packed = sorted[sorted.length - 1 - offset - i];
+            documentIds[i] = (int) packed;
+            ratings[i] = (int) (packed >>> 32);
+        }
+
+        return new Hits(total, documentIds, ratings);
+    }
+
+    /**
+     * Add {@code points} to every document containing {@code wordId}, unless the document was rated higher for the same query word.
+     */
+    private void rate(SearchContext context, int queryWordIndex, int wordId, int points) {
+        IntList wordPostings = this.postings.get(wordId);
+        int mark = (queryWordIndex + 1) << 2;
+        int previousDocumentId = -1;
+
+        for (int i = 0; i < wordPostings.size; i += 2) {
+            int documentId = wordPostings.values[i];
+            if (documentId == previousDocumentId)
+                continue;
+            previousDocumentId = documentId;
+
+            int previousMark = context.marks[documentId];
+            if (previousMark == 0)
+                context.touchedDocumentIds.add(documentId);
+
+            // case: first match of this query word
+            if ((previousMark & ~3) != mark) {
+                context.marks[documentId] = mark | points;
+                context.ratings[documentId] += points;
+
+            // case: better match of this query word
+            } else if ((previousMark & 3) < points) {
+                context.marks[documentId] = mark | points;
+                context.ratings[documentId] += points - (previousMark & 3);
+            }
+        }
+    }
+
+    /**
+     * @return ids of words starting with (or containing) {@code queryWord}, excluding {@code queryWord} itself
+     */
+    private int[] findApproximateWordIds(String queryWord) {
+        IntList wordIds = new IntList();
+
+        if (queryWord.length() < SEARCH_WORD_MIN_LENGTH_FOR_CONTAINS || queryWord.length() < TRIGRAM_LENGTH) {
+            for (int wordId : this.sortedWords.subMap(queryWord, false, queryWord + Character.MAX_VALUE, false).values()) {
+                wordIds.add(wordId);
+                if (wordIds.size == MAX_APPROXIMATE_WORDS)
+                    break;
+            }
+
+            return wordIds.toArray();
+        }
+
+        // intersect the words of all trigrams, starting with the rarest
+        List<IntList> candidateLists = new ArrayList<>();
+        for (int i = 0; i <= queryWord.length() - TRIGRAM_LENGTH; i++) {
+            IntList trigramWords = this.trigramWordIds.get(trigram(queryWord, i));
+            if (trigramWords == null)
+                return new int[0];
+
+            candidateLists.add(trigramWords);
+        }
+        candidateLists.sort((list, otherList) -> Integer.compare(list.size, otherList.size));
+
+        IntList candidates = candidateLists.get(0);
+        for (int i = 0; i < candidates.size && wordIds.size < MAX_APPROXIMATE_WORDS; i++) {
+            int wordId = candidates.values[i];
+            String word = this.words.get(wordId);
+
+            if (word.length() > queryWord.length() && word.contains(queryWord))
+                wordIds.add(wordId);
+        }
+
+        return wordIds.toArray();
+    }
+
+    /**
+     * @return (document id, position) pairs of all words packed as {@code documentId << 32 | position}, ascending
+     */
+    private long[] collectPositions(int[] wordIds) {
+        int count = 0;
+        for (int wordId : wordIds)
+            count += this.postings.get(wordId).size / 2;
+
+        long[] positions = new long[count];
+        int index = 0;
+        for (int wordId : wordIds) {
+            IntList wordPostings = this.postings.get(wordId);
+            for (int i = 0; i < wordPostings.size; i += 2)
+                positions[index++] = ((long) wordPostings.values[i] << 32) | wordPostings.values[i + 1];
+        }
+
+        // a single word's postings are sorted already
+        if (wordIds.length > 1)
+            Arrays.sort(positions);
+
+        return positions;
+    }
+
+    private int getOrAddWordId(String word) {
+        Integer wordId = this.wordIds.get(word);
+        if (wordId != null)
+            return wordId;
+
+        wordId = this.words.size();
+        this.wordIds.put(word, wordId);
+        this.sortedWords.put(word, wordId);
+        this.words.add(word);
+        this.postings.add(new IntList());
+
+        for (int i = 0; i <= word.length() - TRIGRAM_LENGTH; i++) {
+            IntList trigramWords = this.trigramWordIds.computeIfAbsent(trigram(word, i), trigram -> new IntList());
+
+            // case: trigram appears twice in the word
+            if (trigramWords.size == 0 || trigramWords.values[trigramWords.size - 1] != wordId)
+                trigramWords.add(wordId);
+        }
+
+        return wordId;
+    }
+
+    private SearchContext borrowSearchContext() {
+        SearchContext context = this.searchContextPool.poll();
+
+        // case: documents were added since the context was created
+        if (context == null || context.ratings.length < this.documentCount)
+            context = new SearchContext(this.documentCount + this.documentCount / 4);
+
+        return context;
+    }
+
+    private static long trigram(String word, int index) {
+        return ((long) word.charAt(index) << 32) | ((long) word.charAt(index + 1) << 16) | word.charAt(index + 2);
+    }
+
+    private static int[] append(int[] array, int value) {
+        int[] result = Arrays.copyOf(array, array.length + 1);
+        result[array.length] = value;
+
+        return result;
+    }
+
+
+    /**
+     * @param total number of matching documents accepted by the filter
+     * @param documentIds of the requested page, best rated first
+     * @param ratings same order as {@code documentIds}
+     */
+    public record Hits(int total, int[] documentIds, int[] ratings) {}
+
+
+    /**
+     * Per search state, indexed by document id. Only the touched entries are reset, so pooling it avoids clearing the whole arrays.
+     */
+    private static class SearchContext {
+
+        private final int[] ratings;
+
+        /** {@code (query word index + 1) << 2 | best points of that query word}, or the adjacent pair index */
+        private final int[] marks;
+
+        private final IntList touchedDocumentIds = new IntList();
+
+
+        private SearchContext(int capacity) {
+            this.ratings = new int[capacity];
+            this.marks = new int[capacity];
+        }
+
+
+        private void reset() {
+            for (int i = 0; i < this.touchedDocumentIds.size; i++) {
+                int documentId = this.touchedDocumentIds.values[i];
+                this.ratings[documentId] = 0;
+                this.marks[documentId] = 0;
+            }
+
+            this.touchedDocumentIds.size = 0;
+        }
+    }
+
+
+    /**
+     * Growable int array.
+     */
+    private static class IntList {
+
+        private int[] values = new int[4];
+
+        private int size = 0;
+
+
+        private void add(int value) {
+            if (this.size == this.values.length)
+                this.values = Arrays.copyOf(this.values, this.values.length * 2);
+
+            this.values[this.size++] = value;
+        }
+
+        private int[] toArray() {
+            return Arrays.copyOf(this.values, this.size);
+        }
+    }
+
+
+    /**
+     * Keeps the {@code capacity} largest values offered.
+     */
+    private static class LongMinHeap {
+
+        private final long[] values;
+
+        private int size = 0;
+
+
+        private LongMinHeap(int capacity) {
+            this.values = new long[capacity];
+        }
+
+
+        private void offer(long value) {
+            if (this.values.length == 0)
+                return;
+
+            if (this.size < this.values.length) {
+                int index = this.size++;
+                this.values[index] = value;
+
+                // sift up
+                while (index > 0 && this.values[(index - 1) / 2] > this.values[index]) {
+                    swap(index, (index - 1) / 2);
+                    index = (index - 1) / 2;
+                }
+
+            } else if (value > this.values[0]) {
+                this.values[0] = value;
+
+                // sift down
+                int index = 0;
+                while (true) {
+                    int smallest = index;
+                    int left = 2 * index + 1;
+                    int right = left + 1;
+                    if (left < this.size && this.values[left] < this.values[smallest])
+                        smallest = left;
+                    if (right < this.size && this.values[right] < this.values[smallest])
+                        smallest = right;
+                    if (smallest == index)
+                        break;
+
+                    swap(index, smallest);
+                    index = smallest;
+                }
+            }
+        }
+
+        /**
+         * @return the kept values, ascending
+         */
+        private long[] toSortedArray() {
+            long[] sorted = Arrays.copyOf(this.values, this.size);
+            Arrays.sort(sorted);
+
+            return sorted;
+        }
+
+        private void swap(int index, int otherIndex) {
+            long value = this.values[index];
+            this.values[index] = this.values[otherIndex];
+            this.values[otherIndex] = value;
+        }
+    }
+}
@@ -0,0 +1,383 @@
+package com.example.backend.helpers;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.Getter;
+
+
+/**
+ * RS256 jwt encoder with the header and the static claims encoded once. Per token only the dynamic claims are written to a reused
+ * buffer, base64url encoded into a second reused buffer, and signed over that single byte array. <p>
+ * 
+ * Payload layout: {@code {"sub":..,"iat":..,"exp":..,"jti":..,<static claims>,<dynamic claims>}}. Output is byte identical to
+ * serializing the claims in that order with a plain jackson {@link ObjectMapper} (strings are escaped the same way, including
+ * supplementary chars as surrogate pairs).
+ * 
+ * @since latest
+ */
+public class JwtTemplate {
+
+    public static final String ALGORITHM = "RS256";
+
+    private static final byte[] BASE64URL_ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] HEX_DIGITS = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] SUB_KEY = "{\"sub\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] IAT_KEY = ",\"iat\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] EXP_KEY = ",\"exp\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] JTI_KEY = ",\"jti\":".getBytes(StandardCharsets.US_ASCII);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final PrivateKey privateKey;
+
+    /** {@code alg}, {@code kid} and {@code typ} */
+    @Getter
+    private final Map<String, Object> headers;
+
+    /** Base64url header followed by "." */
+    private final byte[] encodedHeaderPrefix;
+
+    /** Static claims as json members, each prefixed with "," */
+    private final byte[] staticClaimsJson;
+
+    /** Buffers and {@link Signature} of idle encoders */
+    private final ObjectPool<Buffers> bufferPool = new ObjectPool<>();
+
+
+    /**
+     * @param privateKey rsa key to sign with
+     * @param keyId "kid" header
+     * @param staticClaims claims that are the same for every token, in order. Values may be anything jackson can serialize
+     * @throws IllegalArgumentException if {@code staticClaims} cannot be serialized
+     */
+    public JwtTemplate(PrivateKey privateKey, String keyId, Map<String, Object> staticClaims) throws IllegalArgumentException {
+        this.privateKey = privateKey;
+
+        Map<String, Object> headers = new LinkedHashMap<>();
+        headers.put("alg", ALGORITHM);
+        headers.put("kid", keyId);
+        headers.put("typ", "JWT");
+        this.headers = Collections.unmodifiableMap(headers);
+
+        try {
+            byte[] headerJson = this.objectMapper.writeValueAsBytes(this.headers);
+            byte[] encodedHeader = new byte[base64UrlLength(headerJson.length) + 1];
+            int headerLength = encodeBase64Url(headerJson, headerJson.length, encodedHeader, 0);
+            encodedHeader[headerLength] = '.';
+            this.encodedHeaderPrefix = encodedHeader;
+
+            JsonBuffer staticClaimsBuffer = new JsonBuffer(256);
+            for (Map.Entry<String, Object> staticClaim : staticClaims.entrySet()) {
+                staticClaimsBuffer.writeByte(',');
+                staticClaimsBuffer.writeString(staticClaim.getKey());
+                staticClaimsBuffer.writeByte(':');
+                staticClaimsBuffer.writeRaw(this.objectMapper.writeValueAsBytes(staticClaim.getValue()));
+            }
+            this.staticClaimsJson = Arrays.copyOf(staticClaimsBuffer.bytes, staticClaimsBuffer.length);
+
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Failed to encode static claims: " + e.getMessage());
+        }
+    }
+
+
+    /**
+     * @param subject "sub" claim
+     * @param issuedAt "iat" claim, in epoch seconds
+     * @param expiresAt "exp" claim, in epoch seconds
+     * @param jti "jti" claim
+     * @param dynamicClaims appended after the static claims, in iteration order. Must not contain any of the other claims
+     * @return the signed compact jws
+     * @throws IllegalArgumentException if a dynamic claim cannot be serialized
+     * @throws IllegalStateException if signing fails (e.g. invalid key)
+     */
+    public String encode(String subject, long issuedAt, long expiresAt, String jti, Map<String, Object> dynamicClaims) throws IllegalArgumentException, IllegalStateException {
+        Buffers buffers = this.bufferPool.poll();
+        if (buffers == null)
+            buffers = new Buffers();
+
+        try {
+            JsonBuffer payload = buffers.payload;
+            payload.length = 0;
+            payload.writeRaw(SUB_KEY);
+            payload.writeString(subject);
+            payload.writeRaw(IAT_KEY);
+            payload.writeLong(issuedAt);
+            payload.writeRaw(EXP_KEY);
+            payload.writeLong(expiresAt);
+            payload.writeRaw(JTI_KEY);
+            payload.writeString(jti);
+            payload.writeRaw(this.staticClaimsJson);
+            for (Map.Entry<String, Object> dynamicClaim : dynamicClaims.entrySet()) {
+                payload.writeByte(',');
+                payload.writeString(dynamicClaim.getKey());
+                payload.writeByte(':');
+                writeValue(payload, dynamicClaim.getValue());
+            }
+            payload.writeByte('}');
+
+            // header.payload.signature, signature is at most as long as the modulus (512 bytes for rsa 4096)
+            byte[] token = buffers.ensureTokenCapacity(this.encodedHeaderPrefix.length + base64UrlLength(payload.length) + 1 + base64UrlLength(512));
+            System.arraycopy(this.encodedHeaderPrefix, 0, token, 0, this.encodedHeaderPrefix.length);
+            int tokenLength = encodeBase64Url(payload.bytes, payload.length, token, this.encodedHeaderPrefix.length);
+
+            Signature signature = buffers.getSignature(this.privateKey);
+            signature.update(token, 0, tokenLength);
+            byte[] signatureBytes = signature.sign();
+
+            token[tokenLength++] = '.';
+            tokenLength = encodeBase64Url(signatureBytes, signatureBytes.length, token, tokenLength);
+
+            return new String(token, 0, tokenLength, StandardCharsets.US_ASCII);
+
+        } catch (GeneralSecurityException e) {
+            // signature state is undefined now
+            buffers = null;
+            throw new IllegalStateException("Failed to sign jwt: " + e.getMessage());
+
+        } finally {
+            if (buffers != null)
+                this.bufferPool.offer(buffers);
+        }
+    }
+
+
+    private void writeValue(JsonBuffer payload, Object value) throws IllegalArgumentException {
+        if (value instanceof String string)
+            payload.writeString(string);
+
+        else if (value instanceof Long || value instanceof Integer)
+            payload.writeLong(((Number) value).longValue());
+
+        else
+            try {
+                payload.writeRaw(this.objectMapper.writeValueAsBytes(value));
+
+            } catch (JsonProcessingException e) {
+                throw new IllegalArgumentException("Failed to encode claim: " + e.getMessage());
+            }
+    }
+
+
+    /**
+     * @return number of base64url chars (without padding) for {@code length} bytes
+     */
+    private static int base64UrlLength(int length) {
+        return (length / 3) * 4 + (length % 3 == 0 ? 0 : length % 3 + 1);
+    }
+
+
+    /**
+     * @param source bytes to encode
+     * @param length of {@code source} to encode, starting at 0
+     * @param target needs to be large enough
+     * @param targetOffset first index to write to
+     * @return the index after the last char written
+     */
+    static int encodeBase64Url(byte[] source, int length, byte[] target, int targetOffset) {
+        int sourceIndex = 0;
+        int targetIndex = targetOffset;
+        int fullGroupsEnd = length - length % 3;
+
+        while (sourceIndex < fullGroupsEnd) {
+            int bits = (source[sourceIndex++] & 0xff) << 16 | (source[sourceIndex++] & 0xff) << 8 | (source[sourceIndex++] & 0xff);
+            target[targetIndex++] = BASE64URL_ALPHABET[(bits >>> 18) & 0x3f];
+            target[targetIndex++] = BASE64URL_ALPHABET[(bits >>> 12) & 0x3f];
+            target[targetIndex++] = BASE64URL_ALPHABET[(bits >>> 6) & 0x3f];
+            target[targetIndex++] = BASE64URL_ALPHABET[bits & 0x3f];
+        }
+
+        int remaining = length - fullGroupsEnd;
+        if (remaining > 0) {
+            int bits = (source[sourceIndex] & 0xff) << 16 | (remaining == 2 ? (source[sourceIndex + 1] & 0xff) << 8 : 0);
+            target[targetIndex++] = BASE64URL_ALPHABET[(bits >>> 18) & 0x3f];
+            target[targetIndex++] = BASE64URL_ALPHABET[(bits >>> 12) & 0x3f];
+            if (remaining == 2)
+                target[targetIndex++] = BASE64URL_ALPHABET[(bits >>> 6) & 0x3f];
+        }
+
+        return targetIndex;
+    }
+
+
+    /**
+     * Reused per token, one instance is only used by one thread at a time.
+     */
+    private static class Buffers {
+
+        private final JsonBuffer payload = new JsonBuffer(512);
+
+        private byte[] token = new byte[1024];
+
+        private Signature signature;
+
+
+        private byte[] ensureTokenCapacity(int capacity) {
+            if (this.token.length < capacity)
+                this.token = new byte[Math.max(capacity, this.token.length * 2)];
+
+            return this.token;
+        }
+
+
+        private Signature getSignature(PrivateKey privateKey) throws GeneralSecurityException {
+            if (this.signature == null) {
+                this.signature = Signature.getInstance("SHA256withRSA");
+                this.signature.initSign(privateKey);
+            }
+
+            return this.signature;
+        }
+    }
+
+
+    /**
+     * Growable utf-8 json writer. Escapes strings like jackson does by default.
+     */
+    private static class JsonBuffer {
+
+        private byte[] bytes;
+
+        private int length;
+
+
+        private JsonBuffer(int initialCapacity) {
+            this.bytes = new byte[initialCapacity];
+        }
+
+
+        private void writeByte(char asciiChar) {
+            ensureCapacity(1);
+            this.bytes[this.length++] = (byte) asciiChar;
+        }
+
+
+        private void writeRaw(byte[] raw) {
+            ensureCapacity(raw.length);
+            System.arraycopy(raw, 0, this.bytes, this.length, raw.length);
+            this.length += raw.length;
+        }
+
+
+        private void writeLong(long value) {
+            // max 20 chars incl. sign
+            ensureCapacity(20);
+
+            if (value == Long.MIN_VALUE) {
+                writeRaw(Long.toString(value).getBytes(StandardCharsets.US_ASCII));
+                return;
+            }
+
+            if (value < 0) {
+                this.bytes[this.length++] = '-';
+                value = -value;
+            }
+
+            int digitCount = 1;
+            for (long remaining = value / 10; remaining > 0; remaining /= 10)
+                digitCount++;
+
+            for (int i = this.length + digitCount - 1; i >= this.length; i--) {
+                this.bytes[i] = (byte) ('0' + value % 10);
+                value /= 10;
+            }
+            this.length += digitCount;
+        }
+
+
+        private void writeString(String value) {
+            // worst case: every char escaped with 6 chars
+            ensureCapacity(value.length() * 6 + 2);
+            byte[] bytes = this.bytes;
+            int index = this.length;
+
+            bytes[index++] = '"';
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+
+                if (c < 0x80) {
+                    if (c == '"' || c == '\\') {
+                        bytes[index++] = '\\';
+                        bytes[index++] = (byte) c;
+
+                    } else if (c < 0x20)
+                        index = writeControlChar(bytes, index, c);
+
+                    else
+                        bytes[index++] = (byte) c;
+
+                } else if (c < 0x800) {
+                    bytes[index++] = (byte) (0xc0 | c >> 6);
+                    bytes[index++] = (byte) (0x80 | c & 0x3f);
+
+                // case: supplementary char, escaped as surrogate pair like jackson does by default
+                } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    index = writeUnicodeEscape(bytes, index, c);
+                    index = writeUnicodeEscape(bytes, index, value.charAt(++i));
+
+                // case: lone surrogate, not valid unicode
+                } else if (Character.isSurrogate(c))
+                    throw new IllegalArgumentException("Invalid surrogate in claim value");
+
+                else {
+                    bytes[index++] = (byte) (0xe0 | c >> 12);
+                    bytes[index++] = (byte) (0x80 | c >> 6 & 0x3f);
+                    bytes[index++] = (byte) (0x80 | c & 0x3f);
+                }
+            }
+            bytes[index++] = '"';
+
+            this.length = index;
+        }
+
+
+        private static int writeControlChar(byte[] bytes, int index, char c) {
+            char shortEscape = switch (c) {
+                case '\b' -> 'b';
+                case '\t' -> 't';
+                case '\n' -> 'n';
+                case '\f' -> 'f';
+                case '\r' -> 'r';
+                default -> 0;
+            };
+
+            if (shortEscape == 0)
+                return writeUnicodeEscape(bytes, index, c);
+
+            bytes[index++] = '\\';
+            bytes[index++] = (byte) shortEscape;
+
+            return index;
+        }
+
+
+        private static int writeUnicodeEscape(byte[] bytes, int index, char c) {
+            bytes[index++] = '\\';
+            bytes[index++] = 'u';
+            bytes[index++] = HEX_DIGITS[c >> 12];
+            bytes[index++] = HEX_DIGITS[c >> 8 & 0xf];
+            bytes[index++] = HEX_DIGITS[c >> 4 & 0xf];
+            bytes[index++] = HEX_DIGITS[c & 0xf];
+
+            return index;
+        }
+
+
+        private void ensureCapacity(int additionalBytes) {
+            if (this.length + additionalBytes > this.bytes.length)
+                this.bytes = Arrays.copyOf(this.bytes, Math.max(this.length + additionalBytes, this.bytes.length * 2));
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.backend.helpers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Html template with {@code ${name}} placeholders, parsed once into its static parts and placeholder names. Rendering only appends
+ * the parts and the html escaped values into one presized builder.
+ *
+ * @since latest
+ */
+public class MailTemplate {
+
+    private static final String PLACEHOLDER_START = "${";
+    private static final String PLACEHOLDER_END = "}";
+
+    /** One more than {@code variableNames}, the static text before, between and after the placeholders */
+    private final String[] parts;
+
+    private final String[] variableNames;
+
+    private final int partsLength;
+
+
+    private MailTemplate(List<String> parts, List<String> variableNames) {
+        this.parts = parts.toArray(String[]::new);
+        this.variableNames = variableNames.toArray(String[]::new);
+        this.partsLength = parts.stream().mapToInt(String::length).sum();
+    }
+
+
+    /**
+     * @param template html with {@code ${name}} placeholders. A placeholder may appear more than once
+     * @return parsed template
+     * @throws IllegalArgumentException if {@code template} is {@code null} or a placeholder is not closed or empty
+     */
+    public static MailTemplate parse(String template) throws IllegalArgumentException {
+        if (template == null)
+            throw new IllegalArgumentException("'template' cannot be null");
+
+        List<String> parts = new ArrayList<>();
+        List<String> variableNames = new ArrayList<>();
+
+        int partStart = 0;
+        int placeholderStart;
+        while ((placeholderStart = template.indexOf(PLACEHOLDER_START, partStart)) != -1) {
+            int placeholderEnd = template.indexOf(PLACEHOLDER_END, placeholderStart);
+            if (placeholderEnd == -1)
+                throw new IllegalArgumentException("Placeholder at index %d is not closed".formatted(placeholderStart));
+
+            String variableName = template.substring(placeholderStart + PLACEHOLDER_START.length(), placeholderEnd).strip();
+            if (variableName.isEmpty())
+                throw new IllegalArgumentException("Placeholder at index %d is empty".formatted(placeholderStart));
+
+            parts.add(template.substring(partStart, placeholderStart));
+            variableNames.add(variableName);
+            partStart = placeholderEnd + PLACEHOLDER_END.length();
+        }
+        parts.add(template.substring(partStart));
+
+        return new MailTemplate(parts, variableNames);
+    }
+
+
+    /**
+     * @param variables values to replace the placeholders with, html escaped
+     * @return rendered html
+     * @throws IllegalArgumentException if a variable of the template is missing
+     */
+    public String render(Map<String, String> variables) throws IllegalArgumentException {
+        if (variables == null)
+            throw new IllegalArgumentException("'variables' cannot be null");
+
+        int length = this.partsLength;
+        for (String variableName : this.variableNames) {
+            String value = variables.get(variableName);
+            if (value == null)
+                throw new IllegalArgumentException("Missing variable '%s'".formatted(variableName));
+
+            length += value.length();
+        }
+
+        // some room for escaping
+        StringBuilder html = new StringBuilder(length + 16);
+        for (int i = 0; i < this.variableNames.length; i++) {
+            html.append(this.parts[i]);
+            appendEscaped(html, variables.get(this.variableNames[i]));
+        }
+        html.append(this.parts[this.parts.length - 1]);
+
+        return html.toString();
+    }
+
+
+    /**
+     * @return names of all placeholders, in order of appearance (never {@code null})
+     */
+    public List<String> getVariableNames() {
+        return List.of(this.variableNames);
+    }
+
+
+    private static void appendEscaped(StringBuilder html, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '&' -> html.append("&amp;");
+                case '<' -> html.append("&lt;");
+                case '>' -> html.append("&gt;");
+                case '"' -> html.append("&quot;");
+                case '\'' -> html.append("&#39;");
+                default -> html.append(c);
+            }
+        }
+    }
+}
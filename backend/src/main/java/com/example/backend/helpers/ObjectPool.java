@@ -0,0 +1,87 @@
+package com.example.backend.helpers;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jspecify.annotations.Nullable;
+
+
+/**
+ * Lock free pool of instances that are costly to create but not thread safe, e.g. {@code Cipher}s or scratch buffers. Callers
+ * {@link #poll()} one (creating it if the pool is empty) and {@link #offer(Object)} it back when done. <p>
+ *
+ * Used instead of {@code ThreadLocal}, which keeps one instance per thread for as long as the thread lives (up to 200 idle ones with
+ * the default tomcat pool) and never reuses anything on the thread per task executors of the senders in e.g. {@code MailService}.
+ * A pool holds about as many instances as are used at the same time. <p>
+ *
+ * Offers beyond {@code maxIdle} are dropped, so a burst of callers does not pin its peak number of instances.
+ *
+ * @param <T> pooled type
+ * @since latest
+ */
+public class ObjectPool<T> {
+
+    /** About the number of callers that run at the same time, the pooled work is cpu bound */
+    public static final int DEFAULT_MAX_IDLE = 2 * Runtime.getRuntime().availableProcessors();
+
+    private final Queue<T> idleInstances = new ConcurrentLinkedQueue<>();
+
+    /** Size of {@link #idleInstances}, which is not constant time for a {@link ConcurrentLinkedQueue} */
+    private final AtomicInteger idleCount = new AtomicInteger();
+
+    private final int maxIdle;
+
+
+    public ObjectPool() {
+        this(DEFAULT_MAX_IDLE);
+    }
+
+    /**
+     * @param maxIdle max number of instances kept, 0 to keep none
+     * @throws IllegalArgumentException if {@code maxIdle} is negative
+     */
+    public ObjectPool(int maxIdle) throws IllegalArgumentException {
+        if (maxIdle < 0)
+            throw new IllegalArgumentException("'maxIdle' cannot be negative");
+
+        this.maxIdle = maxIdle;
+    }
+
+
+    /**
+     * @return an idle instance or {@code null} if there is none
+     */
+    @Nullable
+    public T poll() {
+        T instance = this.idleInstances.poll();
+        if (instance != null)
+            this.idleCount.decrementAndGet();
+
+        return instance;
+    }
+
+    /**
+     * @param instance to reuse, must not be used by the caller afterwards. {@code null} is ignored
+     * @return {@code false} if the pool is full and {@code instance} was dropped
+     */
+    public boolean offer(@Nullable T instance) {
+        if (instance == null)
+            return false;
+
+        if (this.idleCount.incrementAndGet() > this.maxIdle) {
+            this.idleCount.decrementAndGet();
+            return false;
+        }
+
+        this.idleInstances.offer(instance);
+        return true;
+    }
+
+    /**
+     * @return number of idle instances, may be stale
+     */
+    public int getIdleCount() {
+        return this.idleCount.get();
+    }
+}
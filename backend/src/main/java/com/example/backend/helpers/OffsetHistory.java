@@ -0,0 +1,109 @@
+package com.example.backend.helpers;
+
+
+/**
+ * Fixed size ring buffer of offset samples of one partition, backed by primitive arrays. Keeps the latest {@code capacity} samples
+ * of a consumer group's committed offset and the partition's end offset (high watermark). <p>
+ * 
+ * Thread safe. Written by one sampler thread, read by request threads.
+ * 
+ * @since latest
+ */
+public class OffsetHistory {
+
+    private final long[] timestamps;
+
+    private final long[] committedOffsets;
+
+    private final long[] endOffsets;
+
+    /** Index the next sample is written to */
+    private int nextIndex = 0;
+
+    private int size = 0;
+
+
+    /**
+     * @param capacity max number of samples, at least 2 for rates to be computable
+     * @throws IllegalArgumentException if {@code capacity} is less than 2
+     */
+    public OffsetHistory(int capacity) throws IllegalArgumentException {
+        if (capacity < 2)
+            throw new IllegalArgumentException("'capacity' needs to be at least 2");
+
+        this.timestamps = new long[capacity];
+        this.committedOffsets = new long[capacity];
+        this.endOffsets = new long[capacity];
+    }
+
+
+    /**
+     * Overwrites the oldest sample if full.
+     * 
+     * @param timestamp in ms
+     * @param committedOffset of the consumer group, -1 if the group has not committed for this partition yet
+     * @param endOffset the high watermark of the partition
+     */
+    public synchronized void add(long timestamp, long committedOffset, long endOffset) {
+        this.timestamps[this.nextIndex] = timestamp;
+        this.committedOffsets[this.nextIndex] = committedOffset;
+        this.endOffsets[this.nextIndex] = endOffset;
+
+        this.nextIndex = (this.nextIndex + 1) % this.timestamps.length;
+        this.size = Math.min(this.size + 1, this.timestamps.length);
+    }
+
+
+    /**
+     * @return a consistent view of the latest sample and the rates across all samples, or {@code null} if there are no samples yet
+     */
+    public synchronized Snapshot snapshot() {
+        if (this.size == 0)
+            return null;
+
+        int latestIndex = (this.nextIndex - 1 + this.timestamps.length) % this.timestamps.length;
+        int oldestIndex = (this.nextIndex - this.size + this.timestamps.length) % this.timestamps.length;
+
+        double seconds = (this.timestamps[latestIndex] - this.timestamps[oldestIndex]) / 1000.0;
+        double consumeRate = seconds <= 0 ? 0 : (Math.max(this.committedOffsets[latestIndex], 0) - Math.max(this.committedOffsets[oldestIndex], 0)) / seconds;
+        double produceRate = seconds <= 0 ? 0 : (this.endOffsets[latestIndex] - this.endOffsets[oldestIndex]) / seconds;
+
+        return new Snapshot(
+            this.timestamps[latestIndex],
+            this.committedOffsets[latestIndex],
+            this.endOffsets[latestIndex],
+            consumeRate,
+            produceRate);
+    }
+
+
+    /**
+     * @param timestamp of the latest sample, in ms
+     * @param committedOffset latest committed offset, -1 if none
+     * @param endOffset latest high watermark
+     * @param consumeRate committed records per second
+     * @param produceRate produced records per second
+     */
+    public record Snapshot(long timestamp, long committedOffset, long endOffset, double consumeRate, double produceRate) {
+
+        /**
+         * @return number of records the group still has to consume. Counts from the beginning if the group has not committed yet
+         */
+        public long lag() {
+            return Math.max(this.endOffset - Math.max(this.committedOffset, 0), 0);
+        }
+
+        /**
+         * @return estimated seconds until the lag is 0 at current rates, 0 if there's no lag, -1 if the group does not catch up
+         */
+        public double timeToCatchUp() {
+            long lag = lag();
+            if (lag == 0)
+                return 0;
+
+            double catchUpRate = this.consumeRate - this.produceRate;
+
+            return catchUpRate <= 0 ? -1 : lag / catchUpRate;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.backend.helpers;
+
+import static com.example.backend.helpers.Utils.assertArgsNotNullAndNotBlankOrThrow;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+
+
+/**
+ * Principal names qualified with the provider the principal authenticated with, e.g. "github:octocat", "local:max@example.com" or
+ * "client:billing-service". Plain names are only unique per provider (a github login may equal a service client id), so everything
+ * keyed by principal (e.g. roles and topic scopes) uses the qualified name. <p>
+ *
+ * The "sub" claim of issued tokens is the qualified name as well, so redpanda acls have to use it too, e.g.
+ * {@code --allow-principal='User:github:octocat'}.
+ *
+ * @since latest
+ */
+public class PrincipalNames {
+
+    /** Users logged in with email and password */
+    public static final String LOCAL_PROVIDER = "local";
+
+    /** Service clients without session, see {@code ServiceClientService} */
+    public static final String CLIENT_PROVIDER = "client";
+
+    /** Name spring security gives callers without login, tokens are never issued for it */
+    public static final String ANONYMOUS_NAME = "anonymousUser";
+
+    private static final char SEPARATOR = ':';
+
+
+    /**
+     * @param provider oauth2 client registration id, {@link #LOCAL_PROVIDER} or {@link #CLIENT_PROVIDER}
+     * @param name plain principal name
+     * @return "provider:name"
+     * @throws IllegalArgumentException if an arg is blank or {@code provider} contains the separator
+     */
+    public static String qualify(String provider, String name) throws IllegalArgumentException {
+        assertArgsNotNullAndNotBlankOrThrow(provider, name);
+
+        if (provider.indexOf(SEPARATOR) != -1)
+            throw new IllegalArgumentException("Invalid principal provider '%s'".formatted(provider));
+
+        return provider + SEPARATOR + name;
+    }
+
+    /**
+     * @param authentication oauth2 logins are qualified with their client registration id, anything else is a local login
+     * @return qualified name of the authenticated principal
+     * @throws IllegalArgumentException if {@code authentication} is {@code null} or has a blank name
+     */
+    public static String qualify(Authentication authentication) throws IllegalArgumentException {
+        assertArgsNotNullAndNotBlankOrThrow(authentication);
+
+        String provider = authentication instanceof OAuth2AuthenticationToken oauth2AuthenticationToken
+            ? oauth2AuthenticationToken.getAuthorizedClientRegistrationId()
+            : LOCAL_PROVIDER;
+
+        return qualify(provider, authentication.getName());
+    }
+
+    /**
+     * @param principal to check
+     * @throws IllegalArgumentException if {@code principal} is not formatted like "provider:name"
+     */
+    public static void assertQualified(String principal) throws IllegalArgumentException {
+        separatorIndex(principal);
+    }
+
+    /**
+     * @param principal qualified name
+     * @return the provider part
+     * @throws IllegalArgumentException if {@code principal} is not qualified
+     */
+    public static String getProvider(String principal) throws IllegalArgumentException {
+        return principal.substring(0, separatorIndex(principal));
+    }
+
+    /**
+     * @param principal qualified name
+     * @return the plain name part
+     * @throws IllegalArgumentException if {@code principal} is not qualified
+     */
+    public static String getName(String principal) throws IllegalArgumentException {
+        return principal.substring(separatorIndex(principal) + 1);
+    }
+
+
+    /**
+     * @return index of the separator, the name may contain more
+     */
+    private static int separatorIndex(String principal) throws IllegalArgumentException {
+        int separatorIndex = principal == null ? -1 : principal.indexOf(SEPARATOR);
+        if (separatorIndex <= 0 || separatorIndex == principal.length() - 1)
+            throw new IllegalArgumentException("Expected principal name formatted like 'provider:name', got '%s'".formatted(principal));
+
+        return separatorIndex;
+    }
+}
@@ -3,22 +3,10 @@ package com.example.backend.helpers;
 import static org.springframework.http.HttpStatus.UNAUTHORIZED;
 
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.io.Reader;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.security.InvalidAlgorithmParameterException;
-import java.security.InvalidKeyException;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.text.SimpleDateFormat;
 import java.time.DateTimeException;
 import java.time.Instant;
@@ -29,30 +17,21 @@ import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
-import java.util.Base64;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Scanner;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.regex.PatternSyntaxException;
-
-import javax.crypto.BadPaddingException;
-import javax.crypto.Cipher;
-import javax.crypto.IllegalBlockSizeException;
-import javax.crypto.NoSuchPaddingException;
-import javax.crypto.SecretKey;
-import javax.crypto.spec.IvParameterSpec;
-import javax.crypto.spec.SecretKeySpec;
 
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.lang.NonNull;
 import org.springframework.lang.Nullable;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
 import org.springframework.web.server.ResponseStatusException;
@@ -84,6 +63,8 @@ public class Utils {
     public static final String OAUTH2_CLIENT_REGISTRATION_ID_AZURE = "azure";
 
     public static final String CONFIRM_ACCOUNT_PATH = "/app-user/confirm-account";
+    /** Query param of the link in the confirmation mail, see {@link #CONFIRM_ACCOUNT_PATH} */
+    public static final String CONFIRM_ACCOUNT_TOKEN_URL_QUERY_PARAM = "token";
     /** Also hard coded in "constants.ts" */
     public static final String RESET_PASSWORD_TOKEN_URL_QUERY_PARAM = "token";
     /** Also hard coded in "constants.ts" */
@@ -105,10 +86,13 @@ public class Utils {
      */
     public static final String PASSWORD_REGEX = "^(?=.*\\d)(?=.*[a-z])(?=.*[A-Z])(?=.*[.,;_!#$§%&@€*+=?´`\"'\\{|}\\/()~^-])(.{8,72})$";
     public static final String EMAIL_REGEX = "^[\\w\\-\\.]+@([\\w-]+\\.)+[\\w-]{2,4}$";
+    /** Defined by kafka. Also hard coded in "constants.ts" */
+    public static final String TOPIC_REGEX = "^[a-zA-Z0-9_\\.\\-]{1,249}$";
+    /** Consumer instance and group names, motivated by url safety. Also hard coded in "constants.ts" */
+    public static final String CONSUMER_AND_GROUP_REGEX = "^[-a-zA-Z0-9@:%._\\+~#=]{1,256}$";
 
     public static final String DEFAULT_DATE_TIME_FORMAT = "yyyy-MM-dd HH:mm:ss.SSSSS";
 
-    private static final String AES_ALGORITHM_NAME = "AES/CBC/PKCS5Padding";
 
     /** The length a search word needs to of in order for the approximate match to use {@code contains} instead of {@code startsWith} */
     public static final int SEARCH_WORD_MIN_LENGTH_FOR_CONTAINS = 5;
@@ -117,94 +101,6 @@ public class Utils {
     public static final int SEARCH_ADJACENT_MATCH_RATING_POINTS = 1;
 
 
-    /**
-     * Convert file into String using {@link BufferedReader}.
-     * 
-     * @param file to convert
-     * @return converted string
-     * @throws IOException 
-     * @throws FileNotFoundException 
-     */
-    public static String fileToString(File file) throws FileNotFoundException, IOException {
-        
-        // read to string
-        try (Reader fis = new FileReader(file);
-             BufferedReader br = new BufferedReader(fis)) {
-            StringBuilder stringBuilder = new StringBuilder();
-
-            String line = null;
-            while ((line = br.readLine()) != null)
-                stringBuilder.append(line);
-
-            String str = stringBuilder.toString();
-            return replaceOddChars(str);
-        }
-    }
-
-
-    /**
-     * Convert contents of input stream into a String using {@link Scanner}. Not sure what happens if the contents are not string like, e.g. a picture.
-     * 
-     * @param is to convert
-     * @return converted string
-     * @throws IllegalArgumentException
-     */
-    public static String fileToString(InputStream is) throws IllegalArgumentException {
-        assertArgsNotNullAndNotBlankOrThrow(is);
-
-        try (Scanner scanner = new Scanner(is)) {
-            StringBuilder stringBuilder = new StringBuilder();
-
-            while (scanner.hasNextLine()) 
-                stringBuilder.append(scanner.nextLine());
-            
-            return stringBuilder.toString();
-        }
-    }
-
-
-    /**
-     * Write given string to given file.
-     * 
-     * @param str to write to file
-     * @param file to write the string to
-     * @return the file
-     * @throws IOException 
-     */
-    public static File stringToFile(String str, File file) throws IOException {
-
-        try (BufferedWriter br = new BufferedWriter(new FileWriter(file))) {
-            br.write(str);
-
-            return file;
-        }
-    }
-
-
-    /**
-     * Replace odd characters that java uses for special chars like 'ä, ö, ü, ß' etc. with original chars. <p>
-     * 
-     * Does not alter given String.
-     * 
-     * @param str to fix
-     * @return fixed string
-     */
-    public static String replaceOddChars(String str) {
-
-        // alphabetic
-        str = str.replace("Ã?", "Ä");
-        str = str.replace("Ã¤", "ä");
-        str = str.replace("Ã¶", "ö");
-        str = str.replace("Ã¼", "ü");
-        str = str.replace("ÃŸ", "ß");
-
-        // special chars
-        str = str.replace("â?¬", "€");
-
-        return str;
-    }
-    
-
     /**
      * Prepends a '/' to given String if there isn't already one.
      * 
@@ -219,38 +115,6 @@ public class Utils {
         return str.charAt(0) == '/' ? str : "/" + str;
     }
 
-    /**
-     * @param email to validate
-     * @return true matches regex and not null, else false
-     * @see {@link #EMAIL_REGEX}
-     */
-    public static boolean isEmailValid(String email) {
-
-        if (isBlank(email))
-            return false;
-
-        return email.matches(EMAIL_REGEX);
-    }
-
-    /**
-     * @param str
-     * @param regex
-     * @return {@code true} if each character in {@code str} matches {@code regex}
-     * @throws IllegalArgumentException
-     */
-    public static boolean matchEachChar(String str, String regex) throws IllegalArgumentException, PatternSyntaxException {
-        assertArgsNotNullAndNotBlankOrThrow(str, regex);
-
-        for (int i = 0; i < str.length(); i++) {
-            String character = Character.toString(str.charAt(i));
-            if (!character.matches(regex))
-                return false;
-        }
-
-        return true;
-    }
-
-
     /**
      * Prepends current date and time to given string. Replace ':' with '-' due to .docx naming conditions.
      * 
@@ -263,40 +127,6 @@ public class Utils {
     }
 
 
-    /**
-     * Writes given byte array to file.
-     * 
-     * @param bytes content of file
-     * @param fileName complete name of the file
-     * @return file or {@code null} if a param is invalid
-     * @throws IOException 
-     * @throws FileNotFoundException 
-     */
-    public static File byteArrayToFile(byte[] bytes, String fileName) throws FileNotFoundException, IOException {
-        if (assertArgsNullOrBlank(bytes, fileName)) 
-            return null;
-        
-        try (OutputStream fos = new FileOutputStream(fileName)) {
-            fos.write(bytes);
-
-            return new File(fileName);
-        }
-    }
-
-
-    /**
-     * Read given file to byte array.
-     * 
-     * @param file to read
-     * @return byte array
-     * @throws IOException 
-     */
-    public static byte[] fileToByteArray(File file) throws IOException {
-
-        return Files.readAllBytes(file.toPath());
-    }
-
-
     public static boolean isKeepFile(File file) {
 
         return KEEP_FILES.contains(file.getName());
@@ -484,13 +314,17 @@ public class Utils {
 
 
     /**
-     * @param principal
-     * @throws ResponseStatusException 401
+     * @param principal usually the {@link Authentication} of the current request
+     * @throws ResponseStatusException 401 if {@code principal} is {@code null}, anonymous or not authenticated
      */
     public static void assertPrincipalNotNullAndThrow401(Object principal) throws ResponseStatusException {
 
         if (principal == null)
             throw new ResponseStatusException(UNAUTHORIZED);
+
+        // case: all paths are permitted, so callers without login have an anonymous authentication instead of none
+        if (principal instanceof Authentication authentication && (!authentication.isAuthenticated() || authentication instanceof AnonymousAuthenticationToken))
+            throw new ResponseStatusException(UNAUTHORIZED);
     }
 
 
@@ -632,11 +466,12 @@ public class Utils {
     public static Map<String, String> readEnvFile(String envFileName) throws IOException {
 
         Map<String, String> envKeyValues = new HashMap<>();
+        Set<Character> quoteChars = Set.of('"', '\'');
 
-        try (Scanner scanner = new Scanner(new File(envFileName))) {
-            while (scanner.hasNextLine()) {
-                String line = scanner.nextLine();
-
+        // not using Scanner, keeps its regex based parsing off the startup path
+        try (BufferedReader reader = Files.newBufferedReader(new File(envFileName).toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
                 // case: not a key value pair line
                 if (!line.contains("=") || line.startsWith("#"))
                     continue;
@@ -652,7 +487,6 @@ public class Utils {
                 }
 
                 // remove quotes from value
-                Set<Character> quoteChars = Set.of('"', '\'');
                 if (quoteChars.contains(value.charAt(0)) || quoteChars.contains(value.charAt(value.length() - 1)))
                     value = value.substring(1, value.length() - 1);
 
@@ -664,110 +498,6 @@ public class Utils {
     }
 
 
-    /**
-     * @param rawValue
-     * @return the hash (never {@code null})
-     * @throws IllegalArgumentException if {@code rawValue} is {@code null}
-     * @throws IllegalStateException should not happen
-     */
-    public static String hashSha256(String rawValue) throws IllegalArgumentException, IllegalStateException {
-
-        if (rawValue == null)
-            throw new IllegalArgumentException("'rawValue' cannot be null");
-
-        try {
-            MessageDigest cryptoHelper = MessageDigest.getInstance("SHA-256");
-            byte[] hashBytes = cryptoHelper.digest(rawValue.getBytes(StandardCharsets.UTF_8));
-    
-            return bytesToHex(hashBytes);
-
-        // should not happen
-        } catch (NoSuchAlgorithmException e) {
-            throw new IllegalStateException(e);
-        }
-    }
-
-
-    /**
-     * Will encrypt given string using AES algorithm ({@link #AES_ALGORITHM_NAME}).
-     * 
-     * @param decryptedStr text to encrypt. Not sure if there's a max length
-     * @param keyString needs to be 16 or 32 bytes long
-     * @param ivString needs to be 16 bytes long
-     * @return encrypted string
-     * @throws NoSuchPaddingException
-     * @throws NoSuchAlgorithmException
-     * @throws InvalidAlgorithmParameterException
-     * @throws InvalidKeyException
-     * @throws BadPaddingException
-     * @throws IllegalBlockSizeException
-     */
-    public static String encryptAES(String decryptedStr, String keyString, String ivString) throws NoSuchPaddingException, NoSuchAlgorithmException, InvalidAlgorithmParameterException, InvalidKeyException, BadPaddingException, IllegalBlockSizeException {
-
-        assertArgsNotNullAndNotBlankOrThrow(decryptedStr, keyString, ivString);        
-
-        SecretKey key = new SecretKeySpec(keyString.getBytes(), "AES");
-        IvParameterSpec iv = new IvParameterSpec(ivString.getBytes());
-
-        Cipher cipher = Cipher.getInstance(AES_ALGORITHM_NAME);
-        cipher.init(Cipher.ENCRYPT_MODE, key, iv);
-        byte[] cipherText = cipher.doFinal(decryptedStr.getBytes());
-        
-        return Base64.getEncoder().encodeToString(cipherText);
-    }
-
-
-    /**
-     * Will decrypt given string assuming AES algorithm ({@link #AES_ALGORITHM_NAME}). Use same {@code keyString} and {@code ivString} as for encryption
-     * 
-     * @param encryptedStr text to decrypt. Expected to be encrypted with AES
-     * @param keyString needs to be 16 or 32 bytes long
-     * @param ivString needs to be 16 bytes long
-     * @return encrypted string
-     * @throws NoSuchPaddingException
-     * @throws NoSuchAlgorithmException
-     * @throws InvalidAlgorithmParameterException
-     * @throws InvalidKeyException
-     * @throws BadPaddingException
-     * @throws IllegalBlockSizeException
-     */
-    public static String decryptAES(String encryptedStr, String keyString, String ivString) throws NoSuchPaddingException, NoSuchAlgorithmException, InvalidAlgorithmParameterException, InvalidKeyException, BadPaddingException, IllegalBlockSizeException {
-                
-        assertArgsNotNullAndNotBlankOrThrow(encryptedStr, keyString, ivString);        
-
-        SecretKey key = new SecretKeySpec(keyString.getBytes(), "AES");
-        IvParameterSpec iv = new IvParameterSpec(ivString.getBytes());
-
-        Cipher cipher = Cipher.getInstance(AES_ALGORITHM_NAME);
-        cipher.init(Cipher.DECRYPT_MODE, key, iv);
-        byte[] plainText = cipher.doFinal(Base64.getDecoder().decode(encryptedStr));
-
-        return new String(plainText);
-    }
-
-
-    /**
-     * @param bytes
-     * @return a concatenated string of each byte converted to hex
-     * @throws IllegalArgumentException if bytes is {@code null}
-     */
-    public static String bytesToHex(byte[] bytes) throws IllegalArgumentException {
-
-        assertArgsNotNullAndNotBlankOrThrow(bytes);
-
-        StringBuilder hexString = new StringBuilder(2 * bytes.length);
-
-        for (int i = 0; i < bytes.length; i++) {
-            String hex = Integer.toHexString(0xff & bytes[i]);
-            if(hex.length() == 1) 
-                hexString.append('0');
-            
-            hexString.append(hex);
-        }
-        
-        return hexString.toString();
-    }
-
     /**
      * Get a sublist starting at {@code pageIndex * pageSize}.
      * 
@@ -0,0 +1,189 @@
+package com.example.backend.helpers;
+
+
+/**
+ * Validates user input without regex. Each method scans its input once, char by char against precomputed ascii bit sets, so the
+ * worst case is linear in the input length and nothing is compiled or allocated per call. <p>
+ *
+ * Results are the same as matching the corresponding pattern with {@code String.matches}, see {@link Utils#EMAIL_REGEX},
+ * {@link Utils#PASSWORD_REGEX}, {@link Utils#TOPIC_REGEX} and {@link Utils#CONSUMER_AND_GROUP_REGEX}.
+ *
+ * @since latest
+ */
+public class Validation {
+
+    /** Defined by kafka */
+    public static final int TOPIC_MAX_LENGTH = 249;
+    public static final int CONSUMER_AND_GROUP_MAX_LENGTH = 256;
+    public static final int PASSWORD_MIN_LENGTH = 8;
+    /** In code points. Bcrypt uses at most 72 bytes */
+    public static final int PASSWORD_MAX_LENGTH = 72;
+
+    private static final String WORD_CHARS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789_";
+
+    private static final long[] TOPIC_CHARS = asciiSet(WORD_CHARS + ".-");
+    private static final long[] CONSUMER_AND_GROUP_CHARS = asciiSet(WORD_CHARS + "-@:%.+~#=");
+    private static final long[] EMAIL_LOCAL_PART_CHARS = asciiSet(WORD_CHARS + "-.");
+    private static final long[] EMAIL_DOMAIN_CHARS = asciiSet(WORD_CHARS + "-");
+    /** Without the non ascii chars '§', '€' and '´' */
+    private static final long[] PASSWORD_SPECIAL_CHARS = asciiSet(".,;_!#$%&@*+=?`\"'{|}/()~^-");
+
+
+    /**
+     * @param topic to validate
+     * @return {@code true} if not {@code null} and matching {@link Utils#TOPIC_REGEX}
+     */
+    public static boolean isTopicValid(String topic) {
+        return consistsOf(topic, TOPIC_CHARS, TOPIC_MAX_LENGTH);
+    }
+
+    /**
+     * @param topic to validate
+     * @throws IllegalArgumentException if {@code topic} is {@code null} or does not match {@link Utils#TOPIC_REGEX}
+     */
+    public static void assertTopicValidOrThrow(String topic) throws IllegalArgumentException {
+        if (!isTopicValid(topic))
+            throw new IllegalArgumentException("Invalid topic '%s'. Has to match pattern %s".formatted(topic, Utils.TOPIC_REGEX));
+    }
+
+    /**
+     * @param name of a consumer group or a consumer instance
+     * @return {@code true} if not {@code null} and matching {@link Utils#CONSUMER_AND_GROUP_REGEX}
+     */
+    public static boolean isConsumerOrGroupNameValid(String name) {
+        return consistsOf(name, CONSUMER_AND_GROUP_CHARS, CONSUMER_AND_GROUP_MAX_LENGTH);
+    }
+
+    /**
+     * @param name of a consumer group or a consumer instance
+     * @throws IllegalArgumentException if {@code name} is {@code null} or does not match {@link Utils#CONSUMER_AND_GROUP_REGEX}
+     */
+    public static void assertConsumerOrGroupNameValidOrThrow(String name) throws IllegalArgumentException {
+        if (!isConsumerOrGroupNameValid(name))
+            throw new IllegalArgumentException("Invalid consumer or group name '%s'. Has to match pattern %s".formatted(name, Utils.CONSUMER_AND_GROUP_REGEX));
+    }
+
+    /**
+     * Local part, '@', then at least two domain labels separated by '.', the last one 2 to 4 chars long.
+     *
+     * @param email to validate
+     * @return {@code true} if not {@code null} and matching {@link Utils#EMAIL_REGEX}
+     */
+    public static boolean isEmailValid(String email) {
+
+        if (email == null)
+            return false;
+
+        int length = email.length();
+        int atIndex = 0;
+        while (atIndex < length && contains(EMAIL_LOCAL_PART_CHARS, email.charAt(atIndex)))
+            atIndex++;
+
+        if (atIndex == 0 || atIndex == length || email.charAt(atIndex) != '@')
+            return false;
+
+        int labelCount = 0;
+        int labelLength = 0;
+        for (int i = atIndex + 1; i < length; i++) {
+            char c = email.charAt(i);
+
+            if (c == '.') {
+                if (labelLength == 0)
+                    return false;
+
+                labelCount++;
+                labelLength = 0;
+
+            } else if (contains(EMAIL_DOMAIN_CHARS, c))
+                labelLength++;
+
+            else
+                return false;
+        }
+
+        // case: last label is the top level domain
+        return labelCount > 0 && labelLength >= 2 && labelLength <= 4;
+    }
+
+    /**
+     * Counts code points like the regex does, so a surrogate pair is one char. Line terminators are never valid.
+     *
+     * @param password to validate
+     * @return {@code true} if not {@code null} and matching {@link Utils#PASSWORD_REGEX}
+     */
+    public static boolean isPasswordValid(String password) {
+
+        if (password == null)
+            return false;
+
+        boolean hasDigit = false;
+        boolean hasLowerCase = false;
+        boolean hasUpperCase = false;
+        boolean hasSpecialChar = false;
+        int codePointCount = 0;
+
+        int length = password.length();
+        for (int i = 0; i < length; ) {
+            int codePoint = password.codePointAt(i);
+            i += Character.charCount(codePoint);
+
+            if (++codePointCount > PASSWORD_MAX_LENGTH || isLineTerminator(codePoint))
+                return false;
+
+            if (codePoint >= '0' && codePoint <= '9')
+                hasDigit = true;
+
+            else if (codePoint >= 'a' && codePoint <= 'z')
+                hasLowerCase = true;
+
+            else if (codePoint >= 'A' && codePoint <= 'Z')
+                hasUpperCase = true;
+
+            else if (contains(PASSWORD_SPECIAL_CHARS, codePoint) || codePoint == '§' || codePoint == '€' || codePoint == '´')
+                hasSpecialChar = true;
+        }
+
+        return codePointCount >= PASSWORD_MIN_LENGTH && hasDigit && hasLowerCase && hasUpperCase && hasSpecialChar;
+    }
+
+
+    /**
+     * @return {@code true} if {@code str} is 1 to {@code maxLength} chars long and each char is in {@code asciiSet}
+     */
+    private static boolean consistsOf(String str, long[] asciiSet, int maxLength) {
+
+        if (str == null || str.isEmpty() || str.length() > maxLength)
+            return false;
+
+        for (int i = 0; i < str.length(); i++)
+            if (!contains(asciiSet, str.charAt(i)))
+                return false;
+
+        return true;
+    }
+
+    private static boolean contains(long[] asciiSet, int c) {
+        return c < 128 && (asciiSet[c >>> 6] & (1L << c)) != 0;
+    }
+
+    /**
+     * Line terminators of {@code java.util.regex.Pattern} without {@code UNIX_LINES}, which '.' does not match.
+     */
+    private static boolean isLineTerminator(int codePoint) {
+        return codePoint == '\n' || codePoint == '\r' || codePoint == '\u0085' || codePoint == '\u2028' || codePoint == '\u2029';
+    }
+
+    /**
+     * @param chars all ascii
+     * @return 128 bits, one for each ascii char
+     */
+    private static long[] asciiSet(String chars) {
+        long[] asciiSet = new long[2];
+        for (int i = 0; i < chars.length(); i++) {
+            char c = chars.charAt(i);
+            asciiSet[c >>> 6] |= 1L << c;
+        }
+
+        return asciiSet;
+    }
+}
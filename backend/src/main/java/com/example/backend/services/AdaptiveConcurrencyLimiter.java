@@ -0,0 +1,223 @@
+package com.example.backend.services;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+
+/**
+ * Concurrency limit for all requests that adapts to the latency of the backend (gradient limiter). <p>
+ * 
+ * Every {@code LOAD_SHEDDING_WINDOW_MS} the average latency of the window ("short rtt") is compared to its smoothed long term
+ * average ("long rtt"). Latency beyond the long term average is time spent waiting (for threads, connections, cpu), so the limit is
+ * decreased proportionally ({@code gradient = TOLERANCE * longRtt / shortRtt}, at most halving it per window) and grows by
+ * {@code sqrt(limit)} while latency is stable. The limit only grows if at least half of it has been used in the window. <p>
+ * 
+ * Requests of a {@link Priority} are admitted while the in flight requests are below the priority's share of the limit, so critical
+ * requests always have some headroom. <p>
+ * 
+ * Metrics: "load.shedding.limit", "load.shedding.inflight", "load.shedding.rtt.short", "load.shedding.rtt.long" (in ms),
+ * "load.shedding.queueing.delay" (short minus long rtt, in ms) and "load.shedding.requests" (tagged with "priority" and "outcome"
+ * admitted/shed).
+ * 
+ * @since latest
+ */
+@Service
+@Slf4j
+public class AdaptiveConcurrencyLimiter {
+
+    /** Latency increase tolerated before decreasing the limit */
+    private static final double TOLERANCE = 1.5;
+
+    /** Weight of a window's rtt in the long rtt */
+    private static final double LONG_RTT_SMOOTHING = 0.05;
+
+    /** Weight of a window's new limit in the limit */
+    private static final double LIMIT_SMOOTHING = 0.2;
+
+    /** Windows with less samples don't change the limit */
+    private static final int MIN_WINDOW_SAMPLES = 10;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${LOAD_SHEDDING_INITIAL_LIMIT}")
+    private int LOAD_SHEDDING_INITIAL_LIMIT;
+
+    @Value("${LOAD_SHEDDING_MIN_LIMIT}")
+    private int LOAD_SHEDDING_MIN_LIMIT;
+
+    @Value("${LOAD_SHEDDING_MAX_LIMIT}")
+    private int LOAD_SHEDDING_MAX_LIMIT;
+
+    /** In ms */
+    @Value("${LOAD_SHEDDING_WINDOW_MS}")
+    private long LOAD_SHEDDING_WINDOW_MS;
+
+    @Getter
+    private volatile double limit;
+
+    private final AtomicInteger inflight = new AtomicInteger();
+
+    /** Max of {@link #inflight} during the current window */
+    private final AtomicInteger windowMaxInflight = new AtomicInteger();
+
+    private final LongAdder windowRttNanosSum = new LongAdder();
+    private final LongAdder windowRttCount = new LongAdder();
+
+    /** In nanos. Only written by the window updater */
+    private volatile double shortRtt;
+    private volatile double longRtt;
+
+    private ScheduledExecutorService windowScheduler;
+
+    private Counter[] admittedCounters;
+    private Counter[] shedCounters;
+
+
+    @PostConstruct
+    void init() {
+        if (this.LOAD_SHEDDING_MIN_LIMIT < 1 || this.LOAD_SHEDDING_MAX_LIMIT < this.LOAD_SHEDDING_MIN_LIMIT)
+            throw new IllegalArgumentException("Invalid load shedding config. Min limit needs to be positive and not greater than max limit");
+
+        this.limit = Math.clamp(this.LOAD_SHEDDING_INITIAL_LIMIT, this.LOAD_SHEDDING_MIN_LIMIT, this.LOAD_SHEDDING_MAX_LIMIT);
+
+        this.admittedCounters = new Counter[Priority.values().length];
+        this.shedCounters = new Counter[Priority.values().length];
+        for (Priority priority : Priority.values()) {
+            String priorityTag = priority.name().toLowerCase();
+            this.admittedCounters[priority.ordinal()] = this.meterRegistry.counter("load.shedding.requests", "priority", priorityTag, "outcome", "admitted");
+            this.shedCounters[priority.ordinal()] = this.meterRegistry.counter("load.shedding.requests", "priority", priorityTag, "outcome", "shed");
+        }
+
+        this.meterRegistry.gauge("load.shedding.limit", this, AdaptiveConcurrencyLimiter::getLimit);
+        this.meterRegistry.gauge("load.shedding.inflight", this.inflight);
+        this.meterRegistry.gauge("load.shedding.rtt.short", this, limiter -> limiter.shortRtt / 1_000_000);
+        this.meterRegistry.gauge("load.shedding.rtt.long", this, limiter -> limiter.longRtt / 1_000_000);
+        this.meterRegistry.gauge("load.shedding.queueing.delay", this, limiter -> Math.max(0, limiter.shortRtt - limiter.longRtt) / 1_000_000);
+
+        this.windowScheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("load-shedding-window").daemon().factory());
+        this.windowScheduler.scheduleAtFixedRate(this::updateLimit, this.LOAD_SHEDDING_WINDOW_MS, this.LOAD_SHEDDING_WINDOW_MS, TimeUnit.MILLISECONDS);
+    }
+
+
+    @PreDestroy
+    void destroy() {
+        this.windowScheduler.shutdownNow();
+    }
+
+
+    /**
+     * Admit a request if the in flight requests are below the share of the limit for {@code priority}. Admitted requests need to
+     * call {@link #release(long)} exactly once.
+     * 
+     * @param priority of the request
+     * @return {@code true} if admitted, {@code false} if the request should be shed
+     */
+    public boolean tryAcquire(Priority priority) {
+        int priorityLimit = Math.max(1, (int) (this.limit * priority.limitShare));
+
+        while (true) {
+            int currentInflight = this.inflight.get();
+
+            if (currentInflight >= priorityLimit) {
+                this.shedCounters[priority.ordinal()].increment();
+                return false;
+            }
+
+            if (this.inflight.compareAndSet(currentInflight, currentInflight + 1)) {
+                this.windowMaxInflight.accumulateAndGet(currentInflight + 1, Math::max);
+                this.admittedCounters[priority.ordinal()].increment();
+                return true;
+            }
+        }
+    }
+
+
+    /**
+     * @param rttNanos time the admitted request took, -1 to not count it as latency sample (e.g. long polling or failed requests)
+     */
+    public void release(long rttNanos) {
+        this.inflight.decrementAndGet();
+
+        if (rttNanos >= 0) {
+            this.windowRttNanosSum.add(rttNanos);
+            this.windowRttCount.increment();
+        }
+    }
+
+
+    public int getInflight() {
+        return this.inflight.get();
+    }
+
+
+    /**
+     * Adjust the limit to the latency of the last window. Only called by the window scheduler (and tests).
+     */
+    void updateLimit() {
+        long sampleCount = this.windowRttCount.sumThenReset();
+        long rttNanosSum = this.windowRttNanosSum.sumThenReset();
+        int maxInflight = this.windowMaxInflight.getAndSet(this.inflight.get());
+
+        // case: not enough traffic to tell
+        if (sampleCount < MIN_WINDOW_SAMPLES)
+            return;
+
+        double shortRtt = rttNanosSum / (double) sampleCount;
+        double longRtt = this.longRtt == 0 ? shortRtt : this.longRtt * (1 - LONG_RTT_SMOOTHING) + shortRtt * LONG_RTT_SMOOTHING;
+
+        // case: latency dropped well below the long term average (e.g. after recovering), catch up faster
+        if (longRtt > 2 * shortRtt)
+            longRtt = longRtt * 0.9 + shortRtt * 0.1;
+
+        this.shortRtt = shortRtt;
+        this.longRtt = longRtt;
+
+        double limit = this.limit;
+        double gradient = Math.clamp(TOLERANCE * longRtt / shortRtt, 0.5, 1);
+
+        // case: limit not used, growing it would not be backed by any measurement
+        if (gradient == 1 && maxInflight < limit / 2)
+            return;
+
+        double newLimit = limit * gradient + Math.sqrt(limit);
+        newLimit = limit * (1 - LIMIT_SMOOTHING) + newLimit * LIMIT_SMOOTHING;
+
+        this.limit = Math.clamp(newLimit, this.LOAD_SHEDDING_MIN_LIMIT, this.LOAD_SHEDDING_MAX_LIMIT);
+
+        if ((int) this.limit != (int) limit)
+            log.debug("Concurrency limit {} -> {} (short rtt {}ms, long rtt {}ms)", (int) limit, (int) this.limit, shortRtt / 1_000_000, longRtt / 1_000_000);
+    }
+
+
+    /**
+     * Share of the limit requests of a priority may use.
+     */
+    public enum Priority {
+        /** Discovery, jwks and login callbacks. Only shed if the whole limit is used */
+        CRITICAL(1),
+        NORMAL(0.8),
+        /** Requests clients retry anyway, e.g. token refetches */
+        LOW(0.5);
+
+        private final double limitShare;
+
+        Priority(double limitShare) {
+            this.limitShare = limitShare;
+        }
+    }
+}
@@ -0,0 +1,365 @@
+package com.example.backend.services;
+
+import static com.example.backend.helpers.Utils.assertArgsNotNullAndNotBlankOrThrow;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.example.backend.helpers.Hashing;
+import com.example.backend.helpers.PrincipalNames;
+import com.example.backend.helpers.Utils;
+import com.example.backend.helpers.Validation;
+import com.example.backend.services.MailService.MailType;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+
+/**
+ * Local accounts for form login, stored in the {@code app_user} table and looked up by their (lower case) email through a unique
+ * index. The email is the principal name. <p>
+ *
+ * New accounts have to be confirmed through a mailed link before they can log in. Confirmation and password reset tokens are
+ * single use, only their sha256 hash is stored. <p>
+ *
+ * Password hashing goes through the {@link PasswordEncoder} bean, which runs bcrypt on a bounded executor. Spring security uses
+ * this service to load users on login and, via {@link UserDetailsPasswordService}, to store the rehashed password if the
+ * configured bcrypt strength was raised.
+ *
+ * @since latest
+ */
+@Service
+@Slf4j
+public class AppUserService implements UserDetailsService, UserDetailsPasswordService {
+
+    public static final String USER_ROLE = "USER";
+
+    private static final int TOKEN_BYTES = 32;
+
+    private static final String CREATE_USER_TABLE_SQL = """
+        CREATE TABLE IF NOT EXISTS app_user (
+            id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+            email VARCHAR(320) NOT NULL,
+            password_hash VARCHAR(72) NOT NULL,
+            confirmed BOOLEAN DEFAULT FALSE NOT NULL,
+            created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL
+        )""";
+    private static final String CREATE_USER_INDEX_SQL = "CREATE UNIQUE INDEX IF NOT EXISTS app_user_email ON app_user (email)";
+    private static final String CREATE_TOKEN_TABLE_SQL = """
+        CREATE TABLE IF NOT EXISTS app_user_token (
+            token_hash VARCHAR(64) PRIMARY KEY,
+            email VARCHAR(320) NOT NULL,
+            token_type VARCHAR(32) NOT NULL,
+            expiry_time BIGINT NOT NULL
+        )""";
+    private static final String CREATE_TOKEN_INDEX_SQL = "CREATE INDEX IF NOT EXISTS app_user_token_expiry_time ON app_user_token (expiry_time)";
+
+    private static final String SELECT_USER_SQL = "SELECT password_hash, confirmed FROM app_user WHERE email = ?";
+    private static final String INSERT_USER_SQL = "INSERT INTO app_user (email, password_hash) VALUES (?, ?)";
+    private static final String UPDATE_PASSWORD_SQL = "UPDATE app_user SET password_hash = ? WHERE email = ?";
+    private static final String UPDATE_PASSWORD_AND_CONFIRM_SQL = "UPDATE app_user SET password_hash = ?, confirmed = TRUE WHERE email = ?";
+    private static final String UPDATE_CONFIRMED_SQL = "UPDATE app_user SET confirmed = TRUE WHERE email = ?";
+
+    private static final String SELECT_TOKEN_SQL = "SELECT email, expiry_time FROM app_user_token WHERE token_hash = ? AND token_type = ?";
+    private static final String INSERT_TOKEN_SQL = "INSERT INTO app_user_token (token_hash, email, token_type, expiry_time) VALUES (?, ?, ?, ?)";
+    private static final String DELETE_TOKEN_SQL = "DELETE FROM app_user_token WHERE token_hash = ?";
+    private static final String DELETE_EXPIRED_TOKENS_SQL = "DELETE FROM app_user_token WHERE expiry_time <= ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private MailService mailService;
+
+    @Autowired
+    private PrincipalAuthorityService principalAuthorityService;
+
+    @Value("${BASE_URL}")
+    private String BASE_URL;
+
+    @Value("${FRONTEND_BASE_URL}")
+    private String FRONTEND_BASE_URL;
+
+    /** In hours. Lifetime of confirmation and password reset links */
+    @Value("${APP_USER_TOKEN_TTL_HOURS}")
+    private int APP_USER_TOKEN_TTL_HOURS;
+
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    private TransactionTemplate transactionTemplate;
+
+
+    @PostConstruct
+    void init() {
+        this.jdbcTemplate.execute(CREATE_USER_TABLE_SQL);
+        this.jdbcTemplate.execute(CREATE_USER_INDEX_SQL);
+        this.jdbcTemplate.execute(CREATE_TOKEN_TABLE_SQL);
+        this.jdbcTemplate.execute(CREATE_TOKEN_INDEX_SQL);
+        this.transactionTemplate = new TransactionTemplate(this.transactionManager);
+    }
+
+
+    /**
+     * Create an unconfirmed account and mail the confirmation link. <p>
+     * 
+     * If {@code email} is registered already, the owner gets a new confirmation link (unconfirmed account) or a password reset link
+     * instead, and {@code password} is discarded. The result is the same either way, so it does not tell whether an account exists.
+     *
+     * @param email of the new user
+     * @param password raw, has to match {@link Utils#PASSWORD_REGEX}
+     * @return future completing once the mail is queued
+     * @throws IllegalArgumentException if {@code email} or {@code password} is invalid
+     * @throws ResponseStatusException 503 if too many passwords are hashed right now
+     */
+    public CompletableFuture<Void> register(String email, String password) throws IllegalArgumentException, ResponseStatusException {
+        assertArgsNotNullAndNotBlankOrThrow(email, password);
+
+        String normalizedEmail = normalize(email);
+        if (!Validation.isEmailValid(normalizedEmail))
+            throw new IllegalArgumentException("Invalid email '%s'".formatted(email));
+
+        if (!Validation.isPasswordValid(password))
+            throw new IllegalArgumentException("Invalid password. Has to match pattern %s".formatted(Utils.PASSWORD_REGEX));
+
+        // hash either way, so known emails don't answer faster
+        String passwordHash = this.passwordEncoder.encode(password);
+
+        try {
+            this.jdbcTemplate.update(INSERT_USER_SQL, normalizedEmail, passwordHash);
+
+        // case: registered already
+        } catch (DuplicateKeyException e) {
+            List<Boolean> confirmed = this.jdbcTemplate.query(SELECT_USER_SQL, (resultSet, rowNum) -> resultSet.getBoolean("confirmed"), normalizedEmail);
+
+            return !confirmed.isEmpty() && confirmed.get(0) ? sendResetPasswordMail(normalizedEmail) : sendConfirmationMail(normalizedEmail);
+        }
+
+        return sendConfirmationMail(normalizedEmail);
+    }
+
+
+    /**
+     * Mail a new confirmation link if {@code email} belongs to an unconfirmed account. Does nothing otherwise, so the result does not
+     * tell whether an account exists.
+     *
+     * @param email of the user
+     * @return future completing once the mail is queued
+     */
+    public CompletableFuture<Void> resendConfirmationMail(String email) {
+        if (Utils.isBlank(email))
+            return CompletableFuture.completedFuture(null);
+
+        String normalizedEmail = normalize(email);
+        List<Boolean> confirmed = this.jdbcTemplate.query(SELECT_USER_SQL, (resultSet, rowNum) -> resultSet.getBoolean("confirmed"), normalizedEmail);
+
+        // case: unknown or confirmed already
+        if (confirmed.isEmpty() || confirmed.get(0))
+            return CompletableFuture.completedFuture(null);
+
+        return sendConfirmationMail(normalizedEmail);
+    }
+
+
+    /**
+     * @param token from the confirmation link
+     * @throws ResponseStatusException 400 if the token is unknown, used or expired
+     */
+    public void confirmAccount(String token) throws ResponseStatusException {
+        String email = consumeToken(token, TokenType.CONFIRM_ACCOUNT);
+
+        this.jdbcTemplate.update(UPDATE_CONFIRMED_SQL, email);
+    }
+
+
+    /**
+     * Mail a password reset link if {@code email} belongs to an account. Does nothing otherwise, so the result does not tell whether
+     * an account exists.
+     *
+     * @param email of the user
+     * @return future completing once the mail is queued
+     */
+    public CompletableFuture<Void> sendResetPasswordMail(String email) {
+        if (Utils.isBlank(email))
+            return CompletableFuture.completedFuture(null);
+
+        String normalizedEmail = normalize(email);
+
+        // case: unknown
+        if (this.jdbcTemplate.query(SELECT_USER_SQL, (resultSet, rowNum) -> true, normalizedEmail).isEmpty())
+            return CompletableFuture.completedFuture(null);
+
+        String token = createToken(normalizedEmail, TokenType.RESET_PASSWORD);
+        String link = "%s%s?%s=%s".formatted(this.FRONTEND_BASE_URL, Utils.RESET_PASSWORD_PATH, Utils.RESET_PASSWORD_TOKEN_URL_QUERY_PARAM, token);
+
+        return this.mailService.send(normalizedEmail, MailType.RESET_PASSWORD, Map.of("link", link, "validHours", Integer.toString(this.APP_USER_TOKEN_TTL_HOURS)));
+    }
+
+
+    /**
+     * Set a new password. Also confirms the account, the user proved to own the email.
+     *
+     * @param token from the password reset link
+     * @param password raw, has to match {@link Utils#PASSWORD_REGEX}
+     * @throws IllegalArgumentException if {@code password} is invalid
+     * @throws ResponseStatusException 400 if the token is unknown, used or expired, 503 if too many passwords are hashed right now
+     */
+    public void resetPassword(String token, String password) throws IllegalArgumentException, ResponseStatusException {
+        if (!Validation.isPasswordValid(password))
+            throw new IllegalArgumentException("Invalid password. Has to match pattern %s".formatted(Utils.PASSWORD_REGEX));
+
+        // hash first, a rejected hash should not use up the token
+        String passwordHash = this.passwordEncoder.encode(password);
+        String email = consumeToken(token, TokenType.RESET_PASSWORD);
+
+        this.jdbcTemplate.update(UPDATE_PASSWORD_AND_CONFIRM_SQL, passwordHash, email);
+    }
+
+
+    /**
+     * Used by spring security on form login.
+     *
+     * @param username email of the user, case insensitive
+     * @return user with "ROLE_USER" plus the roles of {@link PrincipalAuthorityService}. Disabled if not confirmed yet
+     * @throws UsernameNotFoundException
+     */
+    @Override
+    public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+        if (Utils.isBlank(username))
+            throw new UsernameNotFoundException("Username cannot be blank");
+
+        String email = normalize(username);
+        List<UserDetails> users = this.jdbcTemplate.query(
+            SELECT_USER_SQL,
+            (resultSet, rowNum) -> User
+                .withUsername(email)
+                .password(resultSet.getString("password_hash"))
+                .disabled(!resultSet.getBoolean("confirmed"))
+                .authorities(getAuthorities(email))
+                .build(),
+            email);
+
+        if (users.isEmpty())
+            throw new UsernameNotFoundException("Unknown user");
+
+        return users.get(0);
+    }
+
+
+    /**
+     * Used by spring security to store the password rehashed with the current bcrypt strength after a successful login.
+     */
+    @Override
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        this.jdbcTemplate.update(UPDATE_PASSWORD_SQL, newPassword, user.getUsername());
+        log.debug("Rehashed password of '{}'", user.getUsername());
+
+        return User.withUserDetails(user).password(newPassword).build();
+    }
+
+
+    private CompletableFuture<Void> sendConfirmationMail(String email) {
+        String token = createToken(email, TokenType.CONFIRM_ACCOUNT);
+        String link = "%s%s?%s=%s".formatted(this.BASE_URL, Utils.CONFIRM_ACCOUNT_PATH, Utils.CONFIRM_ACCOUNT_TOKEN_URL_QUERY_PARAM, token);
+
+        return this.mailService.send(email, MailType.CONFIRM_ACCOUNT, Map.of("link", link, "validHours", Integer.toString(this.APP_USER_TOKEN_TTL_HOURS)));
+    }
+
+
+    /**
+     * Also removes expired tokens.
+     *
+     * @return the raw token, only its hash is stored
+     */
+    private String createToken(String email, TokenType tokenType) {
+        byte[] tokenBytes = new byte[TOKEN_BYTES];
+        this.secureRandom.nextBytes(tokenBytes);
+        String token = Hashing.toHex(tokenBytes);
+
+        long now = System.currentTimeMillis();
+        this.transactionTemplate.executeWithoutResult(status -> {
+            this.jdbcTemplate.update(DELETE_EXPIRED_TOKENS_SQL, now);
+            this.jdbcTemplate.update(INSERT_TOKEN_SQL, Hashing.sha256Hex(token), email, tokenType.name(), now + TimeUnit.HOURS.toMillis(this.APP_USER_TOKEN_TTL_HOURS));
+        });
+
+        return token;
+    }
+
+
+    /**
+     * Delete {@code token}. Of concurrent calls with the same token only one succeeds.
+     *
+     * @return the email the token was issued for
+     * @throws ResponseStatusException 400 if the token is unknown, used, expired or of another type
+     */
+    private String consumeToken(String token, TokenType tokenType) throws ResponseStatusException {
+        if (Utils.isBlank(token))
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid or expired token");
+
+        String tokenHash = Hashing.sha256Hex(token);
+        List<String> emails = this.jdbcTemplate.query(
+            SELECT_TOKEN_SQL,
+            (resultSet, rowNum) -> resultSet.getLong("expiry_time") > System.currentTimeMillis() ? resultSet.getString("email") : null,
+            tokenHash,
+            tokenType.name());
+
+        // case: unknown, or used by a concurrent call
+        if (emails.isEmpty() || this.jdbcTemplate.update(DELETE_TOKEN_SQL, tokenHash) == 0)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid or expired token");
+
+        // case: expired
+        if (emails.get(0) == null)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid or expired token");
+
+        return emails.get(0);
+    }
+
+
+    private List<GrantedAuthority> getAuthorities(String email) {
+        List<GrantedAuthority> authorities = new ArrayList<>();
+        authorities.add(new SimpleGrantedAuthority("ROLE_" + USER_ROLE));
+        this.principalAuthorityService.getAuthorities(PrincipalNames.qualify(PrincipalNames.LOCAL_PROVIDER, email)).getRoles()
+            .forEach(role -> authorities.add(new SimpleGrantedAuthority("ROLE_" + role)));
+
+        return authorities;
+    }
+
+
+    private static String normalize(String email) {
+        return email.strip().toLowerCase(Locale.ROOT);
+    }
+
+
+    private enum TokenType {
+        CONFIRM_ACCOUNT,
+        RESET_PASSWORD
+    }
+}
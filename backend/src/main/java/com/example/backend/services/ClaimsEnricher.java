@@ -0,0 +1,24 @@
+package com.example.backend.services;
+
+import java.util.Map;
+
+
+/**
+ * Stage of {@link JwtService} that adds claims to every issued access token. All beans implementing this are applied in
+ * {@code @Order}. Only the non static claims are passed, the static ones ("iss", "aud", "gty") are pre encoded by
+ * {@link com.example.backend.helpers.JwtTemplate} and cannot be changed here. <p>
+ * 
+ * Called for every token, so implementations should not block (e.g. serve from a cache).
+ * 
+ * @since latest
+ */
+@FunctionalInterface
+public interface ClaimsEnricher {
+
+    /**
+     * @param principal qualified name of the token's principal (see {@link com.example.backend.helpers.PrincipalNames}), also the
+     * "sub" claim
+     * @param claims modifiable claims of the token, initially only containing "scope". Must not add "sub", "iat", "exp", "jti" or any static claim
+     */
+    void enrich(String principal, Map<String, Object> claims);
+}
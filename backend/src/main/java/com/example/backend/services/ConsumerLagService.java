@@ -0,0 +1,370 @@
+package com.example.backend.services;
+
+import static com.example.backend.helpers.Utils.assertArgsNotNullAndNotBlankOrThrow;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.ToDoubleFunction;
+
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.example.backend.dtos.ConsumerLagDto;
+import com.example.backend.helpers.OffsetHistory;
+import com.example.backend.helpers.OffsetHistory.Snapshot;
+import com.example.backend.helpers.Validation;
+import com.example.backend.services.OffsetSampler.OffsetSample;
+import com.example.backend.services.PrincipalAuthorityService.PrincipalAuthorities;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+
+/**
+ * Monitors the lag of consumer groups users chose to watch. <p>
+ * 
+ * Every {@code CONSUMER_LAG_SAMPLE_INTERVAL_MS} the committed offsets of all watched groups and the end offsets of all their topics
+ * are sampled at once (see {@link OffsetSampler}), no matter how many users watch them. The latest {@code CONSUMER_LAG_HISTORY_SIZE}
+ * samples are kept per group and partition in an {@link OffsetHistory}. <p>
+ * 
+ * Watching needs the "ADMIN" role or a "read" (or "all") scope for the group ({@code group:<group>:read}) and each topic
+ * ({@code topic:<topic>:read}), since the offsets are sampled with the backend's own kafka credentials. Lost scopes hide the watch
+ * from {@link #getLag(String)}. A principal may watch {@code CONSUMER_LAG_MAX_WATCHES_PER_PRINCIPAL} groups, all principals together
+ * {@code CONSUMER_LAG_MAX_WATCHES}. <p>
+ * 
+ * Lag, consume rate and time to catch up are exposed per user via {@link #getLag(String)}. Gauges are not tagged with user supplied
+ * names, they only aggregate all watched partitions ("consumer.lag.partitions", "consumer.lag.total", "consumer.lag.max") and count
+ * the watches ("consumer.lag.watches").
+ * 
+ * @since latest
+ */
+@Service
+@Slf4j
+public class ConsumerLagService {
+
+    @Autowired
+    private OffsetSampler offsetSampler;
+
+    @Autowired
+    private PrincipalAuthorityService principalAuthorityService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /** In ms */
+    @Value("${CONSUMER_LAG_SAMPLE_INTERVAL_MS}")
+    private long CONSUMER_LAG_SAMPLE_INTERVAL_MS;
+
+    /** Number of samples kept per partition. Rates are averaged over this many samples */
+    @Value("${CONSUMER_LAG_HISTORY_SIZE}")
+    private int CONSUMER_LAG_HISTORY_SIZE;
+
+    /** Max groups one principal may watch */
+    @Value("${CONSUMER_LAG_MAX_WATCHES_PER_PRINCIPAL}")
+    private int CONSUMER_LAG_MAX_WATCHES_PER_PRINCIPAL;
+
+    /** Max watches of all principals together */
+    @Value("${CONSUMER_LAG_MAX_WATCHES}")
+    private int CONSUMER_LAG_MAX_WATCHES;
+
+    /** Principal name -> group -> topics. Modified while holding {@link #watchLock} only */
+    private final ConcurrentMap<String, ConcurrentMap<String, Set<String>>> watchesByPrincipal = new ConcurrentHashMap<>();
+
+    /** Guards the watch caps */
+    private final Object watchLock = new Object();
+
+    /** Number of (principal, group) watches */
+    private int watchCount = 0;
+
+    /** Group -> partition -> history. Only ever modified by the sampler thread */
+    private final ConcurrentMap<String, ConcurrentMap<TopicPartition, MonitoredPartition>> partitionsByGroup = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService samplerScheduler;
+
+    private Timer sampleTimer;
+
+    private Counter sampleFailureCounter;
+
+
+    @PostConstruct
+    void init() {
+        this.sampleTimer = this.meterRegistry.timer("consumer.lag.sample.duration");
+        this.sampleFailureCounter = this.meterRegistry.counter("consumer.lag.sample.failures");
+
+        Gauge.builder("consumer.lag.watches", this, consumerLagService -> consumerLagService.watchCount)
+            .register(this.meterRegistry);
+        Gauge.builder("consumer.lag.partitions", this, consumerLagService -> consumerLagService.aggregateLag(Collection::size))
+            .register(this.meterRegistry);
+        Gauge.builder("consumer.lag.total", this, consumerLagService -> consumerLagService.aggregateLag(lags -> lags.stream().mapToLong(Long::longValue).sum()))
+            .baseUnit("records")
+            .register(this.meterRegistry);
+        Gauge.builder("consumer.lag.max", this, consumerLagService -> consumerLagService.aggregateLag(lags -> lags.stream().mapToLong(Long::longValue).max().orElse(0)))
+            .baseUnit("records")
+            .register(this.meterRegistry);
+
+        this.samplerScheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("consumer-lag-sampler").daemon().factory());
+        this.samplerScheduler.scheduleWithFixedDelay(this::sample, this.CONSUMER_LAG_SAMPLE_INTERVAL_MS, this.CONSUMER_LAG_SAMPLE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+
+    @PreDestroy
+    void destroy() {
+        this.samplerScheduler.shutdownNow();
+    }
+
+
+    /**
+     * Start monitoring {@code group} for {@code principalName}. Replaces the topics if the principal is already watching the group.
+     * The first lag values are available after the next sample.
+     * 
+     * @param principalName the user watching
+     * @param group consumer group name
+     * @param topics the group consumes. Not empty
+     * @throws IllegalArgumentException if an arg is blank, the group or a topic is invalid
+     * @throws ResponseStatusException 403 if the principal may not read the group or a topic, 409 if the principal watches too many
+     * groups, 503 if all principals together do
+     */
+    public void watch(String principalName, String group, Set<String> topics) throws IllegalArgumentException, ResponseStatusException {
+        assertArgsNotNullAndNotBlankOrThrow(principalName, group, topics);
+
+        if (topics.isEmpty())
+            throw new IllegalArgumentException("'topics' cannot be empty");
+
+        Validation.assertConsumerOrGroupNameValidOrThrow(group);
+        topics.forEach(Validation::assertTopicValidOrThrow);
+
+        PrincipalAuthorities authorities = this.principalAuthorityService.getAuthorities(principalName);
+        if (!mayRead(authorities, "group:" + group))
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Missing scope 'group:%s:read'".formatted(group));
+
+        for (String topic : topics)
+            if (!mayRead(authorities, "topic:" + topic))
+                throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Missing scope 'topic:%s:read'".formatted(topic));
+
+        synchronized (this.watchLock) {
+            ConcurrentMap<String, Set<String>> watches = this.watchesByPrincipal.computeIfAbsent(principalName, key -> new ConcurrentHashMap<>());
+
+            // case: new watch
+            if (!watches.containsKey(group)) {
+                if (watches.size() >= this.CONSUMER_LAG_MAX_WATCHES_PER_PRINCIPAL)
+                    throw new ResponseStatusException(HttpStatus.CONFLICT, "Cannot watch more than %d groups".formatted(this.CONSUMER_LAG_MAX_WATCHES_PER_PRINCIPAL));
+
+                if (this.watchCount >= this.CONSUMER_LAG_MAX_WATCHES)
+                    throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many groups are watched, try again later");
+
+                this.watchCount++;
+            }
+
+            watches.put(group, Set.copyOf(topics));
+        }
+    }
+
+
+    /**
+     * Stop monitoring {@code group} for {@code principalName}. Partitions nobody watches anymore are dropped on the next sample.
+     * 
+     * @param principalName the user watching
+     * @param group consumer group name
+     * @return {@code true} if the principal was watching the group
+     */
+    public boolean unwatch(String principalName, String group) {
+        assertArgsNotNullAndNotBlankOrThrow(principalName, group);
+
+        synchronized (this.watchLock) {
+            Map<String, Set<String>> watches = this.watchesByPrincipal.get(principalName);
+            if (watches == null || watches.remove(group) == null)
+                return false;
+
+            this.watchCount--;
+            if (watches.isEmpty())
+                this.watchesByPrincipal.remove(principalName);
+
+            return true;
+        }
+    }
+
+
+    /**
+     * @param principalName the user watching
+     * @return lag of all partitions of all groups watched by {@code principalName} that have been sampled at least once, sorted by
+     * group, topic and partition. Leaves out groups and topics the principal may not read anymore
+     */
+    public List<ConsumerLagDto> getLag(String principalName) {
+        assertArgsNotNullAndNotBlankOrThrow(principalName);
+
+        Map<String, Set<String>> watches = this.watchesByPrincipal.getOrDefault(principalName, new ConcurrentHashMap<>());
+        PrincipalAuthorities authorities = watches.isEmpty() ? null : this.principalAuthorityService.getAuthorities(principalName);
+
+        List<ConsumerLagDto> lags = new ArrayList<>();
+        watches.forEach((group, topics) -> {
+            if (!mayRead(authorities, "group:" + group))
+                return;
+
+            Map<TopicPartition, MonitoredPartition> monitoredPartitions = this.partitionsByGroup.getOrDefault(group, new ConcurrentHashMap<>());
+
+            monitoredPartitions.forEach((topicPartition, monitoredPartition) -> {
+                if (!topics.contains(topicPartition.topic()) || !mayRead(authorities, "topic:" + topicPartition.topic()))
+                    return;
+
+                Snapshot snapshot = monitoredPartition.history().snapshot();
+                if (snapshot != null)
+                    lags.add(new ConsumerLagDto(
+                        group,
+                        topicPartition.topic(),
+                        topicPartition.partition(),
+                        snapshot.committedOffset(),
+                        snapshot.endOffset(),
+                        snapshot.lag(),
+                        snapshot.consumeRate(),
+                        snapshot.produceRate(),
+                        snapshot.timeToCatchUp(),
+                        snapshot.timestamp()));
+            });
+        });
+
+        lags.sort(Comparator
+            .comparing(ConsumerLagDto::getGroup)
+            .thenComparing(ConsumerLagDto::getTopic)
+            .thenComparingInt(ConsumerLagDto::getPartition));
+
+        return lags;
+    }
+
+
+    /**
+     * Scheduled. Never throws, a failed sample is skipped.
+     */
+    private void sample() {
+        try {
+            sample(System.currentTimeMillis());
+
+        } catch (Exception e) {
+            this.sampleFailureCounter.increment();
+            log.warn("Failed to sample consumer lag: {}", e.getMessage());
+        }
+    }
+
+
+    /**
+     * Sample all watched groups with one call to the {@link OffsetSampler} and drop partitions nobody watches anymore.
+     * 
+     * @param timestamp of the sample, in ms
+     * @throws ExecutionException if the sampler failed
+     * @throws TimeoutException if the sampler timed out
+     * @throws InterruptedException
+     */
+    void sample(long timestamp) throws ExecutionException, TimeoutException, InterruptedException {
+        Map<String, Set<String>> topicsByGroup = getWatchedTopicsByGroup();
+
+        removeUnwatchedPartitions(topicsByGroup);
+
+        if (topicsByGroup.isEmpty())
+            return;
+
+        long start = System.nanoTime();
+        OffsetSample offsetSample = this.offsetSampler.sample(topicsByGroup);
+        this.sampleTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        topicsByGroup.forEach((group, topics) -> {
+            Map<TopicPartition, Long> committedOffsets = offsetSample.committedOffsets().get(group);
+
+            // case: group failed to be sampled, skip instead of recording a wrong lag
+            if (committedOffsets == null)
+                return;
+
+            ConcurrentMap<TopicPartition, MonitoredPartition> monitoredPartitions = this.partitionsByGroup.computeIfAbsent(group, key -> new ConcurrentHashMap<>());
+
+            offsetSample.endOffsets().forEach((topicPartition, endOffset) -> {
+                if (!topics.contains(topicPartition.topic()))
+                    return;
+
+                monitoredPartitions
+                    .computeIfAbsent(topicPartition, key -> new MonitoredPartition(new OffsetHistory(this.CONSUMER_LAG_HISTORY_SIZE)))
+                    .history()
+                    .add(timestamp, committedOffsets.getOrDefault(topicPartition, -1L), endOffset);
+            });
+        });
+    }
+
+
+    /**
+     * @return union of all watches of all principals
+     */
+    private Map<String, Set<String>> getWatchedTopicsByGroup() {
+        Map<String, Set<String>> topicsByGroup = new HashMap<>();
+
+        this.watchesByPrincipal.values().forEach(watches ->
+            watches.forEach((group, topics) ->
+                topicsByGroup.computeIfAbsent(group, key -> new HashSet<>()).addAll(topics)));
+
+        return topicsByGroup;
+    }
+
+
+    /**
+     * Remove histories of partitions whose group or topic is not watched anymore.
+     * 
+     * @param topicsByGroup all current watches
+     */
+    private void removeUnwatchedPartitions(Map<String, Set<String>> topicsByGroup) {
+        this.partitionsByGroup.entrySet().removeIf(groupEntry -> {
+            Set<String> topics = topicsByGroup.getOrDefault(groupEntry.getKey(), Set.of());
+            groupEntry.getValue().keySet().removeIf(topicPartition -> !topics.contains(topicPartition.topic()));
+
+            return groupEntry.getValue().isEmpty();
+        });
+    }
+
+
+    /**
+     * @param aggregate applied to the latest lag of all sampled partitions
+     * @return value for a gauge
+     */
+    private double aggregateLag(ToDoubleFunction<Collection<Long>> aggregate) {
+        List<Long> lags = new ArrayList<>();
+        this.partitionsByGroup.values().forEach(monitoredPartitions -> monitoredPartitions.values().forEach(monitoredPartition -> {
+            Snapshot snapshot = monitoredPartition.history().snapshot();
+            if (snapshot != null)
+                lags.add(snapshot.lag());
+        }));
+
+        return aggregate.applyAsDouble(lags);
+    }
+
+
+    /**
+     * @param authorities of the principal
+     * @param resource e.g. "topic:orders" or "group:billing"
+     * @return {@code true} if {@code authorities} contain the "ADMIN" role or the "read" or "all" scope of {@code resource}
+     */
+    private static boolean mayRead(PrincipalAuthorities authorities, String resource) {
+        return authorities.getRoles().contains(PrincipalAuthorityService.ADMIN_ROLE)
+            || authorities.getTopicScopes().contains(resource + ":read")
+            || authorities.getTopicScopes().contains(resource + ":all");
+    }
+
+
+    private record MonitoredPartition(OffsetHistory history) {}
+}
@@ -0,0 +1,456 @@
+package com.example.backend.services;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.example.backend.helpers.ObjectPool;
+import com.example.backend.helpers.Utils;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+
+/**
+ * AES-GCM encryption with a random 96 bit nonce per message (or per stream). Keys are parsed once from {@code ENCRYPTION_KEYS},
+ * the first one encrypts, all of them decrypt, so keys can be rotated by prepending a new one. Blank keys are only accepted if
+ * {@code ENV=development}, everything encrypted with the generated key is unreadable after a restart or on another replica. <p>
+ *
+ * Message format: {@code [version 1][key id length][key id][nonce 12][ciphertext][tag 16]}. <p>
+ *
+ * Stream format (for payloads too large for memory, GCM would buffer the whole ciphertext on decrypt):
+ * {@code [version 2][key id length][key id][nonce prefix 8]} followed by segments of {@link #SEGMENT_SIZE} plaintext bytes, each
+ * sealed on its own with nonce {@code prefix + segment index} and the header plus a "last segment" flag as aad. The last segment
+ * is shorter than a full one (possibly empty), so reordered, dropped or truncated segments fail to decrypt. <p>
+ *
+ * Random nonces are safe for about 2^32 messages per key.
+ *
+ * @since latest
+ */
+@Service
+@Slf4j
+public class CryptoService {
+
+    /** Plaintext bytes per stream segment */
+    public static final int SEGMENT_SIZE = 64 * 1024;
+
+    static final int TAG_LENGTH = 16;
+
+    static final int NONCE_LENGTH = 12;
+
+    private static final int STREAM_NONCE_PREFIX_LENGTH = 8;
+
+    private static final byte MESSAGE_VERSION = 1;
+
+    private static final byte STREAM_VERSION = 2;
+
+    private static final String ALGORITHM_NAME = "AES/GCM/NoPadding";
+
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    private final ObjectPool<Cipher> cipherPool = new ObjectPool<>();
+
+    /** Comma separated 'keyId=base64Key' pairs, keys need to be 16, 24 or 32 bytes. Blank for a key that is only valid until shutdown */
+    @Value("${ENCRYPTION_KEYS}")
+    private String ENCRYPTION_KEYS;
+
+    @Value("${ENV}")
+    private String ENV;
+
+    /** Key id -> key, in order */
+    private Map<String, SecretKey> keys;
+
+    private String activeKeyId;
+
+    /** Version, key id length and key id of the active key, the same for every message */
+    private byte[] activeMessageHeader;
+
+    private byte[] activeStreamHeader;
+
+
+    @PostConstruct
+    void init() {
+        Map<String, SecretKey> keys = new LinkedHashMap<>();
+
+        if (Utils.isBlank(this.ENCRYPTION_KEYS)) {
+            if (!"development".equals(this.ENV))
+                throw new IllegalStateException("Missing ENCRYPTION_KEYS, a generated key is only allowed if ENV=development");
+
+            log.warn("No ENCRYPTION_KEYS configured, generating a key that is only valid until shutdown");
+            byte[] key = new byte[32];
+            this.secureRandom.nextBytes(key);
+            keys.put("generated", new SecretKeySpec(key, "AES"));
+
+        } else
+            for (String pair : this.ENCRYPTION_KEYS.split(",")) {
+                String[] keyIdAndKey = pair.trim().split("=", 2);
+                if (keyIdAndKey.length != 2 || Utils.isBlank(keyIdAndKey[0]) || keyIdAndKey[0].length() > 255 || keys.containsKey(keyIdAndKey[0]))
+                    throw new IllegalStateException("Invalid or duplicate key id in ENCRYPTION_KEYS, expected 'keyId=base64Key' pairs");
+
+                byte[] key = Base64.getDecoder().decode(keyIdAndKey[1].trim());
+                if (key.length != 16 && key.length != 24 && key.length != 32)
+                    throw new IllegalStateException("Key '%s' in ENCRYPTION_KEYS needs to be 16, 24 or 32 bytes long".formatted(keyIdAndKey[0]));
+
+                keys.put(keyIdAndKey[0], new SecretKeySpec(key, "AES"));
+            }
+
+        this.keys = Map.copyOf(keys);
+        this.activeKeyId = keys.keySet().iterator().next();
+        this.activeMessageHeader = header(MESSAGE_VERSION, this.activeKeyId);
+        this.activeStreamHeader = header(STREAM_VERSION, this.activeKeyId);
+    }
+
+
+    /**
+     * @param plaintext to encrypt
+     * @return base64url encoded message
+     * @throws IllegalArgumentException if {@code plaintext} is {@code null}
+     */
+    public String encrypt(String plaintext) throws IllegalArgumentException {
+        if (plaintext == null)
+            throw new IllegalArgumentException("'plaintext' cannot be null");
+
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(encrypt(plaintext.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * @param message base64url encoded, from {@link #encrypt(String)}
+     * @return the plaintext
+     * @throws IllegalArgumentException if {@code message} was tampered with, encrypted with an unknown key or is no message at all
+     */
+    public String decrypt(String message) throws IllegalArgumentException {
+        Utils.assertArgsNotNullAndNotBlankOrThrow(message);
+
+        return new String(decrypt(Base64.getUrlDecoder().decode(message)), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param plaintext to encrypt
+     * @return the message
+     */
+    public byte[] encrypt(byte[] plaintext) {
+        ByteBuffer message = ByteBuffer.allocate(getMessageLength(plaintext.length));
+        encrypt(ByteBuffer.wrap(plaintext), message);
+
+        return message.array();
+    }
+
+    /**
+     * @param message from {@link #encrypt(byte[])}
+     * @return the plaintext
+     * @throws IllegalArgumentException see {@link #decrypt(String)}
+     */
+    public byte[] decrypt(byte[] message) throws IllegalArgumentException {
+        // header length depends on the key id of the message, not the active one
+        int plaintextLength = message.length < 2 ? -1 : message.length - (2 + (message[1] & 0xff)) - NONCE_LENGTH - TAG_LENGTH;
+        if (plaintextLength < 0)
+            throw new IllegalArgumentException("Failed to decrypt: message too short");
+
+        byte[] plaintext = new byte[plaintextLength];
+        decrypt(ByteBuffer.wrap(message), ByteBuffer.wrap(plaintext));
+
+        return plaintext;
+    }
+
+    /**
+     * Encrypt the remaining bytes of {@code plaintext} into {@code message} without intermediate copies (direct buffers are
+     * processed off heap).
+     *
+     * @param plaintext read until its limit
+     * @param message needs {@link #getMessageLength(int)} bytes remaining
+     * @return bytes written to {@code message}
+     * @throws IllegalArgumentException if {@code message} is too small
+     */
+    public int encrypt(ByteBuffer plaintext, ByteBuffer message) throws IllegalArgumentException {
+        int messageLength = getMessageLength(plaintext.remaining());
+        if (message.remaining() < messageLength)
+            throw new IllegalArgumentException("'message' needs %d bytes remaining".formatted(messageLength));
+
+        byte[] nonce = new byte[NONCE_LENGTH];
+        this.secureRandom.nextBytes(nonce);
+        message.put(this.activeMessageHeader);
+        message.put(nonce);
+
+        Cipher cipher = borrowCipher();
+        try {
+            cipher.init(Cipher.ENCRYPT_MODE, this.keys.get(this.activeKeyId), new GCMParameterSpec(TAG_LENGTH * 8, nonce));
+            cipher.updateAAD(this.activeMessageHeader);
+            cipher.doFinal(plaintext, message);
+
+            return messageLength;
+
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to encrypt: " + e.getMessage());
+
+        } finally {
+            this.cipherPool.offer(cipher);
+        }
+    }
+
+    /**
+     * @param message read until its limit
+     * @param plaintext needs the message length minus the overhead remaining
+     * @return bytes written to {@code plaintext}
+     * @throws IllegalArgumentException see {@link #decrypt(String)}, or if {@code plaintext} is too small
+     */
+    public int decrypt(ByteBuffer message, ByteBuffer plaintext) throws IllegalArgumentException {
+        byte[] header = readHeader(message, MESSAGE_VERSION);
+        SecretKey key = getKey(header);
+
+        if (message.remaining() < NONCE_LENGTH + TAG_LENGTH)
+            throw new IllegalArgumentException("Failed to decrypt: message too short");
+
+        byte[] nonce = new byte[NONCE_LENGTH];
+        message.get(nonce);
+
+        int plaintextLength = message.remaining() - TAG_LENGTH;
+        if (plaintext.remaining() < plaintextLength)
+            throw new IllegalArgumentException("'plaintext' needs %d bytes remaining".formatted(plaintextLength));
+
+        Cipher cipher = borrowCipher();
+        try {
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH * 8, nonce));
+            cipher.updateAAD(header);
+
+            return cipher.doFinal(message, plaintext);
+
+        } catch (AEADBadTagException e) {
+            throw new IllegalArgumentException("Failed to decrypt: message was modified or encrypted with another key");
+
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to decrypt: " + e.getMessage());
+
+        } finally {
+            this.cipherPool.offer(cipher);
+        }
+    }
+
+    /**
+     * Encrypt everything readable from {@code plaintext} segment by segment, holding at most one segment in memory. Channels are
+     * not closed.
+     *
+     * @param plaintext read until end of stream
+     * @param stream to write the encrypted stream to
+     * @return bytes written to {@code stream}
+     * @throws IOException if reading or writing fails
+     */
+    public long encrypt(ReadableByteChannel plaintext, WritableByteChannel stream) throws IOException {
+        byte[] noncePrefix = new byte[STREAM_NONCE_PREFIX_LENGTH];
+        this.secureRandom.nextBytes(noncePrefix);
+
+        byte[] header = this.activeStreamHeader;
+        long written = writeFully(stream, ByteBuffer.wrap(header)) + writeFully(stream, ByteBuffer.wrap(noncePrefix));
+
+        ByteBuffer plaintextSegment = ByteBuffer.allocateDirect(SEGMENT_SIZE);
+        ByteBuffer encryptedSegment = ByteBuffer.allocateDirect(SEGMENT_SIZE + TAG_LENGTH);
+
+        Cipher cipher = borrowCipher();
+        try {
+            for (int segmentIndex = 0; ; segmentIndex++) {
+                plaintextSegment.clear();
+                boolean isLastSegment = readFully(plaintext, plaintextSegment) < SEGMENT_SIZE;
+                plaintextSegment.flip();
+
+                encryptedSegment.clear();
+                cipher.init(Cipher.ENCRYPT_MODE, this.keys.get(this.activeKeyId), segmentParameterSpec(noncePrefix, segmentIndex));
+                cipher.updateAAD(header);
+                cipher.updateAAD(new byte[] {(byte) (isLastSegment ? 1 : 0)});
+                cipher.doFinal(plaintextSegment, encryptedSegment);
+                encryptedSegment.flip();
+
+                written += writeFully(stream, encryptedSegment);
+
+                if (isLastSegment)
+                    return written;
+            }
+
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to encrypt stream: " + e.getMessage());
+
+        } finally {
+            this.cipherPool.offer(cipher);
+        }
+    }
+
+    /**
+     * Decrypt a stream from {@link #encrypt(ReadableByteChannel, WritableByteChannel)}. Each segment is verified before it's
+     * written, so on failure {@code plaintext} may contain the verified segments before the broken one. Channels are not closed.
+     *
+     * @param stream read until end of stream
+     * @param plaintext to write the decrypted bytes to
+     * @return bytes written to {@code plaintext}
+     * @throws IllegalArgumentException if the stream was modified, truncated or encrypted with an unknown key
+     * @throws IOException if reading or writing fails
+     */
+    public long decrypt(ReadableByteChannel stream, WritableByteChannel plaintext) throws IllegalArgumentException, IOException {
+        ByteBuffer versionAndKeyIdLength = ByteBuffer.allocate(2);
+        if (readFully(stream, versionAndKeyIdLength) < 2)
+            throw new IllegalArgumentException("Failed to decrypt stream: stream too short");
+
+        ByteBuffer headerAndNoncePrefix = ByteBuffer.allocate(2 + (versionAndKeyIdLength.get(1) & 0xff) + STREAM_NONCE_PREFIX_LENGTH);
+        headerAndNoncePrefix.put(versionAndKeyIdLength.flip());
+        if (readFully(stream, headerAndNoncePrefix) < headerAndNoncePrefix.capacity() - 2)
+            throw new IllegalArgumentException("Failed to decrypt stream: stream too short");
+        headerAndNoncePrefix.flip();
+
+        byte[] header = readHeader(headerAndNoncePrefix, STREAM_VERSION);
+        SecretKey key = getKey(header);
+        byte[] noncePrefix = new byte[STREAM_NONCE_PREFIX_LENGTH];
+        headerAndNoncePrefix.get(noncePrefix);
+
+        ByteBuffer encryptedSegment = ByteBuffer.allocateDirect(SEGMENT_SIZE + TAG_LENGTH);
+        ByteBuffer plaintextSegment = ByteBuffer.allocateDirect(SEGMENT_SIZE);
+        long written = 0;
+
+        Cipher cipher = borrowCipher();
+        try {
+            for (int segmentIndex = 0; ; segmentIndex++) {
+                encryptedSegment.clear();
+                int segmentLength = readFully(stream, encryptedSegment);
+                boolean isLastSegment = segmentLength < encryptedSegment.capacity();
+                if (segmentLength < TAG_LENGTH)
+                    throw new IllegalArgumentException("Failed to decrypt stream: stream truncated");
+                encryptedSegment.flip();
+
+                plaintextSegment.clear();
+                cipher.init(Cipher.DECRYPT_MODE, key, segmentParameterSpec(noncePrefix, segmentIndex));
+                cipher.updateAAD(header);
+                cipher.updateAAD(new byte[] {(byte) (isLastSegment ? 1 : 0)});
+                cipher.doFinal(encryptedSegment, plaintextSegment);
+                plaintextSegment.flip();
+
+                written += writeFully(plaintext, plaintextSegment);
+
+                if (isLastSegment)
+                    return written;
+            }
+
+        } catch (AEADBadTagException e) {
+            throw new IllegalArgumentException("Failed to decrypt stream: stream was modified, truncated or encrypted with another key");
+
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to decrypt stream: " + e.getMessage());
+
+        } finally {
+            this.cipherPool.offer(cipher);
+        }
+    }
+
+    /**
+     * @param plaintextLength
+     * @return length of the message (header, nonce and tag included) when encrypting {@code plaintextLength} bytes with the active key
+     */
+    public int getMessageLength(int plaintextLength) {
+        return this.activeMessageHeader.length + NONCE_LENGTH + plaintextLength + TAG_LENGTH;
+    }
+
+
+    private Cipher borrowCipher() {
+        Cipher cipher = this.cipherPool.poll();
+        if (cipher != null)
+            return cipher;
+
+        try {
+            return Cipher.getInstance(ALGORITHM_NAME);
+
+        // should not happen
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param header from {@link #readHeader(ByteBuffer, byte)}
+     * @return the key of the key id in {@code header}
+     * @throws IllegalArgumentException if the key id is unknown
+     */
+    private SecretKey getKey(byte[] header) throws IllegalArgumentException {
+        String keyId = new String(header, 2, header.length - 2, StandardCharsets.UTF_8);
+        SecretKey key = this.keys.get(keyId);
+        if (key == null)
+            throw new IllegalArgumentException("Failed to decrypt: unknown key id '%s'".formatted(keyId));
+
+        return key;
+    }
+
+    /**
+     * @param source positioned at the version byte, positioned after the key id afterwards
+     * @param expectedVersion {@link #MESSAGE_VERSION} or {@link #STREAM_VERSION}
+     * @return version, key id length and key id
+     * @throws IllegalArgumentException if the version does not match or {@code source} is too short
+     */
+    private static byte[] readHeader(ByteBuffer source, byte expectedVersion) throws IllegalArgumentException {
+        if (source.remaining() < 2 || source.get(source.position()) != expectedVersion)
+            throw new IllegalArgumentException("Failed to decrypt: unknown format");
+
+        int headerLength = 2 + (source.get(source.position() + 1) & 0xff);
+        if (source.remaining() < headerLength)
+            throw new IllegalArgumentException("Failed to decrypt: message too short");
+
+        byte[] header = new byte[headerLength];
+        source.get(header);
+
+        return header;
+    }
+
+    private static byte[] header(byte version, String keyId) {
+        byte[] keyIdBytes = keyId.getBytes(StandardCharsets.UTF_8);
+        byte[] header = new byte[2 + keyIdBytes.length];
+        header[0] = version;
+        header[1] = (byte) keyIdBytes.length;
+        System.arraycopy(keyIdBytes, 0, header, 2, keyIdBytes.length);
+
+        return header;
+    }
+
+    private static GCMParameterSpec segmentParameterSpec(byte[] noncePrefix, int segmentIndex) {
+        byte[] nonce = new byte[NONCE_LENGTH];
+        System.arraycopy(noncePrefix, 0, nonce, 0, STREAM_NONCE_PREFIX_LENGTH);
+        nonce[8] = (byte) (segmentIndex >>> 24);
+        nonce[9] = (byte) (segmentIndex >>> 16);
+        nonce[10] = (byte) (segmentIndex >>> 8);
+        nonce[11] = (byte) segmentIndex;
+
+        return new GCMParameterSpec(TAG_LENGTH * 8, nonce);
+    }
+
+    /**
+     * @return bytes read, less than {@code buffer.remaining()} only at end of stream
+     */
+    private static int readFully(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        int read = 0;
+        while (buffer.hasRemaining()) {
+            int chunk = channel.read(buffer);
+            if (chunk == -1)
+                break;
+
+            read += chunk;
+        }
+
+        return read;
+    }
+
+    private static int writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+        int written = 0;
+        while (buffer.hasRemaining())
+            written += channel.write(buffer);
+
+        return written;
+    }
+}
@@ -0,0 +1,336 @@
+package com.example.backend.services;
+
+import java.io.File;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import com.example.backend.config.RsaKeyService;
+import com.example.backend.dtos.JwkDto;
+import com.example.backend.dtos.JwkDto.JwkSetDto;
+import com.example.backend.helpers.Hashing;
+import com.example.backend.helpers.JwtTemplate;
+import com.example.backend.helpers.Utils;
+import com.example.backend.services.Oauth2Service.WellKnownDto;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nimbusds.jose.Algorithm;
+import com.nimbusds.jose.jwk.KeyUse;
+import com.nimbusds.jose.jwk.RSAKey;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.Nullable;
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+
+/**
+ * Logical token issuers served by this backend, one per redpanda cluster. Each has its own "iss" and "aud" claim, signing key,
+ * discovery document and jwks. <p>
+ *
+ * The default issuer keeps the unprefixed paths, the key of {@link RsaKeyService} and audience "pandaproxy". Others are served at
+ * {@code /issuers/{id}/...} (e.g. "/issuers/cluster-b/.well-known/openid-configuration") or at the unprefixed paths if the request's
+ * host is in the {@code JWT_ISSUER_HOSTS} allow-list, see {@code IssuerFilter}. <p>
+ *
+ * Everything is built on startup (including the serialized documents and the meters), so a request only does a map lookup no
+ * matter how many issuers there are.
+ *
+ * @since latest
+ */
+@Service
+@Slf4j
+public class IssuerRegistry {
+
+    public static final String DEFAULT_ISSUER_ID = "default";
+
+    public static final String DEFAULT_AUDIENCE = "pandaproxy";
+
+    /** Followed by the issuer id */
+    public static final String PATH_PREFIX = "/issuers/";
+
+    /** Request attribute holding the {@link Issuer} selected by {@code IssuerFilter} */
+    public static final String ISSUER_ATTRIBUTE = IssuerRegistry.class.getName() + ".issuer";
+
+    /** Issuer ids are part of urls and metric tags */
+    private static final Pattern ISSUER_ID_PATTERN = Pattern.compile("^[a-z0-9\\-]{1,63}$");
+
+    private final ObjectMapper objectMapper = Utils.getDefaultObjectMapper();
+
+    @Autowired
+    private RsaKeyService rsaKeyService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${BASE_URL_DOCKER}")
+    private String BASE_URL_DOCKER;
+
+    /** Comma separated 'id=audience' pairs, in addition to the default issuer */
+    @Value("${JWT_ISSUERS}")
+    private String JWT_ISSUERS;
+
+    /** Comma separated 'host=id' pairs, the only hosts that select an issuer */
+    @Value("${JWT_ISSUER_HOSTS}")
+    private String JWT_ISSUER_HOSTS;
+
+    /** Containing '{id}.private.key.pem' and '{id}.public.key.pem' per issuer */
+    @Value("${JWT_ISSUER_KEY_DIR}")
+    private String JWT_ISSUER_KEY_DIR;
+
+    /** Immutable */
+    private Map<String, Issuer> issuersById;
+
+    /** Immutable, lower case host names */
+    private Map<String, Issuer> issuersByHost;
+
+    @Getter
+    private Issuer defaultIssuer;
+
+
+    @PostConstruct
+    void init() {
+        Map<String, Issuer> issuersById = new LinkedHashMap<>();
+
+        this.defaultIssuer = createIssuer(DEFAULT_ISSUER_ID, this.BASE_URL_DOCKER, DEFAULT_AUDIENCE, this.rsaKeyService.getKeyPair(), this.rsaKeyService.getKeyId());
+        issuersById.put(DEFAULT_ISSUER_ID, this.defaultIssuer);
+
+        for (Map.Entry<String, String> idAndAudience : parsePairs(this.JWT_ISSUERS, "JWT_ISSUERS").entrySet()) {
+            String id = idAndAudience.getKey();
+            if (!ISSUER_ID_PATTERN.matcher(id).matches() || issuersById.containsKey(id))
+                throw new IllegalStateException("Invalid or duplicate issuer id '%s' in JWT_ISSUERS".formatted(id));
+
+            KeyPair keyPair = readOrGenerateKeyPair(id);
+            issuersById.put(id, createIssuer(id, this.BASE_URL_DOCKER + PATH_PREFIX + id, idAndAudience.getValue(), keyPair, RsaKeyService.computeKeyId(keyPair.getPublic())));
+        }
+
+        Map<String, Issuer> issuersByHost = new LinkedHashMap<>();
+        for (Map.Entry<String, String> hostAndId : parsePairs(this.JWT_ISSUER_HOSTS, "JWT_ISSUER_HOSTS").entrySet()) {
+            Issuer issuer = issuersById.get(hostAndId.getValue());
+            if (issuer == null)
+                throw new IllegalStateException("Unknown issuer id '%s' in JWT_ISSUER_HOSTS".formatted(hostAndId.getValue()));
+
+            issuersByHost.put(hostAndId.getKey().toLowerCase(Locale.ROOT), issuer);
+        }
+
+        this.issuersById = Map.copyOf(issuersById);
+        this.issuersByHost = Map.copyOf(issuersByHost);
+
+        log.info("Serving {} token issuer(s): {}", this.issuersById.size(), issuersById.keySet());
+    }
+
+
+    /**
+     * @param id issuer id
+     * @return the issuer or {@code null} if none with that id
+     */
+    @Nullable
+    public Issuer getIssuer(String id) {
+        return id == null ? null : this.issuersById.get(id);
+    }
+
+    /**
+     * @param host request host without port, case insensitive
+     * @return the issuer mapped to {@code host} or {@code null} if it's not in the allow-list
+     */
+    @Nullable
+    public Issuer getIssuerByHost(String host) {
+        return host == null || this.issuersByHost.isEmpty() ? null : this.issuersByHost.get(host.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * @return the issuer selected for the current request or the default issuer if there's none (e.g. when called asynchronously)
+     */
+    public Issuer getCurrentIssuer() {
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        if (requestAttributes == null)
+            return this.defaultIssuer;
+
+        Object issuer = requestAttributes.getAttribute(ISSUER_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+
+        return issuer instanceof Issuer ? (Issuer) issuer : this.defaultIssuer;
+    }
+
+    public Collection<Issuer> getIssuers() {
+        return this.issuersById.values();
+    }
+
+
+    private Issuer createIssuer(String id, String issuerUri, String audience, KeyPair keyPair, String keyId) {
+        Map<String, Object> staticClaims = new LinkedHashMap<>();
+        staticClaims.put("iss", issuerUri);
+        staticClaims.put("aud", audience);
+        staticClaims.put("gty", "client-credentials");
+
+        RSAKey rsaKey = new RSAKey.Builder((RSAPublicKey) keyPair.getPublic())
+            .keyUse(KeyUse.SIGNATURE)
+            .keyID(keyId)
+            .algorithm(Algorithm.parse(JwtTemplate.ALGORITHM))
+            .build();
+
+        JwkSetDto jwks = new JwkSetDto(List.of(
+            new JwkDto(
+                rsaKey.getKeyType().getValue(),
+                rsaKey.getAlgorithm().getName(),
+                rsaKey.getKeyID(),
+                rsaKey.getKeyUse().identifier(),
+                rsaKey.getModulus().toString(),
+                rsaKey.getPublicExponent().toString())
+        ));
+
+        WellKnownDto discoveryDocument = new WellKnownDto(
+            issuerUri,
+            issuerUri + "/.well-known/jwks",
+            new String[] {"public"},
+            new String[] {"id_token", "client-credentials"},
+            new String[] {"sub", "iss", "exp", "iat", "aud", "gty", "jti"},
+            issuerUri + "/oauth2/token",
+            new String[] {"openid"},
+            new String[] {JwtTemplate.ALGORITHM}
+        );
+
+        try {
+            byte[] discoveryDocumentBytes = this.objectMapper.writeValueAsBytes(discoveryDocument);
+            byte[] jwksBytes = this.objectMapper.writeValueAsBytes(jwks);
+
+            return new Issuer(
+                id,
+                issuerUri,
+                audience,
+                keyPair,
+                new JwtTemplate(keyPair.getPrivate(), keyId, staticClaims),
+                discoveryDocumentBytes,
+                etag(discoveryDocumentBytes),
+                jwksBytes,
+                etag(jwksBytes),
+                Counter.builder("issuer.tokens.issued").tag("issuer", id).register(this.meterRegistry),
+                Counter.builder("issuer.documents.served").tag("issuer", id).tag("document", "discovery").register(this.meterRegistry),
+                Counter.builder("issuer.documents.served").tag("issuer", id).tag("document", "jwks").register(this.meterRegistry));
+
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize documents of issuer '%s'".formatted(id), e);
+        }
+    }
+
+    /**
+     * @param document serialized
+     * @return strong etag of {@code document}, quoted
+     */
+    private static String etag(byte[] document) {
+        return '"' + Hashing.sha256Hex(document) + '"';
+    }
+
+    /**
+     * @param id issuer id
+     * @return the key pair from {@code JWT_ISSUER_KEY_DIR} or a new one if there are no key files for {@code id}
+     */
+    private KeyPair readOrGenerateKeyPair(String id) {
+        File privateKeyFile = new File(this.JWT_ISSUER_KEY_DIR, id + ".private.key.pem");
+        File publicKeyFile = new File(this.JWT_ISSUER_KEY_DIR, id + ".public.key.pem");
+
+        if (privateKeyFile.isFile() && publicKeyFile.isFile())
+            return this.rsaKeyService.readKeyPair(privateKeyFile.getPath(), publicKeyFile.getPath());
+
+        log.warn("No key files for issuer '{}' in '{}', generating a key that is only valid until shutdown", id, this.JWT_ISSUER_KEY_DIR);
+        try {
+            KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+            keyPairGenerator.initialize(2048);
+
+            return keyPairGenerator.generateKeyPair();
+
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param pairs comma separated 'key=value' pairs, may be blank
+     * @param envName for the error message
+     * @return pairs in order
+     * @throws IllegalStateException if a pair is malformed
+     */
+    private static Map<String, String> parsePairs(String pairs, String envName) throws IllegalStateException {
+        Map<String, String> parsedPairs = new LinkedHashMap<>();
+        if (Utils.isBlank(pairs))
+            return parsedPairs;
+
+        for (String pair : pairs.split(",")) {
+            String[] keyAndValue = pair.trim().split("=", 2);
+            if (keyAndValue.length != 2 || Utils.isBlank(keyAndValue[0]) || Utils.isBlank(keyAndValue[1]))
+                throw new IllegalStateException("Invalid pair '%s' in %s, expected 'key=value'".formatted(pair, envName));
+
+            parsedPairs.put(keyAndValue[0].trim(), keyAndValue[1].trim());
+        }
+
+        return parsedPairs;
+    }
+
+
+    /**
+     * One logical issuer with its precomputed documents and meters.
+     */
+    @Getter
+    public static class Issuer {
+
+        /** "default" or the id from {@code JWT_ISSUERS} */
+        private final String id;
+
+        /** The "iss" claim */
+        private final String issuerUri;
+
+        /** The "aud" claim */
+        private final String audience;
+
+        private final KeyPair keyPair;
+
+        /** Header and static claims of this issuer encoded once */
+        private final JwtTemplate jwtTemplate;
+
+        /** Serialized "/.well-known/openid-configuration" */
+        private final byte[] discoveryDocument;
+
+        private final String discoveryDocumentEtag;
+
+        /** Serialized "/.well-known/jwks" */
+        private final byte[] jwks;
+
+        /** Lets jwks clients revalidate with "If-None-Match" instead of downloading the keys again */
+        private final String jwksEtag;
+
+        private final Counter tokensIssued;
+
+        private final Counter discoveryDocumentsServed;
+
+        private final Counter jwksServed;
+
+
+        Issuer(String id, String issuerUri, String audience, KeyPair keyPair, JwtTemplate jwtTemplate, byte[] discoveryDocument, String discoveryDocumentEtag, byte[] jwks, String jwksEtag, Counter tokensIssued, Counter discoveryDocumentsServed, Counter jwksServed) {
+            this.id = id;
+            this.issuerUri = issuerUri;
+            this.audience = audience;
+            this.keyPair = keyPair;
+            this.jwtTemplate = jwtTemplate;
+            this.discoveryDocument = discoveryDocument;
+            this.discoveryDocumentEtag = discoveryDocumentEtag;
+            this.jwks = jwks;
+            this.jwksEtag = jwksEtag;
+            this.tokensIssued = tokensIssued;
+            this.discoveryDocumentsServed = discoveryDocumentsServed;
+            this.jwksServed = jwksServed;
+        }
+    }
+}
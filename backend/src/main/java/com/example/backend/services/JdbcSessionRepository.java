@@ -0,0 +1,471 @@
+package com.example.backend.services;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.session.Session;
+import org.springframework.session.SessionRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+
+/**
+ * Stores http sessions in the {@code app_session} table so any replica can serve any request. Active if {@code SESSION_STORE=jdbc},
+ * see {@code SessionConfig}. <p>
+ * 
+ * Each attribute is stored in its own {@code app_session_attribute} row (see {@link SessionAttributeSerializer}), so concurrent requests
+ * of the same session that change different attributes don't overwrite each other. Attribute values hold oauth2 access tokens and
+ * are encrypted with {@link CryptoService}, attributes that fail to decrypt (e.g. after the key was removed) are skipped. Reading a session is a single join by primary key. 
+ * Writes are dirty checked: an attribute is only written if its serialized bytes changed, the last access time only every 
+ * {@code SESSION_LAST_ACCESS_WRITE_INTERVAL_MS}. Most requests therefore don't write at all. As a consequence sessions may expire up to
+ * that interval earlier than {@code server.servlet.session.timeout}. <p>
+ * 
+ * Metrics: "session.reads", "session.writes", "session.writes.skipped" and "session.attributes.bytes" (written per save).
+ * 
+ * @since latest
+ */
+@Service
+@ConditionalOnProperty(name = "SESSION_STORE", havingValue = "jdbc")
+@Slf4j
+public class JdbcSessionRepository implements SessionRepository<JdbcSessionRepository.JdbcSession> {
+
+    private static final String CREATE_TABLE_SQL = """
+        CREATE TABLE IF NOT EXISTS app_session (
+            id VARCHAR(64) PRIMARY KEY,
+            creation_time BIGINT NOT NULL,
+            last_access_time BIGINT NOT NULL,
+            max_inactive_seconds INT NOT NULL,
+            expiry_time BIGINT NOT NULL
+        )""";
+    private static final String CREATE_ATTRIBUTE_TABLE_SQL = """
+        CREATE TABLE IF NOT EXISTS app_session_attribute (
+            session_id VARCHAR(64) NOT NULL,
+            name VARCHAR(200) NOT NULL,
+            attribute_value BINARY LARGE OBJECT NOT NULL,
+            PRIMARY KEY (session_id, name),
+            FOREIGN KEY (session_id) REFERENCES app_session (id) ON UPDATE CASCADE ON DELETE CASCADE
+        )""";
+    private static final String CREATE_INDEX_SQL = "CREATE INDEX IF NOT EXISTS app_session_expiry_time ON app_session (expiry_time)";
+    private static final String INSERT_SQL = "INSERT INTO app_session (id, creation_time, last_access_time, max_inactive_seconds, expiry_time) VALUES (?, ?, ?, ?, ?)";
+    private static final String UPDATE_SQL = "UPDATE app_session SET id = ?, last_access_time = ?, max_inactive_seconds = ?, expiry_time = ? WHERE id = ?";
+    private static final String MERGE_ATTRIBUTE_SQL = "MERGE INTO app_session_attribute (session_id, name, attribute_value) KEY (session_id, name) VALUES (?, ?, ?)";
+    private static final String DELETE_ATTRIBUTE_SQL = "DELETE FROM app_session_attribute WHERE session_id = ? AND name = ?";
+    private static final String SELECT_SQL = """
+        SELECT s.creation_time, s.last_access_time, s.max_inactive_seconds, s.expiry_time, a.name, a.attribute_value 
+        FROM app_session s LEFT JOIN app_session_attribute a ON a.session_id = s.id 
+        WHERE s.id = ?""";
+    private static final String DELETE_SQL = "DELETE FROM app_session WHERE id = ?";
+    private static final String DELETE_EXPIRED_SQL = "DELETE FROM app_session WHERE expiry_time < ?";
+
+    /** Marker for {@link #findById(String)} */
+    private static final JdbcSession EXPIRED_SESSION = new JdbcSession(Instant.EPOCH, Duration.ZERO);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private SessionAttributeSerializer sessionAttributeSerializer;
+
+    @Autowired
+    private CryptoService cryptoService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /** In seconds */
+    @Value("${server.servlet.session.timeout}")
+    private long SESSION_TIMEOUT;
+
+    /** In ms. Min time between two writes of the last access time of a session that did not change otherwise */
+    @Value("${SESSION_LAST_ACCESS_WRITE_INTERVAL_MS}")
+    private long SESSION_LAST_ACCESS_WRITE_INTERVAL_MS;
+
+    /** In ms */
+    @Value("${SESSION_CLEANUP_INTERVAL_MS}")
+    private long SESSION_CLEANUP_INTERVAL_MS;
+
+    private TransactionTemplate transactionTemplate;
+
+    private ScheduledExecutorService cleanupScheduler;
+
+    private Counter readCounter;
+    private Counter writeCounter;
+    private Counter skippedWriteCounter;
+    private DistributionSummary attributeBytesSummary;
+
+
+    @PostConstruct
+    void init() {
+        this.jdbcTemplate.execute(CREATE_TABLE_SQL);
+        this.jdbcTemplate.execute(CREATE_ATTRIBUTE_TABLE_SQL);
+        this.jdbcTemplate.execute(CREATE_INDEX_SQL);
+
+        this.transactionTemplate = new TransactionTemplate(this.transactionManager);
+
+        this.readCounter = this.meterRegistry.counter("session.reads");
+        this.writeCounter = this.meterRegistry.counter("session.writes");
+        this.skippedWriteCounter = this.meterRegistry.counter("session.writes.skipped");
+        this.attributeBytesSummary = this.meterRegistry.summary("session.attributes.bytes");
+
+        this.cleanupScheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("session-cleanup").daemon().factory());
+        this.cleanupScheduler.scheduleWithFixedDelay(this::deleteExpiredSessions, this.SESSION_CLEANUP_INTERVAL_MS, this.SESSION_CLEANUP_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+
+    @PreDestroy
+    void destroy() {
+        this.cleanupScheduler.shutdownNow();
+    }
+
+
+    @Override
+    public JdbcSession createSession() {
+        return new JdbcSession(Instant.now(), Duration.ofSeconds(this.SESSION_TIMEOUT));
+    }
+
+
+    /**
+     * @throws IllegalArgumentException if an attribute value is of a type {@link SessionAttributeSerializer} does not support
+     */
+    @Override
+    public void save(JdbcSession session) throws IllegalArgumentException {
+        long lastAccessTime = session.lastAccessedTime.toEpochMilli();
+        // case: negative interval, never expires
+        long expiryTime = session.maxInactiveInterval.isNegative() ? Long.MAX_VALUE : lastAccessTime + session.maxInactiveInterval.toMillis();
+        int maxInactiveSeconds = (int) session.maxInactiveInterval.toSeconds();
+
+        // case: new session
+        if (session.originalId == null) {
+            Map<String, byte[]> attributes = new HashMap<>();
+            session.attributes.forEach((name, value) -> attributes.put(name, this.sessionAttributeSerializer.serialize(name, value, true)));
+
+            this.transactionTemplate.executeWithoutResult(status -> {
+                this.jdbcTemplate.update(INSERT_SQL, session.id, session.creationTime.toEpochMilli(), lastAccessTime, maxInactiveSeconds, expiryTime);
+                mergeAttributes(session.id, attributes);
+            });
+
+            this.writeCounter.increment();
+            this.attributeBytesSummary.record(sizeOf(attributes));
+            session.markSaved(attributes, Set.of(), true);
+            return;
+        }
+
+        // only attributes that have been accessed can have changed
+        Map<String, byte[]> changedAttributes = new HashMap<>();
+        Set<String> removedAttributeNames = new HashSet<>();
+        for (String name : session.accessedAttributeNames) {
+            Object value = session.attributes.get(name);
+            byte[] savedValue = session.savedAttributes.get(name);
+
+            if (value == null) {
+                if (savedValue != null)
+                    removedAttributeNames.add(name);
+
+                continue;
+            }
+
+            // same bytes as when verifying, so unchanged attributes compare equal
+            byte[] serializedValue = this.sessionAttributeSerializer.serialize(name, value, false);
+            if (!Arrays.equals(serializedValue, savedValue))
+                changedAttributes.put(name, serializedValue);
+        }
+
+        boolean isAttributesChanged = !changedAttributes.isEmpty() || !removedAttributeNames.isEmpty();
+        boolean isMetadataChanged = !session.id.equals(session.originalId) ||
+                                    session.isMaxInactiveIntervalChanged ||
+                                    lastAccessTime - session.savedLastAccessTime >= this.SESSION_LAST_ACCESS_WRITE_INTERVAL_MS;
+
+        if (!isAttributesChanged && !isMetadataChanged) {
+            this.skippedWriteCounter.increment();
+            session.markSaved(Map.of(), Set.of(), false);
+            return;
+        }
+
+        // verify only what is actually written
+        changedAttributes.replaceAll((name, serializedValue) -> this.sessionAttributeSerializer.serialize(name, session.attributes.get(name), true));
+
+        boolean isWritten = this.transactionTemplate.execute(status -> {
+            // case: deleted meanwhile, e.g. logout in another request. Don't resurrect attributes
+            if (this.jdbcTemplate.update(UPDATE_SQL, session.id, lastAccessTime, maxInactiveSeconds, expiryTime, session.originalId) == 0)
+                return false;
+
+            mergeAttributes(session.id, changedAttributes);
+            for (String name : removedAttributeNames)
+                this.jdbcTemplate.update(DELETE_ATTRIBUTE_SQL, session.id, name);
+
+            return true;
+        });
+
+        if (!isWritten) {
+            log.debug("Not saving session that has been deleted meanwhile");
+            return;
+        }
+
+        this.writeCounter.increment();
+        this.attributeBytesSummary.record(sizeOf(changedAttributes));
+        session.markSaved(changedAttributes, removedAttributeNames, true);
+    }
+
+
+    /**
+     * @param id of the session
+     * @return the session or {@code null} if not found or expired
+     */
+    @Override
+    public JdbcSession findById(String id) {
+        this.readCounter.increment();
+
+        JdbcSession session = this.jdbcTemplate.query(SELECT_SQL, resultSet -> {
+            // case: not found
+            if (!resultSet.next())
+                return null;
+
+            // case: expired but not cleaned up yet
+            if (resultSet.getLong("expiry_time") < System.currentTimeMillis())
+                return EXPIRED_SESSION;
+
+            JdbcSession storedSession = new JdbcSession(
+                id,
+                Instant.ofEpochMilli(resultSet.getLong("creation_time")),
+                resultSet.getLong("last_access_time"),
+                Duration.ofSeconds(resultSet.getInt("max_inactive_seconds")));
+
+            do {
+                String name = resultSet.getString("name");
+                // case: no attributes
+                if (name == null)
+                    continue;
+
+                try {
+                    byte[] value = this.cryptoService.decrypt(resultSet.getBytes("attribute_value"));
+                    storedSession.attributes.put(name, this.sessionAttributeSerializer.deserialize(value));
+                    storedSession.savedAttributes.put(name, value);
+
+                // case: e.g. class or key changed, usually means the user has to login again
+                } catch (IllegalArgumentException e) {
+                    log.warn("Skipping session attribute '{}' that failed to decrypt or deserialize: {}", name, e.getMessage());
+                }
+            } while (resultSet.next());
+
+            return storedSession;
+        }, id);
+
+        if (session == EXPIRED_SESSION) {
+            deleteById(id);
+            return null;
+        }
+
+        return session;
+    }
+
+
+    @Override
+    public void deleteById(String id) {
+        // attributes are deleted by cascade
+        this.jdbcTemplate.update(DELETE_SQL, id);
+    }
+
+
+    private void mergeAttributes(String sessionId, Map<String, byte[]> attributes) {
+        for (Map.Entry<String, byte[]> attribute : attributes.entrySet())
+            this.jdbcTemplate.update(MERGE_ATTRIBUTE_SQL, sessionId, attribute.getKey(), this.cryptoService.encrypt(attribute.getValue()));
+    }
+
+
+    private static long sizeOf(Map<String, byte[]> attributes) {
+        long size = 0;
+        for (byte[] value : attributes.values())
+            size += value.length;
+
+        return size;
+    }
+
+
+    /**
+     * Scheduled. Wont throw.
+     */
+    private void deleteExpiredSessions() {
+        try {
+            int deletedCount = this.jdbcTemplate.update(DELETE_EXPIRED_SQL, System.currentTimeMillis());
+            if (deletedCount > 0)
+                log.debug("Deleted {} expired sessions", deletedCount);
+
+        } catch (Exception e) {
+            log.warn("Failed to delete expired sessions: {}", e.getMessage());
+        }
+    }
+
+
+    /**
+     * Not thread safe, like {@code HttpSession}s usually aren't.
+     */
+    public static class JdbcSession implements Session {
+
+        private String id;
+
+        /** The id the session is stored with, {@code null} if not stored yet */
+        private String originalId;
+
+        private final Instant creationTime;
+
+        private Instant lastAccessedTime;
+
+        private Duration maxInactiveInterval;
+
+        private final Map<String, Object> attributes = new HashMap<>();
+
+        /** Attribute name -> serialized value as stored in db, before encryption */
+        private final Map<String, byte[]> savedAttributes = new HashMap<>();
+
+        private long savedLastAccessTime;
+
+        /** Attributes that have been read, set or removed since the last save. Read values may have been mutated */
+        private final Set<String> accessedAttributeNames = new HashSet<>();
+
+        private boolean isMaxInactiveIntervalChanged;
+
+
+        /**
+         * New session.
+         */
+        private JdbcSession(Instant creationTime, Duration maxInactiveInterval) {
+            this.id = UUID.randomUUID().toString();
+            this.creationTime = creationTime;
+            this.lastAccessedTime = creationTime;
+            this.maxInactiveInterval = maxInactiveInterval;
+        }
+
+
+        /**
+         * Stored session, attributes are added by the caller.
+         */
+        private JdbcSession(String id, Instant creationTime, long lastAccessTime, Duration maxInactiveInterval) {
+            this.id = id;
+            this.originalId = id;
+            this.creationTime = creationTime;
+            this.lastAccessedTime = Instant.ofEpochMilli(lastAccessTime);
+            this.savedLastAccessTime = lastAccessTime;
+            this.maxInactiveInterval = maxInactiveInterval;
+        }
+
+
+        @Override
+        public String getId() {
+            return this.id;
+        }
+
+        @Override
+        public String changeSessionId() {
+            this.id = UUID.randomUUID().toString();
+
+            return this.id;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T getAttribute(String attributeName) {
+            Object value = this.attributes.get(attributeName);
+            if (value != null)
+                this.accessedAttributeNames.add(attributeName);
+
+            return (T) value;
+        }
+
+        @Override
+        public Set<String> getAttributeNames() {
+            return Set.copyOf(this.attributes.keySet());
+        }
+
+        @Override
+        public void setAttribute(String attributeName, Object attributeValue) {
+            if (attributeValue == null) {
+                removeAttribute(attributeName);
+                return;
+            }
+
+            this.attributes.put(attributeName, attributeValue);
+            this.accessedAttributeNames.add(attributeName);
+        }
+
+        @Override
+        public void removeAttribute(String attributeName) {
+            if (this.attributes.remove(attributeName) != null)
+                this.accessedAttributeNames.add(attributeName);
+        }
+
+        @Override
+        public Instant getCreationTime() {
+            return this.creationTime;
+        }
+
+        @Override
+        public void setLastAccessedTime(Instant lastAccessedTime) {
+            this.lastAccessedTime = lastAccessedTime;
+        }
+
+        @Override
+        public Instant getLastAccessedTime() {
+            return this.lastAccessedTime;
+        }
+
+        @Override
+        public void setMaxInactiveInterval(Duration interval) {
+            if (!interval.equals(this.maxInactiveInterval))
+                this.isMaxInactiveIntervalChanged = true;
+
+            this.maxInactiveInterval = interval;
+        }
+
+        @Override
+        public Duration getMaxInactiveInterval() {
+            return this.maxInactiveInterval;
+        }
+
+        @Override
+        public boolean isExpired() {
+            return !this.maxInactiveInterval.isNegative() && 
+                   Instant.now().isAfter(this.lastAccessedTime.plus(this.maxInactiveInterval));
+        }
+
+
+        /**
+         * @param writtenAttributes attributes that have been written to db
+         * @param removedAttributeNames attributes that have been deleted from db
+         * @param isWritten whether the session row has been written (and with it the last access time)
+         */
+        private void markSaved(Map<String, byte[]> writtenAttributes, Set<String> removedAttributeNames, boolean isWritten) {
+            this.originalId = this.id;
+            this.savedAttributes.putAll(writtenAttributes);
+            this.savedAttributes.keySet().removeAll(removedAttributeNames);
+            this.accessedAttributeNames.clear();
+            this.isMaxInactiveIntervalChanged = false;
+
+            if (isWritten)
+                this.savedLastAccessTime = this.lastAccessedTime.toEpochMilli();
+        }
+    }
+}
@@ -1,12 +1,11 @@
 package com.example.backend.services;
 
-import static org.springframework.http.HttpStatus.UNAUTHORIZED;
+import static com.example.backend.helpers.Utils.assertArgsNotNullAndNotBlankOrThrow;
 
-import java.security.interfaces.RSAPrivateKey;
-import java.security.interfaces.RSAPublicKey;
+import java.security.SecureRandom;
 import java.time.Instant;
-import java.util.Date;
-import java.util.HashMap;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -14,100 +13,103 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.oauth2.jose.jws.JwsAlgorithm;
-import org.springframework.security.oauth2.jwt.JwsHeader;
 import org.springframework.security.oauth2.jwt.Jwt;
-import org.springframework.security.oauth2.jwt.JwtClaimsSet;
-import org.springframework.security.oauth2.jwt.JwtEncoder;
-import org.springframework.security.oauth2.jwt.JwtEncoderParameters;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
 
-import com.example.backend.config.RsaKeyService;
-import com.example.backend.dtos.JwkDto;
-import com.example.backend.dtos.JwkDto.JwkSetDto;
-import com.nimbusds.jose.Algorithm;
-import com.nimbusds.jose.jwk.JWK;
-import com.nimbusds.jose.jwk.KeyUse;
-import com.nimbusds.jose.jwk.RSAKey;
+import com.example.backend.helpers.Hashing;
+import com.example.backend.helpers.PrincipalNames;
+import com.example.backend.helpers.Utils;
+import com.example.backend.services.IssuerRegistry.Issuer;
 
 @Service
 public class JwtService {
 
-    @Autowired
-    private JwtEncoder jwtEncoder;
+    /** 128 bit, like a uuid */
+    private static final int JTI_BYTES = 16;
+
+    private final SecureRandom secureRandom = new SecureRandom();
 
     @Autowired
-    private RsaKeyService rsaKeyService;
+    private IssuerRegistry issuerRegistry;
 
+    /** Applied in order to every token */
     @Autowired
-    private JwsAlgorithm jwsAlgorithm;
+    private List<ClaimsEnricher> claimsEnrichers;
 
-    @Value("${BASE_URL_DOCKER}")
-    private String BASE_URL_DOCKER;
-    
+    /** In seconds */
+    @Value("${JWT_ACCESS_TOKEN_TTL_SECONDS}")
+    private long JWT_ACCESS_TOKEN_TTL_SECONDS;
 
+
+    /**
+     * @return token for the logged in principal, signed by the issuer of the current request
+     * @throws ResponseStatusException 401 if not logged in (anonymous counts as not logged in)
+     */
     public Jwt generateJwtAccessToken() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication == null)
-            throw new ResponseStatusException(UNAUTHORIZED);
+        Utils.assertPrincipalNotNullAndThrow401(authentication);
 
         // TODO: validate session somehow?
             // is logged in
             // is oauth2
             // openid claim?
-            // permissions?
-        
-        Instant now = Instant.now();
-        JwtClaimsSet claims = JwtClaimsSet.builder()
-            .issuer(this.BASE_URL_DOCKER)
-            .issuedAt(now)
-            .expiresAt(now.plusSeconds(86_400)) // 1 day
-            // .expiresAt(now.plusSeconds(10))
-            .subject(authentication.getName())
-            .audience(List.of("pandaproxy"))
-            .claims((map) -> {
-                if (map == null)
-                    map = new HashMap<>();
-
-                map.putAll(Map.of(
-                    "scope", "openid", 
-                    "azp", "pandaproxy", // TODO
-                    "gty", "client-credentials"
-                ));
-            })
-            .build();
-
-        JwsHeader header = JwsHeader.with(this.jwsAlgorithm)
-            .keyId(this.rsaKeyService.getKeyId())
-            .type("JWT")
-            .build();
-
-        return this.jwtEncoder.encode(JwtEncoderParameters.from(header, claims));
+            // permissions? see ClaimsEnricher
+
+        return generateJwtAccessToken(this.issuerRegistry.getCurrentIssuer(), PrincipalNames.qualify(authentication));
     }
 
-    public JwkSetDto getJwks() {
-        JWK jwk = getJwk();
-
-        return new JwkSetDto(List.of(
-            new JwkDto(
-                jwk.getKeyType().getValue(),
-                jwk.getAlgorithm().getName(), 
-                jwk.getKeyID(), 
-                jwk.getKeyUse().identifier(),
-                (String) jwk.getRequiredParams().get("n"),
-                (String) jwk.getRequiredParams().get("e")
-            )
-        ));
+    /**
+     * Sign a token of the default issuer for given {@code principal} without looking at the current security context. Use this for
+     * requests that are sent to redpanda outside of the caller's request thread.
+     *
+     * @param principal qualified principal name (see {@link PrincipalNames}), will be the "sub" claim
+     * @return signed access token
+     * @throws IllegalArgumentException if {@code principal} is blank, not qualified or anonymous
+     */
+    public Jwt generateJwtAccessToken(String principal) throws IllegalArgumentException {
+        return generateJwtAccessToken(this.issuerRegistry.getDefaultIssuer(), principal);
     }
 
-    public JWK getJwk() {
-        return new RSAKey.Builder((RSAPublicKey) this.rsaKeyService.getKeyPair().getPublic())
-            .privateKey((RSAPrivateKey) this.rsaKeyService.getKeyPair().getPrivate())
-            .keyUse(KeyUse.SIGNATURE)
-            .keyID(this.rsaKeyService.getKeyId())
-            .algorithm(Algorithm.parse(this.jwsAlgorithm.getName()))
-            .issueTime(new Date())
-            .build();
+    /**
+     * @param issuer determines "iss", "aud" and the signing key
+     * @param principal qualified principal name (see {@link PrincipalNames}), will be the "sub" claim
+     * @return signed access token
+     * @throws IllegalArgumentException if {@code principal} is blank, not qualified or anonymous
+     */
+    public Jwt generateJwtAccessToken(Issuer issuer, String principal) throws IllegalArgumentException {
+        assertArgsNotNullAndNotBlankOrThrow(issuer, principal);
+
+        // case: a caller skipped the login check
+        if (PrincipalNames.ANONYMOUS_NAME.equals(PrincipalNames.getName(principal)))
+            throw new IllegalArgumentException("Cannot issue a token for the anonymous principal");
+
+        Instant issuedAt = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        Instant expiresAt = issuedAt.plusSeconds(this.JWT_ACCESS_TOKEN_TTL_SECONDS);
+        byte[] jtiBytes = new byte[JTI_BYTES];
+        this.secureRandom.nextBytes(jtiBytes);
+        String jti = Hashing.toHex(jtiBytes);
+
+        Map<String, Object> dynamicClaims = new LinkedHashMap<>();
+        dynamicClaims.put("scope", "openid");
+        // roles, topic scopes etc.
+        for (ClaimsEnricher claimsEnricher : this.claimsEnrichers)
+            claimsEnricher.enrich(principal, dynamicClaims);
+
+        String tokenValue = issuer.getJwtTemplate().encode(principal, issuedAt.getEpochSecond(), expiresAt.getEpochSecond(), jti, dynamicClaims);
+        issuer.getTokensIssued().increment();
+
+        // same claims the template wrote, for callers reading them back
+        Map<String, Object> claims = new LinkedHashMap<>();
+        claims.put("sub", principal);
+        claims.put("iat", issuedAt);
+        claims.put("exp", expiresAt);
+        claims.put("jti", jti);
+        claims.put("iss", issuer.getIssuerUri());
+        claims.put("aud", List.of(issuer.getAudience()));
+        claims.put("gty", "client-credentials");
+        claims.putAll(dynamicClaims);
+
+        return new Jwt(tokenValue, issuedAt, expiresAt, issuer.getJwtTemplate().getHeaders(), claims);
     }
 }
@@ -0,0 +1,210 @@
+package com.example.backend.services;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.admin.ListConsumerGroupOffsetsResult;
+import org.apache.kafka.clients.admin.ListConsumerGroupOffsetsSpec;
+import org.apache.kafka.clients.admin.ListOffsetsResult.ListOffsetsResultInfo;
+import org.apache.kafka.clients.admin.OffsetSpec;
+import org.apache.kafka.clients.admin.TopicDescription;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.KafkaFuture;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.config.SaslConfigs;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+
+/**
+ * Samples offsets with the kafka admin api, since pandaproxy has neither an endpoint for high watermarks nor one for committed offsets
+ * that does not require a consumer instance. <p>
+ * 
+ * Every sample takes exactly 3 round trips no matter the number of groups: one metadata request for all topics, one list offsets
+ * request for all partitions and one (per group coordinator) offset fetch for all groups. <p>
+ * 
+ * Authenticates as {@code KAFKA_SASL_USERNAME}, which needs "describe" permission for all monitored groups and topics. Kafka acls of
+ * the users are not applied, {@link ConsumerLagService} checks their scopes instead. {@code KAFKA_SASL_PASSWORD} is not part of
+ * the committed ".env", put it into ".env.local" or the environment.
+ * 
+ * @since latest
+ */
+@Service
+@Slf4j
+public class KafkaOffsetSampler implements OffsetSampler {
+
+    /** Comma separated "host:port" */
+    @Value("${KAFKA_BOOTSTRAP_SERVERS}")
+    private String KAFKA_BOOTSTRAP_SERVERS;
+
+    /** 'SCRAM-SHA-256' | 'SCRAM-SHA-512'. Leave blank to connect without authentication */
+    @Value("${KAFKA_SASL_MECHANISM}")
+    private String KAFKA_SASL_MECHANISM;
+
+    @Value("${KAFKA_SASL_USERNAME}")
+    private String KAFKA_SASL_USERNAME;
+
+    @Value("${KAFKA_SASL_PASSWORD}")
+    private String KAFKA_SASL_PASSWORD;
+
+    /** In ms. Max time for all requests of one sample */
+    @Value("${CONSUMER_LAG_SAMPLE_TIMEOUT_MS}")
+    private long CONSUMER_LAG_SAMPLE_TIMEOUT_MS;
+
+    /** Wont connect before the first request */
+    private Admin admin;
+
+
+    @PostConstruct
+    void init() {
+        Properties properties = new Properties();
+        properties.put(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, this.KAFKA_BOOTSTRAP_SERVERS);
+        properties.put(AdminClientConfig.CLIENT_ID_CONFIG, "backend-offset-sampler");
+        properties.put(AdminClientConfig.DEFAULT_API_TIMEOUT_MS_CONFIG, (int) this.CONSUMER_LAG_SAMPLE_TIMEOUT_MS);
+        properties.put(AdminClientConfig.REQUEST_TIMEOUT_MS_CONFIG, (int) this.CONSUMER_LAG_SAMPLE_TIMEOUT_MS);
+
+        if (!this.KAFKA_SASL_MECHANISM.isBlank()) {
+            if (this.KAFKA_SASL_PASSWORD.isBlank())
+                log.warn("'KAFKA_SASL_PASSWORD' is blank, consumer lag samples will fail to authenticate");
+
+            properties.put(AdminClientConfig.SECURITY_PROTOCOL_CONFIG, "SASL_PLAINTEXT");
+            properties.put(SaslConfigs.SASL_MECHANISM, this.KAFKA_SASL_MECHANISM);
+            properties.put(SaslConfigs.SASL_JAAS_CONFIG, "org.apache.kafka.common.security.scram.ScramLoginModule required username=\"%s\" password=\"%s\";"
+                .formatted(this.KAFKA_SASL_USERNAME, this.KAFKA_SASL_PASSWORD));
+        }
+
+        this.admin = Admin.create(properties);
+    }
+
+
+    @PreDestroy
+    void destroy() {
+        this.admin.close(Duration.ofSeconds(2));
+    }
+
+
+    @Override
+    public OffsetSample sample(Map<String, Set<String>> topicsByGroup) throws ExecutionException, TimeoutException, InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.CONSUMER_LAG_SAMPLE_TIMEOUT_MS);
+
+        Set<String> topics = topicsByGroup.values()
+            .stream()
+            .flatMap(Set::stream)
+            .collect(Collectors.toSet());
+
+        Map<String, Set<TopicPartition>> partitionsByTopic = describePartitions(topics, deadline);
+
+        Map<TopicPartition, OffsetSpec> latestOffsetSpecs = new HashMap<>();
+        partitionsByTopic.values().forEach(partitions -> partitions.forEach(partition -> latestOffsetSpecs.put(partition, OffsetSpec.latest())));
+
+        Map<TopicPartition, ListOffsetsResultInfo> latestOffsets = this.admin
+            .listOffsets(latestOffsetSpecs)
+            .all()
+            .get(remainingMillis(deadline), TimeUnit.MILLISECONDS);
+
+        Map<TopicPartition, Long> endOffsets = new HashMap<>(latestOffsets.size());
+        latestOffsets.forEach((partition, info) -> endOffsets.put(partition, info.offset()));
+
+        return new OffsetSample(listCommittedOffsets(topicsByGroup, partitionsByTopic, deadline), endOffsets);
+    }
+
+
+    /**
+     * @param topics to describe
+     * @param deadline nano time
+     * @return all partitions of all {@code topics} that exist
+     */
+    private Map<String, Set<TopicPartition>> describePartitions(Set<String> topics, long deadline) throws TimeoutException, InterruptedException {
+        Map<String, KafkaFuture<TopicDescription>> descriptionFutures = this.admin
+            .describeTopics(topics)
+            .topicNameValues();
+
+        Map<String, Set<TopicPartition>> partitionsByTopic = new HashMap<>(topics.size());
+        for (Map.Entry<String, KafkaFuture<TopicDescription>> entry : descriptionFutures.entrySet()) {
+            try {
+                TopicDescription description = entry.getValue().get(remainingMillis(deadline), TimeUnit.MILLISECONDS);
+
+                Set<TopicPartition> partitions = new HashSet<>(description.partitions().size());
+                description.partitions().forEach(partitionInfo -> partitions.add(new TopicPartition(entry.getKey(), partitionInfo.partition())));
+                partitionsByTopic.put(entry.getKey(), partitions);
+
+            // case: topic does not exist or is not authorized
+            } catch (ExecutionException e) {
+                log.debug("Failed to describe topic '{}': {}", entry.getKey(), e.getCause().getMessage());
+            }
+        }
+
+        return partitionsByTopic;
+    }
+
+
+    /**
+     * @param topicsByGroup see {@link #sample(Map)}
+     * @param partitionsByTopic all partitions to sample
+     * @param deadline nano time
+     * @return see {@link OffsetSample#committedOffsets()}
+     */
+    private Map<String, Map<TopicPartition, Long>> listCommittedOffsets(
+        Map<String, Set<String>> topicsByGroup, 
+        Map<String, Set<TopicPartition>> partitionsByTopic, 
+        long deadline
+    ) throws TimeoutException, InterruptedException {
+
+        Map<String, ListConsumerGroupOffsetsSpec> groupSpecs = new HashMap<>(topicsByGroup.size());
+        topicsByGroup.forEach((group, groupTopics) -> {
+            Set<TopicPartition> partitions = new HashSet<>();
+            groupTopics.forEach(topic -> partitions.addAll(partitionsByTopic.getOrDefault(topic, Set.of())));
+
+            if (!partitions.isEmpty())
+                groupSpecs.put(group, new ListConsumerGroupOffsetsSpec().topicPartitions(partitions));
+        });
+
+        if (groupSpecs.isEmpty())
+            return Map.of();
+
+        // batched into one request per group coordinator
+        ListConsumerGroupOffsetsResult result = this.admin.listConsumerGroupOffsets(groupSpecs);
+
+        Map<String, Map<TopicPartition, Long>> committedOffsets = new HashMap<>(groupSpecs.size());
+        for (String group : groupSpecs.keySet()) {
+            try {
+                Map<TopicPartition, OffsetAndMetadata> groupOffsets = result
+                    .partitionsToOffsetAndMetadata(group)
+                    .get(remainingMillis(deadline), TimeUnit.MILLISECONDS);
+
+                Map<TopicPartition, Long> offsets = new HashMap<>(groupOffsets.size());
+                groupOffsets.forEach((partition, offsetAndMetadata) -> {
+                    // case: group has not committed for this partition
+                    if (offsetAndMetadata != null)
+                        offsets.put(partition, offsetAndMetadata.offset());
+                });
+                committedOffsets.put(group, offsets);
+
+            // case: group is not authorized or coordinator not available
+            } catch (ExecutionException e) {
+                log.debug("Failed to list offsets of group '{}': {}", group, e.getCause().getMessage());
+            }
+        }
+
+        return committedOffsets;
+    }
+
+
+    private static long remainingMillis(long deadline) {
+        return Math.max(TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()), 0);
+    }
+}
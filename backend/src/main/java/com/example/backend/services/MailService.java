@@ -0,0 +1,533 @@
+package com.example.backend.services;
+
+import static com.example.backend.helpers.Utils.assertArgsNotNullAndNotBlankOrThrow;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.example.backend.helpers.FileIO;
+import com.example.backend.helpers.MailTemplate;
+import com.example.backend.helpers.Utils;
+import com.example.backend.helpers.Validation;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+
+/**
+ * Sends mails (account confirmation, password reset) without blocking the caller. Mails are stored in the {@code mail_outbox}
+ * table first, with one batched insert per transaction for all concurrent callers (group commit), and are sent by a background
+ * drain. <p>
+ *
+ * Templates are read and parsed once at startup. The drain splits the due mails across {@code MAIL_SMTP_CONNECTIONS} pooled smtp
+ * connections that stay open between drains, each connection sends its share one message after another. Mails that could not
+ * be sent are retried with exponential backoff up to {@code MAIL_MAX_ATTEMPTS} times, mails whose recipient the smtp server
+ * rejected are dropped right away. A stalled server fails the connection after {@code MAIL_SMTP_TIMEOUT_MS} and its mails are
+ * retried the same way. <p>
+ *
+ * Variables (e.g. links with account tokens) are stored encrypted with {@link CryptoService}, sent and dropped mails are deleted. <p>
+ *
+ * Delivery is at-least-once: a crash between sending and deleting will send the affected mails again. <p>
+ *
+ * Metrics: "mail.appended", "mail.sent", "mail.retried", "mail.dropped", "mail.smtp.connects" and "mail.appends.pending".
+ *
+ * @since latest
+ */
+@Service
+@Slf4j
+public class MailService {
+
+    private static final String CREATE_TABLE_SQL = """
+        CREATE TABLE IF NOT EXISTS mail_outbox (
+            id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+            recipient VARCHAR(320) NOT NULL,
+            mail_type VARCHAR(32) NOT NULL,
+            encrypted_variables CHARACTER LARGE OBJECT NOT NULL,
+            attempts INT DEFAULT 0 NOT NULL,
+            next_attempt_time BIGINT NOT NULL
+        )""";
+    private static final String CREATE_INDEX_SQL = "CREATE INDEX IF NOT EXISTS mail_outbox_next_attempt_time ON mail_outbox (next_attempt_time)";
+    private static final String INSERT_SQL = "INSERT INTO mail_outbox (recipient, mail_type, encrypted_variables, next_attempt_time) VALUES (?, ?, ?, ?)";
+    private static final String SELECT_DUE_SQL = "SELECT id, recipient, mail_type, encrypted_variables, attempts FROM mail_outbox WHERE next_attempt_time <= ? ORDER BY next_attempt_time, id LIMIT ?";
+    private static final String UPDATE_RETRY_SQL = "UPDATE mail_outbox SET attempts = ?, next_attempt_time = ? WHERE id = ?";
+    private static final String DELETE_SQL = "DELETE FROM mail_outbox WHERE id IN (:ids)";
+
+    /** Mails appended per insert batch */
+    private static final int INSERT_BATCH_SIZE = 500;
+
+    /** In seconds. Max time to wait for all connections of one drain, the smtp socket timeouts should hit way earlier */
+    private static final long DRAIN_SEND_TIMEOUT = 120;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JavaMailSenderImpl mailSender;
+
+    @Autowired
+    private CryptoService cryptoService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /** In ms */
+    @Value("${MAIL_DRAIN_INTERVAL_MS}")
+    private long MAIL_DRAIN_INTERVAL_MS;
+
+    @Value("${MAIL_DRAIN_BATCH_SIZE}")
+    private int MAIL_DRAIN_BATCH_SIZE;
+
+    @Value("${MAIL_SMTP_CONNECTIONS}")
+    private int MAIL_SMTP_CONNECTIONS;
+
+    @Value("${MAIL_MAX_ATTEMPTS}")
+    private int MAIL_MAX_ATTEMPTS;
+
+    /** In ms. Max delay between two attempts of a mail */
+    @Value("${MAIL_MAX_BACKOFF_MS}")
+    private long MAIL_MAX_BACKOFF_MS;
+
+    private final ObjectMapper objectMapper = Utils.getDefaultObjectMapper();
+
+    private final Map<MailType, MailTemplate> templates = new EnumMap<>(MailType.class);
+
+    private final BlockingQueue<PendingAppend> appendQueue = new LinkedBlockingQueue<>();
+
+    /** Not connected until first used */
+    private final Queue<Transport> transportPool = new ConcurrentLinkedQueue<>();
+
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    private TransactionTemplate transactionTemplate;
+
+    private Thread appendWriter;
+
+    private ScheduledExecutorService drainScheduler;
+
+    /** One task per pooled connection */
+    private ExecutorService senderExecutor;
+
+    private Counter appendedMailCounter;
+    private Counter sentMailCounter;
+    private Counter retriedMailCounter;
+    private Counter droppedMailCounter;
+    private Counter smtpConnectCounter;
+
+
+    @PostConstruct
+    void init() throws IOException, MessagingException {
+        if (this.MAIL_SMTP_CONNECTIONS < 1 || this.MAIL_MAX_ATTEMPTS < 1)
+            throw new IllegalStateException("'MAIL_SMTP_CONNECTIONS' and 'MAIL_MAX_ATTEMPTS' have to be positive");
+
+        for (MailType mailType : MailType.values())
+            try (InputStream inputStream = new ClassPathResource(mailType.getTemplatePath()).getInputStream()) {
+                this.templates.put(mailType, MailTemplate.parse(FileIO.readString(inputStream, StandardCharsets.UTF_8)));
+            }
+
+        // case: not configured, same default as the sender itself
+        String protocol = Objects.requireNonNullElse(this.mailSender.getProtocol(), JavaMailSenderImpl.DEFAULT_PROTOCOL);
+        for (int i = 0; i < this.MAIL_SMTP_CONNECTIONS; i++)
+            this.transportPool.offer(this.mailSender.getSession().getTransport(protocol));
+
+        this.appendedMailCounter = this.meterRegistry.counter("mail.appended");
+        this.sentMailCounter = this.meterRegistry.counter("mail.sent");
+        this.retriedMailCounter = this.meterRegistry.counter("mail.retried");
+        this.droppedMailCounter = this.meterRegistry.counter("mail.dropped");
+        this.smtpConnectCounter = this.meterRegistry.counter("mail.smtp.connects");
+        this.meterRegistry.gauge("mail.appends.pending", this.appendQueue, BlockingQueue::size);
+
+        this.jdbcTemplate.execute(CREATE_TABLE_SQL);
+        this.jdbcTemplate.execute(CREATE_INDEX_SQL);
+        this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(this.jdbcTemplate);
+        this.transactionTemplate = new TransactionTemplate(this.transactionManager);
+
+        this.appendWriter = Thread.ofVirtual().name("mail-writer").start(this::writeAppends);
+
+        this.senderExecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("mail-sender-", 0).factory());
+        this.drainScheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("mail-drain").daemon().factory());
+        scheduleDrain(this.MAIL_DRAIN_INTERVAL_MS);
+    }
+
+
+    @PreDestroy
+    void destroy() {
+        this.appendWriter.interrupt();
+        this.drainScheduler.shutdownNow();
+        this.senderExecutor.shutdownNow();
+
+        this.transportPool.forEach(MailService::closeQuietly);
+    }
+
+
+    /**
+     * Store a mail in the outbox. Wont block.
+     *
+     * @param recipient email address to send to
+     * @param mailType template and subject of the mail
+     * @param variables values for all placeholders of the template
+     * @return future completing once the mail is committed to the database. Completes exceptionally with a
+     * {@link ResponseStatusException} if the insert failed
+     * @throws IllegalArgumentException if an arg is {@code null}, {@code recipient} is invalid or a variable is missing
+     */
+    public CompletableFuture<Void> send(String recipient, MailType mailType, Map<String, String> variables) throws IllegalArgumentException {
+        assertArgsNotNullAndNotBlankOrThrow(recipient, mailType, variables);
+
+        if (!Validation.isEmailValid(recipient))
+            throw new IllegalArgumentException("Invalid recipient '%s'".formatted(recipient));
+
+        // case: dont store mails that will never render
+        for (String variableName : this.templates.get(mailType).getVariableNames())
+            if (variables.get(variableName) == null)
+                throw new IllegalArgumentException("Missing variable '%s' for mail type %s".formatted(variableName, mailType));
+
+        Object[] row;
+        try {
+            row = new Object[] {recipient, mailType.name(), this.cryptoService.encrypt(this.objectMapper.writeValueAsString(variables)), System.currentTimeMillis()};
+
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Failed to serialize mail variables: " + e.getOriginalMessage());
+        }
+
+        PendingAppend pendingAppend = new PendingAppend(row, new CompletableFuture<>());
+        this.appendQueue.add(pendingAppend);
+
+        return pendingAppend.future();
+    }
+
+
+    /**
+     * Runs on {@code appendWriter} until interrupted. Takes everything that queued up during the last insert and writes it in one transaction.
+     */
+    private void writeAppends() {
+        List<PendingAppend> pendingAppends = new ArrayList<>(INSERT_BATCH_SIZE);
+
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                pendingAppends.add(this.appendQueue.take());
+                this.appendQueue.drainTo(pendingAppends, INSERT_BATCH_SIZE - 1);
+
+                insert(pendingAppends);
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+
+            } finally {
+                pendingAppends.clear();
+            }
+        }
+    }
+
+
+    /**
+     * Wont throw.
+     *
+     * @param pendingAppends to insert and complete
+     */
+    private void insert(List<PendingAppend> pendingAppends) {
+        List<Object[]> rows = pendingAppends.stream().map(PendingAppend::row).toList();
+
+        try {
+            this.transactionTemplate.executeWithoutResult(status -> this.jdbcTemplate.batchUpdate(INSERT_SQL, rows));
+
+            this.appendedMailCounter.increment(rows.size());
+            pendingAppends.forEach(pendingAppend -> pendingAppend.future().complete(null));
+
+        } catch (RuntimeException e) {
+            log.error("Failed to append {} mails to outbox: {}", rows.size(), e.getMessage());
+
+            ResponseStatusException exception = new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to queue mail", e);
+            pendingAppends.forEach(pendingAppend -> pendingAppend.future().completeExceptionally(exception));
+        }
+    }
+
+
+    private void scheduleDrain(long delay) {
+        this.drainScheduler.schedule(() -> {
+            boolean isBatchFull = drain();
+
+            // case: more mails are due, dont wait
+            scheduleDrain(isBatchFull ? 0 : this.MAIL_DRAIN_INTERVAL_MS);
+
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+
+    /**
+     * Send up to {@code MAIL_DRAIN_BATCH_SIZE} due mails, delete the sent and dropped ones and reschedule the others. Only runs on
+     * {@code drainScheduler}. Wont throw.
+     *
+     * @return {@code true} if the batch was full, i.e. there might be more due mails
+     */
+    private boolean drain() {
+        try {
+            List<OutboxMail> mails = this.jdbcTemplate.query(
+                SELECT_DUE_SQL,
+                (resultSet, rowNum) -> new OutboxMail(
+                    resultSet.getLong("id"),
+                    resultSet.getString("recipient"),
+                    resultSet.getString("mail_type"),
+                    resultSet.getString("encrypted_variables"),
+                    resultSet.getInt("attempts")),
+                System.currentTimeMillis(),
+                this.MAIL_DRAIN_BATCH_SIZE);
+
+            if (mails.isEmpty())
+                return false;
+
+            // one contiguous share per connection
+            int shareSize = Math.ceilDiv(mails.size(), this.MAIL_SMTP_CONNECTIONS);
+            List<List<OutboxMail>> shares = new ArrayList<>(this.MAIL_SMTP_CONNECTIONS);
+            List<Future<SendResult>> sendFutures = new ArrayList<>(this.MAIL_SMTP_CONNECTIONS);
+            for (int fromIndex = 0; fromIndex < mails.size(); fromIndex += shareSize) {
+                List<OutboxMail> share = mails.subList(fromIndex, Math.min(fromIndex + shareSize, mails.size()));
+                shares.add(share);
+                sendFutures.add(this.senderExecutor.submit(() -> send(share)));
+            }
+
+            List<Long> doneIds = new ArrayList<>(mails.size());
+            List<Object[]> retryRows = new ArrayList<>();
+            long deadlineNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(DRAIN_SEND_TIMEOUT);
+            for (int i = 0; i < sendFutures.size(); i++) {
+                SendResult sendResult;
+                try {
+                    sendResult = sendFutures.get(i).get(Math.max(deadlineNanos - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+
+                // case: connection hangs, retry the whole share. Some of it may have been sent (at-least-once)
+                } catch (TimeoutException e) {
+                    log.warn("Timed out sending {} mails, retrying them", shares.get(i).size());
+                    sendFutures.get(i).cancel(true);
+                    sendResult = new SendResult(List.of(), shares.get(i));
+                }
+
+                doneIds.addAll(sendResult.doneIds());
+
+                for (OutboxMail mail : sendResult.failedMails()) {
+                    int attempts = mail.attempts() + 1;
+
+                    // case: give up
+                    if (attempts >= this.MAIL_MAX_ATTEMPTS) {
+                        log.warn("Dropping mail {} to '{}' after {} attempts", mail.id(), mail.recipient(), attempts);
+                        this.droppedMailCounter.increment();
+                        doneIds.add(mail.id());
+
+                    } else {
+                        retryRows.add(new Object[] {attempts, System.currentTimeMillis() + getBackoff(attempts), mail.id()});
+                        this.retriedMailCounter.increment();
+                    }
+                }
+            }
+
+            if (!doneIds.isEmpty())
+                this.namedParameterJdbcTemplate.update(DELETE_SQL, Map.of("ids", doneIds));
+
+            if (!retryRows.isEmpty())
+                this.jdbcTemplate.batchUpdate(UPDATE_RETRY_SQL, retryRows);
+
+            return mails.size() == this.MAIL_DRAIN_BATCH_SIZE;
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+
+        } catch (Exception e) {
+            log.error("Failed to drain mail outbox: {}", e.getMessage());
+            return false;
+        }
+    }
+
+
+    /**
+     * Send {@code mails} one after another over one pooled connection. Runs on {@code senderExecutor}. Wont throw.
+     *
+     * @param mails to send
+     * @return ids of mails that are done (sent or dropped) and mails that should be retried
+     */
+    private SendResult send(List<OutboxMail> mails) {
+        List<Long> doneIds = new ArrayList<>(mails.size());
+        List<OutboxMail> failedMails = new ArrayList<>();
+
+        // there are at most as many shares as connections
+        Transport transport = this.transportPool.poll();
+
+        // case: a share of the last drain timed out and still holds its connection
+        if (transport == null)
+            return new SendResult(doneIds, mails);
+
+        try {
+            // case: first use or the server closed an idle connection
+            if (!transport.isConnected()) {
+                this.smtpConnectCounter.increment();
+                transport.connect(
+                    this.mailSender.getHost(),
+                    this.mailSender.getPort(),
+                    Utils.isBlank(this.mailSender.getUsername()) ? null : this.mailSender.getUsername(),
+                    Utils.isBlank(this.mailSender.getPassword()) ? null : this.mailSender.getPassword());
+            }
+
+            for (int i = 0; i < mails.size(); i++) {
+                OutboxMail mail = mails.get(i);
+                MimeMessage message;
+                try {
+                    message = toMimeMessage(mail);
+
+                } catch (IllegalArgumentException | IOException | MessagingException e) {
+                    log.warn("Dropping mail {} that cannot be decrypted or rendered: {}", mail.id(), e.getMessage());
+                    this.droppedMailCounter.increment();
+                    doneIds.add(mail.id());
+                    continue;
+                }
+
+                try {
+                    transport.sendMessage(message, message.getAllRecipients());
+
+                    this.sentMailCounter.increment();
+                    doneIds.add(mail.id());
+
+                } catch (SendFailedException e) {
+                    // case: recipient does not exist, retrying wont help
+                    if (isRecipientRejected(e)) {
+                        log.warn("Dropping mail {}, recipient '{}' was rejected: {}", mail.id(), mail.recipient(), e.getMessage());
+                        this.droppedMailCounter.increment();
+                        doneIds.add(mail.id());
+
+                    } else
+                        failedMails.add(mail);
+
+                } catch (MessagingException e) {
+                    // case: connection is broken, retry this and the remaining mails later
+                    log.warn("Failed to send {} mails: {}", mails.size() - i, e.getMessage());
+                    failedMails.addAll(mails.subList(i, mails.size()));
+                    closeQuietly(transport);
+                    break;
+                }
+            }
+
+        } catch (MessagingException e) {
+            log.warn("Failed to connect to smtp server: {}", e.getMessage());
+            failedMails.addAll(mails);
+            closeQuietly(transport);
+
+        } finally {
+            this.transportPool.offer(transport);
+        }
+
+        return new SendResult(doneIds, failedMails);
+    }
+
+
+    private MimeMessage toMimeMessage(OutboxMail mail) throws IllegalArgumentException, IOException, MessagingException {
+        MailType mailType = MailType.valueOf(mail.mailType());
+        Map<String, String> variables = this.objectMapper.readValue(this.cryptoService.decrypt(mail.encryptedVariables()), new TypeReference<Map<String, String>>() {});
+
+        MimeMessage message = new MimeMessage(this.mailSender.getSession());
+        MimeMessageHelper messageHelper = new MimeMessageHelper(message, StandardCharsets.UTF_8.name());
+        messageHelper.setFrom(Utils.DEFAULT_SENDER_EMAIL);
+        messageHelper.setTo(mail.recipient());
+        messageHelper.setSubject(mailType.getSubject());
+        messageHelper.setText(this.templates.get(mailType).render(variables), true);
+        // Transport.sendMessage does not do this itself
+        message.saveChanges();
+
+        return message;
+    }
+
+
+    /**
+     * @param attempts failed attempts so far, at least 1
+     * @return in ms, {@code MAIL_DRAIN_INTERVAL_MS} doubled for every failed attempt but the first, at most {@code MAIL_MAX_BACKOFF_MS}
+     */
+    private long getBackoff(int attempts) {
+        return Math.min(this.MAIL_DRAIN_INTERVAL_MS << Math.min(attempts - 1, 30), this.MAIL_MAX_BACKOFF_MS);
+    }
+
+
+    /**
+     * @return {@code true} if the smtp server permanently rejected all recipients, {@code false} if sending might succeed later
+     */
+    private static boolean isRecipientRejected(SendFailedException exception) {
+        return exception.getInvalidAddresses() != null && exception.getInvalidAddresses().length > 0 &&
+               (exception.getValidUnsentAddresses() == null || exception.getValidUnsentAddresses().length == 0);
+    }
+
+
+    private static void closeQuietly(Transport transport) {
+        try {
+            transport.close();
+
+        } catch (MessagingException e) {
+            // case: already broken
+        }
+    }
+
+
+    /**
+     * @since latest
+     */
+    @Getter
+    public enum MailType {
+
+        CONFIRM_ACCOUNT("Confirm your account", "mail/confirm-account.html"),
+        RESET_PASSWORD("Reset your password", "mail/reset-password.html");
+
+        private final String subject;
+
+        /** Classpath resource */
+        private final String templatePath;
+
+        MailType(String subject, String templatePath) {
+            this.subject = subject;
+            this.templatePath = templatePath;
+        }
+    }
+
+
+    private record PendingAppend(Object[] row, CompletableFuture<Void> future) {}
+
+    private record OutboxMail(long id, String recipient, String mailType, String encryptedVariables, int attempts) {}
+
+    private record SendResult(List<Long> doneIds, List<OutboxMail> failedMails) {}
+}
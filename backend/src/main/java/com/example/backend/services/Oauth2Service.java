@@ -5,8 +5,6 @@ import java.util.Map;
 
 // import org.hibernate.grammars.hql.HqlParser.SecondContext;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.context.annotation.Bean;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -43,9 +41,6 @@ public class Oauth2Service {
     @Autowired
     private ClientRegistrationRepository clientRegistrationRepository;
 
-    @Value("${BASE_URL_DOCKER}")
-    private String BASE_URL_DOCKER;
-
 
     @Autowired
     @Getter
@@ -176,20 +171,9 @@ public class Oauth2Service {
         return this.clientRegistrationRepository.findByRegistrationId(token.getAuthorizedClientRegistrationId());
     }
 
-    @Bean
-    WellKnownDto WellKnownDto() {
-        return new WellKnownDto(
-            this.BASE_URL_DOCKER,
-            this.BASE_URL_DOCKER + "/.well-known/jwks",
-            new String[] {"public"},
-            new String[] {"id_token", "client-credentials"},
-            new String[] {"sub", "iss", "exp", "iat", "aud", "azp", "gty", "iat"},
-            this.BASE_URL_DOCKER + "/jwt",
-            new String[] {"openid"},
-            new String[] {"RS256"}
-        );
-    }
-
+    /**
+     * "/.well-known/openid-configuration", see {@link IssuerRegistry}.
+     */
     @Getter
     @AllArgsConstructor
     public static class WellKnownDto {
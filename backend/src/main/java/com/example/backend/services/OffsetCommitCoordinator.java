@@ -0,0 +1,397 @@
+package com.example.backend.services;
+
+import static com.example.backend.helpers.Utils.assertArgsNotNullAndNotBlankOrThrow;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.example.backend.dtos.ConsumerOffsetDto;
+import com.example.backend.dtos.ConsumerOffsetDto.ConsumerOffsetsDto;
+import com.example.backend.helpers.Utils;
+import com.example.backend.helpers.Validation;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+
+/**
+ * Coalesces offset commits of all consumer instances of a group into as few pandaproxy requests as possible. <p>
+ *
+ * Commits are batched per group and principal (the upstream request is authenticated as the principal, so redpanda ACLs still apply)
+ * for {@code OFFSET_COMMIT_WINDOW_MS}, or until {@code OFFSET_COMMIT_MAX_BATCH_PARTITIONS} partitions are pending. Offsets of the same
+ * partition are merged by keeping the highest one. The batch is committed through the instance of one of its callers, falling back
+ * to the next one if that instance does not exist anymore. <p>
+ *
+ * Offsets are monotonic per group and partition: batches of one group are sent one after another and only offsets higher than the
+ * last one committed through this service are sent. Callers whose offset ended up lower than the committed one (sent earlier, or by
+ * another caller of the same batch) get a 409, so a seek back is never reported as committed. Seeking back requires committing 
+ * directly with pandaproxy. The committed offsets of a group are forgotten once the group was idle for 
+ * {@code OFFSET_COMMIT_GROUP_IDLE_MS} or its instances are gone. <p>
+ *
+ * Metrics: "offset.commit.latency", "offset.commit.batch.commits" (callers per upstream request), "offset.commit.batch.partitions",
+ * "offset.commit.calls", "offset.commit.upstream.requests", "offset.commit.upstream.failures", "offset.commit.rejected" (callers that
+ * got a 409) and "offset.commit.groups" (groups with committed offsets).
+ *
+ * @since latest
+ */
+@Service
+@Slf4j
+public class OffsetCommitCoordinator {
+
+    @Autowired
+    private PandaproxyFetcher pandaproxyFetcher;
+
+    @Autowired
+    private JwtService jwtService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /** In ms. Max time a commit waits for other commits of the same group */
+    @Value("${OFFSET_COMMIT_WINDOW_MS}")
+    private long OFFSET_COMMIT_WINDOW_MS;
+
+    @Value("${OFFSET_COMMIT_MAX_BATCH_PARTITIONS}")
+    private int OFFSET_COMMIT_MAX_BATCH_PARTITIONS;
+
+    /** In ms. Committed offsets of a group without commits for this long are forgotten */
+    @Value("${OFFSET_COMMIT_GROUP_IDLE_MS}")
+    private long OFFSET_COMMIT_GROUP_IDLE_MS;
+
+    private final ObjectMapper objectMapper = Utils.getDefaultObjectMapper();
+
+    private final ConcurrentMap<BatchKey, Batch> openBatches = new ConcurrentHashMap<>();
+
+    /** Group -> highest offsets committed. Only modified by the (serialized) senders of the group and the idle sweep */
+    private final ConcurrentMap<String, GroupState> groupStates = new ConcurrentHashMap<>();
+
+    /** Group -> last send of that group. The next send of the group is chained to it */
+    private final ConcurrentMap<String, CompletableFuture<Void>> lastSendByGroup = new ConcurrentHashMap<>();
+
+    /** Only triggers window timeouts and the idle sweep, never sends */
+    private ScheduledExecutorService windowScheduler;
+
+    private ExecutorService senderExecutor;
+
+    private Timer commitLatencyTimer;
+    private DistributionSummary batchCommitsSummary;
+    private DistributionSummary batchPartitionsSummary;
+    private Counter commitCallCounter;
+    private Counter upstreamRequestCounter;
+    private Counter upstreamFailureCounter;
+    private Counter rejectedCounter;
+
+
+    @PostConstruct
+    void init() {
+        this.commitLatencyTimer = this.meterRegistry.timer("offset.commit.latency");
+        this.batchCommitsSummary = this.meterRegistry.summary("offset.commit.batch.commits");
+        this.batchPartitionsSummary = this.meterRegistry.summary("offset.commit.batch.partitions");
+        this.commitCallCounter = this.meterRegistry.counter("offset.commit.calls");
+        this.upstreamRequestCounter = this.meterRegistry.counter("offset.commit.upstream.requests");
+        this.upstreamFailureCounter = this.meterRegistry.counter("offset.commit.upstream.failures");
+        this.rejectedCounter = this.meterRegistry.counter("offset.commit.rejected");
+        this.meterRegistry.gauge("offset.commit.groups", this.groupStates, ConcurrentMap::size);
+
+        this.windowScheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("offset-commit-window").daemon().factory());
+        this.windowScheduler.scheduleWithFixedDelay(this::evictIdleGroups, this.OFFSET_COMMIT_GROUP_IDLE_MS, this.OFFSET_COMMIT_GROUP_IDLE_MS, TimeUnit.MILLISECONDS);
+        this.senderExecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("offset-commit-sender-", 0).factory());
+    }
+
+
+    /**
+     * Send all open batches and wait a couple of seconds for pending upstream requests.
+     */
+    @PreDestroy
+    void destroy() throws InterruptedException {
+        this.openBatches.keySet()
+            .forEach(batchKey -> {
+                Batch batch = this.openBatches.remove(batchKey);
+                if (batch != null)
+                    sendAsync(batch);
+            });
+
+        // let chained sends run before shutting down their executor
+        try {
+            CompletableFuture
+                .allOf(this.lastSendByGroup.values().toArray(CompletableFuture[]::new))
+                .get(5, TimeUnit.SECONDS);
+
+        } catch (ExecutionException | TimeoutException e) {
+            log.warn("Failed to wait for pending offset commits: {}", e.getMessage());
+        }
+
+        this.windowScheduler.shutdownNow();
+        this.senderExecutor.shutdown();
+        this.senderExecutor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+
+    /**
+     * Queue given {@code offsets} for the next commit of {@code group}. Wont block.
+     *
+     * @param group consumer group name
+     * @param instance name of the caller's consumer instance, has to be a member of {@code group}
+     * @param principalName qualified name of the caller (see {@link com.example.backend.helpers.PrincipalNames}), the token the batch
+     * is sent with is issued for it
+     * @param offsets to commit, may be empty
+     * @return future completing once the offsets are committed. Completes exceptionally with a {@link ResponseStatusException} if 
+     * the upstream request failed, or 409 if an offset is lower than the one committed for its partition
+     * @throws IllegalArgumentException if an arg is blank, a name or an offset is invalid
+     */
+    public CompletableFuture<Void> commit(String group, String instance, String principalName, List<ConsumerOffsetDto> offsets) throws IllegalArgumentException {
+        assertArgsNotNullAndNotBlankOrThrow(group, instance, principalName, offsets);
+        Validation.assertConsumerOrGroupNameValidOrThrow(group);
+        Validation.assertConsumerOrGroupNameValidOrThrow(instance);
+
+        offsets.forEach(offset -> {
+            if (offset == null || !Validation.isTopicValid(offset.getTopic()) || offset.getPartition() < 0 || offset.getOffset() < 0)
+                throw new IllegalArgumentException("Invalid offset. Topic has to match pattern %s, partition and offset cannot be negative".formatted(Utils.TOPIC_REGEX));
+        });
+
+        this.commitCallCounter.increment();
+
+        if (offsets.isEmpty())
+            return CompletableFuture.completedFuture(null);
+
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        List<Batch> fullBatches = new ArrayList<>(1);
+
+        this.openBatches.compute(new BatchKey(group, principalName), (batchKey, batch) -> {
+            if (batch == null) {
+                batch = new Batch(batchKey);
+                scheduleWindow(batch);
+            }
+
+            batch.add(instance, offsets, future);
+
+            if (batch.offsets.size() >= this.OFFSET_COMMIT_MAX_BATCH_PARTITIONS) {
+                fullBatches.add(batch);
+                return null;
+            }
+
+            return batch;
+        });
+
+        fullBatches.forEach(this::sendAsync);
+
+        return future;
+    }
+
+
+    private void scheduleWindow(Batch batch) {
+        this.windowScheduler.schedule(() -> {
+            // case: already sent because it was full
+            if (this.openBatches.remove(batch.key, batch))
+                sendAsync(batch);
+
+        }, this.OFFSET_COMMIT_WINDOW_MS, TimeUnit.MILLISECONDS);
+    }
+
+
+    /**
+     * Chain {@code batch} to the last send of its group, so sends of a group never overlap.
+     * 
+     * @param batch that is not modified anymore
+     */
+    private void sendAsync(Batch batch) {
+        String group = batch.key.group();
+
+        CompletableFuture<Void> send = this.lastSendByGroup.compute(group, (key, lastSend) ->
+            (lastSend == null ? CompletableFuture.<Void>completedFuture(null) : lastSend)
+                .thenRunAsync(() -> send(batch), this.senderExecutor));
+
+        send.whenComplete((result, e) -> this.lastSendByGroup.remove(group, send));
+    }
+
+
+    /**
+     * Commit all offsets of {@code batch} that are higher than the committed ones and complete the futures of all callers.
+     * Wont throw.
+     *
+     * @param batch that is not modified anymore
+     */
+    private void send(Batch batch) {
+        long startNanos = System.nanoTime();
+        GroupState groupState = this.groupStates.computeIfAbsent(batch.key.group(), key -> new GroupState());
+        groupState.lastSendNanos = startNanos;
+
+        List<ConsumerOffsetDto> partitions = new ArrayList<>(batch.offsets.size());
+        batch.offsets.forEach((partitionKey, offset) -> {
+            if (offset > groupState.committedOffsets.getOrDefault(partitionKey, -1L))
+                partitions.add(new ConsumerOffsetDto(partitionKey.topic(), partitionKey.partition(), offset));
+        });
+
+        // case: everything already committed by a previous batch, callers with equal offsets succeed, lower ones are rejected
+        if (partitions.isEmpty()) {
+            batch.commits.forEach(commit -> complete(commit, groupState));
+            return;
+        }
+
+        try {
+            commitUpstream(batch, partitions);
+
+            partitions.forEach(partition -> groupState.committedOffsets.merge(new PartitionKey(partition.getTopic(), partition.getPartition()), partition.getOffset(), Math::max));
+            batch.commits.forEach(commit -> complete(commit, groupState));
+
+            this.batchCommitsSummary.record(batch.commits.size());
+            this.batchPartitionsSummary.record(partitions.size());
+
+        } catch (Exception e) {
+            this.upstreamFailureCounter.increment();
+            log.warn("Failed to commit {} offsets for group '{}': {}", partitions.size(), batch.key.group(), e.getMessage());
+
+            ResponseStatusException exception = e instanceof ResponseStatusException responseStatusException ?
+                responseStatusException :
+                new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage(), e);
+
+            // case: all instances of the batch are gone, the group may be too
+            if (exception.getStatusCode().value() == HttpStatus.NOT_FOUND.value())
+                this.groupStates.remove(batch.key.group(), groupState);
+
+            batch.commits.forEach(commit -> commit.future().completeExceptionally(exception));
+
+        } finally {
+            this.commitLatencyTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+
+    /**
+     * Complete the future of {@code commit}, with a 409 if one of its offsets is lower than the committed one.
+     */
+    private void complete(Commit commit, GroupState groupState) {
+        for (ConsumerOffsetDto offset : commit.offsets()) {
+            long committedOffset = groupState.committedOffsets.getOrDefault(new PartitionKey(offset.getTopic(), offset.getPartition()), -1L);
+
+            if (offset.getOffset() < committedOffset) {
+                this.rejectedCounter.increment();
+                commit.future().completeExceptionally(new ResponseStatusException(
+                    HttpStatus.CONFLICT, 
+                    "Offset %d of %s-%d is lower than the committed offset %d. Commit with pandaproxy directly to seek back"
+                        .formatted(offset.getOffset(), offset.getTopic(), offset.getPartition(), committedOffset)));
+                return;
+            }
+        }
+
+        commit.future().complete(null);
+    }
+
+
+    /**
+     * Forget the committed offsets of groups without sends for {@code OFFSET_COMMIT_GROUP_IDLE_MS} (pandaproxy deletes idle
+     * instances too). Groups with a send in progress are kept.
+     */
+    private void evictIdleGroups() {
+        long minLastSendNanos = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(this.OFFSET_COMMIT_GROUP_IDLE_MS);
+
+        this.groupStates.entrySet().removeIf(entry -> 
+            entry.getValue().lastSendNanos - minLastSendNanos < 0 && !this.lastSendByGroup.containsKey(entry.getKey()));
+    }
+
+
+    /**
+     * Try the instances of {@code batch} one after another until one of them exists.
+     * 
+     * @param batch to commit
+     * @param partitions to commit
+     * @throws ResponseStatusException if the last instance tried failed
+     */
+    private void commitUpstream(Batch batch, List<ConsumerOffsetDto> partitions) throws Exception {
+        HttpHeaders headers = PandaproxyFetcher.bearerHeaders(
+            this.jwtService.generateJwtAccessToken(batch.key.principalName()).getTokenValue(),
+            PandaproxyFetcher.MEDIA_TYPE_KAFKA_JSON);
+        byte[] body = this.objectMapper.writeValueAsBytes(new ConsumerOffsetsDto(partitions));
+
+        int instancesLeft = batch.instances.size();
+        for (String instance : batch.instances) {
+            instancesLeft--;
+
+            try {
+                this.upstreamRequestCounter.increment();
+                this.pandaproxyFetcher.fetch(HttpMethod.POST, "/consumers/{group}/instances/{instance}/offsets", headers, body, batch.key.group(), instance);
+                return;
+
+            } catch (ResponseStatusException e) {
+                // case: instance was deleted in the meantime, try the next one
+                if (e.getStatusCode().value() != HttpStatus.NOT_FOUND.value() || instancesLeft == 0)
+                    throw e;
+            }
+        }
+    }
+
+
+    private record BatchKey(String group, String principalName) {}
+
+
+    private record PartitionKey(String topic, int partition) {}
+
+
+    private record Commit(List<ConsumerOffsetDto> offsets, CompletableFuture<Void> future) {}
+
+
+    private static class GroupState {
+
+        /** Highest offset per partition */
+        private final ConcurrentMap<PartitionKey, Long> committedOffsets = new ConcurrentHashMap<>();
+
+        private volatile long lastSendNanos;
+    }
+
+
+    /**
+     * Not thread safe. Is only modified inside {@code openBatches.compute()} and only read after beeing removed from {@code openBatches}.
+     */
+    private static class Batch {
+
+        private final BatchKey key;
+
+        /** In order of the first commit of each instance */
+        private final Set<String> instances = new LinkedHashSet<>();
+
+        /** Highest offset per partition */
+        private final Map<PartitionKey, Long> offsets = new HashMap<>();
+
+        private final List<Commit> commits = new ArrayList<>();
+
+
+        private Batch(BatchKey key) {
+            this.key = key;
+        }
+
+
+        private void add(String instance, List<ConsumerOffsetDto> offsets, CompletableFuture<Void> future) {
+            this.instances.add(instance);
+            this.commits.add(new Commit(offsets, future));
+
+            offsets.forEach(offset -> this.offsets.merge(new PartitionKey(offset.getTopic(), offset.getPartition()), offset.getOffset(), Math::max));
+        }
+    }
+}
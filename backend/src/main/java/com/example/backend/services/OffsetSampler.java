@@ -0,0 +1,38 @@
+package com.example.backend.services;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.kafka.common.TopicPartition;
+
+
+/**
+ * Reads committed offsets of consumer groups and end offsets (high watermarks) of topics, see {@link ConsumerLagService}. <p>
+ * 
+ * Implementations should fetch all groups and topics with as few requests as possible, since this is called for every
+ * monitored group at once.
+ * 
+ * @since latest
+ */
+@FunctionalInterface
+public interface OffsetSampler {
+
+    /**
+     * @param topicsByGroup consumer group names and the topics to sample for them
+     * @return committed offsets of every group that could be sampled and the end offsets of all partitions of all topics that
+     * could be sampled. Groups or topics that failed to be sampled are missing
+     * @throws ExecutionException if sampling failed as a whole
+     * @throws TimeoutException
+     * @throws InterruptedException
+     */
+    public OffsetSample sample(Map<String, Set<String>> topicsByGroup) throws ExecutionException, TimeoutException, InterruptedException;
+
+
+    /**
+     * @param committedOffsets group name -> partition -> committed offset. A partition without commit has no entry
+     * @param endOffsets partition -> high watermark
+     */
+    public record OffsetSample(Map<String, Map<TopicPartition, Long>> committedOffsets, Map<TopicPartition, Long> endOffsets) {}
+}
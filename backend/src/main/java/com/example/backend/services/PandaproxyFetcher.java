@@ -0,0 +1,162 @@
+package com.example.backend.services;
+
+import static com.example.backend.helpers.Utils.assertArgsNotNullAndNotBlankOrThrow;
+
+import java.io.IOException;
+
+import org.jspecify.annotations.Nullable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.example.backend.helpers.Utils;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+
+/**
+ * Use this class for any request the backend sends to the redpanda http proxy. Java equivalent of "RedpandaFetcher.ts". <p>
+ *
+ * Bodies are passed as raw bytes so callers can decide about serialization (and compression) themselves.
+ *
+ * @since latest
+ */
+@Service
+@Slf4j
+public class PandaproxyFetcher {
+
+    /** Also hard coded in "constants.ts" */
+    public static final String MEDIA_TYPE_KAFKA_JSON = "application/vnd.kafka.v2+json";
+    /** Also hard coded in "constants.ts" */
+    public static final String MEDIA_TYPE_KAFKA_JSON_JSON = "application/vnd.kafka.json.v2+json";
+    /** Also hard coded in "constants.ts" */
+    public static final String MEDIA_TYPE_KAFKA_BINARY_JSON = "application/vnd.kafka.binary.v2+json";
+
+    @Value("${PANDAPROXY_BASE_URL}")
+    private String PANDAPROXY_BASE_URL;
+
+    private final ObjectMapper objectMapper = Utils.getDefaultObjectMapper();
+
+    private RestClient restClient;
+
+
+    @PostConstruct
+    void init() {
+        this.restClient = RestClient.builder()
+            .baseUrl(this.PANDAPROXY_BASE_URL)
+            .build();
+    }
+
+
+    /**
+     * Fetch {@code PANDAPROXY_BASE_URL + path}.
+     *
+     * @param method http method
+     * @param path may include query params. A leading slash is prepended if missing. Is a uri template, pass user input as 
+     * {@code uriVariables} instead of formatting it into the path
+     * @param headers request headers like "Content-Type" and "Authorization". May be {@code null}
+     * @param body raw request body. May be {@code null}
+     * @param uriVariables values of the "{...}" placeholders in {@code path} in order, encoded (including '/', '#', '%' and '+')
+     * @return the raw response body, never {@code null}
+     * @throws IllegalArgumentException if {@code method} or {@code path} is blank
+     * @throws ResponseStatusException 503 if pandaproxy is not reachable, the http status parsed from the redpanda error code
+     * if the response status is not alright
+     */
+    public byte[] fetch(HttpMethod method, String path, @Nullable HttpHeaders headers, @Nullable byte[] body, Object... uriVariables) throws IllegalArgumentException, ResponseStatusException {
+        assertArgsNotNullAndNotBlankOrThrow(method, path);
+
+        RestClient.RequestBodySpec requestSpec = this.restClient
+            .method(method)
+            .uri(Utils.prependSlash(path), uriVariables)
+            .headers(requestHeaders -> {
+                if (headers != null)
+                    requestHeaders.addAll(headers);
+            });
+
+        if (body != null)
+            requestSpec = requestSpec.body(body);
+
+        try {
+            return requestSpec.exchange((request, response) -> {
+                byte[] responseBody = response.getBody().readAllBytes();
+                int status = response.getStatusCode().value();
+
+                if (!Utils.isHttpStatusAlright(status))
+                    throw parseRedpandaErrorResponse(status, responseBody);
+
+                return responseBody;
+            });
+
+        // case: failed to fetch
+        } catch (ResourceAccessException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+        }
+    }
+
+
+    /**
+     * @param bearerToken the raw token without "Bearer " prefix
+     * @param contentType may be {@code null}
+     * @return new headers with "Authorization" and (if not {@code null}) "Content-Type" set
+     */
+    public static HttpHeaders bearerHeaders(String bearerToken, @Nullable String contentType) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(bearerToken);
+
+        if (contentType != null)
+            headers.set(HttpHeaders.CONTENT_TYPE, contentType);
+
+        return headers;
+    }
+
+
+    /**
+     * @param status http status of the redpanda response
+     * @param responseBody expected to be formatted like {@code {"error_code": 40401, "message": "..."}}
+     * @return exception with the http status parsed from the redpanda error code, or with {@code status} if the body is formatted differently
+     */
+    private ResponseStatusException parseRedpandaErrorResponse(int status, byte[] responseBody) {
+        try {
+            JsonNode errorResponse = this.objectMapper.readTree(responseBody);
+            JsonNode errorCode = errorResponse.has("code") ? errorResponse.get("code") : errorResponse.get("error_code");
+
+            if (errorCode != null && errorCode.canConvertToInt() && errorResponse.has("message"))
+                return new ResponseStatusException(
+                    HttpStatusCode.valueOf(redpandaErrorCodeToHttpStatusCode(errorCode.asInt(), status)),
+                    "%s (%d)".formatted(errorResponse.get("message").asText(), errorCode.asInt()));
+
+        } catch (IOException e) {
+            log.debug("Unexpected redpanda error response format: {}", e.getMessage());
+        }
+
+        return new ResponseStatusException(HttpStatusCode.valueOf(status));
+    }
+
+
+    /**
+     * Redpanda error codes are either 3 or 5 digits long where the first 3 digits will always represent the http status code.
+     * E.g. {@code 40101 = 401} or {@code 40903 = 409}.
+     *
+     * @param errorCode from an redpanda error response
+     * @param fallbackStatus returned if {@code errorCode} is formatted unexpectedly
+     * @return http status code
+     */
+    private static int redpandaErrorCodeToHttpStatusCode(int errorCode, int fallbackStatus) {
+        if (errorCode >= 100 && errorCode <= 999)
+            return errorCode;
+
+        if (errorCode >= 10_000 && errorCode <= 99_999)
+            return errorCode / 100;
+
+        return fallbackStatus;
+    }
+}
@@ -0,0 +1,338 @@
+package com.example.backend.services;
+
+import static com.example.backend.helpers.Utils.assertArgsNotNullAndNotBlankOrThrow;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.backend.helpers.PrincipalNames;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+
+/**
+ * Roles and topic scopes per principal, stored in the {@code principal_authority} table and embedded in issued tokens as "roles" and
+ * "scope" claims (see {@link ClaimsEnricher}). Principals are identified by provider and name (see {@link PrincipalNames}), so a 
+ * github user and a service client with the same name don't share authorities. The "sub" claim is the qualified name as well, so
+ * they don't share redpanda acls either. Principals in {@code PRINCIPAL_AUTHORITY_ADMINS} 
+ * always have the "ADMIN" role. <p>
+ * 
+ * Authorities are cached per principal. Only the first lookup of a principal hits the database on the caller's thread, entries older
+ * than {@code PRINCIPAL_AUTHORITY_CACHE_TTL_MS} are served stale while they are reloaded in the background. Writes invalidate the
+ * principal's entry. Entries unused for {@value #CACHE_IDLE_TTLS} ttls are removed. <p>
+ * 
+ * NOTE: roles of an oauth2 session are mapped once on login, token claims follow changes within the ttl. <p>
+ * 
+ * Metrics: "principal.authorities.cache" (tagged with "result" hit/stale/miss) and "principal.authorities.loads".
+ * 
+ * @since latest
+ */
+@Service
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@Slf4j
+public class PrincipalAuthorityService implements ClaimsEnricher {
+
+    public static final String ADMIN_ROLE = "ADMIN";
+
+    private static final String ROLE_TYPE = "role";
+    private static final String TOPIC_SCOPE_TYPE = "topic_scope";
+
+    /** Unused entries are removed after this many ttls */
+    private static final int CACHE_IDLE_TTLS = 10;
+
+    private static final String CREATE_TABLE_SQL = """
+        CREATE TABLE IF NOT EXISTS principal_authority (
+            provider VARCHAR(64) NOT NULL,
+            principal VARCHAR(255) NOT NULL,
+            authority_type VARCHAR(16) NOT NULL,
+            authority VARCHAR(300) NOT NULL,
+            PRIMARY KEY (provider, principal, authority_type, authority)
+        )""";
+    private static final String SELECT_SQL = "SELECT authority_type, authority FROM principal_authority WHERE provider = ? AND principal = ?";
+    private static final String DELETE_SQL = "DELETE FROM principal_authority WHERE provider = ? AND principal = ?";
+    private static final String INSERT_SQL = "INSERT INTO principal_authority (provider, principal, authority_type, authority) VALUES (?, ?, ?, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /** In ms */
+    @Value("${PRINCIPAL_AUTHORITY_CACHE_TTL_MS}")
+    private long PRINCIPAL_AUTHORITY_CACHE_TTL_MS;
+
+    /** Comma separated qualified principal names, e.g. "github:octocat". May be blank */
+    @Value("${PRINCIPAL_AUTHORITY_ADMINS}")
+    private String PRINCIPAL_AUTHORITY_ADMINS;
+
+    private Set<String> adminPrincipals;
+
+    private long cacheTtlNanos;
+
+    private final ConcurrentMap<String, CacheEntry> cache = new ConcurrentHashMap<>();
+
+    /** Principals currently reloaded in the background */
+    private final Set<String> reloadingPrincipals = ConcurrentHashMap.newKeySet();
+
+    private TransactionTemplate transactionTemplate;
+
+    private ExecutorService reloadExecutor;
+
+    private ScheduledExecutorService cleanupScheduler;
+
+    private Counter hitCounter;
+    private Counter staleCounter;
+    private Counter missCounter;
+    private Timer loadTimer;
+
+
+    @PostConstruct
+    void init() {
+        this.jdbcTemplate.execute(CREATE_TABLE_SQL);
+        this.transactionTemplate = new TransactionTemplate(this.transactionManager);
+
+        this.cacheTtlNanos = TimeUnit.MILLISECONDS.toNanos(this.PRINCIPAL_AUTHORITY_CACHE_TTL_MS);
+        this.adminPrincipals = Arrays.stream(this.PRINCIPAL_AUTHORITY_ADMINS.split(","))
+            .map(String::strip)
+            .filter(adminPrincipal -> !adminPrincipal.isEmpty())
+            .collect(Collectors.toUnmodifiableSet());
+        try {
+            this.adminPrincipals.forEach(PrincipalNames::assertQualified);
+
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("Invalid 'PRINCIPAL_AUTHORITY_ADMINS': " + e.getMessage());
+        }
+
+        this.hitCounter = this.meterRegistry.counter("principal.authorities.cache", "result", "hit");
+        this.staleCounter = this.meterRegistry.counter("principal.authorities.cache", "result", "stale");
+        this.missCounter = this.meterRegistry.counter("principal.authorities.cache", "result", "miss");
+        this.loadTimer = this.meterRegistry.timer("principal.authorities.loads");
+
+        this.reloadExecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("principal-authority-reload-", 0).factory());
+        this.cleanupScheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("principal-authority-cleanup").daemon().factory());
+        this.cleanupScheduler.scheduleWithFixedDelay(this::removeIdleEntries, this.PRINCIPAL_AUTHORITY_CACHE_TTL_MS, this.PRINCIPAL_AUTHORITY_CACHE_TTL_MS, TimeUnit.MILLISECONDS);
+    }
+
+
+    @PreDestroy
+    void destroy() {
+        this.cleanupScheduler.shutdownNow();
+        this.reloadExecutor.shutdownNow();
+    }
+
+
+    /**
+     * Adds the principal's roles as "roles" claim and appends the topic scopes to the "scope" claim. Leaves the claims as they are if
+     * the principal has no authorities.
+     */
+    @Override
+    public void enrich(String principal, Map<String, Object> claims) {
+        PrincipalAuthorities principalAuthorities = getAuthorities(principal);
+
+        if (!principalAuthorities.getRoles().isEmpty())
+            claims.put("roles", principalAuthorities.getRoles());
+
+        if (!principalAuthorities.getTopicScopes().isEmpty()) {
+            Object scope = claims.get("scope");
+            claims.put("scope", scope == null ? principalAuthorities.getTopicScopesValue() : scope + " " + principalAuthorities.getTopicScopesValue());
+        }
+    }
+
+
+    /**
+     * @param principal qualified principal name, see {@link PrincipalNames}
+     * @return the cached authorities of {@code principal}, possibly up to one reload older than the ttl. Never {@code null}
+     * @throws IllegalArgumentException if {@code principal} is blank or not qualified
+     */
+    public PrincipalAuthorities getAuthorities(String principal) throws IllegalArgumentException {
+        assertArgsNotNullAndNotBlankOrThrow(principal);
+        // unqualified names would share authorities across providers
+        PrincipalNames.assertQualified(principal);
+
+        long nowNanos = System.nanoTime();
+        CacheEntry cacheEntry = this.cache.get(principal);
+
+        // case: first lookup, nothing to serve meanwhile
+        if (cacheEntry == null) {
+            this.missCounter.increment();
+            cacheEntry = this.cache.computeIfAbsent(principal, newPrincipal -> new CacheEntry(load(newPrincipal), System.nanoTime()));
+
+        } else if (nowNanos - cacheEntry.loadedNanos > this.cacheTtlNanos) {
+            this.staleCounter.increment();
+            reloadAsync(principal, cacheEntry);
+
+        } else
+            this.hitCounter.increment();
+
+        cacheEntry.lastUsedNanos = nowNanos;
+
+        return cacheEntry.principalAuthorities;
+    }
+
+
+    /**
+     * Replace all authorities of {@code principal} and invalidate its cache entry.
+     * 
+     * @param principal qualified principal name, see {@link PrincipalNames}
+     * @param roles without "ROLE_" prefix
+     * @param topicScopes formatted like {@code topic:<topic>:<read|write|all>} or {@code group:<group>:<read|all>}
+     * @throws IllegalArgumentException if {@code principal} is blank or not qualified or a collection is {@code null}
+     */
+    public void setAuthorities(String principal, Collection<String> roles, Collection<String> topicScopes) throws IllegalArgumentException {
+        assertArgsNotNullAndNotBlankOrThrow(principal, roles, topicScopes);
+        String provider = PrincipalNames.getProvider(principal);
+        String name = PrincipalNames.getName(principal);
+
+        List<Object[]> rows = new ArrayList<>();
+        roles.forEach(role -> rows.add(new Object[] {provider, name, ROLE_TYPE, role}));
+        topicScopes.forEach(topicScope -> rows.add(new Object[] {provider, name, TOPIC_SCOPE_TYPE, topicScope}));
+
+        this.transactionTemplate.executeWithoutResult(status -> {
+            this.jdbcTemplate.update(DELETE_SQL, provider, name);
+            this.jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+        });
+
+        invalidate(principal);
+    }
+
+
+    /**
+     * The next lookup of {@code principal} will load its authorities. Call this after modifying the {@code principal_authority}
+     * table directly.
+     * 
+     * @param principal qualified principal name
+     */
+    public void invalidate(String principal) {
+        this.cache.remove(principal);
+    }
+
+
+    public void invalidateAll() {
+        this.cache.clear();
+    }
+
+
+    /**
+     * Reload {@code principal} in the background, unless already reloading. The reloaded entry is discarded if the entry was
+     * invalidated meanwhile.
+     */
+    private void reloadAsync(String principal, CacheEntry staleCacheEntry) {
+        if (!this.reloadingPrincipals.add(principal))
+            return;
+
+        this.reloadExecutor.execute(() -> {
+            try {
+                CacheEntry reloadedCacheEntry = new CacheEntry(load(principal), System.nanoTime());
+                reloadedCacheEntry.lastUsedNanos = staleCacheEntry.lastUsedNanos;
+                this.cache.replace(principal, staleCacheEntry, reloadedCacheEntry);
+
+            // case: keep serving the stale entry, retried on the next lookup
+            } catch (RuntimeException e) {
+                log.warn("Failed to reload authorities of '{}': {}", principal, e.getMessage());
+
+            } finally {
+                this.reloadingPrincipals.remove(principal);
+            }
+        });
+    }
+
+
+    private PrincipalAuthorities load(String principal) {
+        long startNanos = System.nanoTime();
+
+        Set<String> roles = new TreeSet<>();
+        Set<String> topicScopes = new TreeSet<>();
+        this.jdbcTemplate.query(SELECT_SQL, resultSet -> {
+            if (ROLE_TYPE.equals(resultSet.getString(1)))
+                roles.add(resultSet.getString(2));
+            else
+                topicScopes.add(resultSet.getString(2));
+        }, PrincipalNames.getProvider(principal), PrincipalNames.getName(principal));
+
+        if (this.adminPrincipals.contains(principal))
+            roles.add(ADMIN_ROLE);
+
+        this.loadTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+
+        return new PrincipalAuthorities(List.copyOf(roles), List.copyOf(topicScopes));
+    }
+
+
+    private void removeIdleEntries() {
+        long nowNanos = System.nanoTime();
+        this.cache.values().removeIf(cacheEntry -> nowNanos - cacheEntry.lastUsedNanos > CACHE_IDLE_TTLS * this.cacheTtlNanos);
+    }
+
+
+    /**
+     * Immutable, the scope claim value is joined once per load instead of once per token.
+     */
+    @Getter
+    public static class PrincipalAuthorities {
+
+        /** Sorted, without "ROLE_" prefix */
+        private final List<String> roles;
+
+        /** Sorted */
+        private final List<String> topicScopes;
+
+        /** Space separated {@link #topicScopes} */
+        private final String topicScopesValue;
+
+
+        public PrincipalAuthorities(List<String> roles, List<String> topicScopes) {
+            this.roles = roles;
+            this.topicScopes = topicScopes;
+            this.topicScopesValue = String.join(" ", topicScopes);
+        }
+    }
+
+
+    private static class CacheEntry {
+
+        private final PrincipalAuthorities principalAuthorities;
+
+        private final long loadedNanos;
+
+        /** Only used for cleanup, races don't matter */
+        private volatile long lastUsedNanos;
+
+
+        private CacheEntry(PrincipalAuthorities principalAuthorities, long loadedNanos) {
+            this.principalAuthorities = principalAuthorities;
+            this.loadedNanos = loadedNanos;
+            this.lastUsedNanos = loadedNanos;
+        }
+    }
+}
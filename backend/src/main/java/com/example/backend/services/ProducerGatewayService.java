@@ -0,0 +1,445 @@
+package com.example.backend.services;
+
+import static com.example.backend.helpers.Utils.assertArgsNotNullAndNotBlankOrThrow;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.example.backend.dtos.ProducerRecordDto;
+import com.example.backend.dtos.ProducerResponseDto.ProducerOffsetDto;
+import com.example.backend.helpers.Utils;
+import com.example.backend.helpers.Validation;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+
+/**
+ * Coalesces produce requests of all callers into as few pandaproxy requests as possible. <p>
+ *
+ * Records are batched per topic and principal (the upstream request is authenticated as the principal, so redpanda ACLs still apply).
+ * A batch is sent as soon as it holds {@code PRODUCER_MAX_BATCH_RECORDS} records or {@code PRODUCER_MAX_BATCH_BYTES} bytes, or
+ * {@code PRODUCER_LINGER_MS} after its first record was added, whatever happens first. The records of one caller are never split
+ * across batches. <p>
+ *
+ * Records are serialized on the caller's thread so the batch body is a plain concatenation of bytes.
+ *
+ * @since latest
+ */
+@Service
+@Slf4j
+public class ProducerGatewayService {
+
+    private static final byte[] BATCH_BODY_PREFIX = "{\"records\":[".getBytes(UTF_8);
+    private static final byte[] BATCH_BODY_SUFFIX = "]}".getBytes(UTF_8);
+    private static final byte BATCH_BODY_SEPARATOR = ',';
+
+    @Autowired
+    private PandaproxyFetcher pandaproxyFetcher;
+
+    @Autowired
+    private JwtService jwtService;
+
+    @Autowired
+    private RecordSearchService recordSearchService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${PRODUCER_LINGER_MS}")
+    private long PRODUCER_LINGER_MS;
+
+    @Value("${PRODUCER_MAX_BATCH_RECORDS}")
+    private int PRODUCER_MAX_BATCH_RECORDS;
+
+    @Value("${PRODUCER_MAX_BATCH_BYTES}")
+    private int PRODUCER_MAX_BATCH_BYTES;
+
+    /** 'gzip' | 'none' */
+    @Value("${PRODUCER_COMPRESSION}")
+    private String PRODUCER_COMPRESSION;
+
+    private final ObjectMapper objectMapper = Utils.getDefaultObjectMapper()
+        .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private final ConcurrentMap<BatchKey, Batch> openBatches = new ConcurrentHashMap<>();
+
+    /** Only triggers linger timeouts, never sends */
+    private ScheduledExecutorService lingerScheduler;
+
+    private ExecutorService senderExecutor;
+
+    /** Set before the open batches are sent on shutdown, later callers are rejected */
+    private volatile boolean isShutdown = false;
+
+    private Counter produceCallCounter;
+    private Counter producedRecordCounter;
+    private Counter upstreamFailureCounter;
+    private Counter rejectedCounter;
+    private Timer upstreamLatencyTimer;
+
+
+    @PostConstruct
+    void init() {
+        this.produceCallCounter = this.meterRegistry.counter("producer.produce.calls");
+        this.producedRecordCounter = this.meterRegistry.counter("producer.records");
+        this.upstreamFailureCounter = this.meterRegistry.counter("producer.upstream.failures");
+        this.rejectedCounter = this.meterRegistry.counter("producer.rejected");
+        this.upstreamLatencyTimer = this.meterRegistry.timer("producer.upstream.latency");
+        this.meterRegistry.gauge("producer.batches.open", this.openBatches, ConcurrentMap::size);
+
+        this.lingerScheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("producer-linger").daemon().factory());
+        this.senderExecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("producer-sender-", 0).factory());
+    }
+
+
+    /**
+     * Reject further callers, send all open batches and wait a couple of seconds for pending upstream requests.
+     */
+    @PreDestroy
+    void destroy() throws InterruptedException {
+        this.isShutdown = true;
+        this.openBatches.keySet()
+            .forEach(batchKey -> {
+                Batch batch = this.openBatches.remove(batchKey);
+                if (batch != null)
+                    sendAsync(batch);
+            });
+
+        this.lingerScheduler.shutdownNow();
+        this.senderExecutor.shutdown();
+        this.senderExecutor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+
+    /**
+     * Queue given {@code records} for the next batch of {@code topic}. Wont block.
+     *
+     * @param topic to produce the records for
+     * @param principalName qualified name of the caller (see {@link com.example.backend.helpers.PrincipalNames}), the token the batch
+     * is sent with is issued for it
+     * @param records may be empty
+     * @return future completing with one offset per record (same order as {@code records}). Completes exceptionally with a
+     * {@link ResponseStatusException} if the upstream request failed, if pandaproxy did not return one offset per record of the batch
+     * (502, the records may have been produced anyway) or if the service shut down before the batch was sent (503)
+     * @throws IllegalArgumentException if an arg is blank, {@code topic} is invalid or a record cannot be serialized
+     * @throws ResponseStatusException 503 if the service is shutting down
+     */
+    public CompletableFuture<List<ProducerOffsetDto>> produce(String topic, String principalName, List<ProducerRecordDto> records) throws IllegalArgumentException, ResponseStatusException {
+        assertArgsNotNullAndNotBlankOrThrow(topic, principalName, records);
+
+        Validation.assertTopicValidOrThrow(topic);
+
+        if (this.isShutdown) {
+            this.rejectedCounter.increment();
+            throw shutdownException();
+        }
+
+        if (records.isEmpty())
+            return CompletableFuture.completedFuture(List.of());
+
+        PendingProduce pendingProduce = new PendingProduce(records, serializeRecords(records));
+        List<Batch> fullBatches = new ArrayList<>(2);
+        BatchKey key = new BatchKey(topic, principalName);
+
+        this.openBatches.compute(key, (batchKey, batch) -> {
+            // case: would overflow, send current batch and start a new one
+            if (batch != null && !batch.canFit(pendingProduce)) {
+                fullBatches.add(batch);
+                batch = null;
+            }
+
+            if (batch == null) {
+                batch = new Batch(batchKey);
+                scheduleLinger(batch);
+            }
+
+            batch.add(pendingProduce);
+
+            if (batch.isFull()) {
+                fullBatches.add(batch);
+                return null;
+            }
+
+            return batch;
+        });
+
+        this.produceCallCounter.increment();
+        fullBatches.forEach(this::sendAsync);
+
+        // case: destroy() sent the open batches meanwhile, this one would never be sent
+        if (this.isShutdown) {
+            Batch batch = this.openBatches.remove(key);
+            if (batch != null)
+                sendAsync(batch);
+        }
+
+        return pendingProduce.future;
+    }
+
+
+    private void scheduleLinger(Batch batch) {
+        try {
+            this.lingerScheduler.schedule(() -> {
+                // case: already sent because it was full
+                if (this.openBatches.remove(batch.key, batch))
+                    sendAsync(batch);
+
+            }, this.PRODUCER_LINGER_MS, TimeUnit.MILLISECONDS);
+
+        } catch (RejectedExecutionException e) {
+            // case: shut down, produce() takes care of the batch
+        }
+    }
+
+
+    private void sendAsync(Batch batch) {
+        try {
+            this.senderExecutor.execute(() -> send(batch));
+
+        } catch (RejectedExecutionException e) {
+            this.rejectedCounter.increment(batch.pendingProduces.size());
+            failAll(batch, shutdownException());
+        }
+    }
+
+
+    /**
+     * Send {@code batch} to pandaproxy and complete the futures of all callers. Wont throw.
+     *
+     * @param batch that is not modified anymore
+     */
+    private void send(Batch batch) {
+        long startNanos = System.nanoTime();
+
+        try {
+            HttpHeaders headers = PandaproxyFetcher.bearerHeaders(
+                this.jwtService.generateJwtAccessToken(batch.key.principalName()).getTokenValue(),
+                PandaproxyFetcher.MEDIA_TYPE_KAFKA_JSON_JSON);
+
+            byte[] body = batchToRequestBody(batch);
+            if ("gzip".equalsIgnoreCase(this.PRODUCER_COMPRESSION)) {
+                body = gzip(body);
+                headers.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+            }
+
+            byte[] responseBody = this.pandaproxyFetcher.fetch(HttpMethod.POST, "/topics/" + batch.key.topic(), headers, body);
+            completeAll(batch, parseOffsets(responseBody));
+
+        } catch (Exception e) {
+            this.upstreamFailureCounter.increment();
+            log.warn("Failed to produce batch of {} records for topic '{}': {}", batch.recordCount, batch.key.topic(), e.getMessage());
+
+            failAll(batch, e instanceof ResponseStatusException responseStatusException ?
+                responseStatusException :
+                new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage(), e));
+
+        } finally {
+            this.upstreamLatencyTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+
+    /**
+     * Pandaproxy returns the offsets in the same order as the records of the request body. Produced records are indexed for search
+     * after all callers were completed.
+     *
+     * @param batch that was sent
+     * @param offsets parsed response body
+     * @throws ResponseStatusException 502 if there's not one offset per record, no caller can tell which of its records got which offset
+     */
+    private void completeAll(Batch batch, List<ProducerOffsetDto> offsets) throws ResponseStatusException {
+        if (offsets.size() != batch.recordCount)
+            throw new ResponseStatusException(
+                HttpStatus.BAD_GATEWAY,
+                "Pandaproxy returned %d offsets for %d records, the records may have been produced anyway".formatted(offsets.size(), batch.recordCount));
+
+        int fromIndex = 0;
+        for (PendingProduce pendingProduce : batch.pendingProduces) {
+            int toIndex = fromIndex + pendingProduce.serializedRecords.length;
+
+            pendingProduce.future.complete(List.copyOf(offsets.subList(fromIndex, toIndex)));
+            fromIndex = toIndex;
+        }
+
+        this.producedRecordCounter.increment(batch.recordCount);
+
+        fromIndex = 0;
+        for (PendingProduce pendingProduce : batch.pendingProduces) {
+            int toIndex = fromIndex + pendingProduce.serializedRecords.length;
+
+            this.recordSearchService.indexRecords(batch.key.topic(), batch.key.principalName(), pendingProduce.records, offsets.subList(fromIndex, toIndex));
+            fromIndex = toIndex;
+        }
+    }
+
+
+    private static void failAll(Batch batch, ResponseStatusException exception) {
+        batch.pendingProduces.forEach(pendingProduce -> pendingProduce.future.completeExceptionally(exception));
+    }
+
+
+    private List<ProducerOffsetDto> parseOffsets(byte[] responseBody) throws IOException {
+        JsonNode offsets = this.objectMapper.readTree(responseBody).get("offsets");
+        if (offsets == null)
+            return List.of();
+
+        return this.objectMapper.convertValue(offsets, new TypeReference<List<ProducerOffsetDto>>() {});
+    }
+
+
+    private byte[][] serializeRecords(List<ProducerRecordDto> records) throws IllegalArgumentException {
+        byte[][] serializedRecords = new byte[records.size()][];
+
+        try {
+            for (int i = 0; i < serializedRecords.length; i++)
+                serializedRecords[i] = this.objectMapper.writeValueAsBytes(records.get(i));
+
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Failed to serialize producer record: " + e.getOriginalMessage());
+        }
+
+        return serializedRecords;
+    }
+
+
+    /**
+     * @param batch to send
+     * @return {@code {"records":[...]}} with the already serialized records
+     */
+    private static byte[] batchToRequestBody(Batch batch) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(BATCH_BODY_PREFIX.length + batch.byteCount + batch.recordCount + BATCH_BODY_SUFFIX.length);
+        body.writeBytes(BATCH_BODY_PREFIX);
+
+        boolean isFirstRecord = true;
+        for (PendingProduce pendingProduce : batch.pendingProduces) {
+            for (byte[] serializedRecord : pendingProduce.serializedRecords) {
+                if (!isFirstRecord)
+                    body.write(BATCH_BODY_SEPARATOR);
+
+                body.writeBytes(serializedRecord);
+                isFirstRecord = false;
+            }
+        }
+
+        body.writeBytes(BATCH_BODY_SUFFIX);
+
+        return body.toByteArray();
+    }
+
+
+    private static ResponseStatusException shutdownException() {
+        return new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Shutting down, records were not produced");
+    }
+
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 4 + 64);
+
+        try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(compressed)) {
+            gzipOutputStream.write(bytes);
+        }
+
+        return compressed.toByteArray();
+    }
+
+
+    private record BatchKey(String topic, String principalName) {}
+
+
+    /**
+     * One produce call.
+     */
+    private static class PendingProduce {
+
+        /** Kept for the search index */
+        private final List<ProducerRecordDto> records;
+
+        private final byte[][] serializedRecords;
+
+        private final int byteCount;
+
+        private final CompletableFuture<List<ProducerOffsetDto>> future = new CompletableFuture<>();
+
+
+        private PendingProduce(List<ProducerRecordDto> records, byte[][] serializedRecords) {
+            this.records = records;
+            this.serializedRecords = serializedRecords;
+
+            int byteCount = 0;
+            for (byte[] serializedRecord : serializedRecords)
+                byteCount += serializedRecord.length;
+            this.byteCount = byteCount;
+        }
+    }
+
+
+    /**
+     * Not thread safe. Is only modified inside {@code openBatches.compute()} and only read after beeing removed from {@code openBatches}.
+     */
+    private class Batch {
+
+        private final BatchKey key;
+
+        private final List<PendingProduce> pendingProduces = new ArrayList<>();
+
+        private int recordCount;
+
+        private int byteCount;
+
+
+        private Batch(BatchKey key) {
+            this.key = key;
+        }
+
+
+        private void add(PendingProduce pendingProduce) {
+            this.pendingProduces.add(pendingProduce);
+            this.recordCount += pendingProduce.serializedRecords.length;
+            this.byteCount += pendingProduce.byteCount;
+        }
+
+        /**
+         * @param pendingProduce to add
+         * @return {@code true} if the batch is empty or would not exceed any limit after adding {@code pendingProduce}
+         */
+        private boolean canFit(PendingProduce pendingProduce) {
+            return this.pendingProduces.isEmpty() ||
+                   (this.recordCount + pendingProduce.serializedRecords.length <= PRODUCER_MAX_BATCH_RECORDS &&
+                    this.byteCount + pendingProduce.byteCount <= PRODUCER_MAX_BATCH_BYTES);
+        }
+
+        private boolean isFull() {
+            return this.recordCount >= PRODUCER_MAX_BATCH_RECORDS || this.byteCount >= PRODUCER_MAX_BATCH_BYTES;
+        }
+    }
+}
@@ -0,0 +1,439 @@
+package com.example.backend.services;
+
+import static com.example.backend.helpers.Utils.assertArgsNotNullAndNotBlankOrThrow;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.example.backend.dtos.ProducerRecordDto;
+import com.example.backend.dtos.ProducerResponseDto.ProducerOffsetDto;
+import com.example.backend.helpers.Utils;
+import com.example.backend.helpers.Validation;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+
+/**
+ * Write-ahead outbox for produce requests. Records are stored in the {@code producer_outbox} table first and are produced
+ * by a background drain using {@link ProducerGatewayService}. <p>
+ *
+ * Appends of concurrent callers are written by a single writer thread with one batched insert per transaction (group commit).
+ * The drain reads the oldest rows of each stream (topic and principal), produces the streams concurrently in insertion order and 
+ * deletes all acknowledged rows with one statement. A stream whose produce request fails with a retryable status backs off 
+ * exponentially on its own and its rows stay where they are, so records with the same key are never reordered and other streams
+ * keep draining. A stream is retried until redpanda accepts or permanently rejects it, only rejected rows are dropped. <p>
+ *
+ * Delivery is at-least-once: a crash between produce and delete will produce the affected rows again. Appends that are not written
+ * when shutting down are completed with 503. <p>
+ *
+ * Metrics: "outbox.appended", "outbox.insert.batches", "outbox.drained", "outbox.dropped", "outbox.appends.pending" and
+ * "outbox.streams.backed.off".
+ *
+ * @since latest
+ */
+@Service
+@Slf4j
+public class ProducerOutboxService {
+
+    private static final String CREATE_TABLE_SQL = """
+        CREATE TABLE IF NOT EXISTS producer_outbox (
+            id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+            topic VARCHAR(249) NOT NULL,
+            principal_name VARCHAR(255) NOT NULL,
+            record_json CHARACTER LARGE OBJECT NOT NULL,
+            created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL
+        )""";
+    private static final String CREATE_INDEX_SQL = "CREATE INDEX IF NOT EXISTS producer_outbox_stream ON producer_outbox (topic, principal_name, id)";
+    private static final String INSERT_SQL = "INSERT INTO producer_outbox (topic, principal_name, record_json) VALUES (?, ?, ?)";
+    private static final String SELECT_STREAMS_SQL = "SELECT DISTINCT topic, principal_name FROM producer_outbox";
+    private static final String SELECT_OLDEST_OF_STREAM_SQL = "SELECT id, record_json FROM producer_outbox WHERE topic = ? AND principal_name = ? ORDER BY id LIMIT ?";
+    private static final String DELETE_SQL = "DELETE FROM producer_outbox WHERE id IN (:ids)";
+
+    /** In seconds. Max time to wait for a produce request of the drain */
+    private static final long DRAIN_PRODUCE_TIMEOUT = 30;
+
+    /** Queued by {@link #destroy()}, the writer stops once it took it */
+    private static final PendingAppend SHUTDOWN = new PendingAppend(List.of(), new CompletableFuture<>());
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ProducerGatewayService producerGatewayService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${OUTBOX_INSERT_BATCH_SIZE}")
+    private int OUTBOX_INSERT_BATCH_SIZE;
+
+    @Value("${OUTBOX_DRAIN_INTERVAL_MS}")
+    private long OUTBOX_DRAIN_INTERVAL_MS;
+
+    /** Per stream */
+    @Value("${OUTBOX_DRAIN_BATCH_SIZE}")
+    private int OUTBOX_DRAIN_BATCH_SIZE;
+
+    @Value("${OUTBOX_MAX_BACKOFF_MS}")
+    private long OUTBOX_MAX_BACKOFF_MS;
+
+    private final ObjectMapper objectMapper = Utils.getDefaultObjectMapper();
+
+    private final BlockingQueue<PendingAppend> appendQueue = new LinkedBlockingQueue<>();
+
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    private TransactionTemplate transactionTemplate;
+
+    private Thread appendWriter;
+
+    private ScheduledExecutorService drainScheduler;
+
+    /** Streams whose last attempt failed */
+    private final Map<StreamKey, StreamBackoff> backoffsByStream = new ConcurrentHashMap<>();
+
+    private volatile boolean isShutdown = false;
+
+    private Counter appendedRecordCounter;
+    private Counter insertBatchCounter;
+    private Counter drainedRecordCounter;
+    private Counter droppedRecordCounter;
+
+
+    @PostConstruct
+    void init() {
+        this.appendedRecordCounter = this.meterRegistry.counter("outbox.appended");
+        this.insertBatchCounter = this.meterRegistry.counter("outbox.insert.batches");
+        this.drainedRecordCounter = this.meterRegistry.counter("outbox.drained");
+        this.droppedRecordCounter = this.meterRegistry.counter("outbox.dropped");
+        this.meterRegistry.gauge("outbox.appends.pending", this.appendQueue, BlockingQueue::size);
+        this.meterRegistry.gauge("outbox.streams.backed.off", this.backoffsByStream, Map::size);
+
+        this.jdbcTemplate.execute(CREATE_TABLE_SQL);
+        this.jdbcTemplate.execute(CREATE_INDEX_SQL);
+        this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(this.jdbcTemplate);
+        this.transactionTemplate = new TransactionTemplate(this.transactionManager);
+
+        this.appendWriter = Thread.ofVirtual().name("outbox-writer").start(this::writeAppends);
+
+        this.drainScheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("outbox-drain").daemon().factory());
+        this.drainScheduler.scheduleWithFixedDelay(this::drain, this.OUTBOX_DRAIN_INTERVAL_MS, this.OUTBOX_DRAIN_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+
+    /**
+     * Let the writer insert what was appended so far, without interrupting jdbc, and reject everything appended after that.
+     */
+    @PreDestroy
+    void destroy() throws InterruptedException {
+        this.isShutdown = true;
+        this.appendQueue.add(SHUTDOWN);
+        this.appendWriter.join(Duration.ofSeconds(5));
+
+        this.drainScheduler.shutdownNow();
+        rejectPendingAppends();
+    }
+
+
+    /**
+     * Store given {@code records} in the outbox. Wont block.
+     *
+     * @param topic to produce the records for
+     * @param principalName qualified name of the caller (see {@link com.example.backend.helpers.PrincipalNames}), the records are
+     * produced with a token issued for it
+     * @param records may be empty
+     * @return future completing once the records are committed to the database. Completes exceptionally with a
+     * {@link ResponseStatusException} if the insert failed, or 503 if shutting down
+     * @throws IllegalArgumentException if an arg is blank, {@code topic} is invalid or a record cannot be serialized
+     */
+    public CompletableFuture<Void> append(String topic, String principalName, List<ProducerRecordDto> records) throws IllegalArgumentException {
+        assertArgsNotNullAndNotBlankOrThrow(topic, principalName, records);
+
+        Validation.assertTopicValidOrThrow(topic);
+
+        if (records.isEmpty())
+            return CompletableFuture.completedFuture(null);
+
+        List<Object[]> rows = new ArrayList<>(records.size());
+        try {
+            for (ProducerRecordDto record : records)
+                rows.add(new Object[] {topic, principalName, this.objectMapper.writeValueAsString(record)});
+
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Failed to serialize producer record: " + e.getOriginalMessage());
+        }
+
+        if (this.isShutdown)
+            return CompletableFuture.failedFuture(shutdownException());
+
+        PendingAppend pendingAppend = new PendingAppend(rows, new CompletableFuture<>());
+        this.appendQueue.add(pendingAppend);
+
+        // case: raced with destroy(), the writer may be gone already
+        if (this.isShutdown)
+            rejectPendingAppends();
+
+        return pendingAppend.future();
+    }
+
+
+    /**
+     * Runs on {@code appendWriter} until it takes {@link #SHUTDOWN}. Takes everything that queued up during the last insert and writes 
+     * it in one transaction.
+     */
+    private void writeAppends() {
+        List<PendingAppend> pendingAppends = new ArrayList<>(this.OUTBOX_INSERT_BATCH_SIZE);
+        boolean isShutdownTaken = false;
+
+        while (!isShutdownTaken) {
+            try {
+                pendingAppends.add(this.appendQueue.take());
+                this.appendQueue.drainTo(pendingAppends, this.OUTBOX_INSERT_BATCH_SIZE - 1);
+                isShutdownTaken = pendingAppends.removeIf(pendingAppend -> pendingAppend == SHUTDOWN);
+
+                if (!pendingAppends.isEmpty())
+                    insert(pendingAppends);
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+
+            } finally {
+                pendingAppends.clear();
+            }
+        }
+    }
+
+
+    /**
+     * Complete all queued appends with 503. Keeps {@link #SHUTDOWN} queued for the writer.
+     */
+    private void rejectPendingAppends() {
+        List<PendingAppend> pendingAppends = new ArrayList<>();
+        this.appendQueue.drainTo(pendingAppends);
+
+        for (PendingAppend pendingAppend : pendingAppends)
+            if (pendingAppend == SHUTDOWN)
+                this.appendQueue.add(SHUTDOWN);
+            else
+                pendingAppend.future().completeExceptionally(shutdownException());
+    }
+
+
+    private static ResponseStatusException shutdownException() {
+        return new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Shutting down, records were not appended");
+    }
+
+
+    /**
+     * Wont throw.
+     *
+     * @param pendingAppends to insert and complete
+     */
+    private void insert(List<PendingAppend> pendingAppends) {
+        List<Object[]> rows = new ArrayList<>();
+        pendingAppends.forEach(pendingAppend -> rows.addAll(pendingAppend.rows()));
+
+        try {
+            this.transactionTemplate.executeWithoutResult(status -> this.jdbcTemplate.batchUpdate(INSERT_SQL, rows));
+
+            this.appendedRecordCounter.increment(rows.size());
+            this.insertBatchCounter.increment();
+            pendingAppends.forEach(pendingAppend -> pendingAppend.future().complete(null));
+
+        } catch (RuntimeException e) {
+            log.error("Failed to append {} records to outbox: {}", rows.size(), e.getMessage());
+
+            ResponseStatusException exception = new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to append records to outbox", e);
+            pendingAppends.forEach(pendingAppend -> pendingAppend.future().completeExceptionally(exception));
+        }
+    }
+
+
+    /**
+     * Produce the oldest {@code OUTBOX_DRAIN_BATCH_SIZE} rows of every stream that is not backed off and delete them once 
+     * acknowledged. Only runs on {@code drainScheduler}. Wont throw.
+     */
+    private void drain() {
+        try {
+            long now = System.currentTimeMillis();
+            List<StreamKey> streamKeys = this.jdbcTemplate.query(
+                SELECT_STREAMS_SQL, 
+                (resultSet, rowNum) -> new StreamKey(resultSet.getString("topic"), resultSet.getString("principal_name")));
+
+            // forget backoffs of streams that are gone, e.g. deleted manually
+            this.backoffsByStream.keySet().retainAll(new HashSet<>(streamKeys));
+
+            Map<StreamKey, List<OutboxRow>> streams = new LinkedHashMap<>();
+            Map<StreamKey, CompletableFuture<List<ProducerOffsetDto>>> produceFutures = new LinkedHashMap<>();
+            for (StreamKey streamKey : streamKeys) {
+                StreamBackoff backoff = this.backoffsByStream.get(streamKey);
+                if (backoff != null && backoff.nextAttemptTime > now)
+                    continue;
+
+                List<OutboxRow> rows = this.jdbcTemplate.query(
+                    SELECT_OLDEST_OF_STREAM_SQL,
+                    (resultSet, rowNum) -> new OutboxRow(resultSet.getLong("id"), resultSet.getString("record_json")),
+                    streamKey.topic(),
+                    streamKey.principalName(),
+                    this.OUTBOX_DRAIN_BATCH_SIZE);
+
+                if (rows.isEmpty())
+                    continue;
+
+                streams.put(streamKey, rows);
+                produceFutures.put(streamKey, this.producerGatewayService.produce(streamKey.topic(), streamKey.principalName(), toRecords(rows)));
+            }
+
+            List<Long> deletableIds = new ArrayList<>();
+            for (Map.Entry<StreamKey, CompletableFuture<List<ProducerOffsetDto>>> produceFuture : produceFutures.entrySet()) {
+                List<OutboxRow> streamRows = streams.get(produceFuture.getKey());
+
+                if (awaitProduce(produceFuture.getKey(), produceFuture.getValue(), streamRows.size()))
+                    streamRows.forEach(row -> deletableIds.add(row.id()));
+            }
+
+            if (!deletableIds.isEmpty())
+                this.namedParameterJdbcTemplate.update(DELETE_SQL, Map.of("ids", deletableIds));
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+        } catch (Exception e) {
+            log.error("Failed to drain outbox: {}", e.getMessage());
+        }
+    }
+
+
+    /**
+     * @param streamKey of the produced rows
+     * @param produceFuture of the gateway
+     * @param recordCount number of records of the stream
+     * @return {@code true} if the rows of the stream can be deleted, {@code false} if they should be retried
+     * @throws InterruptedException
+     */
+    private boolean awaitProduce(StreamKey streamKey, CompletableFuture<List<ProducerOffsetDto>> produceFuture, int recordCount) throws InterruptedException {
+        try {
+            List<ProducerOffsetDto> offsets = produceFuture.get(DRAIN_PRODUCE_TIMEOUT, TimeUnit.SECONDS);
+
+            long failedRecords = offsets.stream().filter(offset -> offset.getError_code() != null).count();
+            if (failedRecords > 0) {
+                log.warn("Redpanda rejected {} outbox records for topic '{}'", failedRecords, streamKey.topic());
+                this.droppedRecordCounter.increment(failedRecords);
+            }
+
+            this.drainedRecordCounter.increment(recordCount - failedRecords);
+            this.backoffsByStream.remove(streamKey);
+            return true;
+
+        } catch (TimeoutException e) {
+            backOff(streamKey, recordCount, "timed out");
+            return false;
+
+        } catch (ExecutionException e) {
+            // case: retry later
+            if (isRetryable(e.getCause())) {
+                backOff(streamKey, recordCount, e.getCause().getMessage());
+                return false;
+            }
+
+            log.warn("Dropping {} outbox records for topic '{}': {}", recordCount, streamKey.topic(), e.getCause().getMessage());
+            this.droppedRecordCounter.increment(recordCount);
+            this.backoffsByStream.remove(streamKey);
+            return true;
+        }
+    }
+
+
+    /**
+     * Delay the next attempt of {@code streamKey} exponentially, other streams are not affected. The rows are kept no matter how
+     * often the stream failed.
+     */
+    private void backOff(StreamKey streamKey, int recordCount, String reason) {
+        StreamBackoff backoff = this.backoffsByStream.computeIfAbsent(streamKey, key -> new StreamBackoff());
+        backoff.attempts++;
+
+        backoff.delay = backoff.delay == 0 ? this.OUTBOX_DRAIN_INTERVAL_MS : Math.min(backoff.delay * 2, this.OUTBOX_MAX_BACKOFF_MS);
+        backoff.nextAttemptTime = System.currentTimeMillis() + backoff.delay;
+
+        log.warn("Failed to produce {} outbox records for topic '{}' ({} attempts in a row), retrying in {}ms: {}", recordCount, streamKey.topic(), backoff.attempts, backoff.delay, reason);
+    }
+
+
+    /**
+     * @param throwable cause of a failed produce request
+     * @return {@code true} for 5xx, 401 (token might be rejected while the issuer is restarting), 429 and non http errors
+     */
+    private static boolean isRetryable(Throwable throwable) {
+        if (!(throwable instanceof ResponseStatusException responseStatusException))
+            return true;
+
+        int status = responseStatusException.getStatusCode().value();
+
+        return status >= 500 || status == 401 || status == 429;
+    }
+
+
+    private List<ProducerRecordDto> toRecords(List<OutboxRow> rows) throws JsonProcessingException {
+        List<ProducerRecordDto> records = new ArrayList<>(rows.size());
+
+        for (OutboxRow row : rows)
+            records.add(this.objectMapper.readValue(row.recordJson(), ProducerRecordDto.class));
+
+        return records;
+    }
+
+
+    private record PendingAppend(List<Object[]> rows, CompletableFuture<Void> future) {}
+
+    private record OutboxRow(long id, String recordJson) {}
+
+    private record StreamKey(String topic, String principalName) {}
+
+
+    /**
+     * Only modified by the drain.
+     */
+    private static class StreamBackoff {
+
+        /** Failed attempts in a row */
+        private int attempts;
+
+        /** In ms */
+        private long delay;
+
+        private long nextAttemptTime;
+    }
+}
@@ -0,0 +1,274 @@
+package com.example.backend.services;
+
+import static com.example.backend.helpers.Utils.assertArgsNotNullAndNotBlankOrThrow;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.jspecify.annotations.Nullable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+
+/**
+ * Token bucket rate limiter keyed by principal and by client ip. <p>
+ * 
+ * Each bucket holds {@code RATE_LIMIT_BURST} tokens and refills {@code RATE_LIMIT_REQUESTS_PER_SECOND} tokens per second. The bucket
+ * state is a single "theoretical arrival time" (the time the bucket would be full again, GCRA) that is updated with one CAS, so
+ * acquiring never locks. A request takes a token of both its buckets or of none: if the second bucket is empty, the token of the first
+ * one is given back, so a request rejected for the ip does not use up the principal's tokens and vice versa. <p>
+ * 
+ * Buckets are kept in {@value #STRIPE_COUNT} stripes of at most {@code RATE_LIMIT_MAX_KEYS / STRIPE_COUNT} keys. A full stripe first
+ * drops its full buckets (which are equal to new ones), then arbitrary ones, so only the stripe of the new key is scanned. <p>
+ * 
+ * Metrics: "rate.limit.requests" (per request, tagged with "outcome" allowed/rejected), "rate.limit.keys" and "rate.limit.evictions". Counters
+ * per key are available through {@link #getKeyCounters(int)}.
+ * 
+ * @since latest
+ */
+@Service
+@Slf4j
+public class RateLimiterService {
+
+    /** Power of 2 */
+    static final int STRIPE_COUNT = 16;
+
+    static final String PRINCIPAL_KEY_PREFIX = "principal:";
+    static final String IP_KEY_PREFIX = "ip:";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${RATE_LIMIT_REQUESTS_PER_SECOND}")
+    private double RATE_LIMIT_REQUESTS_PER_SECOND;
+
+    /** Max requests of one key in a row, after beeing idle */
+    @Value("${RATE_LIMIT_BURST}")
+    private int RATE_LIMIT_BURST;
+
+    /** Max keys of all stripes */
+    @Value("${RATE_LIMIT_MAX_KEYS}")
+    private int RATE_LIMIT_MAX_KEYS;
+
+    private final List<ConcurrentMap<String, Bucket>> stripes = new ArrayList<>(STRIPE_COUNT);
+
+    /** Time between two tokens */
+    private long emissionIntervalNanos;
+
+    /** Time an empty bucket needs to be full again */
+    private long burstNanos;
+
+    private int maxKeysPerStripe;
+
+    private Counter allowedCounter;
+    private Counter rejectedCounter;
+    private Counter evictionCounter;
+
+
+    @PostConstruct
+    void init() {
+        if (this.RATE_LIMIT_REQUESTS_PER_SECOND <= 0 || this.RATE_LIMIT_BURST < 1 || this.RATE_LIMIT_MAX_KEYS < STRIPE_COUNT)
+            throw new IllegalArgumentException("Invalid rate limit config. Requests per second and burst need to be positive, max keys at least " + STRIPE_COUNT);
+
+        this.emissionIntervalNanos = Math.max(1, Math.round(1_000_000_000 / this.RATE_LIMIT_REQUESTS_PER_SECOND));
+        this.burstNanos = this.emissionIntervalNanos * this.RATE_LIMIT_BURST;
+        this.maxKeysPerStripe = this.RATE_LIMIT_MAX_KEYS / STRIPE_COUNT;
+
+        for (int i = 0; i < STRIPE_COUNT; i++)
+            this.stripes.add(new ConcurrentHashMap<>());
+
+        this.allowedCounter = this.meterRegistry.counter("rate.limit.requests", "outcome", "allowed");
+        this.rejectedCounter = this.meterRegistry.counter("rate.limit.requests", "outcome", "rejected");
+        this.evictionCounter = this.meterRegistry.counter("rate.limit.evictions");
+        this.meterRegistry.gauge("rate.limit.keys", this, RateLimiterService::getKeyCount);
+    }
+
+
+    /**
+     * Take one token of the client ip's bucket and one of the principal's bucket (if not {@code null}), or none if either is empty.
+     * 
+     * @param principalName qualified name of the authenticated principal (e.g. "github:octocat"), {@code null} if not logged in
+     * @param clientIp remote address of the request
+     * @return 0 if the request is allowed, else the nanos until the next token of the exhausted bucket is available
+     * @throws IllegalArgumentException if {@code clientIp} is blank
+     */
+    public long tryAcquire(@Nullable String principalName, String clientIp) throws IllegalArgumentException {
+        assertArgsNotNullAndNotBlankOrThrow(clientIp);
+
+        long nowNanos = System.nanoTime();
+        Bucket ipBucket = getOrCreateBucket(IP_KEY_PREFIX + clientIp, nowNanos);
+
+        if (principalName == null)
+            return tryAcquire(nowNanos, ipBucket);
+
+        return tryAcquire(nowNanos, ipBucket, getOrCreateBucket(PRINCIPAL_KEY_PREFIX + principalName, nowNanos));
+    }
+
+
+    /**
+     * @param limit max number of keys to return
+     * @return counters of the currently tracked keys, most rejected requests first
+     */
+    public List<KeyCounters> getKeyCounters(int limit) {
+        return this.stripes.stream()
+            .flatMap(stripe -> stripe.entrySet().stream())
+            .map(entry -> new KeyCounters(entry.getKey(), entry.getValue().allowedCount.sum(), entry.getValue().rejectedCount.sum()))
+            .sorted(Comparator.comparingLong(KeyCounters::rejected).thenComparingLong(KeyCounters::allowed).reversed())
+            .limit(limit)
+            .toList();
+    }
+
+
+    public int getKeyCount() {
+        int keyCount = 0;
+        for (ConcurrentMap<String, Bucket> stripe : this.stripes)
+            keyCount += stripe.size();
+
+        return keyCount;
+    }
+
+
+    /**
+     * @param key prefixed principal name or client ip
+     * @param nowNanos {@code System.nanoTime()}, passed in to test refilling
+     * @return 0 if a token was taken, else the nanos until the next token is available
+     */
+    long tryAcquire(String key, long nowNanos) {
+        return tryAcquire(nowNanos, getOrCreateBucket(key, nowNanos));
+    }
+
+
+    /**
+     * Take one token of each bucket, or none if one of them is empty.
+     * 
+     * @return 0 if the tokens were taken, else the nanos until the next token of the first empty bucket is available
+     */
+    private long tryAcquire(long nowNanos, Bucket... buckets) {
+        for (int i = 0; i < buckets.length; i++) {
+            long waitNanos = buckets[i].tryAcquire(nowNanos, this.emissionIntervalNanos, this.burstNanos);
+
+            // case: empty, give back the tokens taken so far
+            if (waitNanos > 0) {
+                for (int j = 0; j < i; j++)
+                    buckets[j].release(this.emissionIntervalNanos);
+
+                buckets[i].rejectedCount.increment();
+                this.rejectedCounter.increment();
+
+                return waitNanos;
+            }
+        }
+
+        for (Bucket bucket : buckets)
+            bucket.allowedCount.increment();
+        this.allowedCounter.increment();
+
+        return 0;
+    }
+
+
+    private Bucket getOrCreateBucket(String key, long nowNanos) {
+        ConcurrentMap<String, Bucket> stripe = getStripe(key);
+
+        Bucket bucket = stripe.get(key);
+        if (bucket != null)
+            return bucket;
+
+        if (stripe.size() >= this.maxKeysPerStripe)
+            evict(stripe, nowNanos);
+
+        return stripe.computeIfAbsent(key, newKey -> new Bucket(nowNanos));
+    }
+
+
+    /**
+     * Remove full buckets of {@code stripe}, then arbitrary ones if still at the limit. Concurrent evictions may remove a few more
+     * buckets than necessary.
+     */
+    private void evict(ConcurrentMap<String, Bucket> stripe, long nowNanos) {
+        int sizeBefore = stripe.size();
+        stripe.values().removeIf(bucket -> bucket.isFull(nowNanos));
+
+        Iterator<Bucket> buckets = stripe.values().iterator();
+        while (stripe.size() >= this.maxKeysPerStripe && buckets.hasNext()) {
+            buckets.next();
+            buckets.remove();
+        }
+
+        this.evictionCounter.increment(Math.max(0, sizeBefore - stripe.size()));
+    }
+
+
+    private ConcurrentMap<String, Bucket> getStripe(String key) {
+        int hash = key.hashCode();
+        return this.stripes.get((hash ^ (hash >>> 16)) & (STRIPE_COUNT - 1));
+    }
+
+
+    /**
+     * @param key prefixed principal name or client ip
+     * @param allowed requests since the key is tracked
+     * @param rejected requests since the key is tracked
+     */
+    public record KeyCounters(String key, long allowed, long rejected) {}
+
+
+    private static class Bucket {
+
+        /** Time at which the bucket is full again. Never before now minus one emission interval when taking a token */
+        private final AtomicLong theoreticalArrivalNanos;
+
+        private final LongAdder allowedCount = new LongAdder();
+        private final LongAdder rejectedCount = new LongAdder();
+
+
+        private Bucket(long nowNanos) {
+            this.theoreticalArrivalNanos = new AtomicLong(nowNanos);
+        }
+
+
+        /**
+         * @return 0 if a token was taken, else the nanos until the next token is available
+         */
+        private long tryAcquire(long nowNanos, long emissionIntervalNanos, long burstNanos) {
+            while (true) {
+                long theoreticalArrival = this.theoreticalArrivalNanos.get();
+                // nano times may overflow, only compare differences
+                long nextTheoreticalArrival = (theoreticalArrival - nowNanos < 0 ? nowNanos : theoreticalArrival) + emissionIntervalNanos;
+                long waitNanos = nextTheoreticalArrival - nowNanos - burstNanos;
+
+                // case: empty
+                if (waitNanos > 0)
+                    return waitNanos;
+
+                if (this.theoreticalArrivalNanos.compareAndSet(theoreticalArrival, nextTheoreticalArrival))
+                    return 0;
+            }
+        }
+
+
+        /**
+         * Give back a token taken by {@link #tryAcquire}.
+         */
+        private void release(long emissionIntervalNanos) {
+            this.theoreticalArrivalNanos.addAndGet(-emissionIntervalNanos);
+        }
+
+
+        private boolean isFull(long nowNanos) {
+            return this.theoreticalArrivalNanos.get() - nowNanos <= 0;
+        }
+    }
+}
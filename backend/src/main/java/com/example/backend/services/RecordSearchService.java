@@ -0,0 +1,544 @@
+package com.example.backend.services;
+
+import static com.example.backend.helpers.Utils.SEARCH_APPROXIMATE_RATING_POINTS;
+import static com.example.backend.helpers.Utils.SEARCH_EXACT_MATCH_RATING_POINTS;
+import static com.example.backend.helpers.Utils.assertArgsNotNullAndNotBlankOrThrow;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.example.backend.dtos.ProducerRecordDto;
+import com.example.backend.dtos.ProducerResponseDto.ProducerOffsetDto;
+import com.example.backend.dtos.SearchResultDto;
+import com.example.backend.dtos.SearchResultDto.SearchHitDto;
+import com.example.backend.helpers.InvertedIndex;
+import com.example.backend.helpers.InvertedIndex.Hits;
+import com.example.backend.helpers.Utils;
+import com.example.backend.services.PrincipalAuthorityService.PrincipalAuthorities;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+
+/**
+ * Full text search over topic names and the keys and values of records produced through this backend (see
+ * {@link ProducerGatewayService}), ranked with the {@code SEARCH_*} constants of {@link Utils}, see {@link InvertedIndex}. <p>
+ *
+ * Records are indexed once pandaproxy returned their offset, by a single indexer thread so the producing caller never waits for the
+ * write lock. At most {@code INDEX_QUEUE_CAPACITY} calls wait for that thread, further ones are dropped (counted as
+ * "search.index.dropped"). Json keys and values are indexed as serialized json, field names included. <p>
+ *
+ * Records are indexed in {@code SEGMENT_COUNT} segments of equal size. Once the newest segment is full a new one is started and the
+ * oldest one is evicted if that exceeds {@code SEARCH_INDEX_MAX_DOCUMENTS} records (counted as "search.index.evicted"). Topics are
+ * indexed separately and never evicted. The index is in memory only and starts empty. <p>
+ *
+ * A principal finds records of topics it may read ("topic:{name}:read" or "all" scope, or the "ADMIN" role) and records it produced
+ * itself. <p>
+ *
+ * Latency at 1M records with ~10 words each: below 1ms for selective queries, up to ~50ms for queries matching every record.
+ *
+ * @since latest
+ */
+@Service
+@Slf4j
+public class RecordSearchService {
+
+    public static final String TYPE_TOPIC = "topic";
+    public static final String TYPE_RECORD = "record";
+
+    /** Longer keys and values are indexed completely but returned truncated */
+    public static final int MAX_PREVIEW_LENGTH = 256;
+
+    /** Evicting a segment drops this fraction of the indexed records at once */
+    private static final int SEGMENT_COUNT = 4;
+
+    /** Calls of {@link #indexRecords} waiting for the indexer thread */
+    private static final int INDEX_QUEUE_CAPACITY = 10_000;
+
+    /** Calls of {@link #indexRecords} indexed with one write lock */
+    private static final int MAX_INDEX_REQUESTS_PER_LOCK = 64;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    @Autowired
+    private PrincipalAuthorityService principalAuthorityService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${SEARCH_INDEX_MAX_DOCUMENTS}")
+    private int SEARCH_INDEX_MAX_DOCUMENTS;
+
+    private final ObjectMapper objectMapper = Utils.getDefaultObjectMapper();
+
+    private final BlockingQueue<IndexRequest> indexQueue = new ArrayBlockingQueue<>(INDEX_QUEUE_CAPACITY);
+
+    /** Queued or being indexed */
+    private final AtomicInteger pendingCount = new AtomicInteger();
+
+    private Thread indexer;
+
+    /** Guards the segments, topics and principals */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Segment topicSegment = new Segment(-1, INITIAL_CAPACITY);
+
+    /** Record segments, oldest first */
+    private final Deque<Segment> recordSegments = new ArrayDeque<>();
+
+    private int recordSegmentCapacity;
+
+    private long nextSegmentSequence = 0;
+
+    private int recordCount = 0;
+
+    private final Map<String, Integer> topicIds = new HashMap<>();
+
+    private final List<String> topics = new ArrayList<>();
+
+    /** Topic id -> principal ids that produced to it */
+    private final List<BitSet> topicProducerIds = new ArrayList<>();
+
+    private final Map<String, Integer> principalIds = new HashMap<>();
+
+    private Counter droppedCounter;
+
+    private Counter evictedCounter;
+
+    private Timer searchTimer;
+
+
+    @PostConstruct
+    void init() {
+        if (this.SEARCH_INDEX_MAX_DOCUMENTS < 0)
+            throw new IllegalStateException("'SEARCH_INDEX_MAX_DOCUMENTS' cannot be negative");
+
+        if (SEARCH_EXACT_MATCH_RATING_POINTS <= 0 || SEARCH_EXACT_MATCH_RATING_POINTS > InvertedIndex.MAX_MATCH_RATING_POINTS
+                || SEARCH_APPROXIMATE_RATING_POINTS <= 0 || SEARCH_APPROXIMATE_RATING_POINTS > InvertedIndex.MAX_MATCH_RATING_POINTS)
+            throw new IllegalStateException("'SEARCH_EXACT_MATCH_RATING_POINTS' and 'SEARCH_APPROXIMATE_RATING_POINTS' need to be between 1 and %d"
+                .formatted(InvertedIndex.MAX_MATCH_RATING_POINTS));
+
+        this.recordSegmentCapacity = Math.max(1, Math.ceilDiv(this.SEARCH_INDEX_MAX_DOCUMENTS, SEGMENT_COUNT));
+
+        this.droppedCounter = this.meterRegistry.counter("search.index.dropped");
+        this.evictedCounter = this.meterRegistry.counter("search.index.evicted");
+        this.searchTimer = this.meterRegistry.timer("search.requests");
+        this.meterRegistry.gauge("search.index.documents", this, RecordSearchService::getDocumentCount);
+        this.meterRegistry.gauge("search.index.pending", this, RecordSearchService::getPendingCount);
+
+        this.indexer = Thread.ofPlatform().name("search-indexer").daemon().start(this::runIndexer);
+    }
+
+
+    /**
+     * Stop indexing, queued records are not searchable anyway once the index is gone.
+     */
+    @PreDestroy
+    void destroy() {
+        this.indexer.interrupt();
+    }
+
+
+    /**
+     * Queue records that were produced for indexing. Records without offset (not produced) are skipped. Wont block and wont throw.
+     *
+     * @param topic the records were produced for
+     * @param principalName the producer
+     * @param records as passed to {@link ProducerGatewayService#produce}
+     * @param offsets one per record, same order as {@code records}
+     */
+    public void indexRecords(String topic, String principalName, List<ProducerRecordDto> records, List<ProducerOffsetDto> offsets) {
+        if (Utils.assertArgsNullOrBlank(topic, principalName, records, offsets) || records.isEmpty() || records.size() != offsets.size())
+            return;
+
+        // case: search disabled
+        if (this.SEARCH_INDEX_MAX_DOCUMENTS == 0)
+            return;
+
+        this.pendingCount.incrementAndGet();
+        if (this.indexQueue.offer(new IndexRequest(topic, principalName, records, offsets)))
+            return;
+
+        this.pendingCount.decrementAndGet();
+        if (this.droppedCounter.count() == 0)
+            log.warn("Search indexer cannot keep up ({} calls queued), further records are not searchable until it caught up", INDEX_QUEUE_CAPACITY);
+        this.droppedCounter.increment(records.size());
+    }
+
+    /**
+     * @param principalName the caller, determines which topics and records are visible
+     * @param query words to search for
+     * @param page 0-based
+     * @param size max hits per page
+     * @return hits of {@code page}, best rated first
+     * @throws IllegalArgumentException if {@code principalName} is blank, {@code page} is negative or {@code size} is not positive
+     */
+    public SearchResultDto search(String principalName, String query, int page, int size) throws IllegalArgumentException {
+        assertArgsNotNullAndNotBlankOrThrow(principalName);
+        if (page < 0 || size <= 0)
+            throw new IllegalArgumentException("'page' cannot be negative and 'size' needs to be positive");
+
+        long startNanos = System.nanoTime();
+        PrincipalAuthorities authorities = this.principalAuthorityService.getAuthorities(principalName);
+        boolean isAdmin = authorities.getRoles().contains(PrincipalAuthorityService.ADMIN_ROLE);
+        int offset = (int) Math.min((long) page * size, Integer.MAX_VALUE);
+        int pageEnd = (int) Math.min((long) offset + size, Integer.MAX_VALUE);
+
+        this.lock.readLock().lock();
+        try {
+            BitSet readableTopicIds = getReadableTopicIds(authorities);
+            int principalId = this.principalIds.getOrDefault(principalName, -1);
+
+            // best pageEnd hits of every segment, merged
+            List<SegmentHit> segmentHits = new ArrayList<>();
+            int total = 0;
+            for (Segment segment : getSegments()) {
+                Hits hits = segment.index.search(query, isAdmin ? null : segment.newFilter(readableTopicIds, principalId), 0, pageEnd);
+                total += hits.total();
+                for (int i = 0; i < hits.documentIds().length; i++)
+                    segmentHits.add(new SegmentHit(segment, hits.documentIds()[i], hits.ratings()[i]));
+            }
+
+            // newest first within the same rating
+            segmentHits.sort(Comparator.comparingInt(SegmentHit::rating)
+                .thenComparingLong(segmentHit -> segmentHit.segment().sequence)
+                .thenComparingInt(SegmentHit::documentId)
+                .reversed());
+
+            List<SearchHitDto> searchHits = new ArrayList<>(Math.max(0, Math.min(size, segmentHits.size() - offset)));
+            for (int i = offset; i < Math.min(pageEnd, segmentHits.size()); i++)
+                searchHits.add(toSearchHit(segmentHits.get(i)));
+
+            return new SearchResultDto(total, page, size, searchHits);
+
+        } finally {
+            this.lock.readLock().unlock();
+            this.searchTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * @return number of indexed topics and records
+     */
+    public int getDocumentCount() {
+        this.lock.readLock().lock();
+        try {
+            return this.topicSegment.index.getDocumentCount() + this.recordCount;
+
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return number of {@link #indexRecords} calls that are not searchable yet
+     */
+    public int getPendingCount() {
+        return this.pendingCount.get();
+    }
+
+
+    private void runIndexer() {
+        List<IndexRequest> indexRequests = new ArrayList<>(MAX_INDEX_REQUESTS_PER_LOCK);
+
+        while (true) {
+            try {
+                indexRequests.add(this.indexQueue.take());
+
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            this.indexQueue.drainTo(indexRequests, MAX_INDEX_REQUESTS_PER_LOCK - 1);
+            try {
+                index(indexRequests);
+
+            } catch (RuntimeException e) {
+                log.warn("Failed to index records of {} produce calls: {}", indexRequests.size(), e.getMessage());
+
+            } finally {
+                this.pendingCount.addAndGet(-indexRequests.size());
+                indexRequests.clear();
+            }
+        }
+    }
+
+    private void index(List<IndexRequest> indexRequests) {
+        // serialize outside of the lock
+        List<String[]> keys = new ArrayList<>(indexRequests.size());
+        List<String[]> values = new ArrayList<>(indexRequests.size());
+        for (IndexRequest indexRequest : indexRequests) {
+            List<ProducerRecordDto> records = indexRequest.records();
+            String[] requestKeys = new String[records.size()];
+            String[] requestValues = new String[records.size()];
+            for (int i = 0; i < records.size(); i++) {
+                requestKeys[i] = toText(records.get(i).getKey());
+                requestValues[i] = toText(records.get(i).getValue());
+            }
+
+            keys.add(requestKeys);
+            values.add(requestValues);
+        }
+
+        this.lock.writeLock().lock();
+        try {
+            for (int i = 0; i < indexRequests.size(); i++) {
+                IndexRequest indexRequest = indexRequests.get(i);
+                int topicId = getOrAddTopicId(indexRequest.topic());
+                int principalId = this.principalIds.computeIfAbsent(indexRequest.principalName(), name -> this.principalIds.size());
+                this.topicProducerIds.get(topicId).set(principalId);
+
+                for (int j = 0; j < indexRequest.records().size(); j++) {
+                    ProducerOffsetDto offset = indexRequest.offsets().get(j);
+                    if (offset.getOffset() < 0 || offset.getError_code() != null)
+                        continue;
+
+                    getWritableRecordSegment().add(topicId, principalId, offset.getPartition(), offset.getOffset(), keys.get(i)[j], values.get(i)[j]);
+                    this.recordCount++;
+                }
+            }
+
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Needs the write lock. Starts a new segment if the newest one is full, evicting the oldest one if there are too many.
+     */
+    private Segment getWritableRecordSegment() {
+        Segment newestSegment = this.recordSegments.peekLast();
+        if (newestSegment != null && newestSegment.index.getDocumentCount() < this.recordSegmentCapacity)
+            return newestSegment;
+
+        newestSegment = new Segment(this.nextSegmentSequence++, Math.min(INITIAL_CAPACITY, this.recordSegmentCapacity));
+        this.recordSegments.addLast(newestSegment);
+
+        if (this.recordSegments.size() > SEGMENT_COUNT) {
+            int evictedCount = this.recordSegments.removeFirst().index.getDocumentCount();
+            this.recordCount -= evictedCount;
+            this.evictedCounter.increment(evictedCount);
+        }
+
+        return newestSegment;
+    }
+
+    /**
+     * Needs the read lock.
+     *
+     * @return topic segment and record segments
+     */
+    private List<Segment> getSegments() {
+        List<Segment> segments = new ArrayList<>(this.recordSegments.size() + 1);
+        segments.add(this.topicSegment);
+        segments.addAll(this.recordSegments);
+
+        return segments;
+    }
+
+    /**
+     * Needs the write lock. Adds a topic document for new topics.
+     */
+    private int getOrAddTopicId(String topic) {
+        Integer topicId = this.topicIds.get(topic);
+        if (topicId != null)
+            return topicId;
+
+        topicId = this.topics.size();
+        this.topicIds.put(topic, topicId);
+        this.topics.add(topic);
+        this.topicProducerIds.add(new BitSet());
+        this.topicSegment.add(topicId, -1, -1, -1, topic, null);
+
+        return topicId;
+    }
+
+    /**
+     * Needs the read lock.
+     */
+    private BitSet getReadableTopicIds(PrincipalAuthorities authorities) {
+        BitSet readableTopicIds = new BitSet();
+
+        for (String topicScope : authorities.getTopicScopes()) {
+            // case: "group:{name}:{operation}"
+            if (!topicScope.startsWith("topic:"))
+                continue;
+
+            // "topic:{name}:{operation}"
+            int operationIndex = topicScope.lastIndexOf(':');
+            String operation = topicScope.substring(operationIndex + 1);
+            if (!"read".equals(operation) && !"all".equals(operation))
+                continue;
+
+            Integer topicId = this.topicIds.get(topicScope.substring("topic:".length(), operationIndex));
+            if (topicId != null)
+                readableTopicIds.set(topicId);
+        }
+
+        return readableTopicIds;
+    }
+
+    /**
+     * Needs the read lock.
+     */
+    private SearchHitDto toSearchHit(SegmentHit segmentHit) {
+        Segment segment = segmentHit.segment();
+        int documentId = segmentHit.documentId();
+        String topic = this.topics.get(segment.topicIds[documentId]);
+
+        // case: topic
+        if (segment.principalIds[documentId] == -1)
+            return new SearchHitDto(TYPE_TOPIC, topic, null, null, null, null, segmentHit.rating());
+
+        return new SearchHitDto(
+            TYPE_RECORD,
+            topic,
+            segment.partitions[documentId],
+            segment.offsets[documentId],
+            segment.keys[documentId],
+            segment.values[documentId],
+            segmentHit.rating());
+    }
+
+    /**
+     * @param keyOrValue of a record, a string or json
+     * @return {@code keyOrValue} if it's a string, else the serialized json. {@code null} if {@code keyOrValue} is {@code null}
+     */
+    private String toText(Object keyOrValue) {
+        if (keyOrValue == null || keyOrValue instanceof String)
+            return (String) keyOrValue;
+
+        try {
+            return this.objectMapper.writeValueAsString(keyOrValue);
+
+        } catch (JsonProcessingException e) {
+            return null;
+        }
+    }
+
+    private static String truncate(String text) {
+        if (text == null || text.length() <= MAX_PREVIEW_LENGTH)
+            return text;
+
+        // don't split a surrogate pair
+        int length = Character.isHighSurrogate(text.charAt(MAX_PREVIEW_LENGTH - 1)) ? MAX_PREVIEW_LENGTH - 1 : MAX_PREVIEW_LENGTH;
+
+        return text.substring(0, length);
+    }
+
+
+    private record IndexRequest(String topic, String principalName, List<ProducerRecordDto> records, List<ProducerOffsetDto> offsets) {}
+
+    private record SegmentHit(Segment segment, int documentId, int rating) {}
+
+
+    /**
+     * One {@link InvertedIndex} and its documents, indexed by document id. Guarded by the lock of the service.
+     */
+    private class Segment {
+
+        /** Newer segments have higher numbers, -1 for the topic segment */
+        private final long sequence;
+
+        private final InvertedIndex index = new InvertedIndex();
+
+        /** Document id -> topic id */
+        private int[] topicIds;
+
+        /** Document id -> principal id of the producer, -1 for topics */
+        private int[] principalIds;
+
+        /** Document id -> partition, -1 for topics */
+        private int[] partitions;
+
+        /** Document id -> offset, -1 for topics */
+        private long[] offsets;
+
+        /** Document id -> truncated key, {@code null} for topics */
+        private String[] keys;
+
+        /** Document id -> truncated value, {@code null} for topics */
+        private String[] values;
+
+
+        private Segment(long sequence, int initialCapacity) {
+            this.sequence = sequence;
+            this.topicIds = new int[initialCapacity];
+            this.principalIds = new int[initialCapacity];
+            this.partitions = new int[initialCapacity];
+            this.offsets = new long[initialCapacity];
+            this.keys = new String[initialCapacity];
+            this.values = new String[initialCapacity];
+        }
+
+
+        /**
+         * @param key the topic name for topics
+         */
+        private void add(int topicId, int principalId, int partition, long offset, String key, String value) {
+            int documentId = this.index.add(key, value);
+            ensureCapacity(documentId);
+            this.topicIds[documentId] = topicId;
+            this.principalIds[documentId] = principalId;
+            this.partitions[documentId] = partition;
+            this.offsets[documentId] = offset;
+            this.keys[documentId] = principalId == -1 ? null : truncate(key);
+            this.values[documentId] = truncate(value);
+        }
+
+        /**
+         * @return documents of readable topics, topics produced to and records produced by {@code principalId}
+         */
+        private IntPredicate newFilter(BitSet readableTopicIds, int principalId) {
+            return documentId -> {
+                int topicId = this.topicIds[documentId];
+                if (readableTopicIds.get(topicId))
+                    return true;
+
+                int producerId = this.principalIds[documentId];
+
+                return principalId != -1 && (producerId == -1 ? topicProducerIds.get(topicId).get(principalId) : producerId == principalId);
+            };
+        }
+
+        private void ensureCapacity(int documentId) {
+            if (documentId < this.topicIds.length)
+                return;
+
+            int capacity = Math.max(this.topicIds.length * 2, documentId + 1);
+            // case: record segment, never holds more than its capacity
+            if (this.sequence != -1)
+                capacity = Math.min(capacity, recordSegmentCapacity);
+
+            this.topicIds = Arrays.copyOf(this.topicIds, capacity);
+            this.principalIds = Arrays.copyOf(this.principalIds, capacity);
+            this.partitions = Arrays.copyOf(this.partitions, capacity);
+            this.offsets = Arrays.copyOf(this.offsets, capacity);
+            this.keys = Arrays.copyOf(this.keys, capacity);
+            this.values = Arrays.copyOf(this.values, capacity);
+        }
+    }
+}
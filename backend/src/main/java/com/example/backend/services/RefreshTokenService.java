@@ -0,0 +1,345 @@
+package com.example.backend.services;
+
+import static com.example.backend.helpers.Utils.assertArgsNotNullAndNotBlankOrThrow;
+
+import java.security.SecureRandom;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Base64;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.example.backend.helpers.Hashing;
+import com.example.backend.helpers.Utils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+
+/**
+ * Opaque refresh tokens that can be exchanged for a new access token without a session (see "/oauth2/token"). <p>
+ * 
+ * A refresh token is {@code <family id>.<secret>}, both random (base64url). All tokens rotated from the same login form a family, of
+ * which only the latest token is valid. Only the sha256 hash of that token is kept per family, in the {@code refresh_token} table
+ * which all replicas share. A rotation is a single conditional update of the family's row, so of concurrent rotations with the same 
+ * token only one succeeds, on any replica. Families are cached in memory, the cache saves the select but is never trusted for 
+ * accepting a token. The new token keeps the expiry of the first one ({@code REFRESH_TOKEN_TTL_SECONDS} after login). A family is bound to the issuer it was issued by (see {@link IssuerRegistry}), so a
+ * token cannot be exchanged for access tokens of another cluster. <p>
+ * 
+ * Presenting any other token of a known family means it was rotated already, so either the client or someone who copied it is 
+ * replaying it. The whole family is revoked in that case (rfc 9700 4.14.2) and both have to log in again. Logging out revokes the 
+ * families issued for the session. Revoking deletes the rows right away, expired rows are deleted every 
+ * {@code REFRESH_TOKEN_CLEANUP_INTERVAL_MS}. <p>
+ * 
+ * Metrics: "refresh.token.issued", "refresh.token.refreshed", "refresh.token.rejected" and "refresh.token.reused" (revoked families).
+ * 
+ * @since latest
+ */
+@Service
+@Slf4j
+public class RefreshTokenService {
+
+    private static final int FAMILY_ID_BYTES = 16;
+
+    private static final int TOKEN_BYTES = 32;
+
+    private static final String CREATE_TABLE_SQL = """
+        CREATE TABLE IF NOT EXISTS refresh_token (
+            family_id VARCHAR(32) PRIMARY KEY,
+            token_hash VARCHAR(64) NOT NULL,
+            subject VARCHAR(255) NOT NULL,
+            issuer_id VARCHAR(63) NOT NULL,
+            session_hash VARCHAR(64),
+            expiry_time BIGINT NOT NULL
+        )""";
+    private static final String CREATE_EXPIRY_INDEX_SQL = "CREATE INDEX IF NOT EXISTS refresh_token_expiry_time ON refresh_token (expiry_time)";
+    private static final String CREATE_SESSION_INDEX_SQL = "CREATE INDEX IF NOT EXISTS refresh_token_session_hash ON refresh_token (session_hash)";
+    private static final String SELECT_VALID_SQL = "SELECT family_id, token_hash, subject, issuer_id, session_hash, expiry_time FROM refresh_token WHERE expiry_time > ?";
+    private static final String SELECT_SQL = "SELECT family_id, token_hash, subject, issuer_id, session_hash, expiry_time FROM refresh_token WHERE family_id = ?";
+    private static final String INSERT_SQL = "INSERT INTO refresh_token (family_id, token_hash, subject, issuer_id, session_hash, expiry_time) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String ROTATE_SQL = "UPDATE refresh_token SET token_hash = ? WHERE family_id = ? AND token_hash = ? AND expiry_time > ?";
+    private static final String DELETE_SQL = "DELETE FROM refresh_token WHERE family_id = ?";
+    private static final String DELETE_SESSION_SQL = "DELETE FROM refresh_token WHERE session_hash = ?";
+    private static final String DELETE_EXPIRED_SQL = "DELETE FROM refresh_token WHERE expiry_time <= ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /** In seconds. Max lifetime of a login, rotating does not extend it */
+    @Value("${REFRESH_TOKEN_TTL_SECONDS}")
+    private long REFRESH_TOKEN_TTL_SECONDS;
+
+    /** In ms */
+    @Value("${REFRESH_TOKEN_CLEANUP_INTERVAL_MS}")
+    private long REFRESH_TOKEN_CLEANUP_INTERVAL_MS;
+
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    /** Family id -> latest token of the family as last seen by this replica. Another replica may have rotated or revoked it since */
+    private final ConcurrentMap<String, RefreshToken> refreshTokensByFamilyId = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService cleanupScheduler;
+
+    private Counter issuedCounter;
+    private Counter refreshedCounter;
+    private Counter rejectedCounter;
+    private Counter reusedCounter;
+
+
+    @PostConstruct
+    void init() {
+        this.jdbcTemplate.execute(CREATE_TABLE_SQL);
+        this.jdbcTemplate.execute(CREATE_EXPIRY_INDEX_SQL);
+        this.jdbcTemplate.execute(CREATE_SESSION_INDEX_SQL);
+
+        this.jdbcTemplate.query(SELECT_VALID_SQL, resultSet -> {
+            this.refreshTokensByFamilyId.put(resultSet.getString(1), toRefreshToken(resultSet));
+        }, System.currentTimeMillis());
+        log.info("Cached {} refresh token families", this.refreshTokensByFamilyId.size());
+
+        this.issuedCounter = this.meterRegistry.counter("refresh.token.issued");
+        this.refreshedCounter = this.meterRegistry.counter("refresh.token.refreshed");
+        this.rejectedCounter = this.meterRegistry.counter("refresh.token.rejected");
+        this.reusedCounter = this.meterRegistry.counter("refresh.token.reused");
+        this.meterRegistry.gauge("refresh.token.active", this.refreshTokensByFamilyId, ConcurrentMap::size);
+
+        this.cleanupScheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("refresh-token-cleanup").daemon().factory());
+        this.cleanupScheduler.scheduleWithFixedDelay(this::removeExpired, this.REFRESH_TOKEN_CLEANUP_INTERVAL_MS, this.REFRESH_TOKEN_CLEANUP_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+
+    @PreDestroy
+    void destroy() {
+        this.cleanupScheduler.shutdownNow();
+    }
+
+
+    /**
+     * Start a new token family.
+     * 
+     * @param subject the "sub" claim of the access tokens issued for the refresh token
+     * @param sessionId of the login the token is issued for, its tokens are revoked on logout. May be {@code null}
+     * @param issuerId of the issuer the access tokens are issued by, the only one that accepts the token
+     * @return a new refresh token, valid for {@code REFRESH_TOKEN_TTL_SECONDS}
+     * @throws IllegalArgumentException if {@code subject} or {@code issuerId} is blank
+     */
+    public String issue(String subject, @Nullable String sessionId, String issuerId) throws IllegalArgumentException {
+        assertArgsNotNullAndNotBlankOrThrow(subject, issuerId);
+
+        String familyId = randomBase64Url(FAMILY_ID_BYTES);
+        String token = familyId + "." + randomBase64Url(TOKEN_BYTES);
+        RefreshToken refreshToken = new RefreshToken(
+            Hashing.sha256Hex(token), 
+            subject, 
+            issuerId,
+            sessionId == null ? null : Hashing.sha256Hex(sessionId), 
+            System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(this.REFRESH_TOKEN_TTL_SECONDS)
+        );
+
+        this.jdbcTemplate.update(INSERT_SQL, familyId, refreshToken.tokenHash, refreshToken.subject, refreshToken.issuerId, refreshToken.sessionHash, refreshToken.expiryTime);
+        this.refreshTokensByFamilyId.put(familyId, refreshToken);
+        this.issuedCounter.increment();
+
+        return token;
+    }
+
+
+    /**
+     * Invalidate {@code refreshToken} and issue the next token of its family, for the same subject and with the same expiry. Of 
+     * concurrent calls with the same token only one succeeds (on any replica), the others count as reuse.
+     * 
+     * @param refreshToken issued by this service
+     * @param issuerId of the issuer the request is for
+     * @return the subject and the new refresh token
+     * @throws ResponseStatusException 400 "invalid_grant" (rfc 6749 5.2) if {@code refreshToken} is unknown, used, revoked, expired or 
+     * was issued by another issuer. If it was used, its family is revoked
+     */
+    public Rotation rotate(String refreshToken, String issuerId) throws ResponseStatusException {
+        String familyId = parseFamilyId(refreshToken);
+        if (familyId == null)
+            throw reject();
+
+        String tokenHash = Hashing.sha256Hex(refreshToken);
+        RefreshToken oldRefreshToken = this.refreshTokensByFamilyId.get(familyId);
+
+        // case: not cached or cached before another replica rotated it
+        if (oldRefreshToken == null || !oldRefreshToken.tokenHash.equals(tokenHash))
+            oldRefreshToken = load(familyId);
+
+        // case: unknown or revoked
+        if (oldRefreshToken == null)
+            throw reject();
+
+        long now = System.currentTimeMillis();
+
+        // case: expired
+        if (oldRefreshToken.expiryTime <= now)
+            throw reject();
+
+        boolean isLatest = oldRefreshToken.tokenHash.equals(tokenHash);
+
+        // case: presented to another issuer, the token stays valid for its own
+        if (isLatest && !oldRefreshToken.issuerId.equals(issuerId))
+            throw reject();
+
+        String token = familyId + "." + randomBase64Url(TOKEN_BYTES);
+        RefreshToken newRefreshToken = new RefreshToken(Hashing.sha256Hex(token), oldRefreshToken.subject, oldRefreshToken.issuerId, oldRefreshToken.sessionHash, oldRefreshToken.expiryTime);
+
+        // case: used before, or rotated concurrently
+        if (!isLatest || this.jdbcTemplate.update(ROTATE_SQL, newRefreshToken.tokenHash, familyId, tokenHash, now) == 0) {
+            // count families, not attempts
+            if (revokeFamily(familyId)) {
+                log.warn("Refresh token of '{}' was reused, revoked its family", oldRefreshToken.subject);
+                this.reusedCounter.increment();
+            }
+            throw reject();
+        }
+
+        this.refreshTokensByFamilyId.put(familyId, newRefreshToken);
+        this.refreshedCounter.increment();
+
+        return new Rotation(oldRefreshToken.subject, token, oldRefreshToken.expiryTime);
+    }
+
+
+    /**
+     * Revoke the family of {@code refreshToken}, including the latest token if {@code refreshToken} was used already.
+     * 
+     * @param refreshToken issued by this service, may be unknown or expired
+     */
+    public void revoke(String refreshToken) {
+        String familyId = parseFamilyId(refreshToken);
+        if (familyId != null)
+            revokeFamily(familyId);
+    }
+
+
+    /**
+     * Revoke all families issued for {@code sessionId}, e.g. on logout, no matter which replica issued them.
+     * 
+     * @param sessionId passed to {@link #issue(String, String, String)}
+     */
+    public void revokeSession(String sessionId) {
+        if (Utils.isBlank(sessionId))
+            return;
+
+        String sessionHash = Hashing.sha256Hex(sessionId);
+        this.jdbcTemplate.update(DELETE_SESSION_SQL, sessionHash);
+        this.refreshTokensByFamilyId.values().removeIf(refreshToken -> sessionHash.equals(refreshToken.sessionHash));
+    }
+
+
+    /**
+     * Delete expired families from the table and the cache. Runs on {@code cleanupScheduler}. Wont throw.
+     */
+    private void removeExpired() {
+        try {
+            long now = System.currentTimeMillis();
+            this.jdbcTemplate.update(DELETE_EXPIRED_SQL, now);
+            this.refreshTokensByFamilyId.values().removeIf(refreshToken -> refreshToken.expiryTime <= now);
+
+        } catch (RuntimeException e) {
+            log.warn("Failed to remove expired refresh tokens: {}", e.getMessage());
+        }
+    }
+
+
+    /**
+     * Read the family from the table and cache it.
+     * 
+     * @return the latest token of the family or {@code null} if the family is unknown or revoked
+     */
+    @Nullable
+    private RefreshToken load(String familyId) {
+        RefreshToken refreshToken = this.jdbcTemplate.query(SELECT_SQL, resultSet -> resultSet.next() ? toRefreshToken(resultSet) : null, familyId);
+
+        if (refreshToken == null)
+            this.refreshTokensByFamilyId.remove(familyId);
+        else
+            this.refreshTokensByFamilyId.put(familyId, refreshToken);
+
+        return refreshToken;
+    }
+
+
+    /**
+     * @return {@code false} if the family is unknown or revoked already
+     */
+    private boolean revokeFamily(String familyId) {
+        this.refreshTokensByFamilyId.remove(familyId);
+
+        return this.jdbcTemplate.update(DELETE_SQL, familyId) > 0;
+    }
+
+
+    /**
+     * @return the family id part of {@code refreshToken} or {@code null} if it's not formatted like a refresh token
+     */
+    @Nullable
+    private static String parseFamilyId(@Nullable String refreshToken) {
+        if (Utils.isBlank(refreshToken))
+            return null;
+
+        int separatorIndex = refreshToken.indexOf('.');
+        if (separatorIndex <= 0 || separatorIndex == refreshToken.length() - 1)
+            return null;
+
+        return refreshToken.substring(0, separatorIndex);
+    }
+
+
+    /**
+     * @param resultSet positioned on a row, with the columns of {@code SELECT_SQL}
+     */
+    private static RefreshToken toRefreshToken(ResultSet resultSet) throws SQLException {
+        return new RefreshToken(resultSet.getString(2), resultSet.getString(3), resultSet.getString(4), resultSet.getString(5), resultSet.getLong(6));
+    }
+
+
+    private String randomBase64Url(int byteCount) {
+        byte[] bytes = new byte[byteCount];
+        this.secureRandom.nextBytes(bytes);
+
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+
+    private ResponseStatusException reject() {
+        this.rejectedCounter.increment();
+
+        return new ResponseStatusException(HttpStatus.BAD_REQUEST, "invalid_grant");
+    }
+
+
+    /**
+     * @param subject the "sub" claim for the new access token
+     * @param refreshToken the new refresh token
+     * @param expiryTime in millis, of {@code refreshToken}
+     */
+    public record Rotation(String subject, String refreshToken, long expiryTime) {}
+
+
+    /**
+     * @param tokenHash of the latest token of the family
+     * @param issuerId of the issuer the family was issued by
+     * @param sessionHash of the session the family was issued for, may be {@code null}
+     */
+    private record RefreshToken(String tokenHash, String subject, String issuerId, @Nullable String sessionHash, long expiryTime) {}
+}
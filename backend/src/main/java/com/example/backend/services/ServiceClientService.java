@@ -0,0 +1,128 @@
+package com.example.backend.services;
+
+import static org.springframework.http.HttpStatus.UNAUTHORIZED;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jspecify.annotations.Nullable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.example.backend.helpers.Hashing;
+import com.example.backend.helpers.Utils;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+
+/**
+ * Authenticates non-browser clients (e.g. java services speaking the kafka protocol) by client id and secret, so they can
+ * get a token without a session. <p>
+ * 
+ * Clients are configured in {@code OAUTH2_SERVICE_CLIENTS} as comma separated {@code clientId:sha256HexOfSecret[:issuerId]} entries. 
+ * A client only gets tokens of its issuer (see {@link IssuerRegistry}), the default issuer if none is configured.
+ * 
+ * @since latest
+ */
+@Service
+@Slf4j
+public class ServiceClientService {
+
+    private static final String INVALID_ENTRY_MESSAGE = "Invalid 'OAUTH2_SERVICE_CLIENTS' entry. Expected 'clientId:sha256HexOfSecret[:issuerId]'";
+
+    @Autowired
+    private IssuerRegistry issuerRegistry;
+
+    @Value("${OAUTH2_SERVICE_CLIENTS}")
+    private String OAUTH2_SERVICE_CLIENTS;
+
+    /** Client id -> client */
+    private final Map<String, ServiceClient> serviceClientsByClientId = new HashMap<>();
+
+
+    @PostConstruct
+    void init() {
+        if (Utils.isBlank(this.OAUTH2_SERVICE_CLIENTS))
+            return;
+
+        for (String serviceClient : this.OAUTH2_SERVICE_CLIENTS.split(",")) {
+            String[] parts = serviceClient.split(":", -1);
+            if (parts.length < 2 || parts.length > 3 || Utils.isBlank(parts[0]) || Utils.isBlank(parts[1]))
+                throw new IllegalStateException(INVALID_ENTRY_MESSAGE);
+
+            byte[] secretHash;
+            try {
+                secretHash = Hashing.fromHex(parts[1].strip());
+
+            } catch (IllegalArgumentException e) {
+                secretHash = null;
+            }
+
+            if (secretHash == null || secretHash.length != Hashing.SHA_256_LENGTH)
+                throw new IllegalStateException(INVALID_ENTRY_MESSAGE);
+
+            String issuerId = parts.length == 3 ? parts[2].strip() : IssuerRegistry.DEFAULT_ISSUER_ID;
+            if (this.issuerRegistry.getIssuer(issuerId) == null)
+                throw new IllegalStateException("Unknown issuer id '%s' in 'OAUTH2_SERVICE_CLIENTS'".formatted(issuerId));
+
+            this.serviceClientsByClientId.put(parts[0].strip(), new ServiceClient(secretHash, issuerId));
+        }
+
+        log.info("Configured {} oauth2 service clients", this.serviceClientsByClientId.size());
+    }
+
+
+    /**
+     * @param authorizationHeader expected to be {@code Basic base64(clientId:clientSecret)}, client id and secret may be url encoded
+     * as described in rfc 6749 2.3.1
+     * @param issuerId of the issuer the request is for
+     * @return the authenticated client id
+     * @throws ResponseStatusException 401 if the header is missing, malformed, the credentials are wrong or the client belongs to
+     * another issuer
+     */
+    public String authenticate(@Nullable String authorizationHeader, String issuerId) throws ResponseStatusException {
+        if (authorizationHeader == null || !authorizationHeader.regionMatches(true, 0, "Basic ", 0, 6))
+            throw new ResponseStatusException(UNAUTHORIZED, "Missing basic authorization");
+
+        String credentials;
+        try {
+            credentials = new String(Base64.getDecoder().decode(authorizationHeader.substring(6).strip()), StandardCharsets.UTF_8);
+
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(UNAUTHORIZED, "Malformed basic authorization");
+        }
+
+        int separatorIndex = credentials.indexOf(':');
+        if (separatorIndex <= 0)
+            throw new ResponseStatusException(UNAUTHORIZED, "Malformed basic authorization");
+
+        String clientId = URLDecoder.decode(credentials.substring(0, separatorIndex), StandardCharsets.UTF_8);
+        String clientSecret = URLDecoder.decode(credentials.substring(separatorIndex + 1), StandardCharsets.UTF_8);
+
+        ServiceClient serviceClient = this.serviceClientsByClientId.get(clientId);
+        byte[] actualSecretHash = new byte[Hashing.SHA_256_LENGTH];
+        Hashing.sha256(clientSecret, actualSecretHash, 0);
+
+        // compare in constant time, same message for the wrong issuer to not reveal which clients exist
+        if (serviceClient == null || 
+            !MessageDigest.isEqual(serviceClient.secretHash(), actualSecretHash) || 
+            !serviceClient.issuerId().equals(issuerId))
+            throw new ResponseStatusException(UNAUTHORIZED, "Invalid client credentials");
+
+        return clientId;
+    }
+
+
+    /**
+     * @param secretHash raw sha256 of the secret
+     * @param issuerId of the only issuer that accepts the client
+     */
+    private record ServiceClient(byte[] secretHash, String issuerId) {}
+}
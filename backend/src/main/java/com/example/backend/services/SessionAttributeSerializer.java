@@ -0,0 +1,133 @@
+package com.example.backend.services;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.security.jackson2.SecurityJackson2Modules;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import lombok.extern.slf4j.Slf4j;
+
+
+/**
+ * Serializes session attribute values into compact byte arrays, see {@link JdbcSessionRepository}. <p>
+ * 
+ * Values are written as Smile (binary json) using spring security's jackson modules, which cover the security context, oauth2 
+ * authorized clients, csrf tokens and saved requests. Only types those modules allow (plus the session scoped beans registered 
+ * below) are accepted. There is no java serialization fallback, so session rows never contain classes that are instantiated
+ * by {@code ObjectInputStream}. <p>
+ * 
+ * The same value always results in the same bytes, whether verified or not, so stored and current bytes can be compared for
+ * dirty checking.
+ * 
+ * @since latest
+ */
+@Service
+@Slf4j
+@SuppressWarnings("deprecation") // jackson 2 modules of spring security, this project does not use jackson 3 yet
+public class SessionAttributeSerializer {
+
+    private final ObjectMapper smileMapper;
+
+    /** Class -> whether it survived a jackson round trip */
+    private final ConcurrentMap<Class<?>, Boolean> isJacksonCompatibleByClass = new ConcurrentHashMap<>();
+
+
+    public SessionAttributeSerializer() {
+        this.smileMapper = new ObjectMapper(new SmileFactory());
+        // same attributes need to result in the same bytes for dirty checking
+        this.smileMapper.enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
+        this.smileMapper.registerModules(SecurityJackson2Modules.getModules(getClass().getClassLoader()));
+        // allowlist our own session scoped beans for default typing
+        this.smileMapper.addMixIn(Oauth2ServiceProxy.class, SessionAttributeMixin.class);
+    }
+
+
+    /**
+     * @param name of the attribute, for error messages
+     * @param value to serialize, may be {@code null}
+     * @param isVerifying if {@code true}, the bytes are read back to make sure they can be (e.g. a collection with a nested type 
+     * jackson cannot read). Costs about as much as serializing. Does not change the bytes
+     * @return the serialized value, never {@code null}
+     * @throws IllegalArgumentException if the type of {@code value} (or a nested one) cannot be written or read back
+     */
+    public byte[] serialize(String name, Object value, boolean isVerifying) throws IllegalArgumentException {
+        if (!isJacksonCompatible(value))
+            throw unsupported(name, value, null);
+
+        try {
+            byte[] bytes = this.smileMapper.writeValueAsBytes(value);
+            if (isVerifying)
+                this.smileMapper.readValue(bytes, Object.class);
+
+            return bytes;
+
+        } catch (IOException | IllegalArgumentException e) {
+            throw unsupported(name, value, e);
+        }
+    }
+
+
+    /**
+     * @param bytes serialized with {@link #serialize(String, Object, boolean)}
+     * @return the attribute value, may be {@code null}
+     * @throws IllegalArgumentException if {@code bytes} cannot be read (anymore), e.g. because the class changed
+     */
+    public Object deserialize(byte[] bytes) throws IllegalArgumentException {
+        try {
+            return this.smileMapper.readValue(bytes, Object.class);
+
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Failed to deserialize session attribute: " + e.getMessage(), e);
+        }
+    }
+
+
+    /**
+     * Jackson round trip values of classes that have not been checked yet. Only the first value of each class pays for that.
+     * 
+     * @param value attribute value
+     * @return {@code true} if {@code value} can be written by jackson
+     */
+    private boolean isJacksonCompatible(Object value) {
+        if (value == null)
+            return true;
+
+        return this.isJacksonCompatibleByClass.computeIfAbsent(value.getClass(), valueClass -> {
+            try {
+                this.smileMapper.readValue(this.smileMapper.writeValueAsBytes(value), Object.class);
+                return true;
+
+            } catch (IOException | IllegalArgumentException e) {
+                log.debug("Session attributes of type {} are not supported: {}", valueClass.getName(), e.getMessage());
+                return false;
+            }
+        });
+    }
+
+
+    private static IllegalArgumentException unsupported(String name, Object value, Exception cause) {
+        return new IllegalArgumentException(
+            "Session attribute '%s' of type %s is not supported. Only types allowed by spring security's jackson modules can be stored"
+                .formatted(name, value.getClass().getName()), 
+            cause);
+    }
+
+
+    /**
+     * Writes fields instead of getters and marks the class as allowed for spring security's default typing.
+     */
+    @JsonTypeInfo(use = JsonTypeInfo.Id.CLASS)
+    @JsonAutoDetect(fieldVisibility = Visibility.ANY, getterVisibility = Visibility.NONE, isGetterVisibility = Visibility.NONE, setterVisibility = Visibility.NONE)
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    private abstract static class SessionAttributeMixin {}
+}
@@ -0,0 +1,26 @@
+package com.example.backend;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Tests that measure time or allocations. Excluded from {@code gradle test} since timings depend on the machine, run them with
+ * {@code gradle benchmark}. <p>
+ *
+ * Benchmarks still assert, usually relative to a baseline measured in the same run.
+ *
+ * @since latest
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Test
+@Tag("benchmark")
+public @interface Benchmark {
+
+}
@@ -1,7 +1,9 @@
 package com.example.backend;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
 import org.springframework.security.oauth2.client.InMemoryOAuth2AuthorizedClientService;
 import org.springframework.security.oauth2.client.OAuth2AuthorizedClientService;
 import org.springframework.security.oauth2.client.registration.ClientRegistration;
@@ -10,13 +12,19 @@ import org.springframework.security.oauth2.client.registration.InMemoryClientReg
 import org.springframework.security.oauth2.core.AuthorizationGrantType;
 
 /**
- * For integration tests to work.
+ * For integration tests to work. The "dummy" provider's endpoints are "/fake-auth", "/fake-token" and "/fake-userinfo" below
+ * {@code OAUTH2_TEST_PROVIDER_BASE_URL}, which nothing listens on unless a stub like {@code Oauth2ProviderStub} is started.
  * 
  * @since latest
  */
 @TestConfiguration
 public class Oauth2TestConfig {
+
+    @Value("${OAUTH2_TEST_PROVIDER_BASE_URL:http://localhost}")
+    private String OAUTH2_TEST_PROVIDER_BASE_URL;
+
     @Bean
+    @Primary
     ClientRegistrationRepository clientRegistrationRepository() {
         ClientRegistration registration = ClientRegistration
           .withRegistrationId("dummy")
@@ -24,9 +32,9 @@ public class Oauth2TestConfig {
           .clientSecret("test-secret")
           .authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
           .redirectUri("{baseUrl}/login/oauth2/code/{registrationId}")
-          .authorizationUri("http://localhost/fake-auth")
-          .tokenUri("http://localhost/fake-token")
-          .userInfoUri("http://localhost/fake-userinfo")
+          .authorizationUri(this.OAUTH2_TEST_PROVIDER_BASE_URL + "/fake-auth")
+          .tokenUri(this.OAUTH2_TEST_PROVIDER_BASE_URL + "/fake-token")
+          .userInfoUri(this.OAUTH2_TEST_PROVIDER_BASE_URL + "/fake-userinfo")
           .userNameAttributeName("sub")
           .clientName("Dummy Client")
           .build();
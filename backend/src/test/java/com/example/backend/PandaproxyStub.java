@@ -0,0 +1,693 @@
+package com.example.backend;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPInputStream;
+
+import org.jspecify.annotations.Nullable;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+
+import com.example.backend.helpers.Utils;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+
+/**
+ * In-process stand-in for the redpanda http proxy, for integration and load tests that should run offline on one machine. Implements
+ * the subset of the v2 api the backend and "RedpandaFetcher.ts" use:<p>
+ *
+ * - {@code GET /topics}, {@code GET /topics/{topic}}, {@code POST /topics/{topic}} (also gzip encoded)<p>
+ * - {@code GET /topics/{topic}/partitions/{partition}/records?offset=}<p>
+ * - {@code POST /consumers/{group}}, {@code DELETE /consumers/{group}/instances/{instance}}<p>
+ * - {@code POST /consumers/{group}/instances/{instance}/subscription}, {@code GET .../records}<p>
+ * - {@code POST} and {@code GET /consumers/{group}/instances/{instance}/offsets}<p>
+ *
+ * Records are kept in an in-memory log per partition, the offset of a record is its index. Errors are formatted like redpanda's,
+ * e.g. {@code {"error_code": 40401, "message": "..."}}, so {@code PandaproxyFetcher} parses them the same way. <p>
+ *
+ * If a {@link JwtDecoder} is given, every request needs a bearer token it accepts (e.g. {@link #withJwksUri(String)} pointing to
+ * the backend's "/.well-known/jwks"), like pandaproxy with oidc enabled. Latency and errors can be injected for every request,
+ * see {@link #setLatency(long, long)} and {@link #setErrorRate(double, int)}. <p>
+ *
+ * Handles every request on its own virtual thread. Consumer record fetches return immediately, they do not wait for
+ * {@code timeout}.
+ *
+ * @since latest
+ */
+public class PandaproxyStub implements AutoCloseable {
+
+    public static final String MEDIA_TYPE_KAFKA_JSON = "application/vnd.kafka.v2+json";
+
+    /** Max records returned by one fetch */
+    public static final int MAX_FETCH_RECORDS = 500;
+
+    private final ObjectMapper objectMapper = Utils.getDefaultObjectMapper();
+
+    private final HttpServer httpServer;
+
+    private final ExecutorService requestExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @Nullable
+    private final JwtDecoder jwtDecoder;
+
+    private final ConcurrentMap<String, Topic> topics = new ConcurrentHashMap<>();
+
+    /** "group/instance" -> instance */
+    private final ConcurrentMap<String, ConsumerInstance> consumerInstances = new ConcurrentHashMap<>();
+
+    /** Group -> "topic-partition" -> committed offset */
+    private final ConcurrentMap<String, ConcurrentMap<String, Long>> committedOffsets = new ConcurrentHashMap<>();
+
+    private volatile long minLatencyMs;
+
+    private volatile long maxLatencyMs;
+
+    private volatile double errorRate;
+
+    private volatile int errorStatus = 500;
+
+    private final LongAdder requestCount = new LongAdder();
+    private final LongAdder unauthorizedCount = new LongAdder();
+    private final LongAdder injectedErrorCount = new LongAdder();
+    private final LongAdder producedRecordCount = new LongAdder();
+    private final LongAdder fetchedRecordCount = new LongAdder();
+
+
+    /**
+     * Start listening on a random local port.
+     *
+     * @param jwtDecoder validates the bearer token of every request. {@code null} to accept requests without token
+     * @throws IOException if the server cannot be started
+     */
+    public PandaproxyStub(@Nullable JwtDecoder jwtDecoder) throws IOException {
+        this.jwtDecoder = jwtDecoder;
+        this.httpServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        this.httpServer.createContext("/", this::handle);
+        this.httpServer.setExecutor(this.requestExecutor);
+        this.httpServer.start();
+    }
+
+
+    /**
+     * @param jwksUri e.g. {@code BASE_URL + "/.well-known/jwks"}. Keys are fetched on the first request and cached
+     * @return stub accepting tokens signed by one of the keys at {@code jwksUri}
+     * @throws IOException if the server cannot be started
+     */
+    public static PandaproxyStub withJwksUri(String jwksUri) throws IOException {
+        return new PandaproxyStub(NimbusJwtDecoder.withJwkSetUri(jwksUri).build());
+    }
+
+
+    /**
+     * @return e.g. "http://localhost:12345", use as {@code PANDAPROXY_BASE_URL}
+     */
+    public String getBaseUrl() {
+        return "http://localhost:" + this.httpServer.getAddress().getPort();
+    }
+
+
+    /**
+     * Does nothing if {@code topic} exists already.
+     *
+     * @param topic name
+     * @param partitionCount at least 1
+     */
+    public void createTopic(String topic, int partitionCount) {
+        if (partitionCount < 1)
+            throw new IllegalArgumentException("'partitionCount' has to be positive");
+
+        this.topics.putIfAbsent(topic, new Topic(topic, partitionCount));
+    }
+
+
+    /**
+     * @return value of every record of the partition in offset order, empty if unknown
+     */
+    public List<JsonNode> getRecordValues(String topic, int partition) {
+        Topic existingTopic = this.topics.get(topic);
+        if (existingTopic == null || partition < 0 || partition >= existingTopic.partitions.length)
+            return List.of();
+
+        return existingTopic.partitions[partition].read(0, Integer.MAX_VALUE).stream()
+            .map(StoredRecord::value)
+            .toList();
+    }
+
+
+    /**
+     * @return committed offset of the group, {@code null} if nothing was committed
+     */
+    @Nullable
+    public Long getCommittedOffset(String group, String topic, int partition) {
+        Map<String, Long> groupOffsets = this.committedOffsets.get(group);
+
+        return groupOffsets == null ? null : groupOffsets.get(topic + "-" + partition);
+    }
+
+
+    /**
+     * Delay every request by a random time between {@code minMs} and {@code maxMs}. Both 0 to disable.
+     */
+    public void setLatency(long minMs, long maxMs) {
+        if (minMs < 0 || maxMs < minMs)
+            throw new IllegalArgumentException("Expected 0 <= 'minMs' <= 'maxMs'");
+
+        this.minLatencyMs = minMs;
+        this.maxLatencyMs = maxMs;
+    }
+
+
+    /**
+     * Fail a random share of requests (after the latency) with {@code status}, before they are authenticated or processed.
+     *
+     * @param rate 0 to disable, 1 to fail every request
+     * @param status http status, e.g. 503
+     */
+    public void setErrorRate(double rate, int status) {
+        if (rate < 0 || rate > 1 || status < 400 || status > 599)
+            throw new IllegalArgumentException("Expected 0 <= 'rate' <= 1 and an error 'status'");
+
+        this.errorRate = rate;
+        this.errorStatus = status;
+    }
+
+
+    /**
+     * @return counters since start
+     */
+    public Map<String, Number> getMetrics() {
+        return Map.of(
+            "requests", this.requestCount.sum(),
+            "unauthorized", this.unauthorizedCount.sum(),
+            "injectedErrors", this.injectedErrorCount.sum(),
+            "producedRecords", this.producedRecordCount.sum(),
+            "fetchedRecords", this.fetchedRecordCount.sum()
+        );
+    }
+
+
+    @Override
+    public void close() {
+        this.httpServer.stop(0);
+        this.requestExecutor.shutdownNow();
+    }
+
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            this.requestCount.increment();
+
+            try {
+                long latencyMs = this.maxLatencyMs == 0 ? 0 : ThreadLocalRandom.current().nextLong(this.minLatencyMs, this.maxLatencyMs + 1);
+                if (latencyMs > 0)
+                    Thread.sleep(latencyMs);
+
+                if (this.errorRate > 0 && ThreadLocalRandom.current().nextDouble() < this.errorRate) {
+                    this.injectedErrorCount.increment();
+                    writeError(exchange, this.errorStatus, this.errorStatus * 100, "Injected error");
+                    return;
+                }
+
+                if (!isAuthorized(exchange)) {
+                    this.unauthorizedCount.increment();
+                    writeError(exchange, 401, 40101, "Unauthorized");
+                    return;
+                }
+
+                route(exchange);
+
+            } catch (StubException e) {
+                writeError(exchange, e.errorCode / 100, e.errorCode, e.getMessage());
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+
+            } catch (RuntimeException e) {
+                writeError(exchange, 500, 50001, String.valueOf(e.getMessage()));
+            }
+        }
+    }
+
+
+    private void route(HttpExchange exchange) throws IOException, StubException {
+        String method = exchange.getRequestMethod();
+        String[] path = exchange.getRequestURI().getPath().substring(1).split("/");
+        Map<String, String> queryParams = parseQueryParams(exchange.getRequestURI());
+
+        // case: /topics/...
+        if (path[0].equals("topics")) {
+            if (path.length == 1 && method.equals("GET"))
+                writeJson(exchange, 200, this.objectMapper.valueToTree(new ArrayList<>(this.topics.keySet())));
+
+            else if (path.length == 2 && method.equals("GET"))
+                writeJson(exchange, 200, topicMetadata(getTopicOrThrow(path[1])));
+
+            else if (path.length == 2 && method.equals("POST"))
+                writeJson(exchange, 200, produce(getTopicOrThrow(path[1]), readBody(exchange)));
+
+            else if (path.length == 5 && path[2].equals("partitions") && path[4].equals("records") && method.equals("GET"))
+                writeJson(exchange, 200, fetchPartition(getTopicOrThrow(path[1]), parseIntOrThrow(path[3]), parseLongOrThrow(queryParams.getOrDefault("offset", "0"))));
+
+            else
+                throw new StubException(40400, "Not found");
+
+            return;
+        }
+
+        // case: /consumers/...
+        if (path[0].equals("consumers") && path.length >= 2) {
+            String group = path[1];
+
+            if (path.length == 2 && method.equals("POST")) {
+                writeJson(exchange, 200, createConsumerInstance(group, readBody(exchange)));
+                return;
+            }
+
+            if (path.length < 4 || !path[2].equals("instances"))
+                throw new StubException(40400, "Not found");
+
+            ConsumerInstance consumerInstance = this.consumerInstances.get(group + "/" + path[3]);
+            if (consumerInstance == null)
+                throw new StubException(40403, "Consumer instance not found");
+
+            if (path.length == 4 && method.equals("DELETE")) {
+                this.consumerInstances.remove(group + "/" + path[3]);
+                writeNoContent(exchange);
+
+            } else if (path.length == 5 && path[4].equals("subscription") && method.equals("POST")) {
+                subscribe(consumerInstance, readBody(exchange));
+                writeNoContent(exchange);
+
+            } else if (path.length == 5 && path[4].equals("records") && method.equals("GET"))
+                writeJson(exchange, 200, fetch(consumerInstance));
+
+            else if (path.length == 5 && path[4].equals("offsets") && method.equals("POST")) {
+                commitOffsets(group, readBody(exchange));
+                writeNoContent(exchange);
+
+            } else if (path.length == 5 && path[4].equals("offsets") && method.equals("GET"))
+                writeJson(exchange, 200, getOffsets(group, readBody(exchange)));
+
+            else
+                throw new StubException(40400, "Not found");
+
+            return;
+        }
+
+        throw new StubException(40400, "Not found");
+    }
+
+
+    /**
+     * @return {@code true} if no decoder is configured or the bearer token is valid
+     */
+    private boolean isAuthorized(HttpExchange exchange) {
+        if (this.jwtDecoder == null)
+            return true;
+
+        String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        if (authorization == null || !authorization.regionMatches(true, 0, "Bearer ", 0, 7))
+            return false;
+
+        try {
+            this.jwtDecoder.decode(authorization.substring(7).strip());
+            return true;
+
+        } catch (JwtException e) {
+            return false;
+        }
+    }
+
+
+    private ObjectNode topicMetadata(Topic topic) {
+        ObjectNode metadata = this.objectMapper.createObjectNode();
+        metadata.put("name", topic.name);
+
+        ArrayNode partitions = metadata.putArray("partitions");
+        for (int i = 0; i < topic.partitions.length; i++)
+            partitions.addObject()
+                .put("partition", i)
+                .put("leader", 0)
+                .putArray("replicas").addObject().put("broker", 0).put("leader", true).put("in_sync", true);
+
+        return metadata;
+    }
+
+
+    /**
+     * Records without "partition" go to the partition of their key's hash, or round robin if they have no key.
+     */
+    private ObjectNode produce(Topic topic, JsonNode body) throws StubException {
+        JsonNode records = body.get("records");
+        if (records == null || !records.isArray())
+            throw new StubException(42206, "Missing 'records'");
+
+        ObjectNode response = this.objectMapper.createObjectNode();
+        ArrayNode offsets = response.putArray("offsets");
+
+        for (JsonNode record : records) {
+            JsonNode key = record.get("key");
+            int partition;
+            if (record.hasNonNull("partition"))
+                partition = record.get("partition").asInt();
+
+            else if (key != null && !key.isNull())
+                partition = Math.floorMod(key.toString().hashCode(), topic.partitions.length);
+
+            else
+                partition = Math.floorMod(topic.nextPartition.getAndIncrement(), topic.partitions.length);
+
+            if (partition < 0 || partition >= topic.partitions.length)
+                throw new StubException(40402, "Partition not found");
+
+            long offset = topic.partitions[partition].append(key, record.get("value"));
+            offsets.addObject().put("partition", partition).put("offset", offset);
+        }
+
+        this.producedRecordCount.add(records.size());
+
+        return response;
+    }
+
+
+    private ArrayNode fetchPartition(Topic topic, int partition, long offset) throws StubException {
+        if (partition < 0 || partition >= topic.partitions.length)
+            throw new StubException(40402, "Partition not found");
+
+        ArrayNode response = this.objectMapper.createArrayNode();
+        addRecords(response, topic, partition, topic.partitions[partition].read(offset, MAX_FETCH_RECORDS), offset);
+
+        return response;
+    }
+
+
+    private ObjectNode createConsumerInstance(String group, JsonNode body) throws StubException {
+        String name = body.hasNonNull("name") ? body.get("name").asText() : "instance-" + ThreadLocalRandom.current().nextInt(Integer.MAX_VALUE);
+        boolean isLatest = body.hasNonNull("auto.offset.reset") && body.get("auto.offset.reset").asText().equals("latest");
+
+        if (this.consumerInstances.putIfAbsent(group + "/" + name, new ConsumerInstance(group, isLatest)) != null)
+            throw new StubException(40902, "Consumer instance already exists");
+
+        ObjectNode response = this.objectMapper.createObjectNode();
+        response.put("instance_id", name);
+        response.put("base_uri", "%s/consumers/%s/instances/%s".formatted(getBaseUrl(), group, name));
+
+        return response;
+    }
+
+
+    private void subscribe(ConsumerInstance consumerInstance, JsonNode body) throws StubException {
+        JsonNode topicNames = body.get("topics");
+        if (topicNames == null || !topicNames.isArray())
+            throw new StubException(42206, "Missing 'topics'");
+
+        synchronized (consumerInstance) {
+            consumerInstance.topics.clear();
+            consumerInstance.positions.clear();
+
+            for (JsonNode topicName : topicNames) {
+                Topic topic = getTopicOrThrow(topicName.asText());
+                consumerInstance.topics.add(topic);
+
+                // case: start after the committed offset, else at the start or end of the log
+                for (int partition = 0; partition < topic.partitions.length; partition++) {
+                    Long committedOffset = getCommittedOffset(consumerInstance.group, topic.name, partition);
+                    long position = committedOffset != null ? committedOffset : consumerInstance.isLatest ? topic.partitions[partition].size() : 0;
+                    consumerInstance.positions.put(topic.name + "-" + partition, position);
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Up to {@link #MAX_FETCH_RECORDS} records of all subscribed partitions, advancing the instance's position. Does not commit.
+     */
+    private ArrayNode fetch(ConsumerInstance consumerInstance) {
+        ArrayNode response = this.objectMapper.createArrayNode();
+
+        synchronized (consumerInstance) {
+            for (Topic topic : consumerInstance.topics)
+                for (int partition = 0; partition < topic.partitions.length && response.size() < MAX_FETCH_RECORDS; partition++) {
+                    String partitionKey = topic.name + "-" + partition;
+                    long position = consumerInstance.positions.getOrDefault(partitionKey, 0L);
+
+                    List<StoredRecord> records = topic.partitions[partition].read(position, MAX_FETCH_RECORDS - response.size());
+                    addRecords(response, topic, partition, records, position);
+                    consumerInstance.positions.put(partitionKey, position + records.size());
+                }
+        }
+
+        return response;
+    }
+
+
+    /**
+     * Overwrites the committed offsets, also with lower ones (like kafka).
+     */
+    private void commitOffsets(String group, JsonNode body) throws StubException {
+        JsonNode partitions = body.get("partitions");
+        if (partitions == null || !partitions.isArray())
+            throw new StubException(42206, "Missing 'partitions'");
+
+        ConcurrentMap<String, Long> groupOffsets = this.committedOffsets.computeIfAbsent(group, key -> new ConcurrentHashMap<>());
+        for (JsonNode partition : partitions)
+            groupOffsets.put(partition.get("topic").asText() + "-" + partition.get("partition").asInt(), partition.get("offset").asLong());
+    }
+
+
+    /**
+     * @param body with the "partitions" to get. Without body all committed offsets of {@code group} are returned
+     */
+    private ObjectNode getOffsets(String group, JsonNode body) {
+        ObjectNode response = this.objectMapper.createObjectNode();
+        ArrayNode offsets = response.putArray("offsets");
+
+        JsonNode partitions = body.get("partitions");
+        if (partitions == null || !partitions.isArray()) {
+            this.committedOffsets.getOrDefault(group, new ConcurrentHashMap<>()).forEach((partitionKey, committedOffset) -> offsets.addObject()
+                .put("topic", partitionKey.substring(0, partitionKey.lastIndexOf('-')))
+                .put("partition", Integer.parseInt(partitionKey.substring(partitionKey.lastIndexOf('-') + 1)))
+                .put("offset", committedOffset)
+                .put("metadata", ""));
+
+            return response;
+        }
+
+        for (JsonNode partition : partitions) {
+            Long committedOffset = getCommittedOffset(group, partition.get("topic").asText(), partition.get("partition").asInt());
+
+            offsets.addObject()
+                .put("topic", partition.get("topic").asText())
+                .put("partition", partition.get("partition").asInt())
+                .put("offset", committedOffset == null ? -1 : committedOffset)
+                .put("metadata", "");
+        }
+
+        return response;
+    }
+
+
+    private void addRecords(ArrayNode target, Topic topic, int partition, List<StoredRecord> records, long firstOffset) {
+        for (int i = 0; i < records.size(); i++) {
+            ObjectNode record = target.addObject();
+            record.put("topic", topic.name);
+            record.set("key", records.get(i).key());
+            record.set("value", records.get(i).value());
+            record.put("partition", partition);
+            record.put("offset", firstOffset + i);
+        }
+
+        this.fetchedRecordCount.add(records.size());
+    }
+
+
+    private Topic getTopicOrThrow(String name) throws StubException {
+        Topic topic = this.topics.get(name);
+        if (topic == null)
+            throw new StubException(40401, "Topic not found");
+
+        return topic;
+    }
+
+
+    private JsonNode readBody(HttpExchange exchange) throws IOException, StubException {
+        InputStream body = exchange.getRequestBody();
+        if ("gzip".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Content-Encoding")))
+            body = new GZIPInputStream(body);
+
+        byte[] bytes = body.readAllBytes();
+        if (bytes.length == 0)
+            return this.objectMapper.createObjectNode();
+
+        try {
+            return this.objectMapper.readTree(bytes);
+
+        } catch (IOException e) {
+            throw new StubException(42201, "Invalid json: " + e.getMessage());
+        }
+    }
+
+
+    private void writeJson(HttpExchange exchange, int status, JsonNode body) throws IOException {
+        byte[] bytes = this.objectMapper.writeValueAsBytes(body);
+
+        exchange.getResponseHeaders().set("Content-Type", MEDIA_TYPE_KAFKA_JSON);
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+
+    private void writeNoContent(HttpExchange exchange) throws IOException {
+        exchange.sendResponseHeaders(204, -1);
+    }
+
+
+    private void writeError(HttpExchange exchange, int status, int errorCode, String message) throws IOException {
+        ObjectNode body = this.objectMapper.createObjectNode();
+        body.put("error_code", errorCode);
+        body.put("message", message);
+
+        writeJson(exchange, status, body);
+    }
+
+
+    private static Map<String, String> parseQueryParams(URI uri) {
+        Map<String, String> queryParams = new HashMap<>();
+        if (uri.getRawQuery() == null)
+            return queryParams;
+
+        for (String param : uri.getRawQuery().split("&")) {
+            int equalsIndex = param.indexOf('=');
+            if (equalsIndex > 0)
+                queryParams.put(
+                    URLDecoder.decode(param.substring(0, equalsIndex), StandardCharsets.UTF_8),
+                    URLDecoder.decode(param.substring(equalsIndex + 1), StandardCharsets.UTF_8));
+        }
+
+        return queryParams;
+    }
+
+
+    private static int parseIntOrThrow(String value) throws StubException {
+        return (int) parseLongOrThrow(value);
+    }
+
+
+    private static long parseLongOrThrow(String value) throws StubException {
+        try {
+            return Long.parseLong(value);
+
+        } catch (NumberFormatException e) {
+            throw new StubException(40002, "Invalid number '%s'".formatted(value));
+        }
+    }
+
+
+    private record StoredRecord(JsonNode key, JsonNode value) {}
+
+
+    private static class Topic {
+
+        private final String name;
+
+        private final Partition[] partitions;
+
+        private final AtomicInteger nextPartition = new AtomicInteger();
+
+
+        private Topic(String name, int partitionCount) {
+            this.name = name;
+            this.partitions = new Partition[partitionCount];
+            for (int i = 0; i < partitionCount; i++)
+                this.partitions[i] = new Partition();
+        }
+    }
+
+
+    private static class Partition {
+
+        /** Index is the offset */
+        private final List<StoredRecord> log = new ArrayList<>();
+
+
+        /**
+         * @return offset of the appended record
+         */
+        private synchronized long append(@Nullable JsonNode key, @Nullable JsonNode value) {
+            this.log.add(new StoredRecord(key, value));
+
+            return this.log.size() - 1;
+        }
+
+        /**
+         * @return copy of up to {@code maxRecords} records starting at {@code offset}
+         */
+        private synchronized List<StoredRecord> read(long offset, int maxRecords) {
+            if (offset < 0 || offset >= this.log.size())
+                return List.of();
+
+            return List.copyOf(this.log.subList((int) offset, (int) Math.min(this.log.size(), offset + maxRecords)));
+        }
+
+        private synchronized long size() {
+            return this.log.size();
+        }
+    }
+
+
+    private static class ConsumerInstance {
+
+        private final String group;
+
+        private final boolean isLatest;
+
+        private final List<Topic> topics = new ArrayList<>();
+
+        /** "topic-partition" -> offset of the next record to fetch */
+        private final Map<String, Long> positions = new HashMap<>();
+
+
+        private ConsumerInstance(String group, boolean isLatest) {
+            this.group = group;
+            this.isLatest = isLatest;
+        }
+    }
+
+
+    /**
+     * Written as redpanda error response.
+     */
+    private static class StubException extends Exception {
+
+        /** 5 digits, the first 3 are the http status */
+        private final int errorCode;
+
+
+        private StubException(int errorCode, String message) {
+            super(message);
+            this.errorCode = errorCode;
+        }
+    }
+}
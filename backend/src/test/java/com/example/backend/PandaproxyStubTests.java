@@ -0,0 +1,263 @@
+package com.example.backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.security.oauth2.jose.jws.SignatureAlgorithm;
+import org.springframework.security.oauth2.jwt.JwsHeader;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtClaimsSet;
+import org.springframework.security.oauth2.jwt.JwtEncoder;
+import org.springframework.security.oauth2.jwt.JwtEncoderParameters;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.security.oauth2.jwt.NimbusJwtEncoder;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.example.backend.dtos.ConsumerOffsetDto;
+import com.example.backend.helpers.Utils;
+import com.example.backend.services.JwtService;
+import com.example.backend.services.OffsetCommitCoordinator;
+import com.example.backend.services.PandaproxyFetcher;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+
+/**
+ * Talks to {@link PandaproxyStub} through the backend's {@link PandaproxyFetcher}, with tokens signed like the backend's.
+ *
+ * @since latest
+ */
+@Slf4j
+class PandaproxyStubTests {
+
+    private static KeyPair keyPair;
+
+    private static JwtEncoder jwtEncoder;
+
+    private final ObjectMapper objectMapper = Utils.getDefaultObjectMapper();
+
+    private PandaproxyStub pandaproxyStub;
+
+    private PandaproxyFetcher pandaproxyFetcher;
+
+
+    @BeforeAll
+    static void setupKeys() throws Exception {
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+        keyPairGenerator.initialize(2048);
+        keyPair = keyPairGenerator.generateKeyPair();
+
+        jwtEncoder = new NimbusJwtEncoder(new ImmutableJWKSet<>(new JWKSet(
+            new RSAKey.Builder((RSAPublicKey) keyPair.getPublic())
+                .privateKey((RSAPrivateKey) keyPair.getPrivate())
+                .keyID("key-id")
+                .build())));
+    }
+
+
+    @BeforeEach
+    void setup() throws Exception {
+        this.pandaproxyStub = new PandaproxyStub(NimbusJwtDecoder.withPublicKey((RSAPublicKey) keyPair.getPublic()).build());
+        this.pandaproxyStub.createTopic("test", 3);
+
+        this.pandaproxyFetcher = TestBeans.of(new PandaproxyFetcher())
+            .with("PANDAPROXY_BASE_URL", this.pandaproxyStub.getBaseUrl())
+            .init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.pandaproxyStub.close();
+    }
+
+
+    @Test
+    void produce_shouldAppendToPartitionLog() throws Exception {
+        JsonNode response = fetch(HttpMethod.POST, "/topics/test", """
+            {"records": [{"value": {"n": 1}, "partition": 1}, {"value": {"n": 2}, "partition": 1}, {"key": "k", "value": 3}]}""");
+
+        assertEquals(0, response.get("offsets").get(0).get("offset").asLong());
+        assertEquals(1, response.get("offsets").get(1).get("offset").asLong());
+        assertEquals(3, IntStream.range(0, 3).map(partition -> this.pandaproxyStub.getRecordValues("test", partition).size()).sum());
+
+        JsonNode records = fetch(HttpMethod.GET, "/topics/test/partitions/1/records?offset=1", null);
+        assertEquals(2, records.get(0).get("value").get("n").asInt());
+        assertEquals(1, records.get(0).get("offset").asLong());
+
+        assertEquals("test", fetch(HttpMethod.GET, "/topics", null).get(0).asText());
+        assertEquals(3, fetch(HttpMethod.GET, "/topics/test", null).get("partitions").size());
+    }
+
+    @Test
+    void request_unknownTopic_shouldReturnRedpandaError() {
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> fetch(HttpMethod.POST, "/topics/unknown", "{\"records\": []}"));
+
+        assertEquals(404, exception.getStatusCode().value());
+        assertTrue(exception.getReason().contains("40401"));
+    }
+
+    @Test
+    void request_invalidToken_shouldReturn401() {
+        byte[] body = "{\"records\": []}".getBytes(StandardCharsets.UTF_8);
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () ->
+            this.pandaproxyFetcher.fetch(HttpMethod.POST, "/topics/test", PandaproxyFetcher.bearerHeaders("invalid", PandaproxyFetcher.MEDIA_TYPE_KAFKA_JSON_JSON), body));
+        assertEquals(401, exception.getStatusCode().value());
+
+        exception = assertThrows(ResponseStatusException.class, () -> this.pandaproxyFetcher.fetch(HttpMethod.POST, "/topics/test", null, body));
+        assertEquals(401, exception.getStatusCode().value());
+        assertEquals(2L, this.pandaproxyStub.getMetrics().get("unauthorized"));
+    }
+
+    @Test
+    void consumer_shouldFetchFromCommittedOffset() throws Exception {
+        for (int i = 0; i < 10; i++)
+            fetch(HttpMethod.POST, "/topics/test", "{\"records\": [{\"value\": %d, \"partition\": 0}]}".formatted(i));
+
+        assertEquals("instance", fetch(HttpMethod.POST, "/consumers/group", "{\"name\": \"instance\", \"format\": \"json\"}").get("instance_id").asText());
+        fetch(HttpMethod.POST, "/consumers/group/instances/instance/offsets", "{\"partitions\": [{\"topic\": \"test\", \"partition\": 0, \"offset\": 4}]}");
+        fetch(HttpMethod.POST, "/consumers/group/instances/instance/subscription", "{\"topics\": [\"test\"]}");
+
+        JsonNode records = fetch(HttpMethod.GET, "/consumers/group/instances/instance/records", null);
+        assertEquals(6, records.size());
+        assertEquals(4, records.get(0).get("value").asInt());
+        assertEquals(0, fetch(HttpMethod.GET, "/consumers/group/instances/instance/records", null).size());
+
+        JsonNode offsets = fetch(HttpMethod.GET, "/consumers/group/instances/instance/offsets", null);
+        assertEquals(4, offsets.get("offsets").get(0).get("offset").asLong());
+
+        fetch(HttpMethod.DELETE, "/consumers/group/instances/instance", null);
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> fetch(HttpMethod.GET, "/consumers/group/instances/instance/records", null));
+        assertEquals(404, exception.getStatusCode().value());
+    }
+
+    @Test
+    void setErrorRate_shouldFailRequests() {
+        this.pandaproxyStub.setErrorRate(1, 503);
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> fetch(HttpMethod.GET, "/topics", null));
+        assertEquals(503, exception.getStatusCode().value());
+        assertEquals(1L, this.pandaproxyStub.getMetrics().get("injectedErrors"));
+    }
+
+    /**
+     * {@link OffsetCommitCoordinator} end to end against the stub, with latency and a share of failing requests.
+     */
+    @Benchmark
+    void offsetCommitCoordinator_withLatencyAndErrors_benchmark() throws Exception {
+        this.pandaproxyStub.setLatency(2, 10);
+        this.pandaproxyStub.setErrorRate(0.05, 503);
+        fetch(HttpMethod.POST, "/consumers/group", "{\"name\": \"instance\", \"format\": \"json\"}");
+
+        JwtService jwtService = mock(JwtService.class);
+        when(jwtService.generateJwtAccessToken(anyString())).thenAnswer(invocation -> encodeToken(invocation.getArgument(0)));
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        OffsetCommitCoordinator offsetCommitCoordinator = TestBeans.of(new OffsetCommitCoordinator())
+            .with("pandaproxyFetcher", this.pandaproxyFetcher)
+            .with("jwtService", jwtService)
+            .with("meterRegistry", meterRegistry)
+            .with("OFFSET_COMMIT_WINDOW_MS", 5L)
+            .with("OFFSET_COMMIT_MAX_BATCH_PARTITIONS", 1000)
+            .with("OFFSET_COMMIT_GROUP_IDLE_MS", 60_000L)
+            .init();
+
+        int consumers = 100;
+        int commitsPerConsumer = 20;
+        long startNanos = System.nanoTime();
+        long failedCommits;
+        try (var consumerExecutor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<CompletableFuture<Long>> futures = IntStream.range(0, consumers)
+                .mapToObj(consumer -> CompletableFuture.supplyAsync(() -> {
+                    long failures = 0;
+                    for (int commit = 1; commit <= commitsPerConsumer; commit++)
+                        try {
+                            offsetCommitCoordinator.commit("group", "instance", "user", List.of(new ConsumerOffsetDto("test", consumer % 3, commit))).get(10, TimeUnit.SECONDS);
+
+                        } catch (ExecutionException e) {
+                            assertInstanceOf(ResponseStatusException.class, e.getCause());
+                            failures++;
+
+                        } catch (Exception e) {
+                            throw new IllegalStateException(e);
+                        }
+
+                    return failures;
+                }, consumerExecutor))
+                .toList();
+
+            failedCommits = futures.stream().mapToLong(CompletableFuture::join).sum();
+
+        } finally {
+            TestBeans.destroy(offsetCommitCoordinator);
+        }
+        long durationNanos = System.nanoTime() - startNanos;
+
+        assertTrue(this.pandaproxyStub.getCommittedOffset("group", "test", 0) != null);
+
+        log.info("{} commits through the stub ({} failed), {} stub requests ({} injected errors), {} commits/s, latency mean {}ms",
+            consumers * commitsPerConsumer,
+            failedCommits,
+            this.pandaproxyStub.getMetrics().get("requests"),
+            this.pandaproxyStub.getMetrics().get("injectedErrors"),
+            Math.round(consumers * commitsPerConsumer / (durationNanos / 1_000_000_000.0)),
+            meterRegistry.get("offset.commit.latency").timer().mean(TimeUnit.MILLISECONDS));
+    }
+
+
+    /**
+     * @param body json, may be {@code null}
+     * @return parsed response body, an empty object node if there is none
+     */
+    private JsonNode fetch(HttpMethod method, String path, String body) throws Exception {
+        byte[] responseBody = this.pandaproxyFetcher.fetch(
+            method,
+            path,
+            PandaproxyFetcher.bearerHeaders(encodeToken("user").getTokenValue(), PandaproxyFetcher.MEDIA_TYPE_KAFKA_JSON_JSON),
+            body == null ? null : body.getBytes(StandardCharsets.UTF_8));
+
+        return responseBody.length == 0 ? this.objectMapper.createObjectNode() : this.objectMapper.readTree(responseBody);
+    }
+
+    private static Jwt encodeToken(String subject) {
+        Instant now = Instant.now();
+
+        return jwtEncoder.encode(JwtEncoderParameters.from(
+            JwsHeader.with(SignatureAlgorithm.RS256).keyId("key-id").build(),
+            JwtClaimsSet.builder()
+                .subject(subject)
+                .audience(List.of("pandaproxy"))
+                .issuedAt(now)
+                .expiresAt(now.plusSeconds(60))
+                .build()));
+    }
+}
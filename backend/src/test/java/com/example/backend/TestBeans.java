@@ -0,0 +1,83 @@
+package com.example.backend;
+
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.ReflectionUtils;
+
+
+/**
+ * Wires beans for unit tests without a spring context, e.g.
+ * <pre>
+ * TestBeans.of(new MailService())
+ *     .with("jdbcTemplate", jdbcTemplate)
+ *     .with("MAIL_MAX_ATTEMPTS", 5)
+ *     .init();
+ * </pre>
+ *
+ * Fields are set by name, so {@code @Autowired} and {@code @Value} fields can stay private.
+ *
+ * @since latest
+ */
+public class TestBeans {
+
+    /**
+     * @return empty in-memory h2 database, call {@code shutdown()} when done
+     */
+    public static EmbeddedDatabase newDatabase() {
+        return new EmbeddedDatabaseBuilder()
+            .setType(EmbeddedDatabaseType.H2)
+            .generateUniqueName(true)
+            .build();
+    }
+
+    public static <T> Fixture<T> of(T bean) {
+        return new Fixture<>(bean);
+    }
+
+    /**
+     * Invokes the bean's {@code destroy()} method if declared.
+     *
+     * @param bean initialized with {@link Fixture#init()}
+     */
+    public static void destroy(Object bean) {
+        invokeIfDeclared(bean, "destroy");
+    }
+
+
+    private static void invokeIfDeclared(Object bean, String methodName) {
+        if (ReflectionUtils.findMethod(bean.getClass(), methodName) != null)
+            ReflectionTestUtils.invokeMethod(bean, methodName);
+    }
+
+
+    public static class Fixture<T> {
+
+        private final T bean;
+
+        private Fixture(T bean) {
+            this.bean = bean;
+        }
+
+        /**
+         * @param fieldName of a field declared by the bean or a super class
+         * @param value to set, not converted
+         * @return this
+         */
+        public Fixture<T> with(String fieldName, Object value) {
+            ReflectionTestUtils.setField(this.bean, fieldName, value);
+            return this;
+        }
+
+        /**
+         * Invokes the bean's {@code init()} method if declared, like {@code @PostConstruct} would.
+         *
+         * @return the bean
+         */
+        public T init() {
+            invokeIfDeclared(this.bean, "init");
+            return this.bean;
+        }
+    }
+}
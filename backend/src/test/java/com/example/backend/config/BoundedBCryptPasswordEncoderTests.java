@@ -0,0 +1,135 @@
+package com.example.backend.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.web.server.ResponseStatusException;
+
+import lombok.extern.slf4j.Slf4j;
+
+
+/**
+ * @since latest
+ */
+@Slf4j
+class BoundedBCryptPasswordEncoderTests {
+
+    private static final String PASSWORD = "Password123.";
+
+    private BoundedBCryptPasswordEncoder passwordEncoder;
+
+
+    @AfterEach
+    void tearDown() {
+        if (this.passwordEncoder != null)
+            this.passwordEncoder.close();
+    }
+
+
+    @Test
+    void matches_shouldVerifyAndCache() {
+        this.passwordEncoder = new BoundedBCryptPasswordEncoder(8, 2, 10, 60_000, 10);
+        String encodedPassword = this.passwordEncoder.encode(PASSWORD);
+
+        assertFalse(this.passwordEncoder.matches("wrong", encodedPassword));
+        assertFalse(this.passwordEncoder.matches(null, encodedPassword));
+
+        long coldNanos = System.nanoTime();
+        assertTrue(this.passwordEncoder.matches(PASSWORD, encodedPassword));
+        coldNanos = System.nanoTime() - coldNanos;
+
+        long cachedNanos = System.nanoTime();
+        assertTrue(this.passwordEncoder.matches(PASSWORD, encodedPassword));
+        cachedNanos = System.nanoTime() - cachedNanos;
+
+        // cached verification of one password must not accept another one
+        assertFalse(this.passwordEncoder.matches(PASSWORD + "x", encodedPassword));
+        assertTrue(cachedNanos < coldNanos, "Expected cached verification to skip bcrypt");
+
+        log.info("bcrypt verification {}µs, cached {}µs", coldNanos / 1000, cachedNanos / 1000);
+    }
+
+    @Test
+    void matches_cacheDisabled_shouldAlwaysUseBcrypt() {
+        this.passwordEncoder = new BoundedBCryptPasswordEncoder(4, 1, 10, 0, 10);
+        String encodedPassword = this.passwordEncoder.encode(PASSWORD);
+
+        assertTrue(this.passwordEncoder.matches(PASSWORD, encodedPassword));
+        assertTrue(this.passwordEncoder.matches(PASSWORD, encodedPassword));
+        assertFalse(this.passwordEncoder.matches("wrong", encodedPassword));
+    }
+
+    @Test
+    void upgradeEncoding_lowerStrength_shouldBeTrue() {
+        this.passwordEncoder = new BoundedBCryptPasswordEncoder(6, 1, 10, 0, 10);
+
+        assertTrue(this.passwordEncoder.upgradeEncoding(new BCryptPasswordEncoder(4).encode(PASSWORD)));
+        assertFalse(this.passwordEncoder.upgradeEncoding(new BCryptPasswordEncoder(6).encode(PASSWORD)));
+        assertFalse(this.passwordEncoder.upgradeEncoding(this.passwordEncoder.encode(PASSWORD)));
+    }
+
+    @Test
+    void encode_queueFull_shouldReject() {
+        this.passwordEncoder = new BoundedBCryptPasswordEncoder(12, 1, 1, 0, 10);
+
+        try (var callerExecutor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<CompletableFuture<String>> futures = IntStream.range(0, 10)
+                .mapToObj(i -> CompletableFuture.supplyAsync(() -> this.passwordEncoder.encode(PASSWORD), callerExecutor))
+                .toList();
+
+            long rejectedCount = futures.stream()
+                .filter(future -> {
+                    try {
+                        future.get(60, TimeUnit.SECONDS);
+                        return false;
+
+                    } catch (Exception e) {
+                        assertInstanceOf(ResponseStatusException.class, e.getCause());
+                        assertEquals(503, ((ResponseStatusException) e.getCause()).getStatusCode().value());
+                        return true;
+                    }
+                })
+                .count();
+
+            // one running, one queued
+            assertTrue(rejectedCount >= 8, "Expected most callers to be rejected, got " + rejectedCount);
+        }
+    }
+
+    @Test
+    void matches_queueFull_shouldThrowAuthenticationException() {
+        this.passwordEncoder = new BoundedBCryptPasswordEncoder(12, 1, 1, 0, 10);
+        String encodedPassword = this.passwordEncoder.encode(PASSWORD);
+
+        try (var callerExecutor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<CompletableFuture<Boolean>> futures = IntStream.range(0, 10)
+                .mapToObj(i -> CompletableFuture.supplyAsync(() -> this.passwordEncoder.matches(PASSWORD, encodedPassword), callerExecutor))
+                .toList();
+
+            CompletionException exception = assertThrows(CompletionException.class, () -> CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join());
+            assertInstanceOf(AuthenticationServiceException.class, exception.getCause());
+            assertInstanceOf(ResponseStatusException.class, exception.getCause().getCause());
+        }
+    }
+
+    @Test
+    void constructor_invalidArgs_shouldThrow() {
+        assertThrows(IllegalArgumentException.class, () -> new BoundedBCryptPasswordEncoder(10, 0, 1, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> new BoundedBCryptPasswordEncoder(10, 1, 0, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> new BoundedBCryptPasswordEncoder(10, 1, 1, -1, 0));
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.backend.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.security.oauth2.client.autoconfigure.OAuth2ClientProperties;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+
+/**
+ * Runs {@link LazyClientRegistrationRepository} against a stub issuer that counts the discovery requests.
+ * 
+ * @since latest
+ */
+class LazyClientRegistrationRepositoryTests {
+
+    private HttpServer issuerStub;
+
+    private String issuer;
+
+    private final AtomicInteger discoveryRequestCount = new AtomicInteger();
+
+    private volatile boolean failDiscovery;
+
+    private OAuth2ClientProperties oAuth2ClientProperties;
+
+    private LazyClientRegistrationRepository lazyClientRegistrationRepository;
+
+
+    @BeforeEach
+    void setup() throws IOException {
+        this.issuerStub = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        this.issuerStub.createContext("/.well-known/openid-configuration", this::handleDiscovery);
+        this.issuerStub.start();
+        this.issuer = "http://localhost:" + this.issuerStub.getAddress().getPort();
+
+        this.oAuth2ClientProperties = new OAuth2ClientProperties();
+        this.oAuth2ClientProperties.getProvider().put("stub", provider(this.issuer));
+        this.oAuth2ClientProperties.getRegistration().put("stub", registration("stub"));
+        // not reachable, must not be resolved unless used
+        this.oAuth2ClientProperties.getProvider().put("unreachable", provider("http://localhost:1"));
+        this.oAuth2ClientProperties.getRegistration().put("unreachable", registration("unreachable"));
+
+        this.lazyClientRegistrationRepository = new LazyClientRegistrationRepository();
+        ReflectionTestUtils.setField(this.lazyClientRegistrationRepository, "oAuth2ClientProperties", this.oAuth2ClientProperties);
+    }
+
+
+    @AfterEach
+    void teardown() {
+        this.issuerStub.stop(0);
+    }
+
+
+    @Test
+    void findByRegistrationId_shouldResolveOnFirstUseOnly() {
+        assertEquals(0, this.discoveryRequestCount.get());
+
+        ClientRegistration clientRegistration = this.lazyClientRegistrationRepository.findByRegistrationId("stub");
+        assertNotNull(clientRegistration);
+        assertEquals(this.issuer + "/authorize", clientRegistration.getProviderDetails().getAuthorizationUri());
+        assertEquals(this.issuer + "/jwks", clientRegistration.getProviderDetails().getJwkSetUri());
+        assertEquals(1, this.discoveryRequestCount.get());
+
+        // cached
+        assertEquals(clientRegistration, this.lazyClientRegistrationRepository.findByRegistrationId("stub"));
+        assertEquals(1, this.discoveryRequestCount.get());
+    }
+
+
+    @Test
+    void findByRegistrationId_shouldReturnNullForUnknownRegistration() {
+        assertNull(this.lazyClientRegistrationRepository.findByRegistrationId("unknown"));
+        assertNull(this.lazyClientRegistrationRepository.findByRegistrationId(null));
+        assertEquals(0, this.discoveryRequestCount.get());
+    }
+
+
+    @Test
+    void findByRegistrationId_shouldNotCacheFailures() {
+        this.failDiscovery = true;
+        assertThrows(RuntimeException.class, () -> this.lazyClientRegistrationRepository.findByRegistrationId("stub"));
+
+        this.failDiscovery = false;
+        assertNotNull(this.lazyClientRegistrationRepository.findByRegistrationId("stub"));
+        assertEquals(2, this.discoveryRequestCount.get());
+    }
+
+
+    private void handleDiscovery(HttpExchange exchange) throws IOException {
+        this.discoveryRequestCount.incrementAndGet();
+
+        if (this.failDiscovery) {
+            exchange.sendResponseHeaders(500, -1);
+            exchange.close();
+            return;
+        }
+
+        byte[] responseBody = """
+            {
+                "issuer": "%1$s",
+                "authorization_endpoint": "%1$s/authorize",
+                "token_endpoint": "%1$s/token",
+                "userinfo_endpoint": "%1$s/userinfo",
+                "jwks_uri": "%1$s/jwks",
+                "subject_types_supported": ["public"],
+                "response_types_supported": ["code"],
+                "id_token_signing_alg_values_supported": ["RS256"]
+            }
+            """.formatted(this.issuer).getBytes(StandardCharsets.UTF_8);
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, responseBody.length);
+        exchange.getResponseBody().write(responseBody);
+        exchange.close();
+    }
+
+
+    private static OAuth2ClientProperties.Provider provider(String issuerUri) {
+        OAuth2ClientProperties.Provider provider = new OAuth2ClientProperties.Provider();
+        provider.setIssuerUri(issuerUri);
+        return provider;
+    }
+
+
+    private static OAuth2ClientProperties.Registration registration(String providerId) {
+        OAuth2ClientProperties.Registration registration = new OAuth2ClientProperties.Registration();
+        registration.setProvider(providerId);
+        registration.setClientId("client-id");
+        registration.setClientSecret("client-secret");
+        registration.setAuthorizationGrantType("authorization_code");
+        registration.setRedirectUri("{baseUrl}/login/oauth2/code/{registrationId}");
+        return registration;
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.backend.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.example.backend.Benchmark;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+
+/**
+ * @since latest
+ */
+@Slf4j
+class PreflightFilterTests {
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private PreflightFilter preflightFilter;
+
+
+    @BeforeEach
+    void setup() {
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.preflightFilter = new PreflightFilter(
+            List.of("http://localhost:3000", "https://app.example.com/"),
+            List.of("GET", "POST", "DELETE"),
+            3600,
+            this.meterRegistry);
+    }
+
+
+    @Test
+    void preflight_shouldBeAnsweredWithMaxAge() throws Exception {
+        MockHttpServletRequest request = newPreflightRequest("https://app.example.com", "POST");
+        request.addHeader("Access-Control-Request-Headers", "content-type, x-xsrf-token");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain filterChain = new MockFilterChain();
+
+        this.preflightFilter.doFilter(request, response, filterChain);
+
+        assertNull(filterChain.getRequest());
+        assertEquals(200, response.getStatus());
+        assertEquals("https://app.example.com", response.getHeader("Access-Control-Allow-Origin"));
+        assertEquals("true", response.getHeader("Access-Control-Allow-Credentials"));
+        assertEquals("GET, POST, DELETE", response.getHeader("Access-Control-Allow-Methods"));
+        assertEquals("content-type, x-xsrf-token", response.getHeader("Access-Control-Allow-Headers"));
+        assertEquals("3600", response.getHeader("Access-Control-Max-Age"));
+        assertEquals(1, this.meterRegistry.timer("cors.preflight", "outcome", "allowed").count());
+    }
+
+
+    @Test
+    void preflight_shouldRejectUnknownOriginOrMethod() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        this.preflightFilter.doFilter(newPreflightRequest("http://evil.example.com", "GET"), response, new MockFilterChain());
+        assertEquals(403, response.getStatus());
+        assertNull(response.getHeader("Access-Control-Allow-Origin"));
+
+        response = new MockHttpServletResponse();
+        this.preflightFilter.doFilter(newPreflightRequest("http://localhost:3000", "PATCH"), response, new MockFilterChain());
+        assertEquals(403, response.getStatus());
+
+        assertEquals(2, this.meterRegistry.timer("cors.preflight", "outcome", "rejected").count());
+    }
+
+
+    @Test
+    void nonPreflight_shouldPassThrough() throws Exception {
+        // OPTIONS without "Access-Control-Request-Method" is no preflight
+        MockHttpServletRequest request = new MockHttpServletRequest("OPTIONS", "/jwt");
+        request.addHeader("Origin", "http://localhost:3000");
+        MockFilterChain filterChain = new MockFilterChain();
+
+        this.preflightFilter.doFilter(request, new MockHttpServletResponse(), filterChain);
+
+        assertTrue(filterChain.getRequest() != null);
+        assertEquals(0, this.meterRegistry.timer("cors.preflight", "outcome", "allowed").count());
+    }
+
+
+    @Test
+    void isAllowedOrigin_shouldIgnoreCaseAndTrailingSlash() {
+        assertTrue(this.preflightFilter.isAllowedOrigin("http://localhost:3000/"));
+        assertTrue(this.preflightFilter.isAllowedOrigin("HTTPS://APP.EXAMPLE.COM"));
+        assertFalse(this.preflightFilter.isAllowedOrigin("http://localhost:3001"));
+        assertFalse(this.preflightFilter.isAllowedOrigin(null));
+    }
+
+
+    @Benchmark
+    void preflight_benchmark() throws Exception {
+        int iterations = 200_000;
+        MockHttpServletRequest request = newPreflightRequest("http://localhost:3000", "GET");
+
+        for (int round = 0; round < 3; round++)
+            for (int i = 0; i < iterations; i++)
+                this.preflightFilter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+
+        Timer timer = this.meterRegistry.timer("cors.preflight", "outcome", "allowed");
+        double meanMicros = timer.mean(TimeUnit.MICROSECONDS);
+        log.info("Preflight: {} requests, mean {}us in filter", 3 * iterations, "%.2f".formatted(meanMicros));
+
+        assertEquals(3 * iterations, timer.count());
+        assertTrue(meanMicros < 10, "Expected preflight requests to be answered in the filter");
+    }
+
+
+    private static MockHttpServletRequest newPreflightRequest(String origin, String method) {
+        MockHttpServletRequest request = new MockHttpServletRequest("OPTIONS", "/jwt");
+        request.addHeader("Origin", origin);
+        request.addHeader("Access-Control-Request-Method", method);
+        return request;
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.backend.controllers;
+
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import com.example.backend.SecurityTestConfig;
+import com.example.backend.services.ConsumerLagService;
+import com.example.backend.services.OffsetCommitCoordinator;
+import com.example.backend.services.ProducerGatewayService;
+import com.example.backend.services.ProducerOutboxService;
+import com.example.backend.services.RecordSearchService;
+
+
+/**
+ * Calls the endpoints that act on behalf of the caller without credentials. All paths are permitted and the anonymous filter is
+ * on, so these requests reach the controllers with an anonymous authentication and need to be rejected there.
+ *
+ * @since latest
+ */
+@SpringBootTest
+@Import({
+    SecurityTestConfig.class
+})
+class AnonymousAccessTests {
+
+    @Autowired
+    private WebApplicationContext webApplicationContext;
+
+    @MockitoBean
+    private ProducerGatewayService producerGatewayService;
+
+    @MockitoBean
+    private ProducerOutboxService producerOutboxService;
+
+    @MockitoBean
+    private OffsetCommitCoordinator offsetCommitCoordinator;
+
+    @MockitoBean
+    private ConsumerLagService consumerLagService;
+
+    @MockitoBean
+    private RecordSearchService recordSearchService;
+
+    private MockMvc mockMvc;
+
+
+    @BeforeEach
+    void setup() {
+        this.mockMvc = MockMvcBuilders
+            .webAppContextSetup(this.webApplicationContext)
+            .apply(springSecurity())
+            .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        verifyNoInteractions(this.producerGatewayService, this.producerOutboxService, this.offsetCommitCoordinator, this.consumerLagService, this.recordSearchService);
+    }
+
+
+    @Test
+    void produce_anonymous_shouldReturn401() throws Exception {
+        assertUnauthorized(post("/producer/topics/test").contentType(MediaType.APPLICATION_JSON).content("{\"records\":[]}"));
+        assertUnauthorized(post("/producer/outbox/topics/test").contentType(MediaType.APPLICATION_JSON).content("{\"records\":[]}"));
+    }
+
+    @Test
+    void commitOffsets_anonymous_shouldReturn401() throws Exception {
+        assertUnauthorized(post("/consumers/group/instances/instance/offsets").contentType(MediaType.APPLICATION_JSON).content("{\"partitions\":[]}"));
+    }
+
+    @Test
+    void consumerLag_anonymous_shouldReturn401() throws Exception {
+        assertUnauthorized(get("/consumer-lag"));
+        assertUnauthorized(put("/consumer-lag/groups/group").contentType(MediaType.APPLICATION_JSON).content("{\"topics\":[\"test\"]}"));
+        assertUnauthorized(delete("/consumer-lag/groups/group"));
+    }
+
+    @Test
+    void search_anonymous_shouldReturn401() throws Exception {
+        assertUnauthorized(get("/search").param("query", "test"));
+    }
+
+    @Test
+    void jwt_anonymous_shouldReturn401() throws Exception {
+        assertUnauthorized(get("/jwt"));
+        assertUnauthorized(post("/jwt/refreshable"));
+    }
+
+
+    private void assertUnauthorized(RequestBuilder request) throws Exception {
+        this.mockMvc
+            .perform(request)
+            .andExpect(status().isUnauthorized());
+    }
+}
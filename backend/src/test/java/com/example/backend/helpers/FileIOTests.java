@@ -0,0 +1,294 @@
+package com.example.backend.helpers;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.example.backend.Benchmark;
+
+import lombok.extern.slf4j.Slf4j;
+
+
+/**
+ * @since latest
+ */
+@Slf4j
+class FileIOTests {
+
+    @TempDir
+    private Path tempDir;
+
+
+    @Test
+    void readString_shouldKeepLineBreaksAndDecodeUtf8() throws Exception {
+        String content = "line 1\r\nÄäöüß €\n😀\n";
+        Path file = FileIO.writeString(content, this.tempDir.resolve("text.txt"));
+
+        assertEquals(content, FileIO.readString(file));
+        assertEquals(content, FileIO.readString(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8));
+        assertEquals("", FileIO.readString(FileIO.writeString("", this.tempDir.resolve("empty.txt"))));
+    }
+
+    @Test
+    void readString_byteOrderMark_shouldOverrideCharset() throws Exception {
+        String content = "äöü 😀";
+
+        Path utf8 = this.tempDir.resolve("utf8.txt");
+        Files.write(utf8, concat(new byte[] {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF}, content.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(content, FileIO.readString(utf8, StandardCharsets.ISO_8859_1));
+
+        Path utf16 = this.tempDir.resolve("utf16.txt");
+        Files.write(utf16, content.getBytes(StandardCharsets.UTF_16)); // big endian with bom
+        assertEquals(content, FileIO.readString(utf16));
+
+        Path utf16Le = this.tempDir.resolve("utf16le.txt");
+        Files.write(utf16Le, concat(new byte[] {(byte) 0xFF, (byte) 0xFE}, content.getBytes(StandardCharsets.UTF_16LE)));
+        assertEquals(content, FileIO.readString(utf16Le));
+
+        Path latin1 = this.tempDir.resolve("latin1.txt");
+        Files.write(latin1, "äöü".getBytes(StandardCharsets.ISO_8859_1));
+        assertEquals("äöü", FileIO.readString(latin1, StandardCharsets.ISO_8859_1));
+    }
+
+    @Test
+    void writeBytes_shouldReplaceContent() throws Exception {
+        Path file = this.tempDir.resolve("bytes.bin");
+        FileIO.writeBytes(randomBytes(1000), file);
+
+        byte[] bytes = randomBytes(10);
+        FileIO.writeBytes(bytes, file);
+
+        assertArrayEquals(bytes, FileIO.readBytes(file));
+        assertThrows(IllegalArgumentException.class, () -> FileIO.writeBytes(null, file));
+        assertThrows(IllegalArgumentException.class, () -> FileIO.writeString(null, file));
+    }
+
+    @Test
+    void map_shouldMatchFileContent() throws Exception {
+        byte[] bytes = randomBytes(100_000);
+        Path file = FileIO.writeBytes(bytes, this.tempDir.resolve("mapped.bin"));
+
+        ByteBuffer mapped = FileIO.map(file);
+
+        assertEquals(bytes.length, mapped.remaining());
+        assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(bytes), Hashing.sha256(mapped));
+    }
+
+    @Test
+    void transferTo_shouldCopyWholeFile() throws Exception {
+        byte[] bytes = randomBytes(3 * 1024 * 1024 + 7);
+        Path file = FileIO.writeBytes(bytes, this.tempDir.resolve("source.bin"));
+
+        // file channel target
+        Path copy = this.tempDir.resolve("copy.bin");
+        try (FileChannel target = FileChannel.open(copy, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            assertEquals(bytes.length, FileIO.transferTo(file, target));
+        }
+        assertArrayEquals(bytes, Files.readAllBytes(copy));
+
+        // arbitrary channel target
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        assertEquals(bytes.length, FileIO.transferTo(file, Channels.newChannel(outputStream)));
+        assertArrayEquals(bytes, outputStream.toByteArray());
+    }
+
+    @Test
+    void download_withoutSendfile_shouldWriteBody() throws Exception {
+        byte[] bytes = randomBytes(100_000);
+        Path file = FileIO.writeBytes(bytes, this.tempDir.resolve("download.bin"));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertEquals(bytes.length, FileIO.download(file, new MockHttpServletRequest(), response));
+
+        assertArrayEquals(bytes, response.getContentAsByteArray());
+        assertEquals(bytes.length, response.getContentLengthLong());
+        assertEquals("application/octet-stream", response.getContentType());
+    }
+
+    @Test
+    void download_withSendfile_shouldLeaveBodyToContainer() throws Exception {
+        Path file = FileIO.writeBytes(randomBytes(100_000), this.tempDir.resolve("download.bin"));
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAttribute(FileIO.SENDFILE_SUPPORT_ATTRIBUTE, true);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        response.setContentType("text/csv");
+
+        FileIO.download(file, request, response);
+
+        assertEquals(0, response.getContentAsByteArray().length);
+        assertEquals(file.toAbsolutePath().toString(), request.getAttribute(FileIO.SENDFILE_FILENAME_ATTRIBUTE));
+        assertEquals(0L, request.getAttribute(FileIO.SENDFILE_START_ATTRIBUTE));
+        assertEquals(100_000L, request.getAttribute(FileIO.SENDFILE_END_ATTRIBUTE));
+        assertEquals("text/csv", response.getContentType());
+    }
+
+    @Test
+    void download_missingFile_shouldThrow() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAttribute(FileIO.SENDFILE_SUPPORT_ATTRIBUTE, true);
+
+        assertThrows(IOException.class, () -> FileIO.download(this.tempDir.resolve("missing.bin"), request, new MockHttpServletResponse()));
+        assertNull(request.getAttribute(FileIO.SENDFILE_FILENAME_ATTRIBUTE));
+    }
+
+    /**
+     * Logs duration and allocation of reading many small text files compared to the removed {@code Utils.fileToString} (reader
+     * line by line), and of sending and hashing a 256 MiB file compared to reading it into the heap first (removed
+     * {@code Utils.fileToByteArray}).
+     */
+    @Benchmark
+    void benchmark() throws Exception {
+        // small files
+        Path smallFile = FileIO.writeString("äöü some text\n".repeat(300), this.tempDir.resolve("small.txt"));
+        int runs = 5_000;
+
+        Runnable readString = () -> {
+            try {
+                FileIO.readString(smallFile);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        };
+        Runnable legacyReadString = () -> legacyFileToString(smallFile);
+
+        // warmup
+        measure(readString, runs);
+        measure(legacyReadString, runs);
+
+        long[] readStringResult = measure(readString, runs);
+        long[] legacyReadStringResult = measure(legacyReadString, runs);
+
+        log.info("{} byte text file: readString {} bytes / {}ns, reader line by line {} bytes / {}ns per read",
+            Files.size(smallFile), readStringResult[0], readStringResult[1], legacyReadStringResult[0], legacyReadStringResult[1]);
+
+        assertTrue(readStringResult[0] < legacyReadStringResult[0], "Expected fewer allocations than reading line by line");
+
+        // large file
+        Path largeFile = this.tempDir.resolve("large.bin");
+        byte[] chunk = randomBytes(1024 * 1024);
+        try (OutputStream outputStream = Files.newOutputStream(largeFile)) {
+            for (int i = 0; i < 256; i++)
+                outputStream.write(chunk);
+        }
+        long size = Files.size(largeFile);
+        WritableByteChannel discard = Channels.newChannel(OutputStream.nullOutputStream());
+
+        Runnable transferTo = () -> {
+            try {
+                FileIO.transferTo(largeFile, discard);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        };
+        Runnable hashMapped = () -> {
+            try {
+                Hashing.sha256(FileIO.map(largeFile));
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        };
+        Runnable readAllBytes = () -> {
+            try {
+                discard.write(ByteBuffer.wrap(Files.readAllBytes(largeFile)));
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        };
+
+        // warmup, also pulls the file into the page cache
+        measure(transferTo, 1);
+        measure(readAllBytes, 1);
+
+        long[] transferToResult = measure(transferTo, 3);
+        long[] hashMappedResult = measure(hashMapped, 3);
+        long[] readAllBytesResult = measure(readAllBytes, 3);
+
+        log.info("{} MiB file: transferTo {} MB/s allocating {} bytes, hash mapped {} MB/s allocating {} bytes, read into heap {} MB/s allocating {} bytes",
+            size / 1024 / 1024,
+            megabytesPerSecond(size, transferToResult[1]), transferToResult[0],
+            megabytesPerSecond(size, hashMappedResult[1]), hashMappedResult[0],
+            megabytesPerSecond(size, readAllBytesResult[1]), readAllBytesResult[0]);
+
+        assertTrue(transferToResult[0] < size / 100, "Expected transferTo not to copy the file into the heap");
+        assertTrue(hashMappedResult[0] < size / 100, "Expected mapping not to copy the file into the heap");
+    }
+
+
+    /**
+     * Like the removed {@code Utils.fileToString(File)}, without {@code replaceOddChars}.
+     */
+    private static String legacyFileToString(Path file) {
+        try (BufferedReader reader = new BufferedReader(new FileReader(file.toFile()))) {
+            StringBuilder stringBuilder = new StringBuilder();
+            String line;
+            while ((line = reader.readLine()) != null)
+                stringBuilder.append(line);
+
+            return stringBuilder.toString();
+
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long megabytesPerSecond(long bytes, long nanos) {
+        return Math.round(bytes / 1_000_000.0 / (nanos / 1_000_000_000.0));
+    }
+
+    /**
+     * @return [allocated bytes per run, nanos per run]
+     */
+    private static long[] measure(Runnable runnable, int runs) {
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().threadId();
+
+        long allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < runs; i++)
+            runnable.run();
+        long durationNanos = System.nanoTime() - startNanos;
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        return new long[] {allocated / runs, durationNanos / runs};
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] result = new byte[first.length + second.length];
+        System.arraycopy(first, 0, result, 0, first.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+
+        return result;
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        ThreadLocalRandom.current().nextBytes(bytes);
+
+        return bytes;
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.backend.helpers;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.backend.Benchmark;
+
+import lombok.extern.slf4j.Slf4j;
+
+
+/**
+ * @since latest
+ */
+@Slf4j
+class HashingTests {
+
+    @Test
+    void sha256_shouldMatchStringGetBytes() throws Exception {
+        String[] inputs = {
+            "",
+            "client-secret",
+            "äöü ß 😀",
+            "lone \uD83D surrogate",
+            "trailing surrogate \uD83D",
+            // longer than the pooled buffer, with a multi byte char across the chunk boundary
+            "a".repeat(8191) + "ä".repeat(5000)
+        };
+
+        for (String input : inputs) {
+            byte[] expected = MessageDigest.getInstance("SHA-256").digest(input.getBytes(StandardCharsets.UTF_8));
+
+            assertEquals(HexFormat.of().formatHex(expected), Hashing.sha256Hex(input));
+
+            byte[] target = new byte[Hashing.SHA_256_LENGTH + 3];
+            assertEquals(3 + Hashing.SHA_256_LENGTH, Hashing.sha256(input, target, 3));
+            for (int i = 0; i < expected.length; i++)
+                assertEquals(expected[i], target[i + 3]);
+        }
+    }
+
+    @Test
+    void sha256_targetTooSmall_shouldThrow() {
+        assertThrows(IllegalArgumentException.class, () -> Hashing.sha256("x", new byte[Hashing.SHA_256_LENGTH], 1));
+        assertThrows(IllegalArgumentException.class, () -> Hashing.sha256((String) null, new byte[Hashing.SHA_256_LENGTH], 0));
+
+        // should not leave the digest in a dirty state
+        assertEquals(Hashing.sha256Hex("x".getBytes(StandardCharsets.UTF_8)), Hashing.sha256Hex("x"));
+    }
+
+    @Test
+    void sha256_streamsAndBuffers_shouldMatchByteArray() throws Exception {
+        byte[] input = randomBytes(100_000);
+        byte[] expected = MessageDigest.getInstance("SHA-256").digest(input);
+
+        assertArrayEquals(expected, Hashing.sha256(input));
+        assertArrayEquals(expected, Hashing.sha256(new ByteArrayInputStream(input)));
+        assertArrayEquals(expected, Hashing.sha256(ByteBuffer.wrap(input)));
+        assertArrayEquals(expected, Hashing.sha256(ByteBuffer.allocateDirect(input.length).put(input).flip()));
+    }
+
+    @Test
+    void toHex_shouldMatchHexFormat() {
+        byte[] input = randomBytes(256);
+        String expected = HexFormat.of().formatHex(input);
+
+        assertEquals(expected, Hashing.toHex(input));
+        assertArrayEquals(input, Hashing.fromHex(expected));
+        assertArrayEquals(input, Hashing.fromHex(expected.toUpperCase()));
+
+        byte[] target = new byte[2 + input.length * 2];
+        assertEquals(target.length, Hashing.toHex(input, 0, input.length, target, 2));
+        assertEquals(expected, new String(target, 2, input.length * 2, StandardCharsets.US_ASCII));
+
+        assertThrows(IllegalArgumentException.class, () -> Hashing.fromHex("abc"));
+        assertThrows(IllegalArgumentException.class, () -> Hashing.fromHex("zz"));
+    }
+
+    /**
+     * Logs allocation and duration of hashing a refresh token compared to the removed {@code Utils.hashSha256} (new digest,
+     * {@code getBytes} and {@code Integer.toHexString} per byte).
+     */
+    @Benchmark
+    void sha256_benchmark() {
+        String input = HexFormat.of().formatHex(randomBytes(32));
+        byte[] target = new byte[Hashing.SHA_256_LENGTH];
+        int runs = 100_000;
+
+        Runnable pooledRaw = () -> Hashing.sha256(input, target, 0);
+        Runnable pooledHex = () -> Hashing.sha256Hex(input);
+        Runnable digestPerCall = () -> legacySha256Hex(input);
+
+        // warmup
+        for (Runnable runnable : new Runnable[] {pooledRaw, pooledHex, digestPerCall})
+            measure(runnable, runs);
+
+        long[] pooledRawResult = measure(pooledRaw, runs);
+        long[] pooledHexResult = measure(pooledHex, runs);
+        long[] digestPerCallResult = measure(digestPerCall, runs);
+
+        log.info("sha256 of 64 chars: raw into buffer {} bytes / {}ns, hex {} bytes / {}ns, digest per call {} bytes / {}ns per hash",
+            pooledRawResult[0], pooledRawResult[1], pooledHexResult[0], pooledHexResult[1], digestPerCallResult[0], digestPerCallResult[1]);
+
+        assertTrue(pooledRawResult[0] < 128, "Expected no array allocations when hashing into a buffer");
+        assertTrue(pooledHexResult[0] < digestPerCallResult[0], "Expected fewer allocations than a digest per call");
+    }
+
+
+    private static String legacySha256Hex(String input) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(input.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hexString = new StringBuilder(2 * hash.length);
+            for (byte b : hash) {
+                String hex = Integer.toHexString(0xff & b);
+                if (hex.length() == 1)
+                    hexString.append('0');
+                hexString.append(hex);
+            }
+
+            return hexString.toString();
+
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return [allocated bytes per run, nanos per run]
+     */
+    private static long[] measure(Runnable runnable, int runs) {
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().threadId();
+
+        long allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < runs; i++)
+            runnable.run();
+        long durationNanos = System.nanoTime() - startNanos;
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        return new long[] {allocated / runs, durationNanos / runs};
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        ThreadLocalRandom.current().nextBytes(bytes);
+
+        return bytes;
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.backend.helpers;
+
+import static com.example.backend.helpers.Utils.SEARCH_ADJACENT_MATCH_RATING_POINTS;
+import static com.example.backend.helpers.Utils.SEARCH_APPROXIMATE_RATING_POINTS;
+import static com.example.backend.helpers.Utils.SEARCH_EXACT_MATCH_RATING_POINTS;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.backend.Benchmark;
+import com.example.backend.helpers.InvertedIndex.Hits;
+
+import lombok.extern.slf4j.Slf4j;
+
+
+/**
+ * @since latest
+ */
+@Slf4j
+class InvertedIndexTests {
+
+    @Test
+    void tokenize_shouldSplitAtNonLetterOrDigitAndLowerCase() {
+        assertEquals(List.of("orders", "eu", "west", "1"), InvertedIndex.tokenize("Orders.EU-west_1", 10));
+        assertEquals(List.of("name", "müller", "straße", "42"), InvertedIndex.tokenize("{\"name\": \"Müller\"} STRAßE 😀42", 10));
+        assertEquals(List.of("a", "b"), InvertedIndex.tokenize("a b c", 2));
+        assertEquals(InvertedIndex.MAX_WORD_LENGTH, InvertedIndex.tokenize("x".repeat(100), 1).get(0).length());
+    }
+
+    @Test
+    void search_shouldRateExactAboveApproximate() {
+        InvertedIndex index = new InvertedIndex();
+        int exact = index.add("ord");
+        int prefix = index.add("orders");
+        index.add("word");
+
+        // short query word, prefix only
+        Hits hits = index.search("ORD", null, 0, 10);
+        assertArrayEquals(new int[] {exact, prefix}, hits.documentIds());
+        assertArrayEquals(new int[] {SEARCH_EXACT_MATCH_RATING_POINTS, SEARCH_APPROXIMATE_RATING_POINTS}, hits.ratings());
+
+        // long query word, contains
+        index = new InvertedIndex();
+        exact = index.add("orders");
+        int contained = index.add("reorders");
+        hits = index.search("orders", null, 0, 10);
+        assertArrayEquals(new int[] {exact, contained}, hits.documentIds());
+        assertArrayEquals(new int[] {SEARCH_EXACT_MATCH_RATING_POINTS, SEARCH_APPROXIMATE_RATING_POINTS}, hits.ratings());
+    }
+
+    @Test
+    void search_exactAndApproximateInSameDocument_shouldOnlyCountBest() {
+        InvertedIndex index = new InvertedIndex();
+        index.add("order orders ordered");
+
+        assertArrayEquals(new int[] {SEARCH_EXACT_MATCH_RATING_POINTS}, index.search("order", null, 0, 10).ratings());
+    }
+
+    @Test
+    void search_adjacentWords_shouldAddPoints() {
+        InvertedIndex index = new InvertedIndex();
+        int adjacent = index.add("orders.eu-west");
+        int reversed = index.add("west eu orders");
+        int otherFields = index.add("orders eu", "west");
+
+        Hits hits = index.search("eu west", null, 0, 10);
+
+        assertArrayEquals(new int[] {adjacent, otherFields, reversed}, hits.documentIds());
+        assertEquals(2 * SEARCH_EXACT_MATCH_RATING_POINTS + SEARCH_ADJACENT_MATCH_RATING_POINTS, hits.ratings()[0]);
+        assertEquals(2 * SEARCH_EXACT_MATCH_RATING_POINTS, hits.ratings()[1]);
+        assertEquals(2 * SEARCH_EXACT_MATCH_RATING_POINTS, hits.ratings()[2]);
+    }
+
+    @Test
+    void search_shouldFilterBeforePaging() {
+        InvertedIndex index = new InvertedIndex();
+        for (int i = 0; i < 10; i++)
+            index.add("record " + i);
+
+        // equally rated, newest first
+        Hits hits = index.search("record", documentId -> documentId % 2 == 0, 1, 2);
+
+        assertEquals(5, hits.total());
+        assertArrayEquals(new int[] {6, 4}, hits.documentIds());
+
+        assertEquals(0, index.search("record", null, 10, 5).documentIds().length);
+        assertEquals(10, index.search("record", null, 10, 5).total());
+        assertEquals(0, index.search("missing", null, 0, 5).total());
+        assertEquals(0, index.search(" .- ", null, 0, 5).total());
+        assertThrows(IllegalArgumentException.class, () -> index.search("record", null, -1, 5));
+    }
+
+    @Test
+    void search_afterAdding_shouldFindNewDocuments() {
+        InvertedIndex index = new InvertedIndex();
+        index.add("first");
+        assertEquals(1, index.search("first", null, 0, 10).total());
+
+        // pooled search state is smaller than the document count now
+        for (int i = 0; i < 5000; i++)
+            index.add("first " + i);
+
+        assertEquals(5001, index.search("first", null, 0, 10).total());
+    }
+
+    /**
+     * Logs index size, indexing duration and search latency for 1M documents shaped like records (key and a json value of
+     * ~10 words from a zipf like distributed vocabulary).
+     */
+    @Benchmark
+    void search_benchmark() {
+        Random random = new Random(1);
+        String[] vocabulary = new String[50_000];
+        for (int i = 0; i < vocabulary.length; i++)
+            vocabulary[i] = Long.toString(random.nextLong() & 0xffffffffffL, 36);
+
+        InvertedIndex index = new InvertedIndex();
+        int documentCount = 1_000_000;
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < documentCount; i++) {
+            StringBuilder value = new StringBuilder("{\"user\":\"user-" + (i % 1000) + "\",\"text\":\"");
+            for (int j = 0; j < 8; j++)
+                value.append(vocabulary[(int) Math.min(vocabulary.length - 1, Math.abs(random.nextGaussian()) * 3000)]).append(' ');
+            value.append("\"}");
+
+            index.add("key-" + i, value);
+        }
+        long indexNanos = System.nanoTime() - startNanos;
+
+        log.info("Indexed {} documents with {} distinct words in {}ms", documentCount, index.getWordCount(), indexNanos / 1_000_000);
+
+        String[] queries = {
+            vocabulary[0],                                  // frequent word
+            vocabulary[20_000],                             // rare word
+            vocabulary[0] + " " + vocabulary[1],            // frequent words, adjacency
+            vocabulary[5].substring(0, 2),                  // prefix
+            vocabulary[7].substring(1, 7),                  // contains
+            "key 123456",                                   // every document
+        };
+
+        for (String query : queries) {
+            long[] nanos = new long[21];
+            Hits hits = null;
+            for (int i = 0; i < nanos.length; i++) {
+                startNanos = System.nanoTime();
+                hits = index.search(query, null, 0, 20);
+                nanos[i] = System.nanoTime() - startNanos;
+            }
+            Arrays.sort(nanos);
+
+            log.info("'{}': {} hits, median {}us, max {}us", query, hits.total(), nanos[nanos.length / 2] / 1000, nanos[nanos.length - 1] / 1000);
+
+            // case: not matching every document
+            if (hits.total() < documentCount / 2)
+                assertTrue(nanos[nanos.length / 2] < 50_000_000, "Expected selective queries to take less than 50ms");
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.backend.helpers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * @since latest
+ */
+class MailTemplateTests {
+
+    @Test
+    void render_shouldReplaceAndEscapePlaceholders() {
+        MailTemplate mailTemplate = MailTemplate.parse("<a href=\"${link}\">${ link }</a> ${name}, ${name}!");
+
+        assertEquals(List.of("link", "link", "name", "name"), mailTemplate.getVariableNames());
+        assertEquals(
+            "<a href=\"https://x.de?a=1&amp;b=&quot;2&quot;\">https://x.de?a=1&amp;b=&quot;2&quot;</a> &lt;Max&gt;, &lt;Max&gt;!",
+            mailTemplate.render(Map.of("link", "https://x.de?a=1&b=\"2\"", "name", "<Max>")));
+
+        assertEquals("no placeholders $ {}", MailTemplate.parse("no placeholders $ {}").render(Map.of()));
+        assertEquals("", MailTemplate.parse("${x}").render(Map.of("x", "")));
+    }
+
+    @Test
+    void parse_invalidPlaceholder_shouldThrow() {
+        assertThrows(IllegalArgumentException.class, () -> MailTemplate.parse("${link"));
+        assertThrows(IllegalArgumentException.class, () -> MailTemplate.parse("${ }"));
+        assertThrows(IllegalArgumentException.class, () -> MailTemplate.parse(null));
+    }
+
+    @Test
+    void render_missingVariable_shouldThrow() {
+        MailTemplate mailTemplate = MailTemplate.parse("${link}");
+
+        assertThrows(IllegalArgumentException.class, () -> mailTemplate.render(Map.of("other", "x")));
+        assertThrows(IllegalArgumentException.class, () -> mailTemplate.render(null));
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.backend.helpers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * @since latest
+ */
+class ObjectPoolTests {
+
+    @Test
+    void offer_full_shouldDropInstance() {
+        ObjectPool<Object> objectPool = new ObjectPool<>(2);
+
+        assertTrue(objectPool.offer(new Object()));
+        assertTrue(objectPool.offer(new Object()));
+        assertFalse(objectPool.offer(new Object()));
+        assertEquals(2, objectPool.getIdleCount());
+
+        assertNotNull(objectPool.poll());
+        assertTrue(objectPool.offer(new Object()));
+        assertEquals(2, objectPool.getIdleCount());
+    }
+
+    @Test
+    void poll_empty_shouldReturnNull() {
+        ObjectPool<Object> objectPool = new ObjectPool<>(1);
+        Object instance = new Object();
+
+        assertNull(objectPool.poll());
+        objectPool.offer(instance);
+        assertEquals(instance, objectPool.poll());
+        assertNull(objectPool.poll());
+        assertEquals(0, objectPool.getIdleCount());
+    }
+
+    @Test
+    void offer_null_shouldBeIgnored() {
+        ObjectPool<Object> objectPool = new ObjectPool<>(1);
+
+        assertFalse(objectPool.offer(null));
+        assertEquals(0, objectPool.getIdleCount());
+    }
+
+    @Test
+    void constructor_negativeMaxIdle_shouldThrow() {
+        assertThrows(IllegalArgumentException.class, () -> new ObjectPool<>(-1));
+    }
+
+    @Test
+    void offer_concurrent_shouldNotExceedMaxIdle() throws Exception {
+        int maxIdle = 4;
+        ObjectPool<Object> objectPool = new ObjectPool<>(maxIdle);
+
+        int threadCount = 16;
+        List<Callable<Void>> callers = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            callers.add(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    Object instance = objectPool.poll();
+                    objectPool.offer(instance == null ? new Object() : instance);
+                }
+                return null;
+            });
+        }
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(threadCount)) {
+            for (Future<Void> result : executor.invokeAll(callers))
+                result.get();
+        }
+
+        int idleInstances = 0;
+        while (objectPool.poll() != null)
+            idleInstances++;
+
+        assertTrue(idleInstances <= maxIdle, "Expected at most %d idle instances, got %d".formatted(maxIdle, idleInstances));
+        assertEquals(0, objectPool.getIdleCount());
+    }
+}
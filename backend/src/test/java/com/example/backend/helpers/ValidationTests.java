@@ -0,0 +1,193 @@
+package com.example.backend.helpers;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.backend.Benchmark;
+
+import lombok.extern.slf4j.Slf4j;
+
+
+/**
+ * @since latest
+ */
+@Slf4j
+class ValidationTests {
+
+    @Test
+    void isTopicValid_shouldMatchKafkaRules() {
+        assertTrue(Validation.isTopicValid("orders.eu-west_1"));
+        assertTrue(Validation.isTopicValid("a".repeat(Validation.TOPIC_MAX_LENGTH)));
+
+        assertFalse(Validation.isTopicValid(null));
+        assertFalse(Validation.isTopicValid(""));
+        assertFalse(Validation.isTopicValid("a".repeat(Validation.TOPIC_MAX_LENGTH + 1)));
+        assertFalse(Validation.isTopicValid("no spaces"));
+        assertFalse(Validation.isTopicValid("../consumers"));
+        assertFalse(Validation.isTopicValid("bestellungen-ä"));
+
+        assertDoesNotThrow(() -> Validation.assertTopicValidOrThrow("orders"));
+        assertThrows(IllegalArgumentException.class, () -> Validation.assertTopicValidOrThrow("orders/1"));
+    }
+
+    @Test
+    void isConsumerOrGroupNameValid_shouldAllowUrlSafeChars() {
+        assertTrue(Validation.isConsumerOrGroupNameValid("group-1"));
+        assertTrue(Validation.isConsumerOrGroupNameValid("user@example.com:%_+~#="));
+        assertTrue(Validation.isConsumerOrGroupNameValid("a".repeat(Validation.CONSUMER_AND_GROUP_MAX_LENGTH)));
+
+        assertFalse(Validation.isConsumerOrGroupNameValid(null));
+        assertFalse(Validation.isConsumerOrGroupNameValid(""));
+        assertFalse(Validation.isConsumerOrGroupNameValid("a".repeat(Validation.CONSUMER_AND_GROUP_MAX_LENGTH + 1)));
+        assertFalse(Validation.isConsumerOrGroupNameValid("group/instances"));
+        assertFalse(Validation.isConsumerOrGroupNameValid("group?x=1"));
+
+        assertThrows(IllegalArgumentException.class, () -> Validation.assertConsumerOrGroupNameValidOrThrow("a b"));
+    }
+
+    @Test
+    void isEmailValid_shouldMatchRegex() {
+        assertTrue(Validation.isEmailValid("max.mustermann@mail.example.com"));
+        assertTrue(Validation.isEmailValid("max_1-x@sub-domain.de"));
+        assertTrue(Validation.isEmailValid(".@a.info"));
+
+        assertFalse(Validation.isEmailValid(null));
+        assertFalse(Validation.isEmailValid(""));
+        assertFalse(Validation.isEmailValid("@example.com"));
+        assertFalse(Validation.isEmailValid("max@localhost"));
+        assertFalse(Validation.isEmailValid("max@example..com"));
+        assertFalse(Validation.isEmailValid("max@.example.com"));
+        assertFalse(Validation.isEmailValid("max@example.c"));
+        assertFalse(Validation.isEmailValid("max@example.email"));
+        assertFalse(Validation.isEmailValid("max@example.com."));
+        assertFalse(Validation.isEmailValid("max@mail@example.com"));
+        assertFalse(Validation.isEmailValid("mäx@example.com"));
+    }
+
+    @Test
+    void isPasswordValid_shouldMatchRegex() {
+        assertTrue(Validation.isPasswordValid("Abcdef1!"));
+        assertTrue(Validation.isPasswordValid("Abcdef1§"));
+        assertTrue(Validation.isPasswordValid("Abcdef1€"));
+        assertTrue(Validation.isPasswordValid("Abcdef1´"));
+        assertTrue(Validation.isPasswordValid("Abcdef1!" + "x".repeat(Validation.PASSWORD_MAX_LENGTH - 8)));
+        // one code point each
+        assertTrue(Validation.isPasswordValid("Ab1!" + "😀".repeat(Validation.PASSWORD_MAX_LENGTH - 4)));
+
+        assertFalse(Validation.isPasswordValid(null));
+        assertFalse(Validation.isPasswordValid("Abcde1!"));
+        assertFalse(Validation.isPasswordValid("Abcdef1!" + "x".repeat(Validation.PASSWORD_MAX_LENGTH - 7)));
+        assertFalse(Validation.isPasswordValid("abcdef1!"));
+        assertFalse(Validation.isPasswordValid("ABCDEF1!"));
+        assertFalse(Validation.isPasswordValid("Abcdefg!"));
+        assertFalse(Validation.isPasswordValid("Abcdef12"));
+        assertFalse(Validation.isPasswordValid("Abcdef1 "));
+        assertFalse(Validation.isPasswordValid("Abcdef1!\n"));
+        assertFalse(Validation.isPasswordValid("Abc def1!"));
+    }
+
+    @Test
+    void shouldMatchRegexForRandomInput() {
+        Random random = new Random(1);
+        // every char class of the patterns, some of the chars they exclude and a surrogate pair
+        String alphabet = "aZ09_-.@:%+~#=!§€´/ \n äß😀";
+
+        assertSameAsRegex(Validation::isTopicValid, Utils.TOPIC_REGEX, random, alphabet, 10, 300);
+        assertSameAsRegex(Validation::isConsumerOrGroupNameValid, Utils.CONSUMER_AND_GROUP_REGEX, random, alphabet, 10, 300);
+        assertSameAsRegex(Validation::isEmailValid, Utils.EMAIL_REGEX, random, "a-._@.", 16, 20);
+        assertSameAsRegex(Validation::isEmailValid, Utils.EMAIL_REGEX, random, alphabet, 16, 20);
+        assertSameAsRegex(Validation::isPasswordValid, Utils.PASSWORD_REGEX, random, alphabet, 80, 10);
+    }
+
+    /**
+     * Logs duration and allocation of validating typical input compared to {@code String.matches} (the removed
+     * {@code Utils.isEmailValid}) and a precompiled pattern, and of worst case input (1 MiB, invalid only at the end).
+     */
+    @Benchmark
+    void benchmark() {
+        String email = "max.mustermann@mail.example.com";
+        String password = "Correct-Horse-Battery-Staple-1";
+        String topic = "orders.eu-west-1";
+
+        benchmark("email", email, Validation::isEmailValid, Utils.EMAIL_REGEX, 100_000);
+        benchmark("password", password, Validation::isPasswordValid, Utils.PASSWORD_REGEX, 100_000);
+        benchmark("topic", topic, Validation::isTopicValid, Utils.TOPIC_REGEX, 100_000);
+
+        int worstCaseLength = 1024 * 1024;
+        benchmark("worst case email", "a@" + "a-".repeat(worstCaseLength / 2) + "!", Validation::isEmailValid, Utils.EMAIL_REGEX, 20);
+        benchmark("worst case password", "a".repeat(worstCaseLength), Validation::isPasswordValid, Utils.PASSWORD_REGEX, 20);
+    }
+
+
+    private static void assertSameAsRegex(Predicate<String> validation, String regex, Random random, String alphabet, int maxLength, int repeat) {
+        Pattern pattern = Pattern.compile(regex);
+        int[] codePoints = alphabet.codePoints().toArray();
+
+        for (int i = 0; i < 200_000; i++) {
+            StringBuilder input = new StringBuilder();
+            int length = random.nextInt(maxLength + 1);
+            for (int j = 0; j < length; j++) {
+                int codePoint = codePoints[random.nextInt(codePoints.length)];
+                // case: long runs, to cross length limits
+                int count = random.nextInt(10) == 0 ? 1 + random.nextInt(repeat) : 1;
+                for (int k = 0; k < count; k++)
+                    input.appendCodePoint(codePoint);
+            }
+
+            String str = input.toString();
+            assertEquals(pattern.matcher(str).matches(), validation.test(str), () -> "'%s' with pattern %s".formatted(str, regex));
+        }
+    }
+
+    private static void benchmark(String name, String input, Predicate<String> validation, String regex, int runs) {
+        Pattern pattern = Pattern.compile(regex);
+        Runnable validate = () -> validation.test(input);
+        Runnable compiledPattern = () -> pattern.matcher(input).matches();
+        Runnable stringMatches = () -> input.matches(regex);
+
+        // warmup
+        measure(validate, runs);
+        measure(compiledPattern, runs);
+        measure(stringMatches, runs);
+
+        long[] validateResult = measure(validate, runs);
+        long[] compiledPatternResult = measure(compiledPattern, runs);
+        long[] stringMatchesResult = measure(stringMatches, runs);
+
+        log.info("{} ({} chars): Validation {}ns / {} bytes, compiled pattern {}ns / {} bytes, String.matches {}ns / {} bytes per call",
+            name, input.length(),
+            validateResult[1], validateResult[0],
+            compiledPatternResult[1], compiledPatternResult[0],
+            stringMatchesResult[1], stringMatchesResult[0]);
+
+        assertTrue(validateResult[0] < 16, "Expected no allocations");
+        assertTrue(validateResult[1] < stringMatchesResult[1], "Expected to be faster than String.matches");
+    }
+
+    /**
+     * @return [allocated bytes per run, nanos per run]
+     */
+    private static long[] measure(Runnable runnable, int runs) {
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().threadId();
+
+        long allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < runs; i++)
+            runnable.run();
+        long durationNanos = System.nanoTime() - startNanos;
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        return new long[] {allocated / runs, durationNanos / runs};
+    }
+}
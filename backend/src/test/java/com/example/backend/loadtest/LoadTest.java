@@ -0,0 +1,569 @@
+package com.example.backend.loadtest;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.jspecify.annotations.Nullable;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.example.backend.BackendApplication;
+import com.example.backend.Oauth2TestConfig;
+import com.example.backend.PandaproxyStub;
+import com.example.backend.config.CustomLoginSuccessHandler;
+import com.example.backend.helpers.Utils;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.slf4j.Slf4j;
+
+
+/**
+ * Load generator for the login -> token -> proxy flow, run with {@code ./gradlew loadTest}. Starts the backend in this jvm together
+ * with an {@link Oauth2ProviderStub} (the "dummy" registration of {@link Oauth2TestConfig}) and a {@link PandaproxyStub} that
+ * validates tokens against the backend's jwks. <p>
+ *
+ * Every simulated user is a virtual thread that logs in once with oauth2 and then, until the duration is over, repeatedly <p>
+ * - fetches an access token from "/jwt"<p>
+ * - resolves "/.well-known/openid-configuration" and its "jwks_uri" (with "If-None-Match", like a caching client)<p>
+ * - produces one record through the pandaproxy stub with that token<p>
+ *
+ * Latencies are recorded per operation in HdrHistograms. Writes "{name}.json" (throughput, latency percentiles, error rates,
+ * gc and allocation) and one "{name}-{operation}.hgrm" percentile distribution per operation to {@code loadTest.reportDir}. Gc and
+ * allocation numbers cover the whole jvm, i.e. the load generator and the stubs too. <p>
+ *
+ * Settings are system properties, see {@link Settings}. Backend settings can be passed as system properties as well, they override
+ * the ".env" file. Since all users share one ip, rate limiting is practically disabled unless "RATE_LIMIT_REQUESTS_PER_SECOND" is
+ * passed.
+ *
+ * @since latest
+ */
+@Slf4j
+public class LoadTest {
+
+    public static final String TOPIC = "load-test";
+
+    private static final String REGISTRATION_ID = "dummy";
+
+    private final ObjectMapper objectMapper = Utils.getDefaultObjectMapper();
+
+    private final Settings settings;
+
+    private final String baseUrl;
+
+    private final String pandaproxyBaseUrl;
+
+    private final HttpClient httpClient;
+
+    /** In insertion order */
+    private final Map<String, Operation> operations = new LinkedHashMap<>();
+
+    private final Operation loginOperation = addOperation("login");
+    private final Operation jwtOperation = addOperation("jwt");
+    private final Operation discoveryOperation = addOperation("discovery");
+    private final Operation jwksOperation = addOperation("jwks");
+    private final Operation proxyOperation = addOperation("proxy");
+
+
+    private LoadTest(Settings settings, String baseUrl, String pandaproxyBaseUrl) {
+        this.settings = settings;
+        this.baseUrl = baseUrl;
+        this.pandaproxyBaseUrl = pandaproxyBaseUrl;
+        this.httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .followRedirects(HttpClient.Redirect.NEVER)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+    }
+
+
+    public static void main(String[] args) throws Exception {
+        Settings settings = Settings.fromSystemProperties();
+        int port = getFreePort();
+        String baseUrl = "http://localhost:" + port;
+
+        try (Oauth2ProviderStub oauth2ProviderStub = new Oauth2ProviderStub();
+             PandaproxyStub pandaproxyStub = PandaproxyStub.withJwksUri(baseUrl + "/.well-known/jwks")) {
+
+            pandaproxyStub.createTopic(TOPIC, 3);
+            pandaproxyStub.setLatency(settings.proxyMinLatencyMs(), settings.proxyMaxLatencyMs());
+            pandaproxyStub.setErrorRate(settings.proxyErrorRate(), 503);
+
+            // override .env
+            System.setProperty("PORT", Integer.toString(port));
+            System.setProperty("BASE_URL", baseUrl);
+            System.setProperty("BASE_URL_DOCKER", baseUrl);
+            System.setProperty("PANDAPROXY_BASE_URL", pandaproxyStub.getBaseUrl());
+            System.setProperty("OAUTH2_TEST_PROVIDER_BASE_URL", oauth2ProviderStub.getBaseUrl());
+            // all users share one ip, keep the limits only if passed explicitly
+            if (System.getProperty("RATE_LIMIT_REQUESTS_PER_SECOND") == null) {
+                System.setProperty("RATE_LIMIT_REQUESTS_PER_SECOND", "1000000");
+                System.setProperty("RATE_LIMIT_BURST", "1000000");
+            }
+
+            try (ConfigurableApplicationContext context = new SpringApplicationBuilder(BackendApplication.class, Oauth2TestConfig.class).run(args)) {
+                LoadTest loadTest = new LoadTest(settings, baseUrl, pandaproxyStub.getBaseUrl());
+                Map<String, Object> report = loadTest.run();
+
+                Map<String, Object> stubs = new LinkedHashMap<>();
+                stubs.put("pandaproxy", pandaproxyStub.getMetrics());
+                stubs.put("oauth2ProviderRequests", oauth2ProviderStub.getRequestCount());
+                report.put("stubs", stubs);
+
+                loadTest.writeReport(report);
+            }
+        }
+
+        // spring may leave non daemon threads behind
+        System.exit(0);
+    }
+
+
+    /**
+     * Start all users (spread over the ramp up time) and wait until they are done.
+     *
+     * @return report without the stub metrics
+     */
+    private Map<String, Object> run() {
+        log.info("Starting {} users for {}s (ramp up {}s, think time {}ms) against {}",
+            this.settings.users(), this.settings.durationSeconds(), this.settings.rampUpSeconds(), this.settings.thinkTimeMs(), this.baseUrl);
+
+        List<GarbageCollectorMXBean> garbageCollectors = ManagementFactory.getGarbageCollectorMXBeans();
+        Map<String, long[]> gcBefore = gcSnapshot(garbageCollectors);
+        long allocatedBytesBefore = getTotalAllocatedBytes();
+
+        long startNanos = System.nanoTime();
+        long endNanos = startNanos + TimeUnit.SECONDS.toNanos(this.settings.durationSeconds());
+        long rampUpNanos = TimeUnit.SECONDS.toNanos(this.settings.rampUpSeconds());
+
+        try (var userExecutor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < this.settings.users(); i++) {
+                String userName = "load-user-" + i;
+                long userStartNanos = startNanos + rampUpNanos * i / this.settings.users();
+
+                userExecutor.execute(() -> runUser(userName, userStartNanos, endNanos));
+            }
+        }
+
+        double durationSeconds = (System.nanoTime() - startNanos) / 1e9;
+        long allocatedBytes = getTotalAllocatedBytes() - allocatedBytesBefore;
+        Map<String, long[]> gcAfter = gcSnapshot(garbageCollectors);
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("javaVersion", Runtime.version().toString());
+        report.put("users", this.settings.users());
+        report.put("durationSeconds", durationSeconds);
+        report.put("rampUpSeconds", this.settings.rampUpSeconds());
+        report.put("thinkTimeMs", this.settings.thinkTimeMs());
+        report.put("proxyLatencyMs", List.of(this.settings.proxyMinLatencyMs(), this.settings.proxyMaxLatencyMs()));
+        report.put("proxyErrorRate", this.settings.proxyErrorRate());
+
+        Map<String, Object> operationReports = new LinkedHashMap<>();
+        this.operations.forEach((name, operation) -> {
+            operationReports.put(name, operation.toReport(durationSeconds));
+            log.info("{}: {}", name, operationReports.get(name));
+        });
+        report.put("operations", operationReports);
+
+        Map<String, Object> gcReport = new LinkedHashMap<>();
+        long collections = 0;
+        long collectionTimeMs = 0;
+        for (Map.Entry<String, long[]> entry : gcAfter.entrySet()) {
+            long[] before = gcBefore.getOrDefault(entry.getKey(), new long[2]);
+            long count = entry.getValue()[0] - before[0];
+            long timeMs = entry.getValue()[1] - before[1];
+            gcReport.put(entry.getKey(), Map.of("collections", count, "timeMs", timeMs));
+            collections += count;
+            collectionTimeMs += timeMs;
+        }
+        report.put("gc", Map.of("collections", collections, "timeMs", collectionTimeMs, "collectors", gcReport));
+        report.put("allocation", Map.of(
+            "allocatedMb", allocatedBytes / (1024 * 1024),
+            "allocatedMbPerSecond", Math.round(allocatedBytes / (1024 * 1024) / durationSeconds),
+            "heapUsedMbAtEnd", ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() / (1024 * 1024)));
+
+        log.info("gc: {} collections, {}ms. Allocated {}MB", collections, collectionTimeMs, allocatedBytes / (1024 * 1024));
+
+        return report;
+    }
+
+
+    private void runUser(String userName, long startNanos, long endNanos) {
+        try {
+            sleepNanos(startNanos - System.nanoTime());
+
+            Session session = new Session(userName);
+            while (!measure(this.loginOperation, () -> login(session))) {
+                if (System.nanoTime() >= endNanos)
+                    return;
+
+                sleepNanos(TimeUnit.MILLISECONDS.toNanos(Math.max(100, this.settings.thinkTimeMs())));
+            }
+
+            while (System.nanoTime() < endNanos) {
+                if (measure(this.jwtOperation, () -> fetchAccessToken(session))) {
+                    measure(this.discoveryOperation, () -> fetchDiscoveryDocument(session));
+                    measure(this.jwksOperation, () -> fetchJwks(session));
+                    measure(this.proxyOperation, () -> produce(session));
+                }
+
+                sleepNanos(TimeUnit.MILLISECONDS.toNanos(this.settings.thinkTimeMs()));
+            }
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    /**
+     * Authorization code flow like a browser: backend -> provider (user picked with a login hint) -> backend callback, which
+     * redirects to the frontend on success.
+     */
+    private void login(Session session) throws IOException, InterruptedException, UnexpectedStatusException {
+        HttpResponse<Void> authorizationResponse = sendToBackend(session, HttpRequest.newBuilder(URI.create(this.baseUrl + "/oauth2/authorization/" + REGISTRATION_ID)), BodyHandlers.discarding());
+        String providerLocation = getRedirectOrThrow(authorizationResponse);
+
+        HttpResponse<Void> providerResponse = this.httpClient.send(HttpRequest.newBuilder(Oauth2ProviderStub.withLoginHint(providerLocation, session.userName)).build(), BodyHandlers.discarding());
+        String callbackLocation = getRedirectOrThrow(providerResponse);
+
+        HttpResponse<Void> callbackResponse = sendToBackend(session, HttpRequest.newBuilder(URI.create(callbackLocation)), BodyHandlers.discarding());
+        String frontendLocation = getRedirectOrThrow(callbackResponse);
+
+        // case: redirected to the login page with an error status
+        if (frontendLocation.contains(CustomLoginSuccessHandler.OAUTH2_LOGIN_ERROR_STATUS_URL_QUERY_PARAM))
+            throw new UnexpectedStatusException(401);
+    }
+
+
+    private void fetchAccessToken(Session session) throws IOException, InterruptedException, UnexpectedStatusException {
+        HttpResponse<String> response = sendToBackend(session, HttpRequest.newBuilder(URI.create(this.baseUrl + "/jwt")), BodyHandlers.ofString());
+        assertStatusOrThrow(response, 200);
+
+        String body = response.body().strip();
+        session.accessToken = body.startsWith("\"") ? body.substring(1, body.length() - 1) : body;
+    }
+
+
+    private void fetchDiscoveryDocument(Session session) throws IOException, InterruptedException, UnexpectedStatusException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(this.baseUrl + "/.well-known/openid-configuration"));
+        if (session.discoveryEtag != null)
+            request.header("If-None-Match", session.discoveryEtag);
+
+        HttpResponse<byte[]> response = this.httpClient.send(request.build(), BodyHandlers.ofByteArray());
+
+        // case: cached document still valid
+        if (response.statusCode() == 304)
+            return;
+
+        assertStatusOrThrow(response, 200);
+        JsonNode discoveryDocument = this.objectMapper.readTree(response.body());
+        session.jwksUri = discoveryDocument.get("jwks_uri").asText();
+        session.discoveryEtag = response.headers().firstValue("ETag").orElse(null);
+    }
+
+
+    private void fetchJwks(Session session) throws IOException, InterruptedException, UnexpectedStatusException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(session.jwksUri == null ? this.baseUrl + "/.well-known/jwks" : session.jwksUri));
+        if (session.jwksEtag != null)
+            request.header("If-None-Match", session.jwksEtag);
+
+        HttpResponse<byte[]> response = this.httpClient.send(request.build(), BodyHandlers.ofByteArray());
+
+        // case: cached keys still valid
+        if (response.statusCode() == 304)
+            return;
+
+        assertStatusOrThrow(response, 200);
+        if (!this.objectMapper.readTree(response.body()).has("keys"))
+            throw new UnexpectedStatusException(500);
+
+        session.jwksEtag = response.headers().firstValue("ETag").orElse(null);
+    }
+
+
+    private void produce(Session session) throws IOException, InterruptedException, UnexpectedStatusException {
+        String body = "{\"records\":[{\"value\":{\"user\":\"%s\",\"n\":%d}}]}".formatted(session.userName, session.producedCount++);
+
+        HttpResponse<Void> response = this.httpClient.send(
+            HttpRequest.newBuilder(URI.create(this.pandaproxyBaseUrl + "/topics/" + TOPIC))
+                .header("Authorization", "Bearer " + session.accessToken)
+                .header("Content-Type", "application/vnd.kafka.json.v2+json")
+                .POST(HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8))
+                .build(),
+            BodyHandlers.discarding());
+
+        assertStatusOrThrow(response, 200);
+    }
+
+
+    /**
+     * Sends the session's cookies and stores the ones the backend sets.
+     */
+    private <T> HttpResponse<T> sendToBackend(Session session, HttpRequest.Builder request, HttpResponse.BodyHandler<T> bodyHandler) throws IOException, InterruptedException {
+        if (!session.cookies.isEmpty())
+            request.header("Cookie", String.join("; ", session.cookies.entrySet().stream().map(cookie -> cookie.getKey() + "=" + cookie.getValue()).toList()));
+
+        HttpResponse<T> response = this.httpClient.send(request.build(), bodyHandler);
+
+        for (String setCookie : response.headers().allValues("Set-Cookie")) {
+            String nameAndValue = setCookie.split(";", 2)[0];
+            int equalsIndex = nameAndValue.indexOf('=');
+            if (equalsIndex > 0)
+                session.cookies.put(nameAndValue.substring(0, equalsIndex).strip(), nameAndValue.substring(equalsIndex + 1).strip());
+        }
+
+        return response;
+    }
+
+
+    /**
+     * Record the latency of {@code action} and count failures by status ("exception" if no response was received).
+     *
+     * @return {@code true} if {@code action} succeeded
+     */
+    private boolean measure(Operation operation, Action action) throws InterruptedException {
+        long startNanos = System.nanoTime();
+
+        try {
+            action.run();
+            operation.histogram.recordValue(Math.max(1, (System.nanoTime() - startNanos) / 1000));
+            operation.count.increment();
+
+            return true;
+
+        } catch (UnexpectedStatusException e) {
+            operation.countError(Integer.toString(e.status));
+
+        } catch (IOException | RuntimeException e) {
+            operation.countError("exception");
+        }
+
+        return false;
+    }
+
+
+    private void writeReport(Map<String, Object> report) throws IOException {
+        File reportDir = new File(this.settings.reportDir());
+        reportDir.mkdirs();
+
+        File reportFile = new File(reportDir, this.settings.name() + ".json");
+        this.objectMapper.writerWithDefaultPrettyPrinter().writeValue(reportFile, report);
+
+        for (Map.Entry<String, Operation> entry : this.operations.entrySet())
+            try (PrintStream out = new PrintStream(new File(reportDir, "%s-%s.hgrm".formatted(this.settings.name(), entry.getKey())), StandardCharsets.UTF_8)) {
+                // microseconds to milliseconds
+                entry.getValue().histogram.outputPercentileDistribution(out, 1000.0);
+            }
+
+        log.info("Wrote {}", reportFile.getAbsolutePath());
+    }
+
+
+    private Operation addOperation(String name) {
+        Operation operation = new Operation();
+        this.operations.put(name, operation);
+
+        return operation;
+    }
+
+
+    private static String getRedirectOrThrow(HttpResponse<?> response) throws UnexpectedStatusException {
+        if (response.statusCode() / 100 != 3)
+            throw new UnexpectedStatusException(response.statusCode());
+
+        return response.headers().firstValue("Location").orElseThrow(() -> new UnexpectedStatusException(response.statusCode()));
+    }
+
+
+    private static void assertStatusOrThrow(HttpResponse<?> response, int expectedStatus) throws UnexpectedStatusException {
+        if (response.statusCode() != expectedStatus)
+            throw new UnexpectedStatusException(response.statusCode());
+    }
+
+
+    /**
+     * @return collector name -> [collections, time in ms]
+     */
+    private static Map<String, long[]> gcSnapshot(List<GarbageCollectorMXBean> garbageCollectors) {
+        Map<String, long[]> snapshot = new TreeMap<>();
+        for (GarbageCollectorMXBean garbageCollector : garbageCollectors)
+            snapshot.put(garbageCollector.getName(), new long[] {garbageCollector.getCollectionCount(), garbageCollector.getCollectionTime()});
+
+        return snapshot;
+    }
+
+
+    /**
+     * @return approximate bytes allocated by all threads since the jvm started, -1 if not supported
+     */
+    private static long getTotalAllocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getTotalThreadAllocatedBytes();
+    }
+
+
+    private static void sleepNanos(long nanos) throws InterruptedException {
+        if (nanos > 0)
+            Thread.sleep(Duration.ofNanos(nanos));
+    }
+
+
+    private static int getFreePort() throws IOException {
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            return serverSocket.getLocalPort();
+        }
+    }
+
+
+    /**
+     * Read from system properties (defaults in brackets), passed by the gradle task as {@code -PloadTestUsers=...} etc.: <p>
+     *
+     * - "loadTest.users" (100)<p>
+     * - "loadTest.durationSeconds" (30), including the ramp up<p>
+     * - "loadTest.rampUpSeconds" (5), users are started evenly spread over this time<p>
+     * - "loadTest.thinkTimeMs" (100), pause of every user between two iterations<p>
+     * - "loadTest.proxyLatencyMs" ("1-5"), latency range of the pandaproxy stub<p>
+     * - "loadTest.proxyErrorRate" (0), share of pandaproxy stub requests failing with 503<p>
+     * - "loadTest.reportDir" ("build/reports/load-test")<p>
+     * - "loadTest.name" ("load-test"), file name of the reports
+     */
+    private record Settings(
+        int users,
+        long durationSeconds,
+        long rampUpSeconds,
+        long thinkTimeMs,
+        long proxyMinLatencyMs,
+        long proxyMaxLatencyMs,
+        double proxyErrorRate,
+        String reportDir,
+        String name
+    ) {
+
+        private static Settings fromSystemProperties() {
+            String[] proxyLatencyMs = System.getProperty("loadTest.proxyLatencyMs", "1-5").split("-", 2);
+
+            return new Settings(
+                Integer.parseInt(System.getProperty("loadTest.users", "100")),
+                Long.parseLong(System.getProperty("loadTest.durationSeconds", "30")),
+                Long.parseLong(System.getProperty("loadTest.rampUpSeconds", "5")),
+                Long.parseLong(System.getProperty("loadTest.thinkTimeMs", "100")),
+                Long.parseLong(proxyLatencyMs[0].strip()),
+                Long.parseLong(proxyLatencyMs[proxyLatencyMs.length - 1].strip()),
+                Double.parseDouble(System.getProperty("loadTest.proxyErrorRate", "0")),
+                System.getProperty("loadTest.reportDir", "build/reports/load-test"),
+                System.getProperty("loadTest.name", "load-test"));
+        }
+    }
+
+
+    /**
+     * State of one simulated user, only used by its own virtual thread.
+     */
+    private static class Session {
+
+        private final String userName;
+
+        /** Backend cookies, e.g. "JSESSIONID" */
+        private final Map<String, String> cookies = new LinkedHashMap<>();
+
+        @Nullable
+        private String accessToken;
+
+        @Nullable
+        private String discoveryEtag;
+
+        @Nullable
+        private String jwksUri;
+
+        @Nullable
+        private String jwksEtag;
+
+        private long producedCount;
+
+
+        private Session(String userName) {
+            this.userName = userName;
+        }
+    }
+
+
+    private static class Operation {
+
+        /** Latencies in microseconds, resizes itself */
+        private final Histogram histogram = new ConcurrentHistogram(3);
+
+        private final LongAdder count = new LongAdder();
+
+        /** Status (or "exception") -> count */
+        private final ConcurrentMap<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+
+        private void countError(String status) {
+            this.errors.computeIfAbsent(status, key -> new LongAdder()).increment();
+        }
+
+        private Map<String, Object> toReport(double durationSeconds) {
+            long successCount = this.count.sum();
+            long errorCount = this.errors.values().stream().mapToLong(LongAdder::sum).sum();
+            Map<String, Long> errorsByStatus = new TreeMap<>();
+            this.errors.forEach((status, errors) -> errorsByStatus.put(status, errors.sum()));
+
+            Map<String, Object> latencyMs = new LinkedHashMap<>();
+            latencyMs.put("mean", this.histogram.getMean() / 1000);
+            for (double percentile : new double[] {50, 90, 99, 99.9})
+                latencyMs.put("p" + (percentile == Math.rint(percentile) ? Long.toString((long) percentile) : Double.toString(percentile)), this.histogram.getValueAtPercentile(percentile) / 1000.0);
+            latencyMs.put("max", this.histogram.getMaxValue() / 1000.0);
+
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("count", successCount);
+            report.put("errors", errorCount);
+            report.put("errorRate", successCount + errorCount == 0 ? 0 : (double) errorCount / (successCount + errorCount));
+            report.put("errorsByStatus", errorsByStatus);
+            report.put("throughputPerSecond", successCount / durationSeconds);
+            report.put("latencyMs", latencyMs);
+
+            return report;
+        }
+    }
+
+
+    @FunctionalInterface
+    private interface Action {
+
+        void run() throws IOException, InterruptedException, UnexpectedStatusException;
+    }
+
+
+    private static class UnexpectedStatusException extends Exception {
+
+        private final int status;
+
+
+        private UnexpectedStatusException(int status) {
+            super("Unexpected status " + status);
+            this.status = status;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.backend.loadtest;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.example.backend.Oauth2TestConfig;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+
+/**
+ * Minimal authorization code provider for the "dummy" registration of {@link Oauth2TestConfig}, serving "/fake-auth",
+ * "/fake-token" and "/fake-userinfo". <p>
+ *
+ * There is no login form, the "browser" picks the user with a {@code login_hint} query param on "/fake-auth" (default "user").
+ * The user name is the "sub" attribute of the user info. Codes are single use, access tokens stay valid until {@link #close()}.
+ *
+ * @since latest
+ */
+public class Oauth2ProviderStub implements AutoCloseable {
+
+    private final HttpServer httpServer;
+
+    private final ExecutorService requestExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /** Code -> user name */
+    private final ConcurrentMap<String, String> codes = new ConcurrentHashMap<>();
+
+    /** Access token -> user name */
+    private final ConcurrentMap<String, String> accessTokens = new ConcurrentHashMap<>();
+
+    private final LongAdder requestCount = new LongAdder();
+
+
+    /**
+     * Start listening on a random local port.
+     *
+     * @throws IOException if the server cannot be started
+     */
+    public Oauth2ProviderStub() throws IOException {
+        this.httpServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        this.httpServer.createContext("/fake-auth", this::handleAuthorization);
+        this.httpServer.createContext("/fake-token", this::handleToken);
+        this.httpServer.createContext("/fake-userinfo", this::handleUserInfo);
+        this.httpServer.setExecutor(this.requestExecutor);
+        this.httpServer.start();
+    }
+
+
+    /**
+     * @return e.g. "http://localhost:12345", use as {@code OAUTH2_TEST_PROVIDER_BASE_URL}
+     */
+    public String getBaseUrl() {
+        return "http://localhost:" + this.httpServer.getAddress().getPort();
+    }
+
+
+    public long getRequestCount() {
+        return this.requestCount.sum();
+    }
+
+
+    /**
+     * The "browser" part of a login: pick the user on the provider's side.
+     *
+     * @param authorizationLocation "Location" of the backend's redirect to "/fake-auth"
+     * @param userName to log in as
+     * @return {@code authorizationLocation} with the login hint
+     */
+    public static URI withLoginHint(String authorizationLocation, String userName) {
+        return URI.create(authorizationLocation + (authorizationLocation.contains("?") ? "&" : "?") + "login_hint=" + URLEncoder.encode(userName, StandardCharsets.UTF_8));
+    }
+
+
+    @Override
+    public void close() {
+        this.httpServer.stop(0);
+        this.requestExecutor.shutdownNow();
+    }
+
+
+    /**
+     * Redirect back to the "redirect_uri" with a new code, like a provider after the user logged in and consented.
+     */
+    private void handleAuthorization(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            this.requestCount.increment();
+            Map<String, String> queryParams = parseForm(exchange.getRequestURI().getRawQuery());
+
+            String redirectUri = queryParams.get("redirect_uri");
+            if (redirectUri == null) {
+                exchange.sendResponseHeaders(400, -1);
+                return;
+            }
+
+            String code = UUID.randomUUID().toString();
+            this.codes.put(code, queryParams.getOrDefault("login_hint", "user"));
+
+            String state = queryParams.get("state") == null ? "" : "&state=" + URLEncoder.encode(queryParams.get("state"), StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Location", redirectUri + (redirectUri.contains("?") ? "&" : "?") + "code=" + code + state);
+            exchange.sendResponseHeaders(302, -1);
+        }
+    }
+
+
+    /**
+     * Exchange a code for an access token ("authorization_code" grant, client authentication is not checked).
+     */
+    private void handleToken(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            this.requestCount.increment();
+            Map<String, String> form = parseForm(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+
+            String userName = form.get("code") == null ? null : this.codes.remove(form.get("code"));
+            if (!"authorization_code".equals(form.get("grant_type")) || userName == null) {
+                writeJson(exchange, 400, "{\"error\":\"invalid_grant\"}");
+                return;
+            }
+
+            String accessToken = UUID.randomUUID().toString();
+            this.accessTokens.put(accessToken, userName);
+
+            writeJson(exchange, 200, "{\"access_token\":\"%s\",\"token_type\":\"Bearer\",\"expires_in\":3600}".formatted(accessToken));
+        }
+    }
+
+
+    private void handleUserInfo(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            this.requestCount.increment();
+            String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+
+            String userName = authorization == null || !authorization.startsWith("Bearer ") ? null : this.accessTokens.get(authorization.substring(7));
+            if (userName == null) {
+                writeJson(exchange, 401, "{\"error\":\"invalid_token\"}");
+                return;
+            }
+
+            writeJson(exchange, 200, "{\"sub\":\"%s\",\"name\":\"%s\",\"email\":\"%s@example.com\"}".formatted(userName, userName, userName));
+        }
+    }
+
+
+    private static void writeJson(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+
+    /**
+     * @param form url encoded, e.g. a raw query. May be {@code null}
+     */
+    private static Map<String, String> parseForm(String form) {
+        Map<String, String> params = new HashMap<>();
+        if (form == null || form.isBlank())
+            return params;
+
+        for (String param : form.split("&")) {
+            int equalsIndex = param.indexOf('=');
+            if (equalsIndex > 0)
+                params.put(
+                    URLDecoder.decode(param.substring(0, equalsIndex), StandardCharsets.UTF_8),
+                    URLDecoder.decode(param.substring(equalsIndex + 1), StandardCharsets.UTF_8));
+        }
+
+        return params;
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.backend.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.backend.TestBeans;
+import com.example.backend.config.LoadSheddingFilter;
+import com.example.backend.services.AdaptiveConcurrencyLimiter.Priority;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+
+/**
+ * Drives {@link AdaptiveConcurrencyLimiter} window by window instead of waiting for the scheduler.
+ * 
+ * @since latest
+ */
+@Slf4j
+class AdaptiveConcurrencyLimiterTests {
+
+    private static final int INITIAL_LIMIT = 20;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private AdaptiveConcurrencyLimiter adaptiveConcurrencyLimiter;
+
+
+    @BeforeEach
+    void setup() {
+        this.meterRegistry = new SimpleMeterRegistry();
+
+        this.adaptiveConcurrencyLimiter = TestBeans.of(new AdaptiveConcurrencyLimiter())
+            .with("meterRegistry", this.meterRegistry)
+            .with("LOAD_SHEDDING_INITIAL_LIMIT", INITIAL_LIMIT)
+            .with("LOAD_SHEDDING_MIN_LIMIT", 5)
+            .with("LOAD_SHEDDING_MAX_LIMIT", 200)
+            // updated manually
+            .with("LOAD_SHEDDING_WINDOW_MS", TimeUnit.HOURS.toMillis(1))
+            .init();
+    }
+
+
+    @AfterEach
+    void teardown() {
+        TestBeans.destroy(this.adaptiveConcurrencyLimiter);
+    }
+
+
+    @Test
+    void tryAcquire_shouldReserveHeadroomForHigherPriorities() {
+        assertEquals(INITIAL_LIMIT / 2, acquireAll(Priority.LOW));
+        assertEquals(INITIAL_LIMIT * 8 / 10 - INITIAL_LIMIT / 2, acquireAll(Priority.NORMAL));
+        assertEquals(INITIAL_LIMIT - INITIAL_LIMIT * 8 / 10, acquireAll(Priority.CRITICAL));
+        assertEquals(INITIAL_LIMIT, this.adaptiveConcurrencyLimiter.getInflight());
+
+        this.adaptiveConcurrencyLimiter.release(-1);
+        assertFalse(this.adaptiveConcurrencyLimiter.tryAcquire(Priority.LOW));
+        assertTrue(this.adaptiveConcurrencyLimiter.tryAcquire(Priority.CRITICAL));
+
+        // once when all were acquired, once after the release
+        assertEquals(2, (long) this.meterRegistry.counter("load.shedding.requests", "priority", "low", "outcome", "shed").count());
+        assertEquals(INITIAL_LIMIT - INITIAL_LIMIT * 8 / 10 + 1, (long) this.meterRegistry.counter("load.shedding.requests", "priority", "critical", "outcome", "admitted").count());
+    }
+
+
+    @Test
+    void updateLimit_shouldDecreaseOnQueueingAndGrowWhenStable() {
+        // baseline
+        for (int window = 0; window < 5; window++)
+            runWindow(INITIAL_LIMIT, 10);
+        double baselineLimit = this.adaptiveConcurrencyLimiter.getLimit();
+        assertTrue(baselineLimit > INITIAL_LIMIT, "" + baselineLimit);
+
+        // latency is up 10 times, requests are queueing
+        for (int window = 0; window < 10; window++)
+            runWindow((int) this.adaptiveConcurrencyLimiter.getLimit(), 100);
+        double overloadedLimit = this.adaptiveConcurrencyLimiter.getLimit();
+        assertTrue(overloadedLimit < baselineLimit * 0.75, "" + overloadedLimit);
+        assertTrue(this.meterRegistry.get("load.shedding.queueing.delay").gauge().value() > 0);
+
+        // recovered
+        for (int window = 0; window < 20; window++)
+            runWindow((int) this.adaptiveConcurrencyLimiter.getLimit(), 10);
+        assertTrue(this.adaptiveConcurrencyLimiter.getLimit() > overloadedLimit, "" + this.adaptiveConcurrencyLimiter.getLimit());
+
+        log.info("Limit baseline {}, overloaded {}, recovered {}", (int) baselineLimit, (int) overloadedLimit, (int) this.adaptiveConcurrencyLimiter.getLimit());
+    }
+
+
+    @Test
+    void updateLimit_shouldNotGrowIfLimitIsNotUsed() {
+        for (int window = 0; window < 10; window++)
+            runWindow(1, 10);
+
+        assertEquals(INITIAL_LIMIT, this.adaptiveConcurrencyLimiter.getLimit());
+    }
+
+
+    @Test
+    void filter_shouldShedWith503AndKeepCriticalPaths() throws Exception {
+        LoadSheddingFilter loadSheddingFilter = new LoadSheddingFilter();
+        ReflectionTestUtils.setField(loadSheddingFilter, "adaptiveConcurrencyLimiter", this.adaptiveConcurrencyLimiter);
+
+        // leave only the critical share
+        acquireAll(Priority.NORMAL);
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain filterChain = new MockFilterChain();
+        loadSheddingFilter.doFilter(new MockHttpServletRequest("GET", "/jwt"), response, filterChain);
+        assertNull(filterChain.getRequest());
+        assertEquals(503, response.getStatus());
+        assertEquals("1", response.getHeader("Retry-After"));
+
+        filterChain = new MockFilterChain();
+        loadSheddingFilter.doFilter(new MockHttpServletRequest("GET", "/.well-known/jwks"), new MockHttpServletResponse(), filterChain);
+        assertTrue(filterChain.getRequest() != null);
+
+        // released after the chain
+        assertEquals(INITIAL_LIMIT * 8 / 10, this.adaptiveConcurrencyLimiter.getInflight());
+    }
+
+
+    /**
+     * @return number of requests admitted until the first one was shed
+     */
+    private int acquireAll(Priority priority) {
+        int admitted = 0;
+        while (this.adaptiveConcurrencyLimiter.tryAcquire(priority))
+            admitted++;
+
+        return admitted;
+    }
+
+
+    /**
+     * Admit {@code concurrency} requests, release them with {@code rttMs} and close the window.
+     */
+    private void runWindow(int concurrency, long rttMs) {
+        for (int round = 0; round < 10; round++) {
+            int admitted = 0;
+            for (int i = 0; i < concurrency; i++)
+                if (this.adaptiveConcurrencyLimiter.tryAcquire(Priority.CRITICAL))
+                    admitted++;
+
+            for (int i = 0; i < admitted; i++)
+                this.adaptiveConcurrencyLimiter.release(TimeUnit.MILLISECONDS.toNanos(rttMs));
+        }
+
+        ReflectionTestUtils.invokeMethod(this.adaptiveConcurrencyLimiter, "updateLimit");
+    }
+}
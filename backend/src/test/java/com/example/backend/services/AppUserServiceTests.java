@@ -0,0 +1,269 @@
+package com.example.backend.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.DisabledException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.example.backend.Benchmark;
+import com.example.backend.TestBeans;
+import com.example.backend.config.BoundedBCryptPasswordEncoder;
+import com.example.backend.services.MailService.MailType;
+import com.example.backend.services.PrincipalAuthorityService.PrincipalAuthorities;
+
+import lombok.extern.slf4j.Slf4j;
+
+
+/**
+ * Runs {@link AppUserService} on an embedded H2 database. Logins go through spring's {@link DaoAuthenticationProvider}, like form
+ * login does.
+ *
+ * @since latest
+ */
+@Slf4j
+class AppUserServiceTests {
+
+    private static final String PASSWORD = "Password123.";
+
+    private static final int BCRYPT_STRENGTH = 6;
+
+    private EmbeddedDatabase database;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private MailService mailService;
+
+    private BoundedBCryptPasswordEncoder passwordEncoder;
+
+    private AppUserService appUserService;
+
+
+    @BeforeEach
+    void setup() {
+        this.database = TestBeans.newDatabase();
+        this.jdbcTemplate = new JdbcTemplate(this.database);
+
+        this.mailService = mock(MailService.class);
+        when(this.mailService.send(anyString(), any(), anyMap())).thenReturn(CompletableFuture.completedFuture(null));
+
+        this.appUserService = newAppUserService(60_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.passwordEncoder.close();
+        this.database.shutdown();
+    }
+
+
+    @Test
+    void register_shouldRequireConfirmation() {
+        this.appUserService.register("Max@Example.com", PASSWORD).join();
+
+        UserDetails user = this.appUserService.loadUserByUsername("max@example.com");
+        assertFalse(user.isEnabled());
+        assertThrows(DisabledException.class, () -> login("max@example.com", PASSWORD));
+
+        String token = getMailedToken("max@example.com", MailType.CONFIRM_ACCOUNT);
+        this.appUserService.confirmAccount(token);
+
+        assertTrue(this.appUserService.loadUserByUsername("MAX@example.com").isEnabled());
+        assertEquals("max@example.com", login("max@example.com", PASSWORD).getName());
+        assertTrue(login("max@example.com", PASSWORD).getAuthorities().stream().anyMatch(authority -> authority.getAuthority().equals("ROLE_USER")));
+
+        // used
+        assertThrows(ResponseStatusException.class, () -> this.appUserService.confirmAccount(token));
+    }
+
+    @Test
+    void register_duplicateEmail_shouldMailOwnerInstead() {
+        this.appUserService.register("max@example.com", PASSWORD).join();
+
+        // case: unconfirmed, new confirmation link
+        this.appUserService.register(" MAX@example.com", PASSWORD).join();
+        verify(this.mailService, times(2)).send(eq("max@example.com"), eq(MailType.CONFIRM_ACCOUNT), anyMap());
+
+        this.jdbcTemplate.update("UPDATE app_user SET confirmed = TRUE");
+
+        // case: confirmed, reset link and the password stays
+        this.appUserService.register("max@example.com", "Other" + PASSWORD).join();
+        getMailedToken("max@example.com", MailType.RESET_PASSWORD);
+        assertEquals("max@example.com", login("max@example.com", PASSWORD).getName());
+        assertThrows(BadCredentialsException.class, () -> login("max@example.com", "Other" + PASSWORD));
+    }
+
+    @Test
+    void register_invalidArgs_shouldThrow() {
+        assertThrows(IllegalArgumentException.class, () -> this.appUserService.register("no-email", PASSWORD));
+        assertThrows(IllegalArgumentException.class, () -> this.appUserService.register("max@example.com", "weak"));
+        assertThrows(IllegalArgumentException.class, () -> this.appUserService.register(null, PASSWORD));
+    }
+
+    @Test
+    void resetPassword_shouldReplacePasswordAndConfirm() {
+        this.appUserService.sendResetPasswordMail("unknown@example.com").join();
+        verify(this.mailService, never()).send(anyString(), eq(MailType.RESET_PASSWORD), anyMap());
+
+        this.appUserService.register("max@example.com", PASSWORD).join();
+        this.appUserService.sendResetPasswordMail("max@example.com").join();
+        String token = getMailedToken("max@example.com", MailType.RESET_PASSWORD);
+
+        assertThrows(IllegalArgumentException.class, () -> this.appUserService.resetPassword(token, "weak"));
+        assertThrows(ResponseStatusException.class, () -> this.appUserService.resetPassword("unknown", "NewPassword123."));
+        // token of the other type
+        assertThrows(ResponseStatusException.class, () -> this.appUserService.confirmAccount(token));
+
+        this.appUserService.resetPassword(token, "NewPassword123.");
+
+        assertThrows(BadCredentialsException.class, () -> login("max@example.com", PASSWORD));
+        assertEquals("max@example.com", login("max@example.com", "NewPassword123.").getName());
+        assertThrows(ResponseStatusException.class, () -> this.appUserService.resetPassword(token, "NewPassword123."));
+    }
+
+    @Test
+    void resetPassword_expiredToken_shouldThrow() {
+        this.appUserService.register("max@example.com", PASSWORD).join();
+        String token = getMailedToken("max@example.com", MailType.CONFIRM_ACCOUNT);
+        this.jdbcTemplate.update("UPDATE app_user_token SET expiry_time = ?", System.currentTimeMillis() - 1);
+
+        assertThrows(ResponseStatusException.class, () -> this.appUserService.confirmAccount(token));
+        assertFalse(this.appUserService.loadUserByUsername("max@example.com").isEnabled());
+    }
+
+    @Test
+    void login_lowerHashStrength_shouldRehash() {
+        insertConfirmedUser("max@example.com", new BCryptPasswordEncoder(4).encode(PASSWORD));
+
+        login("max@example.com", PASSWORD);
+
+        String passwordHash = this.jdbcTemplate.queryForObject("SELECT password_hash FROM app_user WHERE email = ?", String.class, "max@example.com");
+        assertTrue(passwordHash.startsWith("$2a$0%d$".formatted(BCRYPT_STRENGTH)), passwordHash);
+        assertEquals("max@example.com", login("max@example.com", PASSWORD).getName());
+    }
+
+    @Test
+    void login_unknownUser_shouldThrow() {
+        assertThrows(BadCredentialsException.class, () -> login("unknown@example.com", PASSWORD));
+        assertThrows(UsernameNotFoundException.class, () -> this.appUserService.loadUserByUsername("unknown@example.com"));
+    }
+
+    /**
+     * Many users logging in repeatedly from virtual threads, once always running bcrypt and once with cached verifications.
+     */
+    @Benchmark
+    void login_throughput_benchmark() throws Exception {
+        int users = 50;
+        int loginsPerUser = 20;
+
+        String passwordHash = this.passwordEncoder.encode(PASSWORD);
+        for (int i = 0; i < users; i++)
+            insertConfirmedUser("user-%d@example.com".formatted(i), passwordHash);
+
+        this.passwordEncoder.close();
+        this.appUserService = newAppUserService(0);
+        double uncachedLoginsPerSecond = measureLogins(users, loginsPerUser);
+
+        this.passwordEncoder.close();
+        this.appUserService = newAppUserService(60_000);
+        double cachedLoginsPerSecond = measureLogins(users, loginsPerUser);
+
+        log.info("{} logins of {} users with bcrypt strength {}: {} logins/s always running bcrypt, {} logins/s with cached verifications",
+            users * loginsPerUser, users, BCRYPT_STRENGTH, Math.round(uncachedLoginsPerSecond), Math.round(cachedLoginsPerSecond));
+
+        assertTrue(cachedLoginsPerSecond > uncachedLoginsPerSecond, "Expected cached verifications to be faster");
+    }
+
+
+    /**
+     * @return logins per second
+     */
+    private double measureLogins(int users, int loginsPerUser) throws Exception {
+        long startNanos = System.nanoTime();
+
+        try (var callerExecutor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<CompletableFuture<Void>> futures = IntStream.range(0, users)
+                .mapToObj(user -> CompletableFuture.runAsync(() -> {
+                    for (int i = 0; i < loginsPerUser; i++)
+                        login("user-%d@example.com".formatted(user), PASSWORD);
+                }, callerExecutor))
+                .toList();
+
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(120, TimeUnit.SECONDS);
+        }
+
+        return users * loginsPerUser / ((System.nanoTime() - startNanos) / 1e9);
+    }
+
+    private Authentication login(String email, String password) {
+        DaoAuthenticationProvider authenticationProvider = new DaoAuthenticationProvider(this.appUserService);
+        authenticationProvider.setPasswordEncoder(this.passwordEncoder);
+        authenticationProvider.setUserDetailsPasswordService(this.appUserService);
+
+        return authenticationProvider.authenticate(UsernamePasswordAuthenticationToken.unauthenticated(email, password));
+    }
+
+    private void insertConfirmedUser(String email, String passwordHash) {
+        this.jdbcTemplate.update("INSERT INTO app_user (email, password_hash, confirmed) VALUES (?, ?, TRUE)", email, passwordHash);
+    }
+
+    @SuppressWarnings("unchecked")
+    private String getMailedToken(String email, MailType mailType) {
+        ArgumentCaptor<Map<String, String>> variablesCaptor = ArgumentCaptor.forClass(Map.class);
+        verify(this.mailService).send(eq(email), eq(mailType), variablesCaptor.capture());
+
+        String link = variablesCaptor.getValue().get("link");
+
+        return link.substring(link.indexOf("token=") + "token=".length());
+    }
+
+    private AppUserService newAppUserService(long cacheTtlMillis) {
+        this.passwordEncoder = new BoundedBCryptPasswordEncoder(BCRYPT_STRENGTH, Runtime.getRuntime().availableProcessors(), 1000, cacheTtlMillis, 1000);
+
+        PrincipalAuthorityService principalAuthorityService = mock(PrincipalAuthorityService.class);
+        when(principalAuthorityService.getAuthorities(anyString())).thenReturn(new PrincipalAuthorities(List.of(), List.of()));
+
+        return TestBeans.of(new AppUserService())
+            .with("jdbcTemplate", this.jdbcTemplate)
+            .with("transactionManager", new DataSourceTransactionManager(this.database))
+            .with("passwordEncoder", this.passwordEncoder)
+            .with("mailService", this.mailService)
+            .with("principalAuthorityService", principalAuthorityService)
+            .with("BASE_URL", "https://example.com")
+            .with("FRONTEND_BASE_URL", "https://app.example.com")
+            .with("APP_USER_TOKEN_TTL_HOURS", 24)
+            .init();
+    }
+}
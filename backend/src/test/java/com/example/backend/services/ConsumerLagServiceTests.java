@@ -0,0 +1,278 @@
+package com.example.backend.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.example.backend.TestBeans;
+import com.example.backend.dtos.ConsumerLagDto;
+import com.example.backend.services.OffsetSampler.OffsetSample;
+import com.example.backend.services.PrincipalAuthorityService.PrincipalAuthorities;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+
+/**
+ * Runs {@link ConsumerLagService} against a stub {@link OffsetSampler} serving offsets from in memory maps.
+ * 
+ * @since latest
+ */
+@Slf4j
+class ConsumerLagServiceTests {
+
+    private static final int PARTITIONS_PER_TOPIC = 3;
+
+    private static final PrincipalAuthorities ADMIN_AUTHORITIES = new PrincipalAuthorities(List.of(PrincipalAuthorityService.ADMIN_ROLE), List.of());
+
+    private ConsumerLagService consumerLagService;
+
+    private PrincipalAuthorityService principalAuthorityService;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private final Map<TopicPartition, Long> endOffsets = new ConcurrentHashMap<>();
+
+    /** Group -> partition -> committed offset */
+    private final Map<String, Map<TopicPartition, Long>> committedOffsets = new ConcurrentHashMap<>();
+
+    private final AtomicInteger sampleCount = new AtomicInteger();
+
+    private final AtomicInteger maxGroupsPerSample = new AtomicInteger();
+
+
+    @BeforeEach
+    void setup() {
+        OffsetSampler offsetSamplerStub = topicsByGroup -> {
+            this.sampleCount.incrementAndGet();
+            this.maxGroupsPerSample.accumulateAndGet(topicsByGroup.size(), Math::max);
+
+            Map<TopicPartition, Long> sampledEndOffsets = new HashMap<>();
+            this.endOffsets.forEach((topicPartition, endOffset) -> {
+                if (topicsByGroup.values().stream().anyMatch(topics -> topics.contains(topicPartition.topic())))
+                    sampledEndOffsets.put(topicPartition, endOffset);
+            });
+
+            Map<String, Map<TopicPartition, Long>> sampledCommittedOffsets = new HashMap<>();
+            topicsByGroup.keySet().forEach(group -> sampledCommittedOffsets.put(group, Map.copyOf(this.committedOffsets.getOrDefault(group, Map.of()))));
+
+            return new OffsetSample(sampledCommittedOffsets, sampledEndOffsets);
+        };
+
+        this.principalAuthorityService = mock(PrincipalAuthorityService.class);
+        when(this.principalAuthorityService.getAuthorities(anyString())).thenReturn(ADMIN_AUTHORITIES);
+
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.consumerLagService = TestBeans.of(new ConsumerLagService())
+            .with("offsetSampler", offsetSamplerStub)
+            .with("principalAuthorityService", this.principalAuthorityService)
+            .with("meterRegistry", this.meterRegistry)
+            // never triggers, samples are taken manually
+            .with("CONSUMER_LAG_SAMPLE_INTERVAL_MS", 3_600_000L)
+            .with("CONSUMER_LAG_HISTORY_SIZE", 5)
+            .with("CONSUMER_LAG_MAX_WATCHES_PER_PRINCIPAL", 300)
+            .with("CONSUMER_LAG_MAX_WATCHES", 10_000)
+            .init();
+    }
+
+
+    @AfterEach
+    void cleanup() {
+        TestBeans.destroy(this.consumerLagService);
+    }
+
+
+    @Test
+    void sample_shouldComputeLagRateAndTimeToCatchUp() throws Exception {
+        createTopic("orders");
+        this.consumerLagService.watch("alice", "billing", Set.of("orders"));
+
+        TopicPartition partition0 = new TopicPartition("orders", 0);
+        TopicPartition partition1 = new TopicPartition("orders", 1);
+
+        // 100 records behind, producing 10/s, consuming 30/s
+        this.endOffsets.put(partition0, 1_000L);
+        this.endOffsets.put(partition1, 50L);
+        commit("billing", partition0, 900L);
+        this.consumerLagService.sample(10_000);
+
+        this.endOffsets.put(partition0, 1_010L);
+        commit("billing", partition0, 930L);
+        this.consumerLagService.sample(11_000);
+
+        List<ConsumerLagDto> lags = this.consumerLagService.getLag("alice");
+        assertEquals(PARTITIONS_PER_TOPIC, lags.size());
+
+        ConsumerLagDto lag = lags.get(0);
+        assertEquals("billing", lag.getGroup());
+        assertEquals(0, lag.getPartition());
+        assertEquals(80, lag.getLag());
+        assertEquals(30.0, lag.getConsumeRate(), 0.001);
+        assertEquals(10.0, lag.getProduceRate(), 0.001);
+        assertEquals(4.0, lag.getTimeToCatchUp(), 0.001);
+        assertEquals(11_000, lag.getSampledAt());
+
+        // not committed yet, lag counts from the beginning and never catches up
+        ConsumerLagDto uncommittedLag = lags.get(1);
+        assertEquals(-1, uncommittedLag.getCommittedOffset());
+        assertEquals(50, uncommittedLag.getLag());
+        assertEquals(-1.0, uncommittedLag.getTimeToCatchUp());
+
+        assertEquals(80.0, this.meterRegistry.get("consumer.lag.max").gauge().value());
+        assertEquals(130.0, this.meterRegistry.get("consumer.lag.total").gauge().value());
+        // user supplied names are not used as tags
+        assertTrue(this.meterRegistry.getMeters().stream().allMatch(meter -> meter.getId().getTags().isEmpty()));
+    }
+
+
+    @Test
+    void sample_shouldKeepOnlyLatestSamples() throws Exception {
+        createTopic("orders");
+        this.consumerLagService.watch("alice", "billing", Set.of("orders"));
+
+        TopicPartition partition0 = new TopicPartition("orders", 0);
+
+        // history size is 5, rate should only be averaged over the last 5 samples
+        for (int second = 0; second < 10; second++) {
+            this.endOffsets.put(partition0, second < 5 ? 0L : second * 100L);
+            this.consumerLagService.sample(second * 1_000L);
+        }
+
+        ConsumerLagDto lag = this.consumerLagService.getLag("alice").get(0);
+        assertEquals(100.0, lag.getProduceRate(), 0.001);
+        assertEquals(-1.0, lag.getTimeToCatchUp());
+    }
+
+
+    @Test
+    void sample_shouldSampleAllGroupsOfAllUsersAtOnce() throws Exception {
+        int numGroups = 300;
+        int numUsers = 20;
+
+        for (int i = 0; i < 10; i++)
+            createTopic("topic-" + i);
+
+        // every user watches every group, on different topics
+        for (int user = 0; user < numUsers; user++)
+            for (int group = 0; group < numGroups; group++)
+                this.consumerLagService.watch("user-" + user, "group-" + group, new HashSet<>(List.of("topic-" + (group % 10), "topic-" + (user % 10))));
+
+        long start = System.nanoTime();
+        this.consumerLagService.sample(1_000);
+        this.consumerLagService.sample(2_000);
+        long nanos = System.nanoTime() - start;
+
+        assertEquals(2, this.sampleCount.get());
+        assertEquals(numGroups, this.maxGroupsPerSample.get());
+        // every 10th group of user-1 is watched on one topic only
+        assertEquals((numGroups * 2 - numGroups / 10) * PARTITIONS_PER_TOPIC, this.consumerLagService.getLag("user-1").size());
+
+        log.info("Sampled {} groups for {} users twice in {} ms, {} gauges", numGroups, numUsers, nanos / 1_000_000, this.meterRegistry.getMeters().size());
+    }
+
+
+    @Test
+    void unwatch_shouldRemoveUnwatchedPartitionsAndGauges() throws Exception {
+        createTopic("orders");
+        this.consumerLagService.watch("alice", "billing", Set.of("orders"));
+        this.consumerLagService.watch("bob", "billing", Set.of("orders"));
+        this.consumerLagService.sample(1_000);
+
+        assertTrue(this.consumerLagService.unwatch("alice", "billing"));
+        assertFalse(this.consumerLagService.unwatch("alice", "billing"));
+        this.consumerLagService.sample(2_000);
+
+        // still watched by bob
+        assertEquals(0, this.consumerLagService.getLag("alice").size());
+        assertEquals(PARTITIONS_PER_TOPIC, this.consumerLagService.getLag("bob").size());
+
+        this.consumerLagService.unwatch("bob", "billing");
+        this.consumerLagService.sample(3_000);
+
+        assertEquals(0.0, this.meterRegistry.get("consumer.lag.partitions").gauge().value());
+        assertEquals(0.0, this.meterRegistry.get("consumer.lag.watches").gauge().value());
+    }
+
+
+    @Test
+    void watch_missingScope_shouldThrow403() throws Exception {
+        createTopic("orders");
+        createTopic("payments");
+        when(this.principalAuthorityService.getAuthorities("carol")).thenReturn(new PrincipalAuthorities(List.of(), List.of("group:billing:read", "topic:orders:read", "topic:payments:write")));
+
+        assertStatus(HttpStatus.FORBIDDEN, () -> this.consumerLagService.watch("carol", "billing", Set.of("payments")));
+        assertStatus(HttpStatus.FORBIDDEN, () -> this.consumerLagService.watch("carol", "shipping", Set.of("orders")));
+        this.consumerLagService.watch("carol", "billing", Set.of("orders"));
+        this.consumerLagService.sample(1_000);
+        assertEquals(PARTITIONS_PER_TOPIC, this.consumerLagService.getLag("carol").size());
+
+        // scope revoked
+        when(this.principalAuthorityService.getAuthorities("carol")).thenReturn(new PrincipalAuthorities(List.of(), List.of("group:billing:read")));
+        assertEquals(List.of(), this.consumerLagService.getLag("carol"));
+    }
+
+
+    @Test
+    void watch_tooManyGroups_shouldThrow() {
+        ReflectionTestUtils.setField(this.consumerLagService, "CONSUMER_LAG_MAX_WATCHES_PER_PRINCIPAL", 2);
+        ReflectionTestUtils.setField(this.consumerLagService, "CONSUMER_LAG_MAX_WATCHES", 3);
+
+        this.consumerLagService.watch("alice", "group-1", Set.of("orders"));
+        this.consumerLagService.watch("alice", "group-2", Set.of("orders"));
+        // replacing the topics of a watch is fine
+        this.consumerLagService.watch("alice", "group-2", Set.of("payments"));
+        assertStatus(HttpStatus.CONFLICT, () -> this.consumerLagService.watch("alice", "group-3", Set.of("orders")));
+
+        this.consumerLagService.watch("bob", "group-1", Set.of("orders"));
+        assertStatus(HttpStatus.SERVICE_UNAVAILABLE, () -> this.consumerLagService.watch("bob", "group-2", Set.of("orders")));
+
+        this.consumerLagService.unwatch("alice", "group-1");
+        this.consumerLagService.watch("bob", "group-2", Set.of("orders"));
+    }
+
+
+    @Test
+    void watch_shouldThrowIfTopicInvalid() {
+        assertThrows(IllegalArgumentException.class, () -> this.consumerLagService.watch("alice", "billing", Set.of("no spaces")));
+        assertThrows(IllegalArgumentException.class, () -> this.consumerLagService.watch("alice", "billing", Set.of()));
+        assertEquals(List.of(), this.consumerLagService.getLag("alice"));
+    }
+
+
+    private static void assertStatus(HttpStatus status, Runnable runnable) {
+        assertEquals(status, assertThrows(ResponseStatusException.class, runnable::run).getStatusCode());
+    }
+
+
+    private void createTopic(String topic) {
+        for (int partition = 0; partition < PARTITIONS_PER_TOPIC; partition++)
+            this.endOffsets.put(new TopicPartition(topic, partition), 0L);
+    }
+
+
+    private void commit(String group, TopicPartition topicPartition, long offset) {
+        this.committedOffsets
+            .computeIfAbsent(group, key -> new ConcurrentHashMap<>())
+            .put(topicPartition, offset);
+    }
+}
@@ -0,0 +1,262 @@
+package com.example.backend.services;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.backend.Benchmark;
+import com.example.backend.TestBeans;
+
+import lombok.extern.slf4j.Slf4j;
+
+
+/**
+ * @since latest
+ */
+@Slf4j
+class CryptoServiceTests {
+
+    private static final String OLD_KEY = Base64.getEncoder().encodeToString(new byte[16]);
+
+    private static final String NEW_KEY = Base64.getEncoder().encodeToString(randomBytes(32));
+
+    private CryptoService cryptoService;
+
+
+    @BeforeEach
+    void setup() {
+        this.cryptoService = newCryptoService("new=" + NEW_KEY + ",old=" + OLD_KEY);
+    }
+
+
+    @Test
+    void encrypt_shouldRoundTripWithRandomNonce() {
+        assertEquals("secret äöü 😀", this.cryptoService.decrypt(this.cryptoService.encrypt("secret äöü 😀")));
+        assertEquals("", this.cryptoService.decrypt(this.cryptoService.encrypt("")));
+
+        byte[] plaintext = randomBytes(1000);
+        byte[] first = this.cryptoService.encrypt(plaintext);
+        byte[] second = this.cryptoService.encrypt(plaintext);
+
+        assertFalse(Arrays.equals(first, second), "Same plaintext should not result in the same message");
+        assertEquals(this.cryptoService.getMessageLength(plaintext.length), first.length);
+        assertArrayEquals(plaintext, this.cryptoService.decrypt(first));
+    }
+
+    @Test
+    void encrypt_directBuffers_shouldRoundTrip() {
+        byte[] plaintext = randomBytes(10_000);
+        ByteBuffer plaintextBuffer = ByteBuffer.allocateDirect(plaintext.length).put(plaintext).flip();
+        ByteBuffer message = ByteBuffer.allocateDirect(this.cryptoService.getMessageLength(plaintext.length));
+
+        this.cryptoService.encrypt(plaintextBuffer, message);
+        message.flip();
+
+        ByteBuffer decrypted = ByteBuffer.allocateDirect(plaintext.length);
+        assertEquals(plaintext.length, this.cryptoService.decrypt(message, decrypted));
+
+        byte[] decryptedBytes = new byte[plaintext.length];
+        decrypted.flip().get(decryptedBytes);
+        assertArrayEquals(plaintext, decryptedBytes);
+    }
+
+    @Test
+    void decrypt_rotatedKey_shouldUseKeyIdOfMessage() {
+        CryptoService oldCryptoService = newCryptoService("old=" + OLD_KEY);
+        String message = oldCryptoService.encrypt("before rotation");
+
+        assertEquals("before rotation", this.cryptoService.decrypt(message));
+        assertThrows(IllegalArgumentException.class, () -> oldCryptoService.decrypt(this.cryptoService.encrypt("after rotation")));
+    }
+
+    @Test
+    void init_blankKeys_shouldOnlyGenerateKeyInDevelopment() {
+        assertThrows(IllegalStateException.class, () -> newCryptoService(" "));
+
+        CryptoService developmentCryptoService = newCryptoService("", "development");
+        assertEquals("generated", developmentCryptoService.decrypt(developmentCryptoService.encrypt("generated")));
+    }
+
+    @Test
+    void decrypt_modifiedMessage_shouldThrow() {
+        byte[] message = this.cryptoService.encrypt(randomBytes(100));
+
+        for (int i = 0; i < message.length; i++) {
+            byte[] modifiedMessage = message.clone();
+            modifiedMessage[i] ^= 1;
+
+            assertThrows(IllegalArgumentException.class, () -> this.cryptoService.decrypt(modifiedMessage), "Modified byte %d not detected".formatted(i));
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> this.cryptoService.decrypt(Arrays.copyOf(message, message.length - 1)));
+        assertThrows(IllegalArgumentException.class, () -> this.cryptoService.decrypt(new byte[1]));
+    }
+
+    @Test
+    void encryptStream_shouldRoundTripAllSegmentBoundaries() throws Exception {
+        int segmentSize = CryptoService.SEGMENT_SIZE;
+
+        for (int length : new int[] {0, 1, segmentSize - 1, segmentSize, segmentSize + 1, 3 * segmentSize, 3 * segmentSize + 17}) {
+            byte[] plaintext = randomBytes(length);
+
+            byte[] stream = encryptStream(plaintext);
+            assertArrayEquals(plaintext, decryptStream(stream), "Length " + length);
+        }
+    }
+
+    @Test
+    void decryptStream_truncatedOrModified_shouldThrow() throws Exception {
+        int segmentSize = CryptoService.SEGMENT_SIZE;
+        byte[] stream = encryptStream(randomBytes(2 * segmentSize));
+        int headerLength = stream.length - 3 * CryptoService.TAG_LENGTH - 2 * segmentSize;
+
+        // drop the last (empty) segment, the one before now looks like a full segment that is not the last one
+        assertThrows(IllegalArgumentException.class, () -> decryptStream(Arrays.copyOf(stream, stream.length - CryptoService.TAG_LENGTH)));
+        // drop the last two segments
+        assertThrows(IllegalArgumentException.class, () -> decryptStream(Arrays.copyOf(stream, headerLength + segmentSize + CryptoService.TAG_LENGTH)));
+
+        byte[] modifiedStream = stream.clone();
+        modifiedStream[headerLength + segmentSize + 100] ^= 1;
+        assertThrows(IllegalArgumentException.class, () -> decryptStream(modifiedStream));
+
+        // swap the first two segments
+        byte[] reorderedStream = stream.clone();
+        int encryptedSegmentSize = segmentSize + CryptoService.TAG_LENGTH;
+        System.arraycopy(stream, headerLength, reorderedStream, headerLength + encryptedSegmentSize, encryptedSegmentSize);
+        System.arraycopy(stream, headerLength + encryptedSegmentSize, reorderedStream, headerLength, encryptedSegmentSize);
+        assertThrows(IllegalArgumentException.class, () -> decryptStream(reorderedStream));
+    }
+
+    /**
+     * Logs throughput and allocation of small messages compared to the removed {@code Utils.encryptAES} (new cipher per call),
+     * and the throughput of a stream.
+     */
+    @Benchmark
+    void encrypt_benchmark() throws Exception {
+        byte[] plaintext = randomBytes(1024);
+        ByteBuffer plaintextBuffer = ByteBuffer.allocateDirect(plaintext.length).put(plaintext).flip();
+        ByteBuffer message = ByteBuffer.allocateDirect(this.cryptoService.getMessageLength(plaintext.length));
+        SecretKey legacyKey = new SecretKeySpec(randomBytes(32), "AES");
+        IvParameterSpec legacyIv = new IvParameterSpec(randomBytes(16));
+        int runs = 20_000;
+
+        Runnable pooledBuffers = () -> {
+            plaintextBuffer.rewind();
+            message.clear();
+            this.cryptoService.encrypt(plaintextBuffer, message);
+        };
+        Runnable pooledArrays = () -> this.cryptoService.encrypt(plaintext);
+        Runnable cipherPerCall = () -> {
+            try {
+                Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+                cipher.init(Cipher.ENCRYPT_MODE, legacyKey, legacyIv);
+                Base64.getEncoder().encodeToString(cipher.doFinal(plaintext));
+
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        };
+
+        // warmup
+        for (Runnable runnable : new Runnable[] {pooledBuffers, pooledArrays, cipherPerCall})
+            measure(runnable, runs);
+
+        long[] pooledBuffersResult = measure(pooledBuffers, runs);
+        long[] pooledArraysResult = measure(pooledArrays, runs);
+        long[] cipherPerCallResult = measure(cipherPerCall, runs);
+
+        log.info("1 KiB messages: direct buffers {} bytes / {}ns, byte arrays {} bytes / {}ns, cipher per call (cbc) {} bytes / {}ns per message",
+            pooledBuffersResult[0], pooledBuffersResult[1], pooledArraysResult[0], pooledArraysResult[1], cipherPerCallResult[0], cipherPerCallResult[1]);
+
+        assertTrue(pooledBuffersResult[0] < cipherPerCallResult[0], "Expected fewer allocations than a cipher per call");
+
+        byte[] largePlaintext = randomBytes(64 * 1024 * 1024);
+        long startNanos = System.nanoTime();
+        byte[] stream = encryptStream(largePlaintext);
+        long encryptNanos = System.nanoTime() - startNanos;
+        startNanos = System.nanoTime();
+        decryptStream(stream);
+        long decryptNanos = System.nanoTime() - startNanos;
+
+        log.info("64 MiB stream: encrypt {} MB/s, decrypt {} MB/s",
+            Math.round(largePlaintext.length / 1_000_000.0 / (encryptNanos / 1_000_000_000.0)),
+            Math.round(largePlaintext.length / 1_000_000.0 / (decryptNanos / 1_000_000_000.0)));
+    }
+
+
+    private byte[] encryptStream(byte[] plaintext) throws Exception {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        try (ReadableByteChannel in = Channels.newChannel(new ByteArrayInputStream(plaintext));
+             WritableByteChannel out = Channels.newChannel(stream)) {
+            this.cryptoService.encrypt(in, out);
+        }
+
+        return stream.toByteArray();
+    }
+
+    private byte[] decryptStream(byte[] stream) throws Exception {
+        ByteArrayOutputStream plaintext = new ByteArrayOutputStream();
+        try (ReadableByteChannel in = Channels.newChannel(new ByteArrayInputStream(stream));
+             WritableByteChannel out = Channels.newChannel(plaintext)) {
+            this.cryptoService.decrypt(in, out);
+        }
+
+        return plaintext.toByteArray();
+    }
+
+    /**
+     * @return [allocated bytes per run, nanos per run]
+     */
+    private static long[] measure(Runnable runnable, int runs) {
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().threadId();
+
+        long allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < runs; i++)
+            runnable.run();
+        long durationNanos = System.nanoTime() - startNanos;
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        return new long[] {allocated / runs, durationNanos / runs};
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        ThreadLocalRandom.current().nextBytes(bytes);
+
+        return bytes;
+    }
+
+    static CryptoService newCryptoService(String encryptionKeys) {
+        return newCryptoService(encryptionKeys, "production");
+    }
+
+    private static CryptoService newCryptoService(String encryptionKeys, String env) {
+        return TestBeans.of(new CryptoService())
+            .with("ENCRYPTION_KEYS", encryptionKeys)
+            .with("ENV", env)
+            .init();
+    }
+}
@@ -0,0 +1,224 @@
+package com.example.backend.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.RSAPublicKey;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import com.example.backend.TestBeans;
+import com.example.backend.config.IssuerFilter;
+import com.example.backend.config.RsaKeyService;
+import com.example.backend.helpers.Utils;
+import com.example.backend.services.IssuerRegistry.Issuer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+
+
+/**
+ * Two issuers besides the default one, selected through {@link IssuerFilter} by path and by host.
+ * 
+ * @since latest
+ */
+class IssuerRegistryTests {
+
+    private static KeyPair defaultKeyPair;
+
+    private final ObjectMapper objectMapper = Utils.getDefaultObjectMapper();
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private IssuerRegistry issuerRegistry;
+
+    private IssuerFilter issuerFilter;
+
+
+    @BeforeAll
+    static void setupKeys() throws Exception {
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+        keyPairGenerator.initialize(2048);
+        defaultKeyPair = keyPairGenerator.generateKeyPair();
+    }
+
+    @BeforeEach
+    void setup() {
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.issuerRegistry = newIssuerRegistry(defaultKeyPair, "cluster-b=pandaproxy-b, cluster-c=pandaproxy-c", "c.example.com=cluster-c", this.meterRegistry);
+
+        this.issuerFilter = new IssuerFilter();
+        ReflectionTestUtils.setField(this.issuerFilter, "issuerRegistry", this.issuerRegistry);
+    }
+
+
+    @Test
+    void filter_pathPrefix_shouldSelectIssuerAndStripPrefix() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/issuers/cluster-b/.well-known/jwks");
+        request.setServletPath("/issuers/cluster-b/.well-known/jwks");
+
+        HttpServletRequest filteredRequest = doFilter(request);
+
+        assertEquals("/.well-known/jwks", filteredRequest.getRequestURI());
+        assertEquals("/.well-known/jwks", filteredRequest.getServletPath());
+        assertEquals("http://localhost/.well-known/jwks", filteredRequest.getRequestURL().toString());
+        assertSame(this.issuerRegistry.getIssuer("cluster-b"), filteredRequest.getAttribute(IssuerRegistry.ISSUER_ATTRIBUTE));
+    }
+
+    @Test
+    void filter_host_shouldSelectIssuerWithoutPrefix() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/jwt");
+        request.addHeader("Host", "C.example.com:8443");
+
+        HttpServletRequest filteredRequest = doFilter(request);
+
+        assertEquals("/jwt", filteredRequest.getRequestURI());
+        assertSame(this.issuerRegistry.getIssuer("cluster-c"), filteredRequest.getAttribute(IssuerRegistry.ISSUER_ATTRIBUTE));
+    }
+
+    @Test
+    void filter_hostNotInAllowList_shouldNotSelectIssuer() throws Exception {
+        MockHttpServletRequest forwardedRequest = new MockHttpServletRequest("GET", "/jwt");
+        forwardedRequest.addHeader("Host", "localhost");
+        forwardedRequest.addHeader("X-Forwarded-Host", "c.example.com");
+        assertNull(doFilter(forwardedRequest).getAttribute(IssuerRegistry.ISSUER_ATTRIBUTE));
+
+        MockHttpServletRequest ambiguousRequest = new MockHttpServletRequest("GET", "/jwt");
+        ambiguousRequest.addHeader("Host", "c.example.com");
+        ambiguousRequest.addHeader("Host", "localhost");
+        assertNull(doFilter(ambiguousRequest).getAttribute(IssuerRegistry.ISSUER_ATTRIBUTE));
+    }
+
+    @Test
+    void filter_unknownIssuer_shouldPassRequestUnchanged() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/issuers/unknown/jwt");
+
+        HttpServletRequest filteredRequest = doFilter(request);
+
+        assertSame(request, filteredRequest);
+        assertNull(filteredRequest.getAttribute(IssuerRegistry.ISSUER_ATTRIBUTE));
+    }
+
+    @Test
+    void getCurrentIssuer_shouldUseRequestAttributeOrDefault() {
+        assertSame(this.issuerRegistry.getDefaultIssuer(), this.issuerRegistry.getCurrentIssuer());
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAttribute(IssuerRegistry.ISSUER_ATTRIBUTE, this.issuerRegistry.getIssuer("cluster-b"));
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        try {
+            assertSame(this.issuerRegistry.getIssuer("cluster-b"), this.issuerRegistry.getCurrentIssuer());
+
+        } finally {
+            RequestContextHolder.resetRequestAttributes();
+        }
+    }
+
+    @Test
+    void issuers_shouldHaveOwnDocumentsAndKeys() throws Exception {
+        JwtService jwtService = JwtServiceTests.newJwtService(this.issuerRegistry);
+
+        for (Issuer issuer : this.issuerRegistry.getIssuers()) {
+            JsonNode discoveryDocument = this.objectMapper.readTree(issuer.getDiscoveryDocument());
+            assertEquals(issuer.getIssuerUri(), discoveryDocument.get("issuer").asText());
+            assertEquals(issuer.getIssuerUri() + "/.well-known/jwks", discoveryDocument.get("jwks_uri").asText());
+
+            // verify with the published jwks only
+            RSAKey rsaKey = JWKSet.parse(new String(issuer.getJwks())).getKeys().get(0).toRSAKey();
+            Jwt jwt = jwtService.generateJwtAccessToken(issuer, "local:user");
+            Jwt decoded = NimbusJwtDecoder.withPublicKey(rsaKey.toRSAPublicKey()).build().decode(jwt.getTokenValue());
+
+            assertEquals(issuer.getIssuerUri(), decoded.getClaimAsString("iss"));
+            assertEquals(List.of(issuer.getAudience()), decoded.getAudience());
+            assertEquals(rsaKey.getKeyID(), decoded.getHeaders().get("kid"));
+            assertEquals(1.0, this.meterRegistry.get("issuer.tokens.issued").tag("issuer", issuer.getId()).counter().count());
+        }
+
+        assertEquals("http://localhost:4001", this.issuerRegistry.getDefaultIssuer().getIssuerUri());
+        assertEquals("http://localhost:4001/issuers/cluster-b", this.issuerRegistry.getIssuer("cluster-b").getIssuerUri());
+        assertEquals("pandaproxy-b", this.issuerRegistry.getIssuer("cluster-b").getAudience());
+        assertNotEquals(this.issuerRegistry.getIssuer("cluster-b").getKeyPair().getPublic(), this.issuerRegistry.getIssuer("cluster-c").getKeyPair().getPublic());
+    }
+
+    @Test
+    void issuers_keyId_shouldBeThumbprintOfKey() throws Exception {
+        for (Issuer issuer : this.issuerRegistry.getIssuers()) {
+            if (issuer == this.issuerRegistry.getDefaultIssuer())
+                continue;
+
+            // rfc 7638, so the kid survives restarts with the same key files
+            RSAKey rsaKey = JWKSet.parse(new String(issuer.getJwks())).getKeys().get(0).toRSAKey();
+            assertEquals(rsaKey.computeThumbprint().toString(), rsaKey.getKeyID());
+        }
+    }
+
+    @Test
+    void tokenOfOneIssuer_shouldNotVerifyWithOtherIssuersKey() throws Exception {
+        JwtService jwtService = JwtServiceTests.newJwtService(this.issuerRegistry);
+        Jwt jwt = jwtService.generateJwtAccessToken(this.issuerRegistry.getIssuer("cluster-b"), "local:user");
+
+        NimbusJwtDecoder otherIssuersDecoder = NimbusJwtDecoder.withPublicKey((RSAPublicKey) this.issuerRegistry.getIssuer("cluster-c").getKeyPair().getPublic()).build();
+
+        assertThrows(JwtException.class, () -> otherIssuersDecoder.decode(jwt.getTokenValue()));
+    }
+
+    @Test
+    void init_invalidConfig_shouldThrow() {
+        assertThrows(IllegalStateException.class, () -> newIssuerRegistry(defaultKeyPair, "Invalid Id=audience", "", new SimpleMeterRegistry()));
+        assertThrows(IllegalStateException.class, () -> newIssuerRegistry(defaultKeyPair, "default=audience", "", new SimpleMeterRegistry()));
+        assertThrows(IllegalStateException.class, () -> newIssuerRegistry(defaultKeyPair, "cluster-b", "", new SimpleMeterRegistry()));
+        assertThrows(IllegalStateException.class, () -> newIssuerRegistry(defaultKeyPair, "", "host=unknown", new SimpleMeterRegistry()));
+    }
+
+
+    private HttpServletRequest doFilter(MockHttpServletRequest request) throws Exception {
+        MockFilterChain filterChain = new MockFilterChain();
+        this.issuerFilter.doFilter(request, new MockHttpServletResponse(), filterChain);
+
+        return (HttpServletRequest) filterChain.getRequest();
+    }
+
+    /**
+     * @param defaultKeyPair key pair of the default issuer
+     * @param issuers see {@code JWT_ISSUERS}
+     * @param hosts see {@code JWT_ISSUER_HOSTS}
+     * @return initialized registry, other issuers get generated keys
+     */
+    static IssuerRegistry newIssuerRegistry(KeyPair defaultKeyPair, String issuers, String hosts, SimpleMeterRegistry meterRegistry) {
+        RsaKeyService rsaKeyService = mock(RsaKeyService.class);
+        when(rsaKeyService.getKeyPair()).thenReturn(defaultKeyPair);
+        when(rsaKeyService.getKeyId()).thenReturn("key-id");
+
+        return TestBeans.of(new IssuerRegistry())
+            .with("rsaKeyService", rsaKeyService)
+            .with("meterRegistry", meterRegistry)
+            .with("BASE_URL_DOCKER", "http://localhost:4001")
+            .with("JWT_ISSUERS", issuers)
+            .with("JWT_ISSUER_HOSTS", hosts)
+            .with("JWT_ISSUER_KEY_DIR", "./non-existing-issuer-keys")
+            .init();
+    }
+}
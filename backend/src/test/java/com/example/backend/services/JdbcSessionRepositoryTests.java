@@ -0,0 +1,387 @@
+package com.example.backend.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.client.web.HttpSessionOAuth2AuthorizedClientRepository;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
+import org.springframework.session.MapSessionRepository;
+import org.springframework.session.Session;
+import org.springframework.session.SessionRepository;
+
+import com.example.backend.TestBeans;
+import com.example.backend.services.JdbcSessionRepository.JdbcSession;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+
+/**
+ * Runs {@link JdbcSessionRepository} on an embedded H2 database with the attributes of a typical oauth2 login session.
+ * 
+ * @since latest
+ */
+@Slf4j
+class JdbcSessionRepositoryTests {
+
+    private static final String SECURITY_CONTEXT_ATTRIBUTE = "SPRING_SECURITY_CONTEXT";
+    private static final String AUTHORIZED_CLIENTS_ATTRIBUTE = HttpSessionOAuth2AuthorizedClientRepository.class.getName() + ".AUTHORIZED_CLIENTS";
+    private static final String OAUTH2_SERVICE_PROXY_ATTRIBUTE = "scopedTarget.oauth2ServiceProxy";
+
+    private static final long LAST_ACCESS_WRITE_INTERVAL_MS = 60_000;
+
+    private EmbeddedDatabase database;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private JdbcSessionRepository jdbcSessionRepository;
+
+
+    @BeforeEach
+    void setup() {
+        this.database = TestBeans.newDatabase();
+        this.jdbcTemplate = new JdbcTemplate(this.database);
+        this.meterRegistry = new SimpleMeterRegistry();
+
+        this.jdbcSessionRepository = TestBeans.of(new JdbcSessionRepository())
+            .with("jdbcTemplate", this.jdbcTemplate)
+            .with("transactionManager", new DataSourceTransactionManager(this.database))
+            .with("sessionAttributeSerializer", new SessionAttributeSerializer())
+            .with("cryptoService", CryptoServiceTests.newCryptoService("test=" + Base64.getEncoder().encodeToString(new byte[32])))
+            .with("meterRegistry", this.meterRegistry)
+            .with("SESSION_TIMEOUT", 86_400L)
+            .with("SESSION_LAST_ACCESS_WRITE_INTERVAL_MS", LAST_ACCESS_WRITE_INTERVAL_MS)
+            .with("SESSION_CLEANUP_INTERVAL_MS", 3_600_000L)
+            .init();
+    }
+
+
+    @AfterEach
+    void tearDown() {
+        TestBeans.destroy(this.jdbcSessionRepository);
+        this.database.shutdown();
+    }
+
+
+    @Test
+    void findById_shouldRestoreLoginSessionAttributes() throws Exception {
+        JdbcSession session = newLoginSession(this.jdbcSessionRepository);
+        this.jdbcSessionRepository.save(session);
+
+        JdbcSession loadedSession = this.jdbcSessionRepository.findById(session.getId());
+        assertNotNull(loadedSession);
+
+        SecurityContextImpl securityContext = loadedSession.getAttribute(SECURITY_CONTEXT_ATTRIBUTE);
+        OAuth2AuthenticationToken authentication = assertInstanceOf(OAuth2AuthenticationToken.class, securityContext.getAuthentication());
+        assertEquals("octocat", authentication.getName());
+        assertEquals("github", authentication.getAuthorizedClientRegistrationId());
+
+        Map<String, OAuth2AuthorizedClient> authorizedClients = loadedSession.getAttribute(AUTHORIZED_CLIENTS_ATTRIBUTE);
+        assertEquals("access-token", authorizedClients.get("github").getAccessToken().getTokenValue());
+
+        Oauth2ServiceProxy oauth2ServiceProxy = loadedSession.getAttribute(OAUTH2_SERVICE_PROXY_ATTRIBUTE);
+        assertEquals("octocat@example.com", oauth2ServiceProxy.getCurrentPrimaryGithubEmailUserInfo().get("email"));
+
+        // Oauth2ServiceProxy is not java serializable, compare the security attributes only
+        Map<String, Object> securityAttributes = Map.of(
+            SECURITY_CONTEXT_ATTRIBUTE, session.getAttribute(SECURITY_CONTEXT_ATTRIBUTE),
+            AUTHORIZED_CLIENTS_ATTRIBUTE, session.getAttribute(AUTHORIZED_CLIENTS_ATTRIBUTE));
+        SessionAttributeSerializer sessionAttributeSerializer = new SessionAttributeSerializer();
+        int compactBytes = 0;
+        for (Map.Entry<String, Object> attribute : securityAttributes.entrySet())
+            compactBytes += sessionAttributeSerializer.serialize(attribute.getKey(), attribute.getValue(), true).length;
+        int javaBytes = javaSerializedSize(securityAttributes);
+        assertTrue(compactBytes < javaBytes, "Expected compact format to be smaller, got %d bytes vs %d bytes".formatted(compactBytes, javaBytes));
+
+        log.info("Login session: {} bytes compact, {} bytes java serialization", compactBytes, javaBytes);
+    }
+
+    @Test
+    void save_unchangedSession_shouldNotWrite() {
+        JdbcSession session = newLoginSession(this.jdbcSessionRepository);
+        this.jdbcSessionRepository.save(session);
+
+        // read only request, e.g. GET /jwt
+        JdbcSession loadedSession = this.jdbcSessionRepository.findById(session.getId());
+        loadedSession.setLastAccessedTime(Instant.now());
+        loadedSession.getAttribute(SECURITY_CONTEXT_ATTRIBUTE);
+        // like spring does for accessed session scoped beans
+        loadedSession.setAttribute(OAUTH2_SERVICE_PROXY_ATTRIBUTE, loadedSession.getAttribute(OAUTH2_SERVICE_PROXY_ATTRIBUTE));
+        this.jdbcSessionRepository.save(loadedSession);
+
+        assertEquals(1.0, this.meterRegistry.get("session.writes").counter().count());
+        assertEquals(1.0, this.meterRegistry.get("session.writes.skipped").counter().count());
+
+        // mutated without setAttribute
+        Oauth2ServiceProxy oauth2ServiceProxy = loadedSession.getAttribute(OAUTH2_SERVICE_PROXY_ATTRIBUTE);
+        oauth2ServiceProxy.setCurrentPrimaryGithubEmailUserInfo(new HashMap<>(Map.of("email", "changed@example.com")));
+        this.jdbcSessionRepository.save(loadedSession);
+
+        assertEquals(2.0, this.meterRegistry.get("session.writes").counter().count());
+        Oauth2ServiceProxy reloadedProxy = this.jdbcSessionRepository.findById(session.getId()).getAttribute(OAUTH2_SERVICE_PROXY_ATTRIBUTE);
+        assertEquals("changed@example.com", reloadedProxy.getCurrentPrimaryGithubEmailUserInfo().get("email"));
+    }
+
+    @Test
+    void save_concurrentRequests_shouldKeepBothChangedAttributes() {
+        JdbcSession session = newLoginSession(this.jdbcSessionRepository);
+        this.jdbcSessionRepository.save(session);
+
+        // two requests of the same session in parallel
+        JdbcSession firstRequestSession = this.jdbcSessionRepository.findById(session.getId());
+        JdbcSession secondRequestSession = this.jdbcSessionRepository.findById(session.getId());
+
+        Oauth2ServiceProxy oauth2ServiceProxy = firstRequestSession.getAttribute(OAUTH2_SERVICE_PROXY_ATTRIBUTE);
+        oauth2ServiceProxy.setCurrentPrimaryGithubEmailUserInfo(new HashMap<>(Map.of("email", "changed@example.com")));
+        secondRequestSession.getAttribute(OAUTH2_SERVICE_PROXY_ATTRIBUTE);
+        secondRequestSession.setAttribute("lastVisitedPage", "/settings");
+        secondRequestSession.removeAttribute(AUTHORIZED_CLIENTS_ATTRIBUTE);
+
+        this.jdbcSessionRepository.save(firstRequestSession);
+        this.jdbcSessionRepository.save(secondRequestSession);
+
+        JdbcSession reloadedSession = this.jdbcSessionRepository.findById(session.getId());
+        Oauth2ServiceProxy reloadedProxy = reloadedSession.getAttribute(OAUTH2_SERVICE_PROXY_ATTRIBUTE);
+        assertEquals("changed@example.com", reloadedProxy.getCurrentPrimaryGithubEmailUserInfo().get("email"));
+        assertEquals("/settings", reloadedSession.getAttribute("lastVisitedPage"));
+        assertNull(reloadedSession.getAttribute(AUTHORIZED_CLIENTS_ATTRIBUTE));
+        assertNotNull(reloadedSession.getAttribute(SECURITY_CONTEXT_ATTRIBUTE));
+    }
+
+    @Test
+    void save_shouldEncryptAttributeValues() {
+        JdbcSession session = newLoginSession(this.jdbcSessionRepository);
+        this.jdbcSessionRepository.save(session);
+
+        byte[] storedValue = this.jdbcTemplate.queryForObject(
+            "SELECT attribute_value FROM app_session_attribute WHERE session_id = ? AND name = ?", byte[].class, session.getId(), SECURITY_CONTEXT_ATTRIBUTE);
+
+        assertFalse(new String(storedValue, StandardCharsets.ISO_8859_1).contains("octocat"));
+    }
+
+    @Test
+    void save_unsupportedAttribute_shouldBeRejected() {
+        JdbcSession session = this.jdbcSessionRepository.createSession();
+        session.setAttribute("unsupported", new UnsupportedAttribute());
+
+        assertThrows(IllegalArgumentException.class, () -> this.jdbcSessionRepository.save(session));
+        assertEquals(0, this.jdbcTemplate.queryForObject("SELECT COUNT(*) FROM app_session", Integer.class));
+    }
+
+    @Test
+    void save_deletedSession_shouldNotBeResurrected() {
+        JdbcSession session = newLoginSession(this.jdbcSessionRepository);
+        this.jdbcSessionRepository.save(session);
+
+        JdbcSession loadedSession = this.jdbcSessionRepository.findById(session.getId());
+        // logout in another request
+        this.jdbcSessionRepository.deleteById(session.getId());
+        loadedSession.setAttribute("lastVisitedPage", "/settings");
+        this.jdbcSessionRepository.save(loadedSession);
+
+        assertNull(this.jdbcSessionRepository.findById(session.getId()));
+        assertEquals(0, this.jdbcTemplate.queryForObject("SELECT COUNT(*) FROM app_session_attribute", Integer.class));
+    }
+
+    @Test
+    void save_lastAccessTime_shouldOnlyBeWrittenAfterInterval() {
+        JdbcSession session = this.jdbcSessionRepository.createSession();
+        this.jdbcSessionRepository.save(session);
+        Instant createdAt = session.getLastAccessedTime();
+
+        JdbcSession loadedSession = this.jdbcSessionRepository.findById(session.getId());
+        loadedSession.setLastAccessedTime(createdAt.plusSeconds(1));
+        this.jdbcSessionRepository.save(loadedSession);
+        assertEquals(createdAt.toEpochMilli(), selectLastAccessTime(session.getId()));
+
+        loadedSession.setLastAccessedTime(createdAt.plusMillis(LAST_ACCESS_WRITE_INTERVAL_MS));
+        this.jdbcSessionRepository.save(loadedSession);
+        assertEquals(createdAt.toEpochMilli() + LAST_ACCESS_WRITE_INTERVAL_MS, selectLastAccessTime(session.getId()));
+    }
+
+    @Test
+    void save_changedSessionId_shouldMoveSession() {
+        JdbcSession session = newLoginSession(this.jdbcSessionRepository);
+        this.jdbcSessionRepository.save(session);
+        String oldId = session.getId();
+
+        // session fixation protection on login
+        JdbcSession loadedSession = this.jdbcSessionRepository.findById(oldId);
+        String newId = loadedSession.changeSessionId();
+        this.jdbcSessionRepository.save(loadedSession);
+
+        assertNotEquals(oldId, newId);
+        assertNull(this.jdbcSessionRepository.findById(oldId));
+        assertNotNull(this.jdbcSessionRepository.findById(newId).getAttribute(SECURITY_CONTEXT_ATTRIBUTE));
+    }
+
+    @Test
+    void findById_expiredSession_shouldReturnNullAndDelete() {
+        JdbcSession session = this.jdbcSessionRepository.createSession();
+        session.setLastAccessedTime(Instant.now().minusSeconds(10));
+        session.setMaxInactiveInterval(Duration.ofSeconds(5));
+        this.jdbcSessionRepository.save(session);
+
+        assertNull(this.jdbcSessionRepository.findById(session.getId()));
+        assertEquals(0, this.jdbcTemplate.queryForObject("SELECT COUNT(*) FROM app_session", Integer.class));
+    }
+
+    /**
+     * Simulates requests of logged in users: load session, read the security context, touch the session scoped bean, save.
+     */
+    @Test
+    void loadTest_compareReadWriteCostPerRequest() {
+        int requests = 20_000;
+        int users = 200;
+
+        MapSessionRepository mapSessionRepository = new MapSessionRepository(new ConcurrentHashMap<>());
+        double mapMicros = runRequests(mapSessionRepository, users, requests, false);
+        double jdbcReadMicros = runRequests(this.jdbcSessionRepository, users, requests, false);
+        double jdbcSkippedWrites = this.meterRegistry.get("session.writes.skipped").counter().count();
+        double jdbcWriteMicros = runRequests(this.jdbcSessionRepository, users, requests, true);
+
+        // only the inserts of the first run should have been written
+        assertEquals(requests, jdbcSkippedWrites);
+
+        log.info("Session cost per request: in memory {}us, jdbc read only {}us, jdbc with changed attribute {}us, {} bytes per session on average",
+            Math.round(mapMicros * 10) / 10.0,
+            Math.round(jdbcReadMicros * 10) / 10.0,
+            Math.round(jdbcWriteMicros * 10) / 10.0,
+            Math.round(this.meterRegistry.get("session.attributes.bytes").summary().mean()));
+    }
+
+
+    /**
+     * @return average micros per request, excluding session creation
+     */
+    private <S extends Session> double runRequests(SessionRepository<S> sessionRepository, int users, int requests, boolean isChangingAttribute) {
+        String[] sessionIds = new String[users];
+        for (int i = 0; i < users; i++) {
+            S session = newLoginSession(sessionRepository);
+            sessionRepository.save(session);
+            sessionIds[i] = session.getId();
+        }
+
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            S session = sessionRepository.findById(sessionIds[i % users]);
+            session.setLastAccessedTime(Instant.now());
+            session.getAttribute(SECURITY_CONTEXT_ATTRIBUTE);
+
+            Oauth2ServiceProxy oauth2ServiceProxy = session.getAttribute(OAUTH2_SERVICE_PROXY_ATTRIBUTE);
+            if (isChangingAttribute)
+                oauth2ServiceProxy.setCurrentPrimaryGithubEmailUserInfo(new HashMap<>(Map.of("email", "octocat@example.com", "request", i)));
+            session.setAttribute(OAUTH2_SERVICE_PROXY_ATTRIBUTE, oauth2ServiceProxy);
+
+            sessionRepository.save(session);
+        }
+
+        return (System.nanoTime() - startNanos) / 1_000.0 / requests;
+    }
+
+
+    private static <S extends Session> S newLoginSession(SessionRepository<S> sessionRepository) {
+        ClientRegistration clientRegistration = ClientRegistration.withRegistrationId("github")
+            .clientId("client-id")
+            .clientSecret("client-secret")
+            .authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+            .redirectUri("http://localhost:4001/login/oauth2/code/github")
+            .authorizationUri("https://github.com/login/oauth/authorize")
+            .tokenUri("https://github.com/login/oauth/access_token")
+            .userInfoUri("https://api.github.com/user")
+            .userNameAttributeName("login")
+            .scope("user:email")
+            .build();
+
+        DefaultOAuth2User user = new DefaultOAuth2User(
+            List.of(new SimpleGrantedAuthority("ROLE_USER")),
+            Map.of("login", "octocat", "id", 583231, "name", "The Octocat"),
+            "login");
+        OAuth2AuthenticationToken authentication = new OAuth2AuthenticationToken(user, user.getAuthorities(), "github");
+
+        Instant now = Instant.now();
+        OAuth2AuthorizedClient authorizedClient = new OAuth2AuthorizedClient(
+            clientRegistration,
+            "octocat",
+            new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, "access-token", now, now.plusSeconds(3600)));
+
+        Map<String, OAuth2AuthorizedClient> authorizedClients = new HashMap<>();
+        authorizedClients.put("github", authorizedClient);
+
+        Oauth2ServiceProxy oauth2ServiceProxy = new Oauth2ServiceProxy();
+        oauth2ServiceProxy.setCurrentPrimaryGithubEmailUserInfo(new HashMap<>(Map.of("email", "octocat@example.com", "primary", true, "verified", true)));
+
+        S session = sessionRepository.createSession();
+        session.setAttribute(SECURITY_CONTEXT_ATTRIBUTE, new SecurityContextImpl(authentication));
+        session.setAttribute(AUTHORIZED_CLIENTS_ATTRIBUTE, authorizedClients);
+        session.setAttribute(OAUTH2_SERVICE_PROXY_ATTRIBUTE, oauth2ServiceProxy);
+
+        return session;
+    }
+
+
+    /**
+     * Like spring session's default {@code JdbcIndexedSessionRepository}, one java serialized blob per attribute.
+     */
+    private static int javaSerializedSize(Map<String, Object> attributes) throws IOException {
+        int size = 0;
+        for (Object value : attributes.values()) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(value);
+            }
+            size += bytes.size();
+        }
+
+        return size;
+    }
+
+
+    /**
+     * Not allowlisted for spring security's default typing.
+     */
+    public static class UnsupportedAttribute {
+
+        public String getValue() {
+            return "value";
+        }
+    }
+
+
+    private long selectLastAccessTime(String id) {
+        return this.jdbcTemplate.queryForObject("SELECT last_access_time FROM app_session WHERE id = ?", Long.class, id);
+    }
+}
@@ -0,0 +1,241 @@
+package com.example.backend.services;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jose.jws.SignatureAlgorithm;
+import org.springframework.security.oauth2.jwt.JwsHeader;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtClaimsSet;
+import org.springframework.security.oauth2.jwt.JwtEncoder;
+import org.springframework.security.oauth2.jwt.JwtEncoderParameters;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.security.oauth2.jwt.NimbusJwtEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.backend.TestBeans;
+import com.example.backend.helpers.JwtTemplate;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+
+/**
+ * Compares the {@link JwtTemplate} output to a token serialized with jackson and signed with the jdk. RS256 signatures are
+ * deterministic, so both need to be byte identical.
+ * 
+ * @since latest
+ */
+@Slf4j
+class JwtServiceTests {
+
+    private static final Map<String, Object> STATIC_CLAIMS = new LinkedHashMap<>();
+    static {
+        STATIC_CLAIMS.put("iss", "http://localhost:4001");
+        STATIC_CLAIMS.put("aud", "pandaproxy");
+        STATIC_CLAIMS.put("gty", "client-credentials");
+    }
+
+    private static KeyPair keyPair;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+
+    @BeforeAll
+    static void setupKeys() throws Exception {
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+        keyPairGenerator.initialize(2048);
+        keyPair = keyPairGenerator.generateKeyPair();
+    }
+
+
+    @Test
+    void encode_shouldMatchJacksonSerialization() throws Exception {
+        JwtTemplate jwtTemplate = new JwtTemplate(keyPair.getPrivate(), "key-id", STATIC_CLAIMS);
+
+        List<String> subjects = List.of(
+            "user",
+            "quote\" backslash\\ slash/",
+            "control \b\t\n\f\r \u0000 \u001f \u007f",
+            "umlaut äöü, euro €, emoji 😀",
+            "");
+
+        for (String subject : subjects) {
+            Map<String, Object> dynamicClaims = new LinkedHashMap<>();
+            dynamicClaims.put("scope", "openid topic:test:read");
+            dynamicClaims.put("roles", List.of("ADMIN", "\"quoted\""));
+            dynamicClaims.put("count", -42L);
+            dynamicClaims.put("nested", Map.of("enabled", true));
+
+            String token = jwtTemplate.encode(subject, 1_700_000_000L, 1_700_000_900L, "jti-" + subject, dynamicClaims);
+
+            assertEquals(referenceToken(jwtTemplate.getHeaders(), subject, 1_700_000_000L, 1_700_000_900L, "jti-" + subject, dynamicClaims), token);
+        }
+    }
+
+    @Test
+    void encode_loneSurrogate_shouldThrow() {
+        JwtTemplate jwtTemplate = new JwtTemplate(keyPair.getPrivate(), "key-id", STATIC_CLAIMS);
+
+        assertThrows(IllegalArgumentException.class, () -> jwtTemplate.encode("\uD83D", 0, 1, "jti", Map.of()));
+        // buffer still usable
+        jwtTemplate.encode("user", 0, 1, "jti", Map.of());
+    }
+
+    @Test
+    void encodeBase64Url_shouldMatchJdk() {
+        byte[] target = new byte[64];
+
+        for (int length = 0; length < 40; length++) {
+            byte[] source = new byte[length];
+            for (int i = 0; i < length; i++)
+                source[i] = (byte) (i * 37 - 128);
+
+            int end = ReflectionTestUtils.invokeMethod(JwtTemplate.class, "encodeBase64Url", source, length, target, 3);
+
+            assertArrayEquals(Base64.getUrlEncoder().withoutPadding().encode(source), Arrays.copyOfRange(target, 3, end));
+        }
+    }
+
+    @Test
+    void generateJwtAccessToken_shouldBeVerifiableAndContainAllClaims() throws Exception {
+        JwtService jwtService = newJwtService();
+
+        Jwt jwt = jwtService.generateJwtAccessToken("local:user");
+        Jwt decoded = NimbusJwtDecoder.withPublicKey((RSAPublicKey) keyPair.getPublic()).build().decode(jwt.getTokenValue());
+
+        assertEquals("local:user", decoded.getSubject());
+        assertEquals(List.of("pandaproxy"), decoded.getAudience());
+        assertEquals("openid", decoded.getClaimAsString("scope"));
+        assertEquals("key-id", decoded.getHeaders().get("kid"));
+        assertEquals(jwt.getIssuedAt(), decoded.getIssuedAt());
+        assertEquals(jwt.getExpiresAt(), decoded.getExpiresAt());
+        assertEquals(jwt.getId(), decoded.getId());
+        assertEquals(decoded.getIssuer().toString(), jwt.getClaimAsString("iss"));
+    }
+
+    @Test
+    void generateJwtAccessToken_anonymous_shouldThrow() {
+        JwtService jwtService = newJwtService();
+
+        assertThrows(IllegalArgumentException.class, () -> jwtService.generateJwtAccessToken("local:anonymousUser"));
+        assertThrows(IllegalArgumentException.class, () -> jwtService.generateJwtAccessToken("github:anonymousUser"));
+    }
+
+    /**
+     * Logs allocated bytes per token of the template compared to the nimbus encoder it replaced.
+     */
+    @Test
+    void encode_allocation_shouldBeLowerThanNimbus() throws Exception {
+        JwtTemplate jwtTemplate = new JwtTemplate(keyPair.getPrivate(), "key-id", STATIC_CLAIMS);
+        JwtEncoder nimbusJwtEncoder = new NimbusJwtEncoder(new ImmutableJWKSet<>(new JWKSet(
+            new RSAKey.Builder((RSAPublicKey) keyPair.getPublic())
+                .privateKey((RSAPrivateKey) keyPair.getPrivate())
+                .keyID("key-id")
+                .build())));
+        JwsHeader header = JwsHeader.with(SignatureAlgorithm.RS256).keyId("key-id").type("JWT").build();
+
+        int tokens = 2_000;
+        Runnable template = () -> jwtTemplate.encode("user", 1_700_000_000L, 1_700_000_900L, "jti", Map.of("scope", "openid"));
+        Runnable nimbus = () -> {
+            Instant now = Instant.ofEpochSecond(1_700_000_000L);
+            JwtClaimsSet claims = JwtClaimsSet.builder()
+                .subject("user")
+                .issuedAt(now)
+                .expiresAt(now.plusSeconds(900))
+                .id("jti")
+                .claims(map -> map.putAll(STATIC_CLAIMS))
+                .claim("scope", "openid")
+                .build();
+            nimbusJwtEncoder.encode(JwtEncoderParameters.from(header, claims));
+        };
+
+        // warmup
+        measure(template, tokens);
+        measure(nimbus, tokens);
+
+        long[] templateResult = measure(template, tokens);
+        long[] nimbusResult = measure(nimbus, tokens);
+
+        log.info("Per token: template {} bytes / {}µs, nimbus {} bytes / {}µs",
+            templateResult[0], templateResult[1] / 1000.0, nimbusResult[0], nimbusResult[1] / 1000.0);
+
+        assertTrue(templateResult[0] < nimbusResult[0], "Expected fewer allocations than nimbus");
+    }
+
+
+    /**
+     * @return [allocated bytes per run, nanos per run]
+     */
+    private static long[] measure(Runnable runnable, int runs) {
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().threadId();
+
+        long allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < runs; i++)
+            runnable.run();
+        long durationNanos = System.nanoTime() - startNanos;
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        return new long[] {allocated / runs, durationNanos / runs};
+    }
+
+    private String referenceToken(Map<String, Object> headers, String subject, long issuedAt, long expiresAt, String jti, Map<String, Object> dynamicClaims) throws Exception {
+        Map<String, Object> claims = new LinkedHashMap<>();
+        claims.put("sub", subject);
+        claims.put("iat", issuedAt);
+        claims.put("exp", expiresAt);
+        claims.put("jti", jti);
+        claims.putAll(STATIC_CLAIMS);
+        claims.putAll(dynamicClaims);
+
+        Base64.Encoder base64Url = Base64.getUrlEncoder().withoutPadding();
+        String signingInput = base64Url.encodeToString(this.objectMapper.writeValueAsBytes(headers)) + "." +
+                              base64Url.encodeToString(this.objectMapper.writeValueAsBytes(claims));
+
+        Signature signature = Signature.getInstance("SHA256withRSA");
+        signature.initSign(keyPair.getPrivate());
+        signature.update(signingInput.getBytes(StandardCharsets.US_ASCII));
+
+        return signingInput + "." + base64Url.encodeToString(signature.sign());
+    }
+
+    private static JwtService newJwtService() {
+        return newJwtService(IssuerRegistryTests.newIssuerRegistry(keyPair, "", "", new SimpleMeterRegistry()));
+    }
+
+    /**
+     * @param issuerRegistry initialized
+     * @return jwt service without claims enrichers and 15 minute tokens
+     */
+    static JwtService newJwtService(IssuerRegistry issuerRegistry) {
+        return TestBeans.of(new JwtService())
+            .with("issuerRegistry", issuerRegistry)
+            .with("claimsEnrichers", List.of())
+            .with("JWT_ACCESS_TOKEN_TTL_SECONDS", 900L)
+            .init();
+    }
+}
@@ -0,0 +1,334 @@
+package com.example.backend.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import com.example.backend.TestBeans;
+import com.example.backend.services.MailService.MailType;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+
+/**
+ * Runs {@link MailService} on an embedded H2 database against an in-process smtp server that can refuse connections and
+ * reject recipients.
+ *
+ * @since latest
+ */
+@Slf4j
+class MailServiceTests {
+
+    private static final int SMTP_CONNECTIONS = 4;
+
+    private EmbeddedDatabase database;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private SmtpStub smtpStub;
+
+    private MailService mailService;
+
+
+    @BeforeEach
+    void setup() throws IOException {
+        this.database = TestBeans.newDatabase();
+        this.jdbcTemplate = new JdbcTemplate(this.database);
+
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.smtpStub = new SmtpStub();
+
+        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        mailSender.setHost(InetAddress.getLoopbackAddress().getHostAddress());
+        mailSender.setPort(this.smtpStub.getPort());
+        mailSender.getJavaMailProperties().put("mail.smtp.connectiontimeout", "1000");
+        mailSender.getJavaMailProperties().put("mail.smtp.timeout", "200");
+        mailSender.getJavaMailProperties().put("mail.smtp.writetimeout", "200");
+
+        this.mailService = TestBeans.of(new MailService())
+            .with("jdbcTemplate", this.jdbcTemplate)
+            .with("transactionManager", new DataSourceTransactionManager(this.database))
+            .with("mailSender", mailSender)
+            .with("cryptoService", CryptoServiceTests.newCryptoService("test=" + Base64.getEncoder().encodeToString(new byte[32])))
+            .with("meterRegistry", this.meterRegistry)
+            .with("MAIL_DRAIN_INTERVAL_MS", 10L)
+            .with("MAIL_DRAIN_BATCH_SIZE", 200)
+            .with("MAIL_SMTP_CONNECTIONS", SMTP_CONNECTIONS)
+            .with("MAIL_MAX_ATTEMPTS", 5)
+            .with("MAIL_MAX_BACKOFF_MS", 100L)
+            .init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TestBeans.destroy(this.mailService);
+        this.smtpStub.close();
+        this.database.shutdown();
+    }
+
+
+    @Test
+    void send_burst_shouldSendEverythingOverPooledConnections() throws Exception {
+        int callers = 200;
+        int mailsPerCaller = 10;
+
+        long startNanos = System.nanoTime();
+        sendBurst(callers, mailsPerCaller);
+        long sendDurationNanos = System.nanoTime() - startNanos;
+        awaitOutboxEmpty();
+        long deliveredDurationNanos = System.nanoTime() - startNanos;
+
+        assertEquals(callers * mailsPerCaller, this.smtpStub.messages.size());
+        assertEquals(callers * mailsPerCaller, this.meterRegistry.counter("mail.sent").count());
+        assertTrue(this.smtpStub.connectionCount.get() <= SMTP_CONNECTIONS, "Expected connections to be reused");
+
+        String message = this.smtpStub.messages.peek();
+        assertTrue(message.contains("Subject: Confirm your account"));
+        assertTrue(message.contains("https://example.com/confirm?token=token-"));
+
+        log.info("Queued {} mails in {}ms, all delivered after {}ms over {} smtp connections",
+            callers * mailsPerCaller, sendDurationNanos / 1_000_000, deliveredDurationNanos / 1_000_000, this.smtpStub.connectionCount.get());
+    }
+
+    @Test
+    void send_smtpUnavailable_shouldRetryWithBackoff() throws Exception {
+        this.smtpStub.refusedConnectionsLeft.set(3);
+
+        sendBurst(10, 5);
+        awaitOutboxEmpty();
+
+        assertEquals(50, this.smtpStub.messages.size());
+        assertTrue(this.meterRegistry.counter("mail.retried").count() > 0);
+        assertEquals(0, this.meterRegistry.counter("mail.dropped").count());
+    }
+
+    @Test
+    void send_smtpStalled_shouldTimeOutAndRetry() throws Exception {
+        this.smtpStub.stalledConnectionsLeft.set(SMTP_CONNECTIONS);
+
+        sendBurst(10, 5);
+        awaitOutboxEmpty();
+
+        assertEquals(50, this.smtpStub.messages.size());
+        assertTrue(this.meterRegistry.counter("mail.retried").count() > 0);
+        assertEquals(0, this.meterRegistry.counter("mail.dropped").count());
+    }
+
+    @Test
+    void send_rejectedRecipient_shouldDropWithoutRetry() throws Exception {
+        this.mailService.send("rejected@example.com", MailType.RESET_PASSWORD, Map.of("link", "https://example.com/reset", "validHours", "1")).get(5, TimeUnit.SECONDS);
+        this.mailService.send("max@example.com", MailType.RESET_PASSWORD, Map.of("link", "https://example.com/reset", "validHours", "1")).get(5, TimeUnit.SECONDS);
+
+        awaitOutboxEmpty();
+
+        assertEquals(1, this.smtpStub.messages.size());
+        assertEquals(1, this.meterRegistry.counter("mail.dropped").count());
+        assertEquals(0, this.meterRegistry.counter("mail.retried").count());
+    }
+
+    @Test
+    void send_shouldNotStoreVariablesInPlaintext() throws Exception {
+        // keep the mail in the outbox
+        this.smtpStub.refusedConnectionsLeft.set(Integer.MAX_VALUE);
+
+        this.mailService.send("max@example.com", MailType.RESET_PASSWORD, Map.of("link", "https://example.com/reset?token=secret-token", "validHours", "1")).get(5, TimeUnit.SECONDS);
+
+        String storedVariables = this.jdbcTemplate.queryForObject("SELECT encrypted_variables FROM mail_outbox", String.class);
+        assertFalse(storedVariables.contains("secret-token"));
+    }
+
+    @Test
+    void send_invalidArgs_shouldThrow() {
+        assertThrows(IllegalArgumentException.class, () -> this.mailService.send("no-email", MailType.CONFIRM_ACCOUNT, Map.of("link", "x", "validHours", "1")));
+        assertThrows(IllegalArgumentException.class, () -> this.mailService.send("max@example.com", MailType.CONFIRM_ACCOUNT, Map.of("link", "x")));
+        assertThrows(IllegalArgumentException.class, () -> this.mailService.send("max@example.com", null, Map.of()));
+    }
+
+
+    /**
+     * One caller per virtual thread, each sending its mails one by one.
+     */
+    private void sendBurst(int callers, int mailsPerCaller) throws Exception {
+        try (var callerExecutor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<CompletableFuture<Void>> callerFutures = IntStream.range(0, callers)
+                .mapToObj(caller -> CompletableFuture.runAsync(() -> {
+                    for (int i = 0; i < mailsPerCaller; i++)
+                        this.mailService
+                            .send("user-%d@example.com".formatted(caller), MailType.CONFIRM_ACCOUNT, Map.of(
+                                "link", "https://example.com/confirm?token=token-%d-%d".formatted(caller, i),
+                                "validHours", "24"))
+                            .join();
+                }, callerExecutor))
+                .toList();
+
+            CompletableFuture.allOf(callerFutures.toArray(CompletableFuture[]::new)).get(60, TimeUnit.SECONDS);
+        }
+    }
+
+    private void awaitOutboxEmpty() throws InterruptedException {
+        long deadlineNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+
+        while (outboxSize() > 0 && System.nanoTime() < deadlineNanos)
+            Thread.sleep(10);
+
+        assertEquals(0, outboxSize());
+    }
+
+    private int outboxSize() {
+        return this.jdbcTemplate.queryForObject("SELECT COUNT(*) FROM mail_outbox", Integer.class);
+    }
+
+
+    /**
+     * Minimal smtp server, one thread per connection. Refuses {@code refusedConnectionsLeft} connections with 421, never greets
+     * {@code stalledConnectionsLeft} connections and rejects recipients containing "rejected" with 550.
+     */
+    private static class SmtpStub implements AutoCloseable {
+
+        private final ServerSocket serverSocket;
+
+        /** Platform threads, the client holds monitors while blocking on the socket and may pin all carrier threads */
+        private final ExecutorService connectionExecutor = Executors.newCachedThreadPool();
+
+        /** Data of all accepted messages */
+        private final Queue<String> messages = new ConcurrentLinkedQueue<>();
+
+        private final AtomicInteger connectionCount = new AtomicInteger();
+
+        private final AtomicInteger refusedConnectionsLeft = new AtomicInteger();
+
+        private final AtomicInteger stalledConnectionsLeft = new AtomicInteger();
+
+
+        private SmtpStub() throws IOException {
+            this.serverSocket = new ServerSocket(0, 100, InetAddress.getLoopbackAddress());
+            this.connectionExecutor.execute(this::accept);
+        }
+
+
+        private int getPort() {
+            return this.serverSocket.getLocalPort();
+        }
+
+        private void accept() {
+            while (!this.serverSocket.isClosed()) {
+                try {
+                    Socket socket = this.serverSocket.accept();
+                    this.connectionExecutor.execute(() -> handle(socket));
+
+                } catch (IOException e) {
+                    // case: closed
+                    return;
+                }
+            }
+        }
+
+        private void handle(Socket socket) {
+            try (socket;
+                 BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                 Writer writer = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8)) {
+
+                if (this.refusedConnectionsLeft.getAndDecrement() > 0) {
+                    reply(writer, "421 Service not available");
+                    return;
+                }
+
+                // case: hold the connection until the client gives up
+                if (this.stalledConnectionsLeft.getAndDecrement() > 0) {
+                    while (reader.readLine() != null);
+                    return;
+                }
+
+                this.connectionCount.incrementAndGet();
+                reply(writer, "220 localhost smtp stub");
+
+                StringBuilder data = null;
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    // case: message content
+                    if (data != null) {
+                        if (line.equals(".")) {
+                            this.messages.add(data.toString());
+                            data = null;
+                            reply(writer, "250 OK");
+
+                        } else
+                            data.append(line.startsWith(".") ? line.substring(1) : line).append('\n');
+
+                        continue;
+                    }
+
+                    String command = line.length() < 4 ? line : line.substring(0, 4).toUpperCase();
+                    switch (command) {
+                        case "EHLO" -> reply(writer, "250-localhost\r\n250 8BITMIME");
+                        case "HELO" -> reply(writer, "250 localhost");
+                        case "MAIL", "RSET", "NOOP" -> reply(writer, "250 OK");
+                        case "RCPT" -> reply(writer, line.contains("rejected") ? "550 5.1.1 Mailbox unavailable" : "250 OK");
+                        case "DATA" -> {
+                            data = new StringBuilder();
+                            reply(writer, "354 End data with <CR><LF>.<CR><LF>");
+                        }
+                        case "QUIT" -> {
+                            reply(writer, "221 Bye");
+                            return;
+                        }
+                        default -> reply(writer, "502 Command not implemented");
+                    }
+                }
+
+            } catch (IOException e) {
+                // case: client closed the connection
+            }
+        }
+
+        private static void reply(Writer writer, String reply) throws IOException {
+            writer.write(reply + "\r\n");
+            writer.flush();
+        }
+
+        @Override
+        public void close() {
+            try {
+                this.serverSocket.close();
+
+            } catch (IOException e) {
+                // case: already closed
+            }
+
+            this.connectionExecutor.shutdownNow();
+        }
+    }
+}
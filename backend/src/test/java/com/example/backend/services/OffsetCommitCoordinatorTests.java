@@ -0,0 +1,286 @@
+package com.example.backend.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.example.backend.TestBeans;
+import com.example.backend.dtos.ConsumerOffsetDto;
+import com.example.backend.helpers.Utils;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+
+/**
+ * Runs {@link OffsetCommitCoordinator} against a minimal pandaproxy stub that records every committed offset in commit order.
+ * 
+ * @since latest
+ */
+@Slf4j
+class OffsetCommitCoordinatorTests {
+
+    private static final long STUB_LATENCY_MS = 2;
+
+    private final ObjectMapper objectMapper = Utils.getDefaultObjectMapper();
+
+    private HttpServer pandaproxyStub;
+
+    private final AtomicInteger upstreamRequestCount = new AtomicInteger();
+
+    /** "topic-partition" -> offsets in the order they were committed */
+    private final Map<String, List<Long>> committedOffsets = new ConcurrentHashMap<>();
+
+    private final Set<String> deletedInstances = ConcurrentHashMap.newKeySet();
+
+    /** Decoded path segments of the last commit */
+    private volatile List<String> lastGroupAndInstance;
+
+    private volatile boolean failUpstream;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private OffsetCommitCoordinator offsetCommitCoordinator;
+
+
+    @BeforeEach
+    void setup() throws IOException {
+        this.pandaproxyStub = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        this.pandaproxyStub.createContext("/consumers/", this::handleCommit);
+        this.pandaproxyStub.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        this.pandaproxyStub.start();
+
+        PandaproxyFetcher pandaproxyFetcher = TestBeans.of(new PandaproxyFetcher())
+            .with("PANDAPROXY_BASE_URL", "http://localhost:" + this.pandaproxyStub.getAddress().getPort())
+            .init();
+
+        JwtService jwtService = mock(JwtService.class);
+        when(jwtService.generateJwtAccessToken(anyString()))
+            .thenReturn(Jwt.withTokenValue("token").header("alg", "RS256").claim("sub", "user").build());
+
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.offsetCommitCoordinator = TestBeans.of(new OffsetCommitCoordinator())
+            .with("pandaproxyFetcher", pandaproxyFetcher)
+            .with("jwtService", jwtService)
+            .with("meterRegistry", this.meterRegistry)
+            .with("OFFSET_COMMIT_WINDOW_MS", 5L)
+            .with("OFFSET_COMMIT_MAX_BATCH_PARTITIONS", 1000)
+            .with("OFFSET_COMMIT_GROUP_IDLE_MS", 60_000L)
+            .init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TestBeans.destroy(this.offsetCommitCoordinator);
+        this.pandaproxyStub.stop(0);
+    }
+
+
+    @Test
+    void commit_concurrentConsumers_shouldBatchAndStayMonotonic() throws Exception {
+        int consumers = 200;
+        int commitsPerConsumer = 20;
+        int partitions = 10;
+        Map<Integer, AtomicLong> highestOffsets = new ConcurrentHashMap<>();
+
+        AtomicInteger rejectedCount = new AtomicInteger();
+        long startNanos = System.nanoTime();
+        try (var consumerExecutor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < consumers; i++) {
+                int consumer = i;
+                consumerExecutor.execute(() -> {
+                    for (int commit = 0; commit < commitsPerConsumer; commit++) {
+                        // consumers share partitions and commit in random order, e.g. after a rebalance
+                        int partition = ThreadLocalRandom.current().nextInt(partitions);
+                        long offset = ThreadLocalRandom.current().nextLong(1_000_000);
+                        highestOffsets.computeIfAbsent(partition, key -> new AtomicLong()).accumulateAndGet(offset, Math::max);
+
+                        CompletableFuture<Void> future = this.offsetCommitCoordinator.commit("group", "instance-" + consumer, "user", List.of(new ConsumerOffsetDto("test", partition, offset)));
+                        try {
+                            future.get(30, TimeUnit.SECONDS);
+
+                        // case: lower than the committed offset, has to be visible to the caller
+                        } catch (ExecutionException e) {
+                            assertEquals(409, assertInstanceOf(ResponseStatusException.class, e.getCause()).getStatusCode().value());
+                            rejectedCount.incrementAndGet();
+
+                        } catch (Exception e) {
+                            throw new IllegalStateException(e);
+                        }
+                    }
+                });
+            }
+        }
+        long durationNanos = System.nanoTime() - startNanos;
+
+        int commitCalls = consumers * commitsPerConsumer;
+        assertTrue(this.upstreamRequestCount.get() < commitCalls / 10, "Expected batching, got %d upstream requests".formatted(this.upstreamRequestCount.get()));
+
+        highestOffsets.forEach((partition, highestOffset) -> {
+            List<Long> offsets = this.committedOffsets.get("test-" + partition);
+
+            for (int i = 1; i < offsets.size(); i++)
+                assertTrue(offsets.get(i) > offsets.get(i - 1), "Offsets of partition %d not monotonic: %s".formatted(partition, offsets));
+
+            assertEquals(highestOffset.get(), offsets.get(offsets.size() - 1));
+        });
+        assertEquals(rejectedCount.get(), (int) this.meterRegistry.get("offset.commit.rejected").counter().count());
+
+        log.info("{} commit calls ({} rejected as lower than committed), {} upstream requests ({}x fewer), {} commits/s, {} commits per batch on average, latency mean {}ms",
+            commitCalls,
+            rejectedCount.get(),
+            this.upstreamRequestCount.get(),
+            commitCalls / this.upstreamRequestCount.get(),
+            Math.round(commitCalls / (durationNanos / 1_000_000_000.0)),
+            Math.round(this.meterRegistry.get("offset.commit.batch.commits").summary().mean()),
+            this.meterRegistry.get("offset.commit.latency").timer().mean(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void commit_lowerOffset_shouldBeRejected() throws Exception {
+        this.offsetCommitCoordinator.commit("group", "instance", "user", List.of(new ConsumerOffsetDto("test", 0, 10))).get(5, TimeUnit.SECONDS);
+        // same offset again is fine
+        this.offsetCommitCoordinator.commit("group", "instance", "user", List.of(new ConsumerOffsetDto("test", 0, 10))).get(5, TimeUnit.SECONDS);
+
+        CompletableFuture<Void> future = this.offsetCommitCoordinator.commit("group", "instance", "user", List.of(new ConsumerOffsetDto("test", 0, 5)));
+
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        assertEquals(409, assertInstanceOf(ResponseStatusException.class, exception.getCause()).getStatusCode().value());
+        assertEquals(List.of(10L), this.committedOffsets.get("test-0"));
+        assertEquals(1, this.upstreamRequestCount.get());
+        assertEquals(1.0, this.meterRegistry.get("offset.commit.rejected").counter().count());
+    }
+
+    @Test
+    void commit_idleGroup_shouldBeForgotten() throws Exception {
+        this.offsetCommitCoordinator.commit("group", "instance", "user", List.of(new ConsumerOffsetDto("test", 0, 10))).get(5, TimeUnit.SECONDS);
+        assertEquals(1.0, this.meterRegistry.get("offset.commit.groups").gauge().value());
+
+        // the send is unregistered right after the caller's future completed
+        ReflectionTestUtils.setField(this.offsetCommitCoordinator, "OFFSET_COMMIT_GROUP_IDLE_MS", 0L);
+        for (int i = 0; i < 100 && this.meterRegistry.get("offset.commit.groups").gauge().value() > 0; i++) {
+            Thread.sleep(10);
+            ReflectionTestUtils.invokeMethod(this.offsetCommitCoordinator, "evictIdleGroups");
+        }
+        assertEquals(0.0, this.meterRegistry.get("offset.commit.groups").gauge().value());
+
+        // e.g. the instance expired and the group starts over
+        this.offsetCommitCoordinator.commit("group", "instance", "user", List.of(new ConsumerOffsetDto("test", 0, 5))).get(5, TimeUnit.SECONDS);
+        assertEquals(List.of(10L, 5L), this.committedOffsets.get("test-0"));
+    }
+
+    @Test
+    void commit_specialCharacters_shouldBeEncoded() throws Exception {
+        this.offsetCommitCoordinator.commit("group#1", "instance%+1", "user", List.of(new ConsumerOffsetDto("test", 0, 10))).get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of("group#1", "instance%+1"), this.lastGroupAndInstance);
+        assertEquals(List.of(10L), this.committedOffsets.get("test-0"));
+    }
+
+    @Test
+    void commit_instanceDeleted_shouldCommitThroughOtherInstance() throws Exception {
+        this.deletedInstances.add("gone");
+        // make sure both commits end up in the same batch
+        ReflectionTestUtils.setField(this.offsetCommitCoordinator, "OFFSET_COMMIT_WINDOW_MS", 200L);
+
+        CompletableFuture<Void> goneFuture = this.offsetCommitCoordinator.commit("group", "gone", "user", List.of(new ConsumerOffsetDto("test", 0, 3)));
+        CompletableFuture<Void> aliveFuture = this.offsetCommitCoordinator.commit("group", "alive", "user", List.of(new ConsumerOffsetDto("test", 1, 7)));
+
+        goneFuture.get(5, TimeUnit.SECONDS);
+        aliveFuture.get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of(3L), this.committedOffsets.get("test-0"));
+        assertEquals(List.of(7L), this.committedOffsets.get("test-1"));
+        assertEquals(2, this.upstreamRequestCount.get());
+    }
+
+    @Test
+    void commit_upstreamError_shouldCompleteExceptionallyAndAllowRetry() throws Exception {
+        this.failUpstream = true;
+
+        CompletableFuture<Void> future = this.offsetCommitCoordinator.commit("group", "instance", "user", List.of(new ConsumerOffsetDto("test", 0, 10)));
+
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        ResponseStatusException responseStatusException = assertInstanceOf(ResponseStatusException.class, exception.getCause());
+        assertEquals(500, responseStatusException.getStatusCode().value());
+
+        // not marked as committed
+        this.failUpstream = false;
+        this.offsetCommitCoordinator.commit("group", "instance", "user", List.of(new ConsumerOffsetDto("test", 0, 10))).get(5, TimeUnit.SECONDS);
+        assertEquals(List.of(10L), this.committedOffsets.get("test-0"));
+    }
+
+    @Test
+    void commit_invalidOffset_shouldThrow() {
+        assertThrows(IllegalArgumentException.class, () -> this.offsetCommitCoordinator.commit("group", "instance", "user", List.of(new ConsumerOffsetDto("no spaces", 0, 1))));
+        assertThrows(IllegalArgumentException.class, () -> this.offsetCommitCoordinator.commit("group", "instance", "user", List.of(new ConsumerOffsetDto("test", 0, -1))));
+        assertThrows(IllegalArgumentException.class, () -> this.offsetCommitCoordinator.commit("", "instance", "user", List.of()));
+    }
+
+
+    /**
+     * Handles "POST /consumers/{group}/instances/{instance}/offsets".
+     */
+    private void handleCommit(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            this.upstreamRequestCount.incrementAndGet();
+            Thread.sleep(STUB_LATENCY_MS);
+
+            String[] pathSegments = exchange.getRequestURI().getRawPath().split("/");
+            String instance = URLDecoder.decode(pathSegments[4], StandardCharsets.UTF_8);
+            this.lastGroupAndInstance = List.of(URLDecoder.decode(pathSegments[2], StandardCharsets.UTF_8), instance);
+            if (this.failUpstream || this.deletedInstances.contains(instance)) {
+                byte[] errorBody = (this.failUpstream ?
+                    "{\"error_code\":50001,\"message\":\"internal error\"}" :
+                    "{\"error_code\":40403,\"message\":\"consumer instance not found\"}").getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(this.failUpstream ? 500 : 404, errorBody.length);
+                exchange.getResponseBody().write(errorBody);
+                return;
+            }
+
+            JsonNode partitions = this.objectMapper.readTree(exchange.getRequestBody()).get("partitions");
+            // commits of one group are serialized by the coordinator, no lock needed for ordering
+            partitions.forEach(partition -> this.committedOffsets
+                .computeIfAbsent(partition.get("topic").asText() + "-" + partition.get("partition").asInt(), key -> Collections.synchronizedList(new ArrayList<>()))
+                .add(partition.get("offset").asLong()));
+
+            exchange.sendResponseHeaders(204, -1);
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.backend.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.core.user.OAuth2UserAuthority;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import com.example.backend.Benchmark;
+import com.example.backend.TestBeans;
+import com.example.backend.config.CustomOauth2GrantedAuthoritiesMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+
+/**
+ * Runs {@link PrincipalAuthorityService} on an embedded H2 database.
+ * 
+ * @since latest
+ */
+@Slf4j
+class PrincipalAuthorityServiceTests {
+
+    private static final long CACHE_TTL_MS = 200;
+
+    private EmbeddedDatabase database;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private PrincipalAuthorityService principalAuthorityService;
+
+
+    @BeforeEach
+    void setup() {
+        this.database = TestBeans.newDatabase();
+        this.meterRegistry = new SimpleMeterRegistry();
+
+        this.principalAuthorityService = TestBeans.of(new PrincipalAuthorityService())
+            .with("jdbcTemplate", new JdbcTemplate(this.database))
+            .with("transactionManager", new DataSourceTransactionManager(this.database))
+            .with("meterRegistry", this.meterRegistry)
+            .with("PRINCIPAL_AUTHORITY_CACHE_TTL_MS", CACHE_TTL_MS)
+            .with("PRINCIPAL_AUTHORITY_ADMINS", " github:octocat , ")
+            .init();
+    }
+
+
+    @AfterEach
+    void tearDown() {
+        TestBeans.destroy(this.principalAuthorityService);
+        this.database.shutdown();
+    }
+
+
+    @Test
+    void enrich_shouldAddRolesAndTopicScopes() {
+        this.principalAuthorityService.setAuthorities("local:user-1", List.of("OPERATOR"), List.of("topic:orders:write", "topic:audit:read"));
+
+        Map<String, Object> claims = new HashMap<>(Map.of("sub", "user-1", "scope", "openid"));
+        this.principalAuthorityService.enrich("local:user-1", claims);
+
+        assertEquals(List.of("OPERATOR"), claims.get("roles"));
+        assertEquals("openid topic:audit:read topic:orders:write", claims.get("scope"));
+
+        // no authorities, claims unchanged
+        claims = new HashMap<>(Map.of("sub", "user-2", "scope", "openid"));
+        this.principalAuthorityService.enrich("local:user-2", claims);
+        assertNull(claims.get("roles"));
+        assertEquals("openid", claims.get("scope"));
+
+        // configured admin
+        assertEquals(List.of(PrincipalAuthorityService.ADMIN_ROLE), this.principalAuthorityService.getAuthorities("github:octocat").getRoles());
+    }
+
+
+    @Test
+    void getAuthorities_shouldLoadOnceAndInvalidateOnWrite() {
+        for (int i = 0; i < 1_000; i++)
+            this.principalAuthorityService.getAuthorities("local:user-1");
+
+        assertEquals(1, this.meterRegistry.timer("principal.authorities.loads").count());
+        assertEquals(1, (long) this.meterRegistry.counter("principal.authorities.cache", "result", "miss").count());
+
+        this.principalAuthorityService.setAuthorities("local:user-1", List.of("OPERATOR"), List.of());
+        assertEquals(List.of("OPERATOR"), this.principalAuthorityService.getAuthorities("local:user-1").getRoles());
+
+        this.principalAuthorityService.setAuthorities("local:user-1", List.of(), List.of());
+        assertTrue(this.principalAuthorityService.getAuthorities("local:user-1").getRoles().isEmpty());
+        assertEquals(3, this.meterRegistry.timer("principal.authorities.loads").count());
+    }
+
+
+    @Test
+    void getAuthorities_shouldServeStaleWhileReloading() throws InterruptedException {
+        this.principalAuthorityService.setAuthorities("local:user-1", List.of("OPERATOR"), List.of());
+        this.principalAuthorityService.getAuthorities("local:user-1");
+
+        // changed behind the cache's back
+        new JdbcTemplate(this.database).update("DELETE FROM principal_authority WHERE provider = ? AND principal = ?", "local", "user-1");
+        Thread.sleep(CACHE_TTL_MS + 50);
+
+        // stale, triggers the reload
+        assertEquals(List.of("OPERATOR"), this.principalAuthorityService.getAuthorities("local:user-1").getRoles());
+
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!this.principalAuthorityService.getAuthorities("local:user-1").getRoles().isEmpty() && System.currentTimeMillis() < deadline)
+            Thread.sleep(5);
+
+        assertTrue(this.principalAuthorityService.getAuthorities("local:user-1").getRoles().isEmpty());
+        assertTrue(this.meterRegistry.counter("principal.authorities.cache", "result", "stale").count() >= 1);
+    }
+
+
+    @Test
+    void mapAuthorities_shouldAddStoredRoles() {
+        this.principalAuthorityService.setAuthorities("github:4711", List.of("OPERATOR"), List.of("topic:orders:read"));
+
+        CustomOauth2GrantedAuthoritiesMapper mapper = new CustomOauth2GrantedAuthoritiesMapper();
+        ReflectionTestUtils.setField(mapper, "principalAuthorityService", this.principalAuthorityService);
+
+        List<OAuth2UserAuthority> oauth2UserAuthorities = List.of(new OAuth2UserAuthority("OAUTH2_USER", Map.of("id", 4711, "login", "someone"), "id"));
+        Set<String> authorityNames = mapAuthoritiesOnCallback(mapper, "/login/oauth2/code/github", oauth2UserAuthorities);
+
+        assertEquals(Set.of("ROLE_USER", "ROLE_OPERATOR"), authorityNames);
+        assertFalse(authorityNames.contains("topic:orders:read"));
+
+        // same name at another provider, or no login callback
+        assertEquals(Set.of("ROLE_USER"), mapAuthoritiesOnCallback(mapper, "/login/oauth2/code/google", oauth2UserAuthorities));
+        assertEquals(Set.of("ROLE_USER"), mapAuthoritiesOnCallback(mapper, "/jwt", oauth2UserAuthorities));
+    }
+
+
+    @Test
+    void getAuthorities_unqualifiedPrincipal_shouldThrow() {
+        assertThrows(IllegalArgumentException.class, () -> this.principalAuthorityService.getAuthorities("user-1"));
+        assertThrows(IllegalArgumentException.class, () -> this.principalAuthorityService.setAuthorities("user-1", List.of(), List.of()));
+    }
+
+
+    private static Set<String> mapAuthoritiesOnCallback(CustomOauth2GrantedAuthoritiesMapper mapper, String path, Collection<? extends GrantedAuthority> authorities) {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest("GET", path)));
+        try {
+            return mapper.mapAuthorities(authorities).stream().map(GrantedAuthority::getAuthority).collect(Collectors.toSet());
+
+        } finally {
+            RequestContextHolder.resetRequestAttributes();
+        }
+    }
+
+
+    @Benchmark
+    void enrich_benchmark() {
+        for (int i = 0; i < 1_000; i++)
+            this.principalAuthorityService.setAuthorities("local:user-" + i, List.of("OPERATOR"), List.of("topic:topic-" + i + ":read"));
+
+        int iterations = 1_000_000;
+        double bestNanos = Double.MAX_VALUE;
+        for (int round = 0; round < 5; round++) {
+            long startNanos = System.nanoTime();
+            for (int i = 0; i < iterations; i++)
+                this.principalAuthorityService.enrich("local:user-" + (i % 1_000), new HashMap<>(4));
+
+            bestNanos = Math.min(bestNanos, (System.nanoTime() - startNanos) / (double) iterations);
+        }
+
+        // stale entries are reloaded in the background every ttl, only misses block the caller
+        long misses = (long) this.meterRegistry.counter("principal.authorities.cache", "result", "miss").count();
+        long loads = this.meterRegistry.timer("principal.authorities.loads").count();
+        log.info("Claims enrichment: {} ns per token, {} misses, {} loads", "%.1f".formatted(bestNanos), misses, loads);
+
+        assertTrue(misses <= 1_000, "Expected at most one miss per principal");
+        assertTrue(bestNanos < 2_000, "Expected enrichment to be served from cache");
+    }
+}
@@ -0,0 +1,270 @@
+package com.example.backend.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.example.backend.TestBeans;
+import com.example.backend.dtos.ProducerRecordDto;
+import com.example.backend.dtos.ProducerResponseDto.ProducerOffsetDto;
+import com.example.backend.dtos.SearchResultDto;
+import com.example.backend.helpers.Utils;
+import com.example.backend.services.PrincipalAuthorityService.PrincipalAuthorities;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+
+/**
+ * Runs {@link ProducerGatewayService} against a minimal pandaproxy stub that assigns sequential offsets and remembers
+ * which record key got which offset.
+ * 
+ * @since latest
+ */
+@Slf4j
+class ProducerGatewayServiceTests {
+
+    private static final long STUB_LATENCY_MS = 2;
+
+    private final ObjectMapper objectMapper = Utils.getDefaultObjectMapper();
+
+    private HttpServer pandaproxyStub;
+
+    private final AtomicInteger upstreamRequestCount = new AtomicInteger();
+    private final AtomicLong nextOffset = new AtomicLong();
+    private final Map<Long, String> keysByOffset = new ConcurrentHashMap<>();
+    private volatile boolean failUpstream;
+    private volatile boolean dropLastOffset;
+
+    private ProducerGatewayService producerGatewayService;
+
+    private RecordSearchService recordSearchService;
+
+
+    @BeforeEach
+    void setup() throws IOException {
+        this.pandaproxyStub = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        this.pandaproxyStub.createContext("/topics/", this::handleProduce);
+        this.pandaproxyStub.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        this.pandaproxyStub.start();
+
+        PandaproxyFetcher pandaproxyFetcher = TestBeans.of(new PandaproxyFetcher())
+            .with("PANDAPROXY_BASE_URL", "http://localhost:" + this.pandaproxyStub.getAddress().getPort())
+            .init();
+
+        JwtService jwtService = mock(JwtService.class);
+        when(jwtService.generateJwtAccessToken(anyString()))
+            .thenReturn(Jwt.withTokenValue("token").header("alg", "RS256").claim("sub", "user").build());
+
+        PrincipalAuthorityService principalAuthorityService = mock(PrincipalAuthorityService.class);
+        when(principalAuthorityService.getAuthorities(anyString())).thenReturn(new PrincipalAuthorities(List.of(), List.of()));
+        this.recordSearchService = RecordSearchServiceTests.newRecordSearchService(principalAuthorityService, new SimpleMeterRegistry(), 10_000);
+
+        this.producerGatewayService = newProducerGatewayService(pandaproxyFetcher, jwtService, 5, 500);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        TestBeans.destroy(this.producerGatewayService);
+        this.pandaproxyStub.stop(0);
+    }
+
+
+    @Test
+    void produce_concurrentCallers_shouldBatchAndMapOffsetsToCallers() throws Exception {
+        int callers = 2_000;
+        List<CompletableFuture<List<ProducerOffsetDto>>> futures = new ArrayList<>(callers);
+        long[] latenciesNanos = new long[callers];
+
+        long startNanos = System.nanoTime();
+        try (var callerExecutor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < callers; i++) {
+                int caller = i;
+                futures.add(CompletableFuture
+                    .supplyAsync(() -> System.nanoTime(), callerExecutor)
+                    .thenCompose(callerStartNanos -> this.producerGatewayService
+                        .produce("test", "user", List.of(new ProducerRecordDto("key-" + caller, Map.of("caller", caller), null)))
+                        .whenComplete((offsets, e) -> latenciesNanos[caller] = System.nanoTime() - callerStartNanos)));
+            }
+
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(30, TimeUnit.SECONDS);
+        }
+        long durationNanos = System.nanoTime() - startNanos;
+
+        for (int i = 0; i < callers; i++) {
+            List<ProducerOffsetDto> offsets = futures.get(i).get();
+            assertEquals(1, offsets.size());
+            assertEquals("key-" + i, this.keysByOffset.get(offsets.get(0).getOffset()));
+        }
+        assertEquals(callers, this.keysByOffset.size());
+        assertTrue(this.upstreamRequestCount.get() < callers / 10, "Expected batching, got %d upstream requests".formatted(this.upstreamRequestCount.get()));
+
+        Arrays.sort(latenciesNanos);
+        log.info("{} produce calls, {} upstream requests, {} records/s, latency p50 {}ms, p99 {}ms",
+            callers,
+            this.upstreamRequestCount.get(),
+            Math.round(callers / (durationNanos / 1_000_000_000.0)),
+            latenciesNanos[callers / 2] / 1_000_000.0,
+            latenciesNanos[callers * 99 / 100] / 1_000_000.0);
+    }
+
+    @Test
+    void produce_batchFull_shouldNotWaitForLinger() throws Exception {
+        TestBeans.destroy(this.producerGatewayService);
+        this.producerGatewayService = newProducerGatewayService(
+            (PandaproxyFetcher) ReflectionTestUtils.getField(this.producerGatewayService, "pandaproxyFetcher"),
+            (JwtService) ReflectionTestUtils.getField(this.producerGatewayService, "jwtService"),
+            60_000,
+            3);
+
+        List<ProducerOffsetDto> offsets = this.producerGatewayService
+            .produce("test", "user", List.of(
+                new ProducerRecordDto("a", "1", null),
+                new ProducerRecordDto("b", "2", null),
+                new ProducerRecordDto("c", "3", null)))
+            .get(5, TimeUnit.SECONDS);
+
+        assertEquals(3, offsets.size());
+        assertEquals(1, this.upstreamRequestCount.get());
+    }
+
+    @Test
+    void produce_upstreamError_shouldFailAllCallersWithParsedStatus() {
+        this.failUpstream = true;
+
+        CompletableFuture<List<ProducerOffsetDto>> first = this.producerGatewayService.produce("test", "user", List.of(new ProducerRecordDto("a", "1", null)));
+        CompletableFuture<List<ProducerOffsetDto>> second = this.producerGatewayService.produce("test", "user", List.of(new ProducerRecordDto("b", "2", null)));
+
+        for (CompletableFuture<List<ProducerOffsetDto>> future : List.of(first, second)) {
+            ExecutionException exception = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+            ResponseStatusException cause = assertInstanceOf(ResponseStatusException.class, exception.getCause());
+            assertEquals(404, cause.getStatusCode().value());
+        }
+    }
+
+    @Test
+    void produce_offsetCountMismatch_shouldFailAllCallers() {
+        this.dropLastOffset = true;
+
+        CompletableFuture<List<ProducerOffsetDto>> first = this.producerGatewayService.produce("test", "user", List.of(new ProducerRecordDto("a", "1", null)));
+        CompletableFuture<List<ProducerOffsetDto>> second = this.producerGatewayService.produce("test", "user", List.of(new ProducerRecordDto("b", "2", null)));
+
+        for (CompletableFuture<List<ProducerOffsetDto>> future : List.of(first, second)) {
+            ExecutionException exception = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+            ResponseStatusException cause = assertInstanceOf(ResponseStatusException.class, exception.getCause());
+            assertEquals(502, cause.getStatusCode().value());
+        }
+    }
+
+    @Test
+    void produce_afterDestroy_shouldBeRejected() throws Exception {
+        TestBeans.destroy(this.producerGatewayService);
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () ->
+            this.producerGatewayService.produce("test", "user", List.of(new ProducerRecordDto("a", "1", null))));
+        assertEquals(503, exception.getStatusCode().value());
+        assertEquals(0, this.upstreamRequestCount.get());
+    }
+
+    @Test
+    void produce_shouldIndexProducedRecords() throws Exception {
+        List<ProducerOffsetDto> offsets = this.producerGatewayService
+            .produce("test", "user", List.of(new ProducerRecordDto("key-1", Map.of("city", "Hamburg"), null), new ProducerRecordDto("key-2", "Bremen", null)))
+            .get(5, TimeUnit.SECONDS);
+
+        // indexed after the caller was completed
+        long deadlineNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (this.recordSearchService.getDocumentCount() < 3 && System.nanoTime() < deadlineNanos)
+            Thread.sleep(5);
+
+        SearchResultDto result = this.recordSearchService.search("user", "hamburg", 0, 10);
+        assertEquals(1, result.getTotal());
+        assertEquals(offsets.get(0).getOffset(), result.getHits().get(0).getOffset());
+        assertEquals(0, this.recordSearchService.search("other-user", "bremen", 0, 10).getTotal());
+    }
+
+    @Test
+    void produce_invalidTopic_shouldThrow() {
+        assertThrows(IllegalArgumentException.class, () -> 
+            this.producerGatewayService.produce("../consumers", "user", List.of(new ProducerRecordDto("a", "1", null))));
+    }
+
+
+    private ProducerGatewayService newProducerGatewayService(PandaproxyFetcher pandaproxyFetcher, JwtService jwtService, long lingerMs, int maxBatchRecords) {
+        return TestBeans.of(new ProducerGatewayService())
+            .with("pandaproxyFetcher", pandaproxyFetcher)
+            .with("jwtService", jwtService)
+            .with("recordSearchService", this.recordSearchService)
+            .with("meterRegistry", new SimpleMeterRegistry())
+            .with("PRODUCER_LINGER_MS", lingerMs)
+            .with("PRODUCER_MAX_BATCH_RECORDS", maxBatchRecords)
+            .with("PRODUCER_MAX_BATCH_BYTES", 1_048_576)
+            .with("PRODUCER_COMPRESSION", "none")
+            .init();
+    }
+
+    private void handleProduce(HttpExchange exchange) throws IOException {
+        this.upstreamRequestCount.incrementAndGet();
+
+        try {
+            Thread.sleep(STUB_LATENCY_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        byte[] responseBody;
+        int status;
+        if (this.failUpstream) {
+            status = 404;
+            responseBody = "{\"error_code\":40401,\"message\":\"unknown topic\"}".getBytes(StandardCharsets.UTF_8);
+
+        } else {
+            JsonNode records = this.objectMapper.readTree(exchange.getRequestBody()).get("records");
+            long firstOffset = this.nextOffset.getAndAdd(records.size());
+            int offsetCount = this.dropLastOffset ? records.size() - 1 : records.size();
+
+            StringBuilder offsets = new StringBuilder("{\"offsets\":[");
+            for (int i = 0; i < offsetCount; i++) {
+                this.keysByOffset.put(firstOffset + i, records.get(i).get("key").asText());
+                offsets.append(i == 0 ? "" : ",").append("{\"partition\":0,\"offset\":").append(firstOffset + i).append("}");
+            }
+            status = 200;
+            responseBody = offsets.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", PandaproxyFetcher.MEDIA_TYPE_KAFKA_JSON);
+        exchange.sendResponseHeaders(status, responseBody.length);
+        exchange.getResponseBody().write(responseBody);
+        exchange.close();
+    }
+}
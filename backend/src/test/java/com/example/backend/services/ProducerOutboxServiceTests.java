@@ -0,0 +1,225 @@
+package com.example.backend.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.example.backend.TestBeans;
+import com.example.backend.dtos.ProducerRecordDto;
+import com.example.backend.dtos.ProducerResponseDto.ProducerOffsetDto;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+
+/**
+ * Runs {@link ProducerOutboxService} on an embedded H2 database with a mocked {@link ProducerGatewayService} that can simulate
+ * pandaproxy beeing unavailable ("broken" topic) or rejecting records ("rejected" topic).
+ * 
+ * @since latest
+ */
+@Slf4j
+class ProducerOutboxServiceTests {
+
+    private EmbeddedDatabase database;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private ProducerOutboxService producerOutboxService;
+
+    /** Values produced per record key, in produce order */
+    private final Map<String, List<Integer>> producedValuesByKey = new ConcurrentHashMap<>();
+
+    private final AtomicInteger upstreamFailuresLeft = new AtomicInteger();
+
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setup() {
+        this.database = TestBeans.newDatabase();
+        this.jdbcTemplate = new JdbcTemplate(this.database);
+        this.meterRegistry = new SimpleMeterRegistry();
+
+        ProducerGatewayService producerGatewayService = mock(ProducerGatewayService.class);
+        when(producerGatewayService.produce(anyString(), anyString(), anyList()))
+            .thenAnswer(invocation -> {
+                if ("broken".equals(invocation.getArgument(0)) || this.upstreamFailuresLeft.getAndDecrement() > 0)
+                    return CompletableFuture.failedFuture(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE));
+
+                if ("rejected".equals(invocation.getArgument(0)))
+                    return CompletableFuture.failedFuture(new ResponseStatusException(HttpStatus.FORBIDDEN));
+
+                List<ProducerRecordDto> records = invocation.getArgument(2);
+                List<ProducerOffsetDto> offsets = new ArrayList<>(records.size());
+                for (ProducerRecordDto record : records) {
+                    this.producedValuesByKey
+                        .computeIfAbsent((String) record.getKey(), key -> Collections.synchronizedList(new ArrayList<>()))
+                        .add((Integer) record.getValue());
+                    offsets.add(new ProducerOffsetDto(0, offsets.size(), null));
+                }
+
+                return CompletableFuture.completedFuture(offsets);
+            });
+
+        this.producerOutboxService = TestBeans.of(new ProducerOutboxService())
+            .with("jdbcTemplate", this.jdbcTemplate)
+            .with("transactionManager", new DataSourceTransactionManager(this.database))
+            .with("producerGatewayService", producerGatewayService)
+            .with("meterRegistry", this.meterRegistry)
+            .with("OUTBOX_INSERT_BATCH_SIZE", 500)
+            .with("OUTBOX_DRAIN_INTERVAL_MS", 10L)
+            .with("OUTBOX_DRAIN_BATCH_SIZE", 1_000)
+            .with("OUTBOX_MAX_BACKOFF_MS", 200L)
+            .init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TestBeans.destroy(this.producerOutboxService);
+        this.database.shutdown();
+    }
+
+
+    @Test
+    void append_burst_shouldDrainEverythingInOrderPerKey() throws Exception {
+        int keys = 200;
+        int recordsPerKey = 100;
+
+        long appendDurationNanos = appendBurst(keys, recordsPerKey);
+        long drainDurationNanos = awaitDrained(keys * recordsPerKey, 0);
+
+        assertProducedInOrder(keys, recordsPerKey);
+        log.info("Appended {} records in {}ms ({} records/s, {} insert batches), drained after another {}ms",
+            keys * recordsPerKey,
+            appendDurationNanos / 1_000_000,
+            Math.round(keys * recordsPerKey / (appendDurationNanos / 1_000_000_000.0)),
+            (long) this.meterRegistry.counter("outbox.insert.batches").count(),
+            drainDurationNanos / 1_000_000);
+    }
+
+    @Test
+    void append_upstreamUnavailable_shouldKeepRecordsAndRetryInOrder() throws Exception {
+        this.upstreamFailuresLeft.set(5);
+
+        appendBurst(20, 50);
+        awaitDrained(20 * 50, 0);
+
+        assertProducedInOrder(20, 50);
+        assertEquals(0, this.meterRegistry.counter("outbox.dropped").count());
+    }
+
+    @Test
+    void append_failingStream_shouldNotStallOtherStreamsNorBeDropped() throws Exception {
+        this.producerOutboxService.append("broken", "user", List.of(new ProducerRecordDto("key", 0, null))).get(5, TimeUnit.SECONDS);
+
+        appendBurst(20, 50);
+        // the broken stream keeps backing off, the others drain meanwhile
+        awaitDrained(20 * 50, 1);
+
+        assertProducedInOrder(20, 50);
+        assertEquals(0, this.meterRegistry.counter("outbox.dropped").count());
+        assertEquals(1, this.meterRegistry.get("outbox.streams.backed.off").gauge().value());
+    }
+
+    @Test
+    void append_rejectedStream_shouldBeDroppedWithoutRetry() throws Exception {
+        this.producerOutboxService.append("rejected", "user", List.of(new ProducerRecordDto("key", 0, null))).get(5, TimeUnit.SECONDS);
+
+        awaitDrained(0, 0);
+
+        assertEquals(1, this.meterRegistry.counter("outbox.dropped").count());
+        assertEquals(0, this.meterRegistry.get("outbox.streams.backed.off").gauge().value());
+    }
+
+    @Test
+    void append_afterDestroy_shouldBeRejected() throws Exception {
+        this.producerOutboxService.append("test", "user", List.of(new ProducerRecordDto("key", 0, null))).get(5, TimeUnit.SECONDS);
+
+        TestBeans.destroy(this.producerOutboxService);
+
+        CompletableFuture<Void> future = this.producerOutboxService.append("test", "user", List.of(new ProducerRecordDto("key", 1, null)));
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        assertEquals(503, assertInstanceOf(ResponseStatusException.class, exception.getCause()).getStatusCode().value());
+    }
+
+
+    /**
+     * One caller per key, each appending its records one by one.
+     * 
+     * @return duration in nanos
+     */
+    private long appendBurst(int keys, int recordsPerKey) throws Exception {
+        long startNanos = System.nanoTime();
+
+        try (var callerExecutor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<CompletableFuture<Void>> callers = IntStream.range(0, keys)
+                .mapToObj(key -> CompletableFuture.runAsync(() -> {
+                    for (int value = 0; value < recordsPerKey; value++)
+                        this.producerOutboxService
+                            .append("test", "user", List.of(new ProducerRecordDto("key-" + key, value, null)))
+                            .join();
+                }, callerExecutor))
+                .toList();
+
+            CompletableFuture.allOf(callers.toArray(CompletableFuture[]::new)).get(60, TimeUnit.SECONDS);
+        }
+
+        return System.nanoTime() - startNanos;
+    }
+
+    /**
+     * @param expectedRecords produced records
+     * @param expectedRemainingRows rows that are never produced
+     * @return duration in nanos
+     */
+    private long awaitDrained(int expectedRecords, int expectedRemainingRows) throws InterruptedException {
+        long startNanos = System.nanoTime();
+        long deadlineNanos = startNanos + TimeUnit.SECONDS.toNanos(30);
+
+        while (outboxSize() > expectedRemainingRows && System.nanoTime() < deadlineNanos)
+            Thread.sleep(10);
+
+        assertEquals(expectedRemainingRows, outboxSize());
+        assertEquals(expectedRecords, this.meterRegistry.counter("outbox.drained").count());
+
+        return System.nanoTime() - startNanos;
+    }
+
+    private void assertProducedInOrder(int keys, int recordsPerKey) {
+        assertEquals(keys, this.producedValuesByKey.size());
+
+        List<Integer> expectedValues = IntStream.range(0, recordsPerKey).boxed().toList();
+        this.producedValuesByKey.forEach((key, values) -> assertEquals(expectedValues, values, key));
+    }
+
+    private int outboxSize() {
+        return this.jdbcTemplate.queryForObject("SELECT COUNT(*) FROM producer_outbox", Integer.class);
+    }
+}
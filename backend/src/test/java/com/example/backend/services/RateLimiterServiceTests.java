@@ -0,0 +1,234 @@
+package com.example.backend.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.example.backend.Benchmark;
+import com.example.backend.TestBeans;
+import com.example.backend.config.RateLimitFilter;
+import com.example.backend.helpers.Utils;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+
+/**
+ * @since latest
+ */
+@Slf4j
+class RateLimiterServiceTests {
+
+    private static final int REQUESTS_PER_SECOND = 10;
+
+    private static final int BURST = 5;
+
+    private static final int MAX_KEYS = 1_600;
+
+    private static final long SECOND_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private RateLimiterService rateLimiterService;
+
+
+    @BeforeEach
+    void setup() {
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.rateLimiterService = newRateLimiterService(REQUESTS_PER_SECOND, BURST, MAX_KEYS);
+    }
+
+
+    @Test
+    void tryAcquire_shouldAllowBurstThenRefillAtRate() {
+        long nowNanos = System.nanoTime();
+
+        for (int i = 0; i < BURST; i++)
+            assertEquals(0, this.rateLimiterService.tryAcquire("key", nowNanos));
+
+        // next token in 1 / REQUESTS_PER_SECOND
+        assertEquals(SECOND_NANOS / REQUESTS_PER_SECOND, this.rateLimiterService.tryAcquire("key", nowNanos));
+        assertEquals(SECOND_NANOS / REQUESTS_PER_SECOND / 2, this.rateLimiterService.tryAcquire("key", nowNanos + SECOND_NANOS / REQUESTS_PER_SECOND / 2));
+
+        nowNanos += SECOND_NANOS / REQUESTS_PER_SECOND;
+        assertEquals(0, this.rateLimiterService.tryAcquire("key", nowNanos));
+        assertTrue(this.rateLimiterService.tryAcquire("key", nowNanos) > 0);
+
+        // idle for long, only refills up to the burst
+        nowNanos += 10 * SECOND_NANOS;
+        for (int i = 0; i < BURST; i++)
+            assertEquals(0, this.rateLimiterService.tryAcquire("key", nowNanos));
+        assertTrue(this.rateLimiterService.tryAcquire("key", nowNanos) > 0);
+
+        // other keys are independent
+        assertEquals(0, this.rateLimiterService.tryAcquire("other", nowNanos));
+
+        assertEquals(BURST + 1 + BURST + 1, (long) this.meterRegistry.counter("rate.limit.requests", "outcome", "allowed").count());
+        assertEquals(4, (long) this.meterRegistry.counter("rate.limit.requests", "outcome", "rejected").count());
+    }
+
+
+    @Test
+    void tryAcquire_shouldLimitByPrincipalAndByIp() {
+        for (int i = 0; i < BURST; i++)
+            assertEquals(0, this.rateLimiterService.tryAcquire("user", "10.0.0." + i));
+
+        // principal exhausted, even from a new ip
+        assertTrue(this.rateLimiterService.tryAcquire("user", "10.0.0.100") > 0);
+
+        for (int i = 0; i < BURST - 1; i++)
+            assertEquals(0, this.rateLimiterService.tryAcquire(null, "10.0.0.200"));
+
+        // ip exhausted, even for a new principal
+        assertEquals(0, this.rateLimiterService.tryAcquire("other-user", "10.0.0.200"));
+        assertTrue(this.rateLimiterService.tryAcquire("third-user", "10.0.0.200") > 0);
+
+        List<RateLimiterService.KeyCounters> keyCounters = this.rateLimiterService.getKeyCounters(2);
+        assertEquals(2, keyCounters.size());
+        assertEquals(1, keyCounters.get(0).rejected());
+    }
+
+
+    @Test
+    void tryAcquire_rejected_shouldNotConsumeOtherBucket() {
+        for (int i = 0; i < BURST; i++)
+            assertEquals(0, this.rateLimiterService.tryAcquire(null, "10.0.0.1"));
+
+        // ip exhausted, the principal keeps its tokens
+        for (int i = 0; i < BURST; i++)
+            assertTrue(this.rateLimiterService.tryAcquire("user", "10.0.0.1") > 0);
+
+        for (int i = 0; i < BURST; i++)
+            assertEquals(0, this.rateLimiterService.tryAcquire("user", "10.0.0.2"));
+
+        // principal exhausted, the ip keeps its tokens
+        for (int i = 0; i < BURST; i++)
+            assertTrue(this.rateLimiterService.tryAcquire("user", "10.0.0.3") > 0);
+
+        for (int i = 0; i < BURST; i++)
+            assertEquals(0, this.rateLimiterService.tryAcquire(null, "10.0.0.3"));
+    }
+
+
+    @Test
+    void tryAcquire_shouldStayBounded() {
+        long nowNanos = System.nanoTime();
+
+        // exhausted buckets, nothing to evict but arbitrary ones
+        for (int i = 0; i < MAX_KEYS * 3; i++)
+            for (int j = 0; j < BURST; j++)
+                this.rateLimiterService.tryAcquire("ip:" + i, nowNanos);
+
+        assertTrue(this.rateLimiterService.getKeyCount() <= MAX_KEYS, "" + this.rateLimiterService.getKeyCount());
+        assertTrue(this.meterRegistry.counter("rate.limit.evictions").count() >= MAX_KEYS * 2);
+
+        // full buckets are evicted first
+        nowNanos += 10 * SECOND_NANOS;
+        this.rateLimiterService.tryAcquire("new-key", nowNanos);
+        assertTrue(this.rateLimiterService.getKeyCount() <= MAX_KEYS);
+    }
+
+
+    @Test
+    void filter_shouldRespond429WithRetryAfter() throws Exception {
+        RateLimitFilter rateLimitFilter = new RateLimitFilter(this.rateLimiterService, Set.of("/jwt"));
+
+        for (int i = 0; i < BURST; i++) {
+            MockFilterChain filterChain = new MockFilterChain();
+            rateLimitFilter.doFilter(newRequest("/jwt"), new MockHttpServletResponse(), filterChain);
+            assertTrue(filterChain.getRequest() != null);
+        }
+
+        MockFilterChain filterChain = new MockFilterChain();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        rateLimitFilter.doFilter(newRequest("/jwt"), response, filterChain);
+
+        assertEquals(null, filterChain.getRequest());
+        assertEquals(429, response.getStatus());
+        assertEquals("1", response.getHeader("Retry-After"));
+
+        JsonNode body = Utils.getDefaultObjectMapper().readTree(response.getContentAsString());
+        assertEquals(429, body.get("statusCode").asInt());
+        assertTrue(body.has("timestamp"));
+
+        // not rate limited path
+        filterChain = new MockFilterChain();
+        rateLimitFilter.doFilter(newRequest("/.well-known/jwks"), new MockHttpServletResponse(), filterChain);
+        assertTrue(filterChain.getRequest() != null);
+    }
+
+
+    /**
+     * Average overhead of one request (ip and principal bucket) on a single thread and on all cores, with keys beeing mostly
+     * present like in production.
+     */
+    @Benchmark
+    void tryAcquire_benchmark() throws InterruptedException {
+        this.rateLimiterService = newRateLimiterService(1_000_000_000, 1_000, 100_000);
+
+        int keyCount = 10_000;
+        int iterations = 2_000_000;
+        String[] ips = new String[keyCount];
+        String[] principals = new String[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            ips[i] = "10.0." + (i / 256) + "." + (i % 256);
+            principals[i] = "user-" + i;
+        }
+
+        double bestNanosPerRequest = Double.MAX_VALUE;
+        for (int round = 0; round < 5; round++) {
+            long startNanos = System.nanoTime();
+            for (int i = 0; i < iterations; i++)
+                this.rateLimiterService.tryAcquire(principals[i % keyCount], ips[i % keyCount]);
+
+            bestNanosPerRequest = Math.min(bestNanosPerRequest, (System.nanoTime() - startNanos) / (double) iterations);
+        }
+        log.info("Rate limiter single thread: {} ns per request", "%.1f".formatted(bestNanosPerRequest));
+
+        int threadCount = Runtime.getRuntime().availableProcessors();
+        List<Thread> threads = new ArrayList<>();
+        long startNanos = System.nanoTime();
+        for (int t = 0; t < threadCount; t++) {
+            int offset = t;
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < iterations; i++)
+                    this.rateLimiterService.tryAcquire(principals[(i + offset) % keyCount], ips[(i + offset) % keyCount]);
+            }));
+        }
+        for (Thread thread : threads)
+            thread.join();
+
+        double concurrentNanosPerRequest = (System.nanoTime() - startNanos) / (double) iterations;
+        log.info("Rate limiter {} threads: {} ns per request and thread", threadCount, "%.1f".formatted(concurrentNanosPerRequest));
+
+        assertTrue(bestNanosPerRequest < 1_000, "Expected sub microsecond overhead, got " + bestNanosPerRequest + "ns");
+    }
+
+
+    private RateLimiterService newRateLimiterService(double requestsPerSecond, int burst, int maxKeys) {
+        return TestBeans.of(new RateLimiterService())
+            .with("meterRegistry", this.meterRegistry)
+            .with("RATE_LIMIT_REQUESTS_PER_SECOND", requestsPerSecond)
+            .with("RATE_LIMIT_BURST", burst)
+            .with("RATE_LIMIT_MAX_KEYS", maxKeys)
+            .init();
+    }
+
+
+    private static MockHttpServletRequest newRequest(String path) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+        request.setRemoteAddr("10.0.0.1");
+        return request;
+    }
+}
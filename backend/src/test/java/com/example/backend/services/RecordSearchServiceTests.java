@@ -0,0 +1,200 @@
+package com.example.backend.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.backend.TestBeans;
+import com.example.backend.dtos.ProducerRecordDto;
+import com.example.backend.dtos.ProducerResponseDto.ProducerOffsetDto;
+import com.example.backend.dtos.SearchResultDto;
+import com.example.backend.dtos.SearchResultDto.SearchHitDto;
+import com.example.backend.services.PrincipalAuthorityService.PrincipalAuthorities;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+
+/**
+ * @since latest
+ */
+class RecordSearchServiceTests {
+
+    private static final PrincipalAuthorities NO_AUTHORITIES = new PrincipalAuthorities(List.of(), List.of());
+
+    private PrincipalAuthorityService principalAuthorityService;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private RecordSearchService recordSearchService;
+
+
+    @BeforeEach
+    void setup() {
+        this.principalAuthorityService = mock(PrincipalAuthorityService.class);
+        when(this.principalAuthorityService.getAuthorities(anyString())).thenReturn(NO_AUTHORITIES);
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.recordSearchService = newRecordSearchService(this.principalAuthorityService, this.meterRegistry, 1000);
+    }
+
+    @AfterEach
+    void cleanup() {
+        TestBeans.destroy(this.recordSearchService);
+    }
+
+
+    @Test
+    void search_shouldFindProducedRecordsAndTopic() {
+        indexRecords(this.recordSearchService, "orders.eu", "alice", List.of(
+                new ProducerRecordDto("order-1", Map.of("customer", "Anna Müller", "total", 42), null),
+                new ProducerRecordDto(null, "shipped to Berlin", null)),
+            List.of(offset(0, 10), offset(1, 11)));
+
+        SearchResultDto result = this.recordSearchService.search("alice", "müller", 0, 10);
+        assertEquals(1, result.getTotal());
+        SearchHitDto hit = result.getHits().get(0);
+        assertEquals(RecordSearchService.TYPE_RECORD, hit.getType());
+        assertEquals("orders.eu", hit.getTopic());
+        assertEquals(0, hit.getPartition());
+        assertEquals(10L, hit.getOffset());
+        assertEquals("order-1", hit.getKey());
+        assertTrue(hit.getValue().contains("Anna Müller"));
+
+        // topic document rates higher, both of its words match exactly and adjacently
+        result = this.recordSearchService.search("alice", "orders eu", 0, 10);
+        assertEquals(RecordSearchService.TYPE_TOPIC, result.getHits().get(0).getType());
+        assertNull(result.getHits().get(0).getOffset());
+
+        assertEquals(11L, this.recordSearchService.search("alice", "berlin", 0, 10).getHits().get(0).getOffset());
+    }
+
+    @Test
+    void search_shouldOnlyReturnReadableOrOwnRecords() {
+        indexRecords(this.recordSearchService, "payments", "alice", List.of(new ProducerRecordDto("k", "secret payment", null)), List.of(offset(0, 0)));
+        indexRecords(this.recordSearchService, "payments", "bob", List.of(new ProducerRecordDto("k", "public payment", null)), List.of(offset(0, 1)));
+
+        // own records and the topic produced to
+        assertEquals(2, this.recordSearchService.search("bob", "payment", 0, 10).getTotal());
+        assertEquals(0, this.recordSearchService.search("carol", "payment", 0, 10).getTotal());
+
+        when(this.principalAuthorityService.getAuthorities("carol")).thenReturn(new PrincipalAuthorities(List.of(), List.of("topic:payments:write")));
+        assertEquals(0, this.recordSearchService.search("carol", "payment", 0, 10).getTotal());
+
+        when(this.principalAuthorityService.getAuthorities("carol")).thenReturn(new PrincipalAuthorities(List.of(), List.of("topic:payments:read")));
+        assertEquals(3, this.recordSearchService.search("carol", "payment", 0, 10).getTotal());
+
+        when(this.principalAuthorityService.getAuthorities("admin")).thenReturn(new PrincipalAuthorities(List.of(PrincipalAuthorityService.ADMIN_ROLE), List.of()));
+        assertEquals(3, this.recordSearchService.search("admin", "payment", 0, 10).getTotal());
+    }
+
+    @Test
+    void indexRecords_notProduced_shouldSkip() {
+        indexRecords(this.recordSearchService, "orders", "alice", List.of(
+                new ProducerRecordDto("a", "failed", null),
+                new ProducerRecordDto("b", "failed", null)),
+            List.of(new ProducerOffsetDto(0, -1, 50002), offset(0, 5)));
+
+        assertEquals(1, this.recordSearchService.search("alice", "failed", 0, 10).getTotal());
+
+        // mismatching offsets are ignored
+        indexRecords(this.recordSearchService, "orders", "alice", List.of(new ProducerRecordDto("c", "failed", null)), List.of());
+        assertEquals(1, this.recordSearchService.search("alice", "failed", 0, 10).getTotal());
+    }
+
+    @Test
+    void indexRecords_full_shouldEvictOldestRecords() {
+        // one record per segment
+        RecordSearchService recordSearchService = newRecordSearchService(this.principalAuthorityService, this.meterRegistry, 4);
+
+        for (int i = 0; i < 6; i++)
+            indexRecords(recordSearchService, "orders", "alice", List.of(new ProducerRecordDto(null, "value", null)), List.of(offset(0, i)));
+
+        // topic + newest 4 records
+        assertEquals(5, recordSearchService.getDocumentCount());
+        SearchResultDto result = recordSearchService.search("alice", "value", 0, 10);
+        assertEquals(4, result.getTotal());
+        assertEquals(5L, result.getHits().get(0).getOffset());
+        assertEquals(2L, result.getHits().get(3).getOffset());
+        assertEquals(2, this.meterRegistry.counter("search.index.evicted").count());
+        assertEquals(1, recordSearchService.search("alice", "orders", 0, 10).getTotal());
+
+        TestBeans.destroy(recordSearchService);
+    }
+
+    @Test
+    void search_shouldMergeSegments() {
+        RecordSearchService recordSearchService = newRecordSearchService(this.principalAuthorityService, this.meterRegistry, 8);
+
+        indexRecords(recordSearchService, "orders", "alice", List.of(
+                new ProducerRecordDto(null, "red apple", null),
+                new ProducerRecordDto(null, "green apple", null),
+                new ProducerRecordDto(null, "apple", null)),
+            List.of(offset(0, 0), offset(0, 1), offset(0, 2)));
+
+        // exact matches of both words rate highest, then newest first
+        SearchResultDto result = recordSearchService.search("alice", "red apple", 0, 10);
+        assertEquals(3, result.getTotal());
+        assertEquals(0L, result.getHits().get(0).getOffset());
+        assertEquals(2L, result.getHits().get(1).getOffset());
+        assertEquals(1L, result.getHits().get(2).getOffset());
+
+        result = recordSearchService.search("alice", "apple", 1, 2);
+        assertEquals(1, result.getHits().size());
+        assertEquals(0L, result.getHits().get(0).getOffset());
+
+        TestBeans.destroy(recordSearchService);
+    }
+
+    @Test
+    void search_shouldPageAndTruncate() {
+        String longValue = "word ".repeat(100);
+        for (int i = 0; i < 25; i++)
+            indexRecords(this.recordSearchService, "logs", "alice", List.of(new ProducerRecordDto(null, longValue, null)), List.of(offset(0, i)));
+
+        SearchResultDto result = this.recordSearchService.search("alice", "word", 2, 10);
+
+        assertEquals(25, result.getTotal());
+        assertEquals(5, result.getHits().size());
+        // newest first
+        assertEquals(4L, result.getHits().get(0).getOffset());
+        assertEquals(RecordSearchService.MAX_PREVIEW_LENGTH, result.getHits().get(0).getValue().length());
+
+        assertThrows(IllegalArgumentException.class, () -> this.recordSearchService.search("alice", "word", -1, 10));
+        assertThrows(IllegalArgumentException.class, () -> this.recordSearchService.search("alice", "word", 0, 0));
+    }
+
+
+    static RecordSearchService newRecordSearchService(PrincipalAuthorityService principalAuthorityService, SimpleMeterRegistry meterRegistry, int maxDocuments) {
+        return TestBeans.of(new RecordSearchService())
+            .with("principalAuthorityService", principalAuthorityService)
+            .with("meterRegistry", meterRegistry)
+            .with("SEARCH_INDEX_MAX_DOCUMENTS", maxDocuments)
+            .init();
+    }
+
+    /**
+     * Index and wait for the indexer thread.
+     */
+    static void indexRecords(RecordSearchService recordSearchService, String topic, String principalName, List<ProducerRecordDto> records, List<ProducerOffsetDto> offsets) {
+        recordSearchService.indexRecords(topic, principalName, records, offsets);
+
+        long deadlineNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (recordSearchService.getPendingCount() > 0 && System.nanoTime() < deadlineNanos)
+            Thread.onSpinWait();
+    }
+
+    private static ProducerOffsetDto offset(int partition, long offset) {
+        return new ProducerOffsetDto(partition, offset, null);
+    }
+}
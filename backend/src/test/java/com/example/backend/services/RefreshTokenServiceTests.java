@@ -0,0 +1,293 @@
+package com.example.backend.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.RSAPublicKey;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.example.backend.Benchmark;
+import com.example.backend.TestBeans;
+
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+
+/**
+ * Runs {@link RefreshTokenService} on an embedded H2 database, replicas are instances sharing the database. The throughput test
+ * refreshes with real RS256 signing.
+ * 
+ * @since latest
+ */
+@Slf4j
+class RefreshTokenServiceTests {
+
+    private static final String ISSUER_ID = IssuerRegistry.DEFAULT_ISSUER_ID;
+
+    private EmbeddedDatabase database;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private RefreshTokenService refreshTokenService;
+
+
+    @BeforeEach
+    void setup() {
+        this.database = TestBeans.newDatabase();
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.refreshTokenService = newRefreshTokenService(86_400);
+    }
+
+
+    @AfterEach
+    void tearDown() throws Exception {
+        TestBeans.destroy(this.refreshTokenService);
+        this.database.shutdown();
+    }
+
+
+    @Test
+    void rotate_shouldInvalidateUsedToken() {
+        String refreshToken = this.refreshTokenService.issue("user-1", null, ISSUER_ID);
+
+        RefreshTokenService.Rotation rotation = this.refreshTokenService.rotate(refreshToken, ISSUER_ID);
+        assertEquals("user-1", rotation.subject());
+        assertNotEquals(refreshToken, rotation.refreshToken());
+
+        // unknown
+        assertThrows(ResponseStatusException.class, () -> this.refreshTokenService.rotate("unknown", ISSUER_ID));
+        assertThrows(ResponseStatusException.class, () -> this.refreshTokenService.rotate("unknown.token", ISSUER_ID));
+        assertThrows(ResponseStatusException.class, () -> this.refreshTokenService.rotate(null, ISSUER_ID));
+
+        // expiry is kept
+        RefreshTokenService.Rotation nextRotation = this.refreshTokenService.rotate(rotation.refreshToken(), ISSUER_ID);
+        assertEquals(rotation.expiryTime(), nextRotation.expiryTime());
+
+        this.refreshTokenService.revoke(nextRotation.refreshToken());
+        assertThrows(ResponseStatusException.class, () -> this.refreshTokenService.rotate(nextRotation.refreshToken(), ISSUER_ID));
+        assertEquals(4, (long) this.meterRegistry.counter("refresh.token.rejected").count());
+    }
+
+
+    @Test
+    void rotate_reusedToken_shouldRevokeFamily() {
+        String refreshToken = this.refreshTokenService.issue("user-1", null, ISSUER_ID);
+        String otherRefreshToken = this.refreshTokenService.issue("user-1", null, ISSUER_ID);
+        String latestRefreshToken = this.refreshTokenService.rotate(refreshToken, ISSUER_ID).refreshToken();
+
+        // replayed by someone who copied it
+        assertThrows(ResponseStatusException.class, () -> this.refreshTokenService.rotate(refreshToken, ISSUER_ID));
+        assertThrows(ResponseStatusException.class, () -> this.refreshTokenService.rotate(latestRefreshToken, ISSUER_ID));
+        assertEquals(1, (long) this.meterRegistry.counter("refresh.token.reused").count());
+
+        // other families are not affected
+        assertEquals("user-1", this.refreshTokenService.rotate(otherRefreshToken, ISSUER_ID).subject());
+    }
+
+
+    @Test
+    void rotate_otherIssuer_shouldBeRejected() {
+        String refreshToken = this.refreshTokenService.issue("user-1", null, ISSUER_ID);
+
+        assertThrows(ResponseStatusException.class, () -> this.refreshTokenService.rotate(refreshToken, "cluster-b"));
+
+        // not reuse, still valid for its own issuer
+        assertEquals(0, (long) this.meterRegistry.counter("refresh.token.reused").count());
+        assertEquals("user-1", this.refreshTokenService.rotate(refreshToken, ISSUER_ID).subject());
+    }
+
+
+    @Test
+    void revokeSession_shouldRevokeFamiliesOfSession() {
+        String refreshToken = this.refreshTokenService.issue("user-1", "session-1", ISSUER_ID);
+        String latestRefreshToken = this.refreshTokenService.rotate(refreshToken, ISSUER_ID).refreshToken();
+        String otherRefreshToken = this.refreshTokenService.issue("user-1", "session-2", ISSUER_ID);
+
+        this.refreshTokenService.revokeSession("session-1");
+
+        assertThrows(ResponseStatusException.class, () -> this.refreshTokenService.rotate(latestRefreshToken, ISSUER_ID));
+        assertEquals("user-1", this.refreshTokenService.rotate(otherRefreshToken, ISSUER_ID).subject());
+    }
+
+
+    @Test
+    void rotate_shouldRejectExpiredToken() throws Exception {
+        TestBeans.destroy(this.refreshTokenService);
+        this.refreshTokenService = newRefreshTokenService(0);
+
+        String refreshToken = this.refreshTokenService.issue("user-1", null, ISSUER_ID);
+        Thread.sleep(2);
+
+        assertThrows(ResponseStatusException.class, () -> this.refreshTokenService.rotate(refreshToken, ISSUER_ID));
+    }
+
+
+    @Test
+    void rotate_shouldAcceptTokenOnlyOnceConcurrently() throws Exception {
+        String refreshToken = this.refreshTokenService.issue("user-1", null, ISSUER_ID);
+
+        List<Future<Boolean>> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 50; i++)
+                results.add(executor.submit(() -> {
+                    try {
+                        this.refreshTokenService.rotate(refreshToken, ISSUER_ID);
+                        return true;
+
+                    } catch (ResponseStatusException e) {
+                        return false;
+                    }
+                }));
+        }
+
+        long successCount = 0;
+        for (Future<Boolean> result : results)
+            if (result.get())
+                successCount++;
+
+        // the first loser counts as reuse and revokes the family, the others find it revoked
+        assertEquals(1, successCount);
+        assertEquals(1, (long) this.meterRegistry.counter("refresh.token.reused").count());
+    }
+
+
+    @Test
+    void tokens_shouldSurviveRestart() throws Exception {
+        String usedRefreshToken = this.refreshTokenService.issue("user-1", null, ISSUER_ID);
+        String refreshToken = this.refreshTokenService.rotate(usedRefreshToken, ISSUER_ID).refreshToken();
+        String revokedRefreshToken = this.refreshTokenService.issue("user-2", null, ISSUER_ID);
+        this.refreshTokenService.revoke(revokedRefreshToken);
+
+        TestBeans.destroy(this.refreshTokenService);
+        this.refreshTokenService = newRefreshTokenService(86_400);
+
+        assertEquals(1, new JdbcTemplate(this.database).queryForObject("SELECT COUNT(*) FROM refresh_token", Integer.class));
+        assertEquals("user-1", this.refreshTokenService.rotate(refreshToken, ISSUER_ID).subject());
+        assertThrows(ResponseStatusException.class, () -> this.refreshTokenService.rotate(revokedRefreshToken, ISSUER_ID));
+        // the family is known after the restart, so reuse is detected
+        assertThrows(ResponseStatusException.class, () -> this.refreshTokenService.rotate(usedRefreshToken, ISSUER_ID));
+        assertEquals(1, (long) this.meterRegistry.counter("refresh.token.reused").count());
+    }
+
+
+    @Test
+    void rotate_otherReplica_shouldSeeRotationsAndRevocations() throws Exception {
+        RefreshTokenService otherReplica = newRefreshTokenService(86_400);
+        try {
+            String refreshToken = this.refreshTokenService.issue("user-1", "session-1", ISSUER_ID);
+            String latestRefreshToken = otherReplica.rotate(refreshToken, ISSUER_ID).refreshToken();
+
+            // cached by this replica before the rotation
+            assertThrows(ResponseStatusException.class, () -> this.refreshTokenService.rotate(refreshToken, ISSUER_ID));
+            assertEquals(1, (long) this.meterRegistry.counter("refresh.token.reused").count());
+            assertThrows(ResponseStatusException.class, () -> otherReplica.rotate(latestRefreshToken, ISSUER_ID));
+
+            String sessionRefreshToken = otherReplica.issue("user-1", "session-2", ISSUER_ID);
+            this.refreshTokenService.revokeSession("session-2");
+            assertThrows(ResponseStatusException.class, () -> otherReplica.rotate(sessionRefreshToken, ISSUER_ID));
+
+        } finally {
+            TestBeans.destroy(otherReplica);
+        }
+    }
+
+
+    /**
+     * Sustained refreshes per core: rotating only, and rotating plus signing the new access token.
+     */
+    @Benchmark
+    void refresh_benchmark() throws Exception {
+        JwtService jwtService = newJwtService();
+        int clientCount = 1_000;
+
+        String[] refreshTokens = new String[clientCount];
+        for (int i = 0; i < clientCount; i++)
+            refreshTokens[i] = this.refreshTokenService.issue("user-" + i, null, ISSUER_ID);
+
+        // rotate only
+        int rotations = 200_000;
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < rotations; i++)
+            refreshTokens[i % clientCount] = this.refreshTokenService.rotate(refreshTokens[i % clientCount], ISSUER_ID).refreshToken();
+        double rotationsPerSecond = rotations / ((System.nanoTime() - startNanos) / 1e9);
+
+        // rotate and sign on all cores
+        int threadCount = Runtime.getRuntime().availableProcessors();
+        int refreshesPerThread = 2_000;
+        List<Callable<Void>> clients = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            int client = t;
+            clients.add(() -> {
+                String threadRefreshToken = this.refreshTokenService.issue("local:thread-" + client, null, ISSUER_ID);
+                for (int i = 0; i < refreshesPerThread; i++) {
+                    RefreshTokenService.Rotation rotation = this.refreshTokenService.rotate(threadRefreshToken, ISSUER_ID);
+                    jwtService.generateJwtAccessToken(rotation.subject());
+                    threadRefreshToken = rotation.refreshToken();
+                }
+                return null;
+            });
+        }
+
+        startNanos = System.nanoTime();
+        try (ExecutorService executor = Executors.newFixedThreadPool(threadCount)) {
+            for (Future<Void> result : executor.invokeAll(clients))
+                result.get();
+        }
+        double refreshesPerSecondAndCore = refreshesPerThread / ((System.nanoTime() - startNanos) / 1e9);
+
+        log.info("Refresh tokens: {} rotations/s on one core, {} refreshes with RS256 signing/s per core ({} cores)", 
+            (long) rotationsPerSecond, (long) refreshesPerSecondAndCore, threadCount);
+
+        assertTrue(rotationsPerSecond > refreshesPerSecondAndCore, "Expected rotation to be cheaper than signing");
+        // latest tokens are the ones in the table
+        for (int i = 0; i < clientCount; i++)
+            assertEquals("user-" + i, this.refreshTokenService.rotate(refreshTokens[i], ISSUER_ID).subject());
+    }
+
+
+    private RefreshTokenService newRefreshTokenService(long ttlSeconds) {
+        return TestBeans.of(new RefreshTokenService())
+            .with("jdbcTemplate", new JdbcTemplate(this.database))
+            .with("meterRegistry", this.meterRegistry)
+            .with("REFRESH_TOKEN_TTL_SECONDS", ttlSeconds)
+            .with("REFRESH_TOKEN_CLEANUP_INTERVAL_MS", TimeUnit.HOURS.toMillis(1))
+            .init();
+    }
+
+
+    /**
+     * @return jwt service signing with a new 2048 bit key, verified once
+     */
+    static JwtService newJwtService() throws Exception {
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+        keyPairGenerator.initialize(2048);
+        KeyPair keyPair = keyPairGenerator.generateKeyPair();
+
+        JwtService jwtService = JwtServiceTests.newJwtService(IssuerRegistryTests.newIssuerRegistry(keyPair, "", "", new SimpleMeterRegistry()));
+
+        Jwt jwt = jwtService.generateJwtAccessToken("local:user");
+        NimbusJwtDecoder.withPublicKey((RSAPublicKey) keyPair.getPublic()).build().decode(jwt.getTokenValue());
+
+        return jwtService;
+    }
+}